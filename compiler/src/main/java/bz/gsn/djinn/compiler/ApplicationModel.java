@@ -0,0 +1,366 @@
+package bz.gsn.djinn.compiler;
+
+import bz.gsn.djinn.compiler.metadata.ClassMetadata;
+import bz.gsn.djinn.compiler.metadata.ClasspathMetadata;
+import bz.gsn.djinn.compiler.metadata.MethodMetadata;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.signature.SignatureReader;
+import org.objectweb.asm.signature.SignatureVisitor;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * A typed model of a Djinn application: its modules, resources, annotation detectors and runtimes, and how its resources
+ * depend on each other. The model is built from the classpath once, when a {@link DjinnCompiler} is created, and every
+ * later step of the compilation (reporting, linting and bootstrapping) reads from it, so they all see the same snapshot.
+ * <p>
+ * Which module registers which detectors and runtimes is only known once the modules are instantiated, so it is not modelled.
+ */
+public final class ApplicationModel {
+
+	static final String MODULE = "bz.gsn.djinn.core.module.DjinnModule";
+	static final String RESOURCE = "bz.gsn.djinn.core.resource.Resource";
+	static final String INJECT = "bz.gsn.djinn.core.resource.Inject";
+	private static final String DETECTOR = "bz.gsn.djinn.core.module.AnnotationDetector";
+	private static final String BUILD_TIME_DETECTOR = "bz.gsn.djinn.core.module.BuildTimeAnnotationDetector";
+	private static final String BATCH_DETECTOR = "bz.gsn.djinn.core.module.BatchAnnotationDetector";
+	// the detector classes of Djinn, whose only type parameter is the annotation type detected
+	private static final Set<String> DETECTOR_BASES = Set.of(DETECTOR, BUILD_TIME_DETECTOR, BATCH_DETECTOR);
+	private static final String RUNTIME = "bz.gsn.djinn.core.module.Runtime";
+
+	/**
+	 * A resource registered by the application.
+	 * @param type The resource class.
+	 * @param constructor The constructor the bootstrapper calls, or {@code null} if the resource must be instantiated reflectively.
+	 * @param dependencies The indices in {@link #resources()} of the resources the constructor takes.
+	 */
+	public record Resource(@NotNull ClassMetadata type, @Nullable MethodMetadata constructor, int @NotNull [] dependencies) {}
+
+	/**
+	 * An annotation detector.
+	 * @param type The detector class.
+	 * @param buildTime Whether it is a {@code BuildTimeAnnotationDetector}.
+	 */
+	public record Detector(@NotNull ClassMetadata type, boolean buildTime) {}
+
+	private final List<ClassMetadata> modules;
+	private final List<ClassMetadata> bootstrappedModules;
+	private final List<Resource> resources;
+	private final List<ClassMetadata> resourceClasses;
+	private final List<Detector> detectors;
+	private final boolean buildTimeDetectors;
+	private final @Nullable Set<String> detectedAnnotations;
+	private final List<ClassMetadata> runtimes;
+	private final Set<String> moduleNames;
+	private final Set<String> resourceNames;
+
+	private ApplicationModel(ClasspathMetadata classpath) {
+		var allModules = classpath.subclasses(MODULE);
+		this.moduleNames = names(allModules);
+		this.modules = allModules.stream()
+				.filter(e -> !e.anonymous() && MODULE.equals(e.superclass()))
+				.toList();
+		// modules which cannot be constructed directly (e.g., local classes of libraries) are not application modules
+		this.bootstrappedModules = modules.stream()
+				.filter(e -> e.isPublic() && !e.isAbstract())
+				.filter(e -> e.constructors().stream().anyMatch(c -> c.isPublic() && c.parameterCount() == 0))
+				.toList();
+		var allResources = classpath.subclasses(RESOURCE);
+		this.resourceNames = names(allResources);
+		this.resourceClasses = allResources.stream().filter(e -> !e.anonymous()).toList();
+		var concrete = resourceClasses.stream()
+				.filter(e -> !e.isAbstract() && !e.isInterface())
+				.toList();
+		var indices = new HashMap<String, Integer>();
+		for(int i = 0; i < concrete.size(); i++) indices.put(concrete.get(i).name(), i);
+		this.resources = concrete.stream().map(e -> resolve(e, indices)).toList();
+		var buildTimeDetectors = classpath.subclasses(BUILD_TIME_DETECTOR);
+		var buildTime = names(buildTimeDetectors);
+		// Djinn itself need not be scanned, in which case BuildTimeAnnotationDetector is not known to be a detector
+		var allDetectors = new LinkedHashMap<String, ClassMetadata>();
+		for(var e : classpath.subclasses(DETECTOR)) allDetectors.put(e.name(), e);
+		for(var e : buildTimeDetectors) allDetectors.putIfAbsent(e.name(), e);
+		this.detectors = concrete(List.copyOf(allDetectors.values())).stream()
+				.map(e -> new Detector(e, buildTime.contains(e.name())))
+				.toList();
+		this.buildTimeDetectors = !buildTimeDetectors.isEmpty();
+		this.detectedAnnotations = detectedAnnotations(classpath);
+		this.runtimes = concrete(classpath.subclasses(RUNTIME));
+	}
+
+	/**
+	 * Builds the model of the application on the given classpath.
+	 * @param classpath The classpath.
+	 * @return the model.
+	 */
+	static @NotNull ApplicationModel of(@NotNull ClasspathMetadata classpath) {
+		return new ApplicationModel(classpath);
+	}
+
+	/**
+	 * Returns every named class directly extending {@code DjinnModule}.
+	 * @return the modules.
+	 */
+	public @NotNull @Unmodifiable List<ClassMetadata> modules() {
+		return modules;
+	}
+
+	/**
+	 * Returns the modules the bootstrapper constructs; i.e., the public, concrete {@linkplain #modules() modules} with a public no-args constructor.
+	 * The other modules are never registered, which {@link bz.gsn.djinn.compiler.lint.BootstrappedModuleLint} reports.
+	 * @return the bootstrapped modules.
+	 */
+	public @NotNull @Unmodifiable List<ClassMetadata> bootstrappedModules() {
+		return bootstrappedModules;
+	}
+
+	/**
+	 * Returns every named class extending {@code Resource}, directly or indirectly.
+	 * @return the resource classes.
+	 */
+	public @NotNull @Unmodifiable List<ClassMetadata> resourceClasses() {
+		return resourceClasses;
+	}
+
+	/**
+	 * Returns the resources registered by the application, i.e. the concrete {@linkplain #resourceClasses() resource classes},
+	 * in the order of their registry slots.
+	 * @return the resources.
+	 */
+	public @NotNull @Unmodifiable List<Resource> resources() {
+		return resources;
+	}
+
+	/**
+	 * Returns every named, concrete annotation detector.
+	 * @return the detectors.
+	 */
+	public @NotNull @Unmodifiable List<Detector> detectors() {
+		return detectors;
+	}
+
+	/**
+	 * Returns whether any class extends {@code BuildTimeAnnotationDetector}, including the anonymous and abstract ones
+	 * {@link #detectors()} leaves out. If none does, no module can register a build-time detector.
+	 * @return whether there are build-time detectors.
+	 */
+	public boolean hasBuildTimeDetectors() {
+		return buildTimeDetectors;
+	}
+
+	/**
+	 * Returns the annotation types detected by the application's detectors, including anonymous ones, as read from the type
+	 * arguments of their generic superclasses.
+	 * @return the annotation types, else {@code null} if that of any concrete detector cannot be told; e.g., if it extends a raw type.
+	 */
+	public @Nullable @Unmodifiable Set<String> detectedAnnotations() {
+		return detectedAnnotations;
+	}
+
+	/**
+	 * Returns every named, concrete runtime.
+	 * @return the runtime classes.
+	 */
+	public @NotNull @Unmodifiable List<ClassMetadata> runtimes() {
+		return runtimes;
+	}
+
+	/**
+	 * Returns whether a class extends {@code DjinnModule}, directly or indirectly.
+	 * @param type The class.
+	 * @return whether it is a module.
+	 */
+	public boolean isModule(@NotNull ClassMetadata type) {
+		return moduleNames.contains(type.name());
+	}
+
+	/**
+	 * Returns whether a class extends {@code Resource}, directly or indirectly.
+	 * @param type The class.
+	 * @return whether it is a resource.
+	 */
+	public boolean isResource(@NotNull ClassMetadata type) {
+		return resourceNames.contains(type.name());
+	}
+
+	/**
+	 * Returns the constructors {@code AppResourceRegistry} chooses from to instantiate a resource: its public no-args constructor
+	 * if it has one, else every public constructor taking only {@code @Inject}ed resources. The registry fails at boot unless
+	 * there is exactly one.
+	 * @param type The resource class.
+	 * @return the candidate constructors.
+	 */
+	public @NotNull @Unmodifiable List<MethodMetadata> constructorCandidates(@NotNull ClassMetadata type) {
+		var publicConstructors = type.constructors().stream().filter(MethodMetadata::isPublic).toList();
+		var noArgs = publicConstructors.stream().filter(c -> c.parameterCount() == 0).findFirst();
+		if(noArgs.isPresent()) return List.of(noArgs.get());
+		return publicConstructors.stream()
+				.filter(c -> IntStream.range(0, c.parameterCount()).allMatch(i -> c.parameterHasAnnotation(i, INJECT) && isResource(c.parameterClassName(i))))
+				.toList();
+	}
+
+	/**
+	 * Resolves the constructor of a resource, as {@code AppResourceRegistry} would: its only {@linkplain #constructorCandidates(ClassMetadata) candidate}.
+	 * If the resource or constructor cannot be accessed directly, it is left to be instantiated reflectively, which reports the error at boot.
+	 */
+	private Resource resolve(ClassMetadata type, Map<String, Integer> indices) {
+		if(!type.isPublic()) return new Resource(type, null, new int[0]);
+		var candidates = constructorCandidates(type);
+		if(candidates.size() != 1) return new Resource(type, null, new int[0]);
+		var constructor = candidates.getFirst();
+		var dependencies = new int[constructor.parameterCount()];
+		for(int i = 0; i < dependencies.length; i++) {
+			var index = indices.get(constructor.parameterClassName(i));
+			if(index == null) return new Resource(type, null, new int[0]);
+			dependencies[i] = index;
+		}
+		return new Resource(type, constructor, dependencies);
+	}
+
+	private boolean isResource(@Nullable String name) {
+		return name != null && resourceNames.contains(name);
+	}
+
+	private static @Nullable Set<String> detectedAnnotations(ClasspathMetadata classpath) {
+		var annotations = new TreeSet<String>();
+		var seen = new HashSet<String>();
+		for(var base : DETECTOR_BASES) {
+			for(var detector : classpath.subclasses(base)) {
+				if(detector.isAbstract() || detector.isInterface() || !seen.add(detector.name())) continue;
+				var annotation = detectedAnnotation(classpath, detector);
+				if(annotation == null) return null;
+				annotations.add(annotation);
+			}
+		}
+		return Collections.unmodifiableSet(annotations);
+	}
+
+	/**
+	 * Returns the annotation type a detector detects, substituting the type arguments of each generic superclass into the next
+	 * until one of Djinn's is reached.
+	 */
+	private static @Nullable String detectedAnnotation(ClasspathMetadata classpath, ClassMetadata detector) {
+		var type = detector;
+		List<String> arguments = List.of(); // of the type parameters of type, null where unknown
+		while(type != null && type.superclass() != null) {
+			if(type.signature() == null) {
+				// a raw superclass, or one which is not generic at all
+				if(DETECTOR_BASES.contains(type.superclass())) return null;
+				type = classpath.get(type.superclass());
+				arguments = List.of();
+				continue;
+			}
+			var signature = new SuperclassSignature();
+			new SignatureReader(type.signature()).accept(signature);
+			var resolved = new ArrayList<String>();
+			for(var argument : signature.arguments) {
+				int parameter = argument.variable() == null ? -1 : signature.parameters.indexOf(argument.variable());
+				resolved.add(argument.variable() == null ? argument.type() : parameter >= 0 && parameter < arguments.size() ? arguments.get(parameter) : null);
+			}
+			if(DETECTOR_BASES.contains(signature.superclass)) return resolved.isEmpty() ? null : resolved.getFirst();
+			type = classpath.get(signature.superclass);
+			arguments = resolved;
+		}
+		return null;
+	}
+
+	/**
+	 * A type argument of a superclass: either a class, or a type variable of the subclass. Neither is set for other types.
+	 */
+	private record TypeArgument(@Nullable String type, @Nullable String variable) {}
+
+	/**
+	 * Reads the type parameters of a class, and its superclass along with the type arguments it is given, from its signature.
+	 */
+	private static final class SuperclassSignature extends SignatureVisitor {
+		private final List<String> parameters = new ArrayList<>();
+		private final List<TypeArgument> arguments = new ArrayList<>();
+		private String superclass;
+		private boolean inSuperclass;
+		private boolean argument;
+		private int depth;
+
+		private SuperclassSignature() {
+			super(Opcodes.ASM9);
+		}
+
+		@Override
+		public void visitFormalTypeParameter(String name) {
+			parameters.add(name);
+		}
+
+		@Override
+		public SignatureVisitor visitSuperclass() {
+			inSuperclass = true;
+			return this;
+		}
+
+		@Override
+		public SignatureVisitor visitInterface() {
+			inSuperclass = false;
+			return this;
+		}
+
+		@Override
+		public void visitClassType(String name) {
+			if(!inSuperclass) return;
+			if(depth == 0) superclass = Type.getObjectType(name).getClassName();
+			else if(argument) arguments.add(new TypeArgument(Type.getObjectType(name).getClassName(), null));
+			argument = false;
+			depth++;
+		}
+
+		@Override
+		public void visitInnerClassType(String name) {
+			// the arguments read so far were those of the outer class
+			if(inSuperclass && depth == 1) {
+				superclass += "$" + name;
+				arguments.clear();
+			}
+		}
+
+		@Override
+		public void visitTypeVariable(String name) {
+			if(argument) arguments.add(new TypeArgument(null, name));
+			argument = false;
+		}
+
+		@Override
+		public void visitTypeArgument() {
+			if(inSuperclass && depth == 1) arguments.add(new TypeArgument(null, null));
+		}
+
+		@Override
+		public SignatureVisitor visitTypeArgument(char wildcard) {
+			argument = inSuperclass && depth == 1;
+			return this;
+		}
+
+		@Override
+		public SignatureVisitor visitArrayType() {
+			if(argument) arguments.add(new TypeArgument(null, null));
+			argument = false;
+			return this;
+		}
+
+		@Override
+		public void visitEnd() {
+			if(inSuperclass) depth--;
+		}
+	}
+
+	private static List<ClassMetadata> concrete(List<ClassMetadata> classes) {
+		return classes.stream().filter(e -> !e.anonymous() && !e.isAbstract() && !e.isInterface()).toList();
+	}
+
+	private static Set<String> names(List<ClassMetadata> classes) {
+		return classes.stream().map(ClassMetadata::name).collect(Collectors.toUnmodifiableSet());
+	}
+
+}
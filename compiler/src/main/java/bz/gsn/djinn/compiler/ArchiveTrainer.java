@@ -0,0 +1,121 @@
+package bz.gsn.djinn.compiler;
+
+import bz.gsn.djinn.hook.Hook;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Creates a dynamic AppCDS archive of a compiled application, by running it once with {@code -XX:ArchiveClassesAtExit}
+ * until all of its runtimes have started (see {@link Hook#TRAINING_PROPERTY}), and writes the files to launch it with the archive.
+ * <p>
+ * Given {@code app.jar}, this writes {@code app.jsa} (the archive), {@code app.args} (a {@code java} argument file holding
+ * the archive, the classpath and the main class), {@code app.sh} (a launcher using the argument file) and
+ * {@code app.training.log} (the output of the training run), all next to the JAR.
+ * <p>
+ * The JVM only uses an archive with the JDK which created it and the same classpath, and only archives classes loaded
+ * from JARs; so the application is trained with the JDK running the compiler, every classpath element must be a JAR,
+ * and the argument file pins the classpath by absolute paths. A mismatching archive is ignored, never fatal.
+ */
+final class ArchiveTrainer {
+
+	private final Path jar;
+	private final List<Path> dependencies;
+	private final Duration timeout;
+
+	ArchiveTrainer(@NotNull Path jar, @NotNull List<Path> dependencies, @NotNull Duration timeout) {
+		this.jar = jar.toAbsolutePath().normalize();
+		this.dependencies = dependencies.stream().map(e -> e.toAbsolutePath().normalize()).toList();
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Runs the training run, and writes the archive and the launcher files.
+	 * @return the argument file.
+	 * @throws IllegalStateException if a dependency is not a JAR.
+	 * @throws IOException if an I/O error occurs, or the training run failed or timed out.
+	 */
+	@NotNull
+	Path train() throws IOException {
+		for(var dependency : dependencies) {
+			if(Files.isDirectory(dependency)) {
+				throw new IllegalStateException("CDS archives only hold classes loaded from JARs, but " + dependency + " is a directory");
+			}
+		}
+		var archive = sibling(".jsa");
+		var log = sibling(".training.log");
+		var classpath = new ArrayList<Path>();
+		classpath.add(jar);
+		classpath.addAll(dependencies);
+		var classpathString = classpath.stream().map(Path::toString).collect(Collectors.joining(File.pathSeparator));
+		var java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+		var mainClass = BootstrapperGenerator.NAME.replace('/', '.');
+
+		Files.deleteIfExists(archive); // a stale archive would be reported as a successful run
+		var process = new ProcessBuilder(
+				java,
+				"-XX:ArchiveClassesAtExit=" + archive,
+				"-D" + Hook.TRAINING_PROPERTY + "=true",
+				"-cp", classpathString,
+				mainClass
+		).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+		try {
+			if(!process.waitFor(timeout.toMillis(), TimeUnit.MILLISECONDS)) {
+				process.destroyForcibly();
+				throw new IOException("The training run did not start all runtimes within " + timeout + "; see " + log);
+			}
+		} catch(InterruptedException e) {
+			process.destroyForcibly();
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted during the training run");
+		}
+		if(process.exitValue() != 0 || !Files.isRegularFile(archive)) {
+			throw new IOException("The training run failed with exit code " + process.exitValue() + "; see " + log);
+		}
+
+		var arguments = sibling(".args");
+		Files.writeString(arguments, String.join(System.lineSeparator(),
+				quote("-XX:SharedArchiveFile=" + archive),
+				"-cp " + quote(classpathString),
+				mainClass,
+				""
+		));
+		var launcher = sibling(".sh");
+		Files.writeString(launcher, String.join("\n",
+				"#!/bin/sh",
+				"# Launches " + jar.getFileName() + " with its CDS archive, which only the JDK at " + System.getProperty("java.home") + " can use.",
+				"exec \"${JAVA_HOME:-" + System.getProperty("java.home") + "}/bin/java\" $JAVA_OPTS @\"" + arguments + "\" \"$@\"",
+				""
+		));
+		try {
+			Files.setPosixFilePermissions(launcher, PosixFilePermissions.fromString("rwxr-xr-x"));
+		} catch(UnsupportedOperationException ignored) {
+			// not a POSIX file system, where the launcher is not used anyway
+		}
+		return arguments;
+	}
+
+	private Path sibling(String extension) {
+		var name = jar.getFileName().toString();
+		if(name.endsWith(".jar")) name = name.substring(0, name.length() - 4);
+		return jar.resolveSibling(name + extension);
+	}
+
+	/**
+	 * Quotes an argument of an argument file, in which backslashes escape the next character.
+	 */
+	private static String quote(String argument) {
+		return '"' + argument.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+	}
+
+}
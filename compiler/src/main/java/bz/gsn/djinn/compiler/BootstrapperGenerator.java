@@ -0,0 +1,265 @@
+package bz.gsn.djinn.compiler;
+
+import bz.gsn.djinn.compiler.metadata.ClassMetadata;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.IntStream;
+
+/**
+ * Generates the bootstrapper, which holds the {@code main} method of a compiled application.
+ * <p>
+ * The bootstrapper constructs every public, concrete module with a public no-args constructor with {@code NEW}/{@code INVOKESPECIAL},
+ * and implements {@code ResourceFactory} to do the same for every resource it can access, so nothing is instantiated
+ * reflectively at boot. Resources it cannot access are loaded by name, and left to the registry, which rejects them. Arrays and the factory's {@code switch} are filled by helper methods, each kept well below the
+ * 64 KiB method size limit, so there is no limit on the number of modules and resources besides the size of the constant pool.
+ */
+final class BootstrapperGenerator {
+
+	static final String NAME = "bz/gsn/djinn/bootstrap/Bootstrapper";
+
+	private static final String HOOK = "bz/gsn/djinn/hook/Hook";
+	private static final String MODULE = "bz/gsn/djinn/core/module/DjinnModule";
+	private static final String RESOURCE_INTERNAL = "bz/gsn/djinn/core/resource/Resource";
+	private static final String FACTORY = "bz/gsn/djinn/core/resource/ResourceFactory";
+	private static final String CREATE = "(I[L" + RESOURCE_INTERNAL + ";)L" + RESOURCE_INTERNAL + ";";
+
+	/**
+	 * The estimated bytecode size after which a helper method is split.
+	 */
+	private static final int CHUNK_SIZE = 16 * 1024;
+
+	private final List<String> modules;
+	private final List<ApplicationModel.Resource> resources;
+	private final List<String> buildTimeVariables;
+
+	BootstrapperGenerator(@NotNull ApplicationModel model, @NotNull List<String> buildTimeVariables) {
+		this.modules = model.bootstrappedModules().stream().map(ClassMetadata::name).toList();
+		this.resources = model.resources();
+		this.buildTimeVariables = buildTimeVariables;
+	}
+
+	/**
+	 * Generates the bootstrapper.
+	 * @return the classfile of the bootstrapper.
+	 */
+	byte @NotNull [] generate() {
+		var cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+		cw.visit(Opcodes.V21, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, NAME, null, "java/lang/Object", new String[] {FACTORY});
+
+		var init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+		init.visitCode();
+		init.visitVarInsn(Opcodes.ALOAD, 0);
+		init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		init.visitInsn(Opcodes.RETURN);
+		init.visitMaxs(0, 0);
+		init.visitEnd();
+
+		var main = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "main", "([Ljava/lang/String;)V", null, null);
+		main.visitCode();
+		generateArray(cw, main, "modules", MODULE, modules.size(), i -> 12, (mv, i) -> {
+			var module = modules.get(i).replace('.', '/');
+			mv.visitTypeInsn(Opcodes.NEW, module);
+			mv.visitInsn(Opcodes.DUP);
+			mv.visitMethodInsn(Opcodes.INVOKESPECIAL, module, "<init>", "()V", false);
+		});
+		generateArray(cw, main, "resources", "java/lang/Class", resources.size(), i -> resources.get(i).type().isPublic() ? 8 : 20, (mv, i) -> {
+			var type = resources.get(i).type();
+			if(type.isPublic()) {
+				mv.visitLdcInsn(Type.getObjectType(type.name().replace('.', '/')));
+				return;
+			}
+			// an ldc of a class the bootstrapper cannot access fails with an IllegalAccessError, so it is loaded by name,
+			// and the registry reports it instead
+			mv.visitLdcInsn(type.name());
+			mv.visitInsn(Opcodes.ICONST_0);
+			mv.visitLdcInsn(Type.getObjectType(NAME));
+			mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/Class", "getClassLoader", "()Ljava/lang/ClassLoader;", false);
+			mv.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/Class", "forName", "(Ljava/lang/String;ZLjava/lang/ClassLoader;)Ljava/lang/Class;", false);
+		});
+		generateArray(cw, main, "dependencies", "[I", resources.size(), i -> 12 + 12 * resources.get(i).dependencies().length, (mv, i) -> {
+			var resource = resources.get(i);
+			if(resource.constructor() == null) {
+				mv.visitInsn(Opcodes.ACONST_NULL);
+				return;
+			}
+			var dependencies = resource.dependencies();
+			pushInt(mv, dependencies.length);
+			mv.visitIntInsn(Opcodes.NEWARRAY, Opcodes.T_INT);
+			for(int j = 0; j < dependencies.length; j++) {
+				mv.visitInsn(Opcodes.DUP);
+				pushInt(mv, j);
+				pushInt(mv, dependencies[j]);
+				mv.visitInsn(Opcodes.IASTORE);
+			}
+		});
+		generateArray(cw, main, "buildVariables", "java/lang/String", buildTimeVariables.size(), i -> 8, (mv, i) ->
+				mv.visitLdcInsn(buildTimeVariables.get(i))
+		);
+		main.visitTypeInsn(Opcodes.NEW, NAME);
+		main.visitInsn(Opcodes.DUP);
+		main.visitMethodInsn(Opcodes.INVOKESPECIAL, NAME, "<init>", "()V", false);
+		main.visitInsn(Opcodes.SWAP); // the factory goes before the build variables
+		main.visitMethodInsn(
+				Opcodes.INVOKESTATIC,
+				HOOK,
+				"bootstrapMain",
+				"([L" + MODULE + ";[Ljava/lang/Class;[[IL" + FACTORY + ";[Ljava/lang/String;)V",
+				false
+		);
+		main.visitInsn(Opcodes.RETURN);
+		main.visitMaxs(0, 0);
+		main.visitEnd();
+
+		generateFactory(cw);
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	/**
+	 * Generates {@code create}, which dispatches to helpers each holding a {@code tableswitch} over a range of resources.
+	 */
+	private void generateFactory(ClassWriter cw) {
+		var chunks = chunks(resources.size(), i -> {
+			var constructor = resources.get(i).constructor();
+			return constructor == null ? 0 : 16 + 12 * resources.get(i).dependencies().length;
+		});
+		var create = cw.visitMethod(Opcodes.ACC_PUBLIC, "create", CREATE, null, null);
+		create.visitCode();
+		for(int c = 0; c < chunks.size(); c++) {
+			var next = new Label();
+			create.visitVarInsn(Opcodes.ILOAD, 1);
+			pushInt(create, chunks.get(c)[1]);
+			create.visitJumpInsn(Opcodes.IF_ICMPGE, next);
+			create.visitVarInsn(Opcodes.ILOAD, 1);
+			create.visitVarInsn(Opcodes.ALOAD, 2);
+			create.visitMethodInsn(Opcodes.INVOKESTATIC, NAME, "create$" + c, CREATE, false);
+			create.visitInsn(Opcodes.ARETURN);
+			create.visitLabel(next);
+		}
+		throwUnknown(create);
+		create.visitMaxs(0, 0);
+		create.visitEnd();
+
+		for(int c = 0; c < chunks.size(); c++) {
+			int start = chunks.get(c)[0], end = chunks.get(c)[1];
+			var helper = cw.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, "create$" + c, CREATE, null, null);
+			helper.visitCode();
+			var unknown = new Label();
+			var labels = IntStream.range(start, end).mapToObj(i -> resources.get(i).constructor() == null ? unknown : new Label()).toArray(Label[]::new);
+			helper.visitVarInsn(Opcodes.ILOAD, 0);
+			helper.visitTableSwitchInsn(start, end - 1, unknown, labels);
+			for(int i = start; i < end; i++) {
+				var resource = resources.get(i);
+				var constructor = resource.constructor();
+				if(constructor == null) continue;
+				helper.visitLabel(labels[i - start]);
+				var type = resource.type().name().replace('.', '/');
+				helper.visitTypeInsn(Opcodes.NEW, type);
+				helper.visitInsn(Opcodes.DUP);
+				var parameters = Type.getArgumentTypes(constructor.descriptor());
+				for(int j = 0; j < parameters.length; j++) {
+					helper.visitVarInsn(Opcodes.ALOAD, 1);
+					pushInt(helper, j);
+					helper.visitInsn(Opcodes.AALOAD);
+					helper.visitTypeInsn(Opcodes.CHECKCAST, parameters[j].getInternalName());
+				}
+				helper.visitMethodInsn(Opcodes.INVOKESPECIAL, type, "<init>", constructor.descriptor(), false);
+				helper.visitInsn(Opcodes.ARETURN);
+			}
+			helper.visitLabel(unknown);
+			throwUnknown(helper);
+			helper.visitMaxs(0, 0);
+			helper.visitEnd();
+		}
+	}
+
+	@FunctionalInterface
+	private interface ElementWriter {
+		/**
+		 * Pushes the element at the given index onto the stack.
+		 */
+		void write(MethodVisitor mv, int index);
+	}
+
+	/**
+	 * Generates code in {@code main} leaving a new array on the stack, which is filled by helper methods.
+	 * @param name The prefix of the helper methods.
+	 * @param componentType The internal name of the component type.
+	 * @param size The length of the array.
+	 * @param estimate Estimates the bytecode size of writing an element.
+	 * @param writer Writes an element.
+	 */
+	private static void generateArray(ClassWriter cw, MethodVisitor main, String name, String componentType, int size, IntUnaryOperator estimate, ElementWriter writer) {
+		var arrayDescriptor = "[" + (componentType.startsWith("[") ? componentType : "L" + componentType + ";");
+		pushInt(main, size);
+		main.visitTypeInsn(Opcodes.ANEWARRAY, componentType);
+		var chunks = chunks(size, estimate);
+		for(int c = 0; c < chunks.size(); c++) {
+			main.visitInsn(Opcodes.DUP);
+			main.visitMethodInsn(Opcodes.INVOKESTATIC, NAME, name + "$" + c, "(" + arrayDescriptor + ")V", false);
+			var helper = cw.visitMethod(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC, name + "$" + c, "(" + arrayDescriptor + ")V", null, null);
+			helper.visitCode();
+			for(int i = chunks.get(c)[0]; i < chunks.get(c)[1]; i++) {
+				helper.visitVarInsn(Opcodes.ALOAD, 0);
+				pushInt(helper, i);
+				writer.write(helper, i);
+				helper.visitInsn(Opcodes.AASTORE);
+			}
+			helper.visitInsn(Opcodes.RETURN);
+			helper.visitMaxs(0, 0);
+			helper.visitEnd();
+		}
+	}
+
+	/**
+	 * Splits the range {@code [0, size)} into consecutive chunks whose estimated bytecode size stays below {@link #CHUNK_SIZE}.
+	 * @return the {@code [start, end)} bounds of each chunk.
+	 */
+	private static List<int[]> chunks(int size, IntUnaryOperator estimate) {
+		var chunks = new ArrayList<int[]>();
+		int start = 0, bytes = 0;
+		for(int i = 0; i < size; i++) {
+			int element = 8 + estimate.applyAsInt(i); // every element also costs an index and a jump or store
+			if(i > start && bytes + element > CHUNK_SIZE) {
+				chunks.add(new int[] {start, i});
+				start = i;
+				bytes = 0;
+			}
+			bytes += element;
+		}
+		if(start < size) chunks.add(new int[] {start, size});
+		return chunks;
+	}
+
+	/**
+	 * Pushes an {@code int} constant with the smallest instruction able to hold it.
+	 */
+	private static void pushInt(MethodVisitor mv, int value) {
+		if(value >= -1 && value <= 5) {
+			mv.visitInsn(Opcodes.ICONST_0 + value);
+		} else if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			mv.visitIntInsn(Opcodes.BIPUSH, value);
+		} else if(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			mv.visitIntInsn(Opcodes.SIPUSH, value);
+		} else {
+			mv.visitLdcInsn(value);
+		}
+	}
+
+	private static void throwUnknown(MethodVisitor mv) {
+		mv.visitTypeInsn(Opcodes.NEW, "java/lang/IllegalArgumentException");
+		mv.visitInsn(Opcodes.DUP);
+		mv.visitLdcInsn("No such resource");
+		mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "(Ljava/lang/String;)V", false);
+		mv.visitInsn(Opcodes.ATHROW);
+	}
+
+}
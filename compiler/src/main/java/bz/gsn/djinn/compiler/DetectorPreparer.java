@@ -0,0 +1,116 @@
+package bz.gsn.djinn.compiler;
+
+import bz.gsn.djinn.core.app.AnnotationIndex;
+import bz.gsn.djinn.core.app.DetectorData;
+import bz.gsn.djinn.core.module.BuildTimeAnnotationDetector;
+import bz.gsn.djinn.core.module.DetectorDescriptor;
+import bz.gsn.djinn.core.module.DjinnModule;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Runs the prepare half of every {@link BuildTimeAnnotationDetector} registered by the application's modules, at build time.
+ * <p>
+ * The classes of the application are loaded by a throwaway class loader over the compiled classpath, whose parent
+ * provides Djinn itself; each module is instantiated through its public no-args constructor, as the bootstrapper would.
+ * Detectors are then run on the elements of the {@link AnnotationIndex}, which are exactly those a runtime scan would see.
+ * Detectors are identified by their class, so a detector registered by several modules is only prepared once.
+ */
+final class DetectorPreparer {
+
+	private final List<Path> paths;
+	private final ApplicationModel model;
+	private final AnnotationIndex index;
+
+	DetectorPreparer(@NotNull List<Path> paths, @NotNull ApplicationModel model, @NotNull AnnotationIndex index) {
+		this.paths = paths;
+		this.model = model;
+		this.index = index;
+	}
+
+	/**
+	 * Prepares every build-time detector.
+	 * @return a map of the binary names of the detector classes to their data.
+	 * @throws IOException if the classpath cannot be loaded.
+	 * @throws IllegalStateException if a module cannot be instantiated, or a detector fails to prepare an element.
+	 */
+	@NotNull
+	Map<String, DetectorData> prepare() throws IOException {
+		var prepared = new TreeMap<String, DetectorData>();
+		// no module can register a build-time detector which is not on the classpath, anonymous or not
+		if(!model.hasBuildTimeDetectors()) return prepared;
+		var urls = new URL[paths.size()];
+		for(int i = 0; i < urls.length; i++) urls[i] = paths.get(i).toUri().toURL();
+		var thread = Thread.currentThread();
+		var context = thread.getContextClassLoader();
+		try(var loader = new URLClassLoader("djinn-build", urls, DjinnCompiler.class.getClassLoader())) {
+			thread.setContextClassLoader(loader);
+			for(var moduleClass : model.bootstrappedModules()) {
+				var module = moduleClass.name();
+				DjinnModule instance;
+				try {
+					instance = loader.loadClass(module).asSubclass(DjinnModule.class).getConstructor().newInstance();
+				} catch(ReflectiveOperationException | LinkageError e) {
+					throw new IllegalStateException("Could not instantiate module " + module + " at build time; was its whole classpath passed to the compiler?", e);
+				}
+				for(var descriptors : instance.getDetectorDescriptors()) {
+					for(var descriptor : descriptors) {
+						if(!(descriptor.detector() instanceof BuildTimeAnnotationDetector<?> detector)) continue;
+						var name = detector.getClass().getName();
+						if(!prepared.containsKey(name)) prepared.put(name, prepare(descriptor, loader));
+					}
+				}
+			}
+		} finally {
+			thread.setContextClassLoader(context);
+		}
+		return prepared;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends Annotation> DetectorData prepare(DetectorDescriptor<T> descriptor, ClassLoader loader) {
+		var detector = (BuildTimeAnnotationDetector<T>) descriptor.detector();
+		var annotation = descriptor.type().getName();
+		var data = new DetectorData();
+		for(var element : descriptor.targets(ElementType.METHOD) ? index.elements(annotation, ElementType.METHOD) : List.<String>of()) {
+			var method = resolve(element, () -> AnnotationIndex.resolveMethod(element, loader));
+			add(data, ElementType.METHOD, element, detector.prepareMethod(Objects.requireNonNull(descriptor.annotation(method)), method));
+		}
+		for(var element : descriptor.targets(ElementType.FIELD) ? index.elements(annotation, ElementType.FIELD) : List.<String>of()) {
+			var field = resolve(element, () -> AnnotationIndex.resolveField(element, loader));
+			add(data, ElementType.FIELD, element, detector.prepareField(Objects.requireNonNull(descriptor.annotation(field)), field));
+		}
+		for(var element : descriptor.targets(ElementType.TYPE) ? index.elements(annotation, ElementType.TYPE) : List.<String>of()) {
+			var type = resolve(element, () -> AnnotationIndex.resolveType(element, loader));
+			add(data, ElementType.TYPE, element, detector.prepareType(Objects.requireNonNull(descriptor.annotation(type)), type));
+		}
+		return data;
+	}
+
+	private static void add(DetectorData data, ElementType kind, String element, String prepared) {
+		if(prepared != null) data.add(kind, element, prepared);
+	}
+
+	private interface Resolver<E> {
+		E resolve() throws ReflectiveOperationException;
+	}
+
+	private static <E> E resolve(String element, Resolver<E> resolver) {
+		try {
+			return resolver.resolve();
+		} catch(ReflectiveOperationException | LinkageError e) {
+			throw new IllegalStateException("Could not load " + element + " at build time", e);
+		}
+	}
+
+}
@@ -1,45 +1,65 @@
 package bz.gsn.djinn.compiler;
 
 import bz.gsn.djinn.compiler.lint.*;
-import bz.gsn.djinn.hook.Hook;
-import io.github.classgraph.ClassGraph;
-import io.github.classgraph.ClassInfo;
-import io.github.classgraph.ScanResult;
+import bz.gsn.djinn.core.app.AnnotationIndex;
+import bz.gsn.djinn.core.app.DetectorData;
+import bz.gsn.djinn.compiler.metadata.ClassMetadata;
+import bz.gsn.djinn.compiler.metadata.ClasspathMetadata;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
-import org.objectweb.asm.ClassWriter;
-import org.objectweb.asm.MethodVisitor;
-import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.Type;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.UncheckedIOException;
+import java.lang.annotation.ElementType;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.List;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.jar.Attributes;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
+import java.util.jar.JarFile;
 import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * The Djinn compiler and analyzer.
  */
 public final class DjinnCompiler {
 
-	private final ScanResult classpath;
+	private final ClasspathMetadata classpath;
+	private final ApplicationModel model;
+	private final Map<String, List<String>> subclasses = new ConcurrentHashMap<>();
 	private final ArrayList<String> buildTimeVariables = new ArrayList<>();
-	private static final String bootstrapName = "bz.gsn.djinn.bootstrap.Bootstrapper";
 	private final Path primary;
+	private final List<Path> paths;
+	private boolean invokers;
+	private boolean stored;
+	private boolean prepareDetectors;
+	private boolean nativeImage;
 
-	private DjinnCompiler(Path... paths) {
+	private DjinnCompiler(@Nullable Path cache, Path... paths) {
+		// Djinn only ever sees runtime-retained annotations, so the metadata holds nothing else
+		this(scan(cache, paths), paths);
+	}
+
+	private DjinnCompiler(ClasspathMetadata classpath, Path... paths) {
 		this.primary = paths[0]; // guaranteed to exist; see .of(...)
-		this.classpath = new ClassGraph()
-				.enableAllInfo()
-				.ignoreMethodVisibility()
-				.overrideClasspath((Object[]) paths)
-				.scan();
+		this.paths = List.of(paths);
+		this.classpath = classpath;
+		this.model = ApplicationModel.of(classpath);
+	}
+
+	private static ClasspathMetadata scan(@Nullable Path cache, Path... paths) {
+		try {
+			return ClasspathMetadata.scan(cache, List.of(paths));
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
 	/**
@@ -47,7 +67,16 @@ public final class DjinnCompiler {
 	 * @return The number of classes.
 	 */
 	public int classCount() {
-		return classpath.getAllClasses().size();
+		return classpath.size();
+	}
+
+	/**
+	 * Returns the model of the application on the scanned classpath. It is built once, when this compiler is created,
+	 * and is what the bootstrapper, detector preparation and lints are derived from.
+	 * @return the application model.
+	 */
+	public @NotNull ApplicationModel model() {
+		return model;
 	}
 
 	/**
@@ -59,6 +88,45 @@ public final class DjinnCompiler {
 		this.buildTimeVariables.add(btv);
 	}
 
+	/**
+	 * Sets whether invoker classes should be generated for annotated methods with {@code @Inject}ed resources.
+	 * An invoker calls its method directly, with the resources it bound from the registry of its application; without one,
+	 * the resources are bound to a reflective handle at runtime.
+	 * @param invokers Whether invokers should be generated.
+	 */
+	public void setInvokers(boolean invokers) {
+		this.invokers = invokers;
+	}
+
+	/**
+	 * Sets whether the entries of {@linkplain #createJAR(Path) created JARs} should be stored uncompressed.
+	 * Stored JARs are larger, but are faster to create and to load classes from.
+	 * @param stored Whether entries should be stored uncompressed.
+	 */
+	public void setStored(boolean stored) {
+		this.stored = stored;
+	}
+
+	/**
+	 * Sets whether {@link bz.gsn.djinn.core.module.BuildTimeAnnotationDetector}s should be prepared at build time.
+	 * If so, every module is instantiated while {@linkplain #createJAR(Path) creating JARs}, and the data prepared by its
+	 * build-time detectors is embedded in the JAR, so that only their handle half runs when the application starts.
+	 * The whole classpath of the application must then have been passed to this compiler.
+	 * @param prepareDetectors Whether detectors should be prepared.
+	 */
+	public void setPrepareDetectors(boolean prepareDetectors) {
+		this.prepareDetectors = prepareDetectors;
+	}
+
+	/**
+	 * Sets whether the GraalVM {@code native-image} configuration of the application should be embedded in
+	 * {@linkplain #createJAR(Path) created JARs}; see {@link #generateNativeImageConfig()}.
+	 * @param nativeImage Whether the configuration should be embedded.
+	 */
+	public void setNativeImage(boolean nativeImage) {
+		this.nativeImage = nativeImage;
+	}
+
 	/**
 	 * Returns a new {@link DjinnCompiler} with the given path.
 	 * @param primary The primary classpath to scan.
@@ -70,164 +138,337 @@ public final class DjinnCompiler {
 		ArrayList<Path> al = new ArrayList<>();
 		al.add(primary);
 		al.addAll(List.of(paths));
-		return new DjinnCompiler(al.toArray(Path[]::new));
+		return new DjinnCompiler((Path) null, al.toArray(Path[]::new));
 	}
 
 	/**
-	 * Finds the non-anonymous classes extending the given superclass.
+	 * Returns a new {@link DjinnCompiler} with the given path, which reuses the class metadata cached in the given directory.
+	 * The metadata of a JAR is cached by its checksum, and that of a directory by the checksum of each class in it;
+	 * only changed classes and new JARs are read, and the cache is then updated. A cache may be shared by several projects.
+	 * @param cache The directory of the cache. It will be created if it doesn't exist.
+	 * @param primary The primary classpath to scan.
+	 * @param paths The other classpaths of the project to scan.
+	 * @return a new {@link DjinnCompiler}.
+	 */
+	@Contract(value = "_, _, _ -> new")
+	public static @NotNull DjinnCompiler cached(@NotNull Path cache, Path primary, Path... paths) {
+		ArrayList<Path> al = new ArrayList<>();
+		al.add(primary);
+		al.addAll(List.of(paths));
+		return new DjinnCompiler(cache, al.toArray(Path[]::new));
+	}
+
+	/**
+	 * Returns a new {@link DjinnCompiler} with the given path, which uses metadata already {@linkplain ClasspathMetadata#scan(Path, List) scanned}
+	 * from the same paths instead of scanning them again. This lets long-lived processes compile repeatedly from one scan.
+	 * @param classpath The metadata of the given paths.
+	 * @param primary The primary classpath.
+	 * @param paths The other classpaths of the project.
+	 * @return a new {@link DjinnCompiler}.
+	 */
+	@Contract(value = "_, _, _ -> new", pure = true)
+	public static @NotNull DjinnCompiler of(@NotNull ClasspathMetadata classpath, Path primary, Path... paths) {
+		ArrayList<Path> al = new ArrayList<>();
+		al.add(primary);
+		al.addAll(List.of(paths));
+		return new DjinnCompiler(classpath, al.toArray(Path[]::new));
+	}
+
+	/**
+	 * Finds the non-anonymous classes extending the given superclass. Results are memoized, as the classpath never changes.
 	 * @param superclass The name of the superclass.
 	 * @param direct Whether it must be direct.
 	 * @return the subclasses.
+	 * @see #model()
 	 */
-	@SuppressWarnings("SameParameterValue")
-	public List<String> findClassesExtending(@NotNull String superclass, boolean direct) {
-		return classpath.getSubclasses(superclass)
-				.filter(e -> !e.isAnonymousInnerClass())
-				.filter(e -> !direct || e.getSuperclass().getName().equals(superclass))
-				.parallelStream()
-				.map(ClassInfo::getName)
-				.toList();
+	public @NotNull @Unmodifiable List<String> findClassesExtending(@NotNull String superclass, boolean direct) {
+		return subclasses.computeIfAbsent((direct ? "=" : "+") + superclass, ignored -> classpath.subclasses(superclass)
+				.stream()
+				.filter(e -> !e.anonymous())
+				.filter(e -> !direct || superclass.equals(e.superclass()))
+				.map(ClassMetadata::name)
+				.toList());
 	}
 
 	/**
 	 * Generates the bootstrap class holding the {@code main} method
-	 * for Djinn.
+	 * for Djinn. It constructs modules and resources directly, rather than reflectively.
 	 * @return a byte array containing the classfile of the bootstrap class.
 	 */
 	public byte @NotNull [] generateBootstrapper() {
-		var hn = Type.getInternalName(Hook.class);
-		var modules = findClassesExtending("bz.gsn.djinn.core.module.DjinnModule", true);
-		var resources = findClassesExtending("bz.gsn.djinn.core.resource.Resource", false);
-		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
-		cw.newClass(hn);
-		cw.visit(Opcodes.V21, Opcodes.ACC_PUBLIC, bootstrapName.replace('.', '/'), null, "java/lang/Object", null);
-		MethodVisitor main = cw.visitMethod(Opcodes.ACC_PUBLIC + Opcodes.ACC_STATIC, "main", "([Ljava/lang/String;)V", null, null);
-		main.visitCode();
-		generateArray(main, modules, String.class, 1);
-		generateArray(main, resources, String.class, 2);
-		generateArray(main, buildTimeVariables, String.class, 3);
-		main.visitVarInsn(Opcodes.ALOAD, 1);
-		main.visitVarInsn(Opcodes.ALOAD, 2);
-		main.visitVarInsn(Opcodes.ALOAD, 3);
-		main.visitMethodInsn(Opcodes.INVOKESTATIC, hn, "standardMain", "([Ljava/lang/String;[Ljava/lang/String;[Ljava/lang/String;)V", false);
-		main.visitInsn(Opcodes.RETURN);
-		main.visitMaxs(3, 3);
-		main.visitEnd();
-		return cw.toByteArray();
+		return new BootstrapperGenerator(model, buildTimeVariables).generate();
+	}
+
+	/**
+	 * Instantiates every module, and runs the prepare half of the {@link bz.gsn.djinn.core.module.BuildTimeAnnotationDetector}s
+	 * they register on the elements of the {@linkplain #generateAnnotationIndex() annotation index}.
+	 * @return a map of the binary names of the detector classes to their serialized {@link DetectorData}.
+	 * @throws IOException if the classpath cannot be loaded.
+	 * @throws IllegalStateException if a module cannot be instantiated, or a detector fails to prepare an element.
+	 */
+	public @NotNull Map<String, byte[]> prepareDetectors() throws IOException {
+		var prepared = new TreeMap<String, byte[]>();
+		new DetectorPreparer(paths, model, annotationIndex())
+				.prepare()
+				.forEach((detector, data) -> prepared.put(detector, data.toByteArray()));
+		return prepared;
+	}
+
+	/**
+	 * Generates the {@link AnnotationIndex} of every class scanned by this compiler, which
+	 * {@code Classpath} reads at runtime instead of scanning the classpath.
+	 * <p>
+	 * Only elements which a runtime scan would see are indexed; i.e., {@code public} methods and fields
+	 * of {@code public} classes. If {@linkplain #setInvokers(boolean) invokers} are enabled, the index also maps
+	 * each method to its invoker class.
+	 * @return a byte array containing the serialized index.
+	 */
+	public byte @NotNull [] generateAnnotationIndex() {
+		return annotationIndex().toByteArray();
+	}
+
+	private AnnotationIndex annotationIndex() {
+		var index = new AnnotationIndex();
+		if(invokers) {
+			for(var target : new InvokerGenerator(classpath).targets()) {
+				var method = target.method();
+				index.addInvoker(AnnotationIndex.method(target.owner().name(), method.name(), method.descriptor()), target.name());
+			}
+		}
+		for(var classInfo : classpath.classes()) {
+			if(!classInfo.isPublic()) continue;
+			var className = classInfo.name();
+			for(var annotation : classpath.annotations(classInfo)) {
+				index.add(annotation, ElementType.TYPE, AnnotationIndex.type(className));
+			}
+			for(var field : classInfo.fields()) {
+				if(!field.isPublic()) continue;
+				for(var annotation : field.annotations()) {
+					index.add(annotation, ElementType.FIELD, AnnotationIndex.field(className, field.name()));
+				}
+			}
+			for(var method : classInfo.declaredMethods()) {
+				if(!method.isPublic()) continue;
+				for(var annotation : method.annotations()) {
+					index.add(annotation, ElementType.METHOD, AnnotationIndex.method(className, method.name(), method.descriptor()));
+				}
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Generates the GraalVM {@code native-image} configuration of the application, which registers everything Djinn
+	 * accesses reflectively at runtime: modules, resources, the elements of the {@linkplain #generateAnnotationIndex() annotation index}
+	 * whose annotations are detected and those annotations, detectors and {@linkplain #setInvokers(boolean) invokers}. It also includes the index and
+	 * {@linkplain #setPrepareDetectors(boolean) prepared detector data} as resources, so the native image starts from them
+	 * instead of scanning.
+	 * @return a map of the locations of the configuration files in a JAR to their contents.
+	 */
+	public @NotNull Map<String, byte[]> generateNativeImageConfig() {
+		var targets = invokers ? new InvokerGenerator(classpath).targets() : List.<InvokerGenerator.Target>of();
+		var config = new TreeMap<String, byte[]>();
+		config.put(NativeImageConfigGenerator.REFLECTION, new NativeImageConfigGenerator(classpath, model, targets).reflection());
+		config.put(NativeImageConfigGenerator.RESOURCES, NativeImageConfigGenerator.resources());
+		return config;
 	}
 
 	/**
 	 * Creates a bootstrapped executable JAR file.
 	 * The JAR file will be created at the given path.
 	 * Note that it will only include everything from the primary classpath passed as the first
-	 * non-variadic parameter to {@link #of(Path, Path...)}.
+	 * non-variadic parameter to {@link #of(Path, Path...)}, along with the bootstrapper,
+	 * the {@linkplain #generateAnnotationIndex() annotation index}, any {@linkplain #setInvokers(boolean) invokers}
+	 * any {@linkplain #setPrepareDetectors(boolean) prepared detector data} and any {@linkplain #setNativeImage(boolean) native-image configuration}.
+	 * Generated classes are written straight into the JAR; the primary classpath is never modified.
 	 * @param path Where the JAR file should be created. If the path doesn't exist, it will be created.
-	 *             If the path already exists, it will be deleted and recreated.
+	 *             If the path already exists, it will be overwritten.
 	 */
 	public void createJAR(@NotNull Path path) throws IOException {
-		Files.deleteIfExists(path);
-		Files.createFile(path);
-		if(!Files.isRegularFile(path)) throw new IllegalArgumentException("Path must point to a file");
-		var manifest = new Manifest();
-		var mf = manifest.getMainAttributes();
-		mf.put(Attributes.Name.MANIFEST_VERSION, "1.0");
-		try(var outputStream = new JarOutputStream(Files.newOutputStream(path), manifest); var primaryStream = Files.list(primary)) {
-			var x = Path.of(primary.resolve(bootstrapName.replace('.', '/')) + ".class");
-			Files.createDirectories(x.getParent());
-			var bootstrap = Files.write(x, generateBootstrapper());
-			bootstrap.toFile().deleteOnExit();
-			primaryStream.forEach(filePath -> {
-				try {
-					addFileToJAR(filePath, outputStream);
-				} catch(IOException e) {
-					throw new UncheckedIOException(e);
-				}
-			});
-			Files.delete(bootstrap);
-			Files.deleteIfExists(primary.resolve("bz/gsn/djinn/bootstrap/"));
+		if(Files.isDirectory(path)) throw new IllegalArgumentException("Path must point to a file");
+		try(var jar = new JarWriter(path, stored)) {
+			jar.add(JarFile.MANIFEST_NAME, manifest(), System.currentTimeMillis());
+			jar.addTree(primary, DjinnCompiler::isGenerated);
+			addGenerated(jar);
 		}
 	}
 
-	private void addFileToJAR(Path filePath, JarOutputStream target) throws IOException {
-		String name = primary.relativize(filePath).toString().replace("\\", "/");
-		var lmt = Files.getLastModifiedTime(filePath).toMillis();
-		if(Files.isDirectory(filePath)) {
-			if(!name.endsWith("/")) {
-				name += "/";
-			}
-			JarEntry entry = new JarEntry(name);
-			entry.setTime(lmt);
-			target.putNextEntry(entry);
-			target.closeEntry();
-			try(var inner = Files.list(filePath)) {
-				inner.forEach(p -> {
-					try {
-						addFileToJAR(p, target);
-					} catch(IOException e) {
-						throw new UncheckedIOException(e);
+	/**
+	 * Updates a JAR previously {@linkplain #createJAR(Path) created} from the same primary classpath, after some of its files changed.
+	 * Only the changed files are read; the bootstrapper, index, invokers and detector data are regenerated, but only
+	 * entries whose contents changed are written. The JAR is updated in place, so nothing else is rewritten either.
+	 * If the JAR cannot be updated (e.g., it does not exist, or is mostly made of replaced entries), it is created again.
+	 * @param path The JAR to update.
+	 * @param changed The paths of the created, modified and deleted files and directories, relative to the primary classpath
+	 *                and separated by {@code /}.
+	 * @return the number of entries written.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public int updateJAR(@NotNull Path path, @NotNull Collection<String> changed) throws IOException {
+		if(Files.isDirectory(path)) throw new IllegalArgumentException("Path must point to a file");
+		var updated = JarWriter.update(path, stored);
+		var jar = updated != null ? updated : new JarWriter(path, stored);
+		try(jar) {
+			jar.add(JarFile.MANIFEST_NAME, manifest(), System.currentTimeMillis());
+			if(updated == null) {
+				jar.addTree(primary, DjinnCompiler::isGenerated);
+			} else {
+				for(var name : changed) {
+					if(isGenerated(name)) continue;
+					var file = primary.resolve(name);
+					if(Files.isRegularFile(file)) {
+						jar.addFile(name, file);
+					} else if(Files.isDirectory(file)) {
+						jar.addDirectory(name + "/", Files.getLastModifiedTime(file).toMillis());
+					} else {
+						jar.remove(e -> e.equals(name) || e.startsWith(name + "/"));
 					}
-				});
-			}
-		} else {
-			JarEntry entry = new JarEntry(name);
-			entry.setTime(lmt);
-			target.putNextEntry(entry);
-			try(var in = Files.newInputStream(filePath)) {
-				byte[] buffer = new byte[1024];
-				while(true) {
-					int count = in.read(buffer);
-					if(count == -1) break;
-					target.write(buffer, 0, count);
 				}
-				target.closeEntry();
+				// stale invokers, detector data and configuration are dropped, unless they are generated again
+				jar.remove(e -> e.contains(InvokerGenerator.MARKER) || e.startsWith(DetectorData.LOCATION) || e.startsWith(NativeImageConfigGenerator.LOCATION));
 			}
+			addGenerated(jar);
 		}
+		return jar.written();
+	}
+
+	/**
+	 * Creates a dynamic AppCDS archive of a JAR {@linkplain #createJAR(Path) created} by this compiler, so that the classes
+	 * the application loads while starting are loaded from the archive, already parsed and verified, on later starts.
+	 * The application is run once, with the JDK running this compiler, until all of its runtimes have started;
+	 * it must therefore be able to start in this environment.
+	 * <p>
+	 * Given {@code app.jar}, the archive is written to {@code app.jsa}, next to a {@code java} argument file {@code app.args}
+	 * and a launcher {@code app.sh} using it. The archive is only used with the same JDK and classpath.
+	 * @param jar The JAR.
+	 * @param timeout How long the application may take to start all of its runtimes.
+	 * @return the argument file, with which the application is launched by {@code java @app.args}.
+	 * @throws IllegalStateException if an external classpath is a directory, as only classes from JARs are archived.
+	 * @throws IOException if an I/O error occurs, or the application did not start all of its runtimes in time.
+	 */
+	public @NotNull Path createArchive(@NotNull Path jar, @NotNull Duration timeout) throws IOException {
+		return new ArchiveTrainer(jar, paths.subList(1, paths.size()), timeout).train();
+	}
+
+	private static byte[] manifest() throws IOException {
+		var manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		var bytes = new ByteArrayOutputStream();
+		manifest.write(bytes);
+		return bytes.toByteArray();
 	}
 
-	@SuppressWarnings("SameParameterValue")
-	private static <T> void generateArray(@NotNull MethodVisitor main, @NotNull List<T> strings, Class<T> clazz, int index) {
-		main.visitIntInsn(Opcodes.BIPUSH, strings.size());
-		main.visitTypeInsn(Opcodes.ANEWARRAY, Type.getInternalName(clazz));
-		main.visitVarInsn(Opcodes.ASTORE, index);
-		for(int i = 0; i < strings.size(); i++) {
-			main.visitVarInsn(Opcodes.ALOAD, index);
-			main.visitIntInsn(Opcodes.BIPUSH, i);
-			main.visitLdcInsn(strings.get(i));
-			main.visitInsn(Opcodes.AASTORE);
+	/**
+	 * Returns whether an entry of the primary classpath is skipped, as it is always regenerated.
+	 */
+	private static boolean isGenerated(String name) {
+		return name.equals(JarFile.MANIFEST_NAME) || name.equals(AnnotationIndex.LOCATION) || name.startsWith(DetectorData.LOCATION)
+				|| name.startsWith(NativeImageConfigGenerator.LOCATION) || name.equals(BootstrapperGenerator.NAME + ".class")
+				|| name.contains(InvokerGenerator.MARKER);
+	}
+
+	private void addGenerated(JarWriter jar) throws IOException {
+		var now = System.currentTimeMillis();
+		jar.add(BootstrapperGenerator.NAME + ".class", generateBootstrapper(), now);
+		jar.add(AnnotationIndex.LOCATION, generateAnnotationIndex(), now);
+		if(invokers) {
+			var generator = new InvokerGenerator(classpath);
+			for(var target : generator.targets()) {
+				jar.add(target.name().replace('.', '/') + ".class", generator.generate(target), now);
+			}
+		}
+		if(prepareDetectors) {
+			for(var data : prepareDetectors().entrySet()) {
+				jar.add(DetectorData.location(data.getKey()), data.getValue(), now);
+			}
+		}
+		if(nativeImage) {
+			for(var config : generateNativeImageConfig().entrySet()) jar.add(config.getKey(), config.getValue(), now);
 		}
 	}
 
 	/**
 	 * Lints the classes. This should be called after registering all information
 	 * such as {@linkplain #registerBTV(String) build-time variables}.
+	 * The {@link Lint}s are loaded from the class loader of the compiler.
 	 * @return a list of {@link Diagnostic}s emitted by the lints.
+	 * @see #lint(ClassLoader)
 	 */
 	public @NotNull List<@NotNull Diagnostic> lint() {
+		return lint(DjinnCompiler.class.getClassLoader());
+	}
+
+	/**
+	 * Lints the classes. This should be called after registering all information
+	 * such as {@linkplain #registerBTV(String) build-time variables}.
+	 * <p>
+	 * Every {@link Lint} provided to the given class loader is loaded through the {@link ServiceLoader}; this includes
+	 * the built-in lints. The classes of the primary classpath are then walked once, in parallel, and every lint visits
+	 * each class. Libraries, including Djinn itself, are only looked up, as their diagnostics could not be acted on.
+	 * Lints emit into a lock-free sink; the diagnostics are then sorted by location, level, code and message,
+	 * so the result does not depend on scheduling.
+	 * @param classLoader The class loader to load lints from.
+	 * @return a list of {@link Diagnostic}s emitted by the lints.
+	 * @throws java.util.ServiceConfigurationError if a lint cannot be loaded.
+	 */
+	public @NotNull List<@NotNull Diagnostic> lint(@NotNull ClassLoader classLoader) {
+		return lintClasses(classLoader, classpath.classes(primary));
+	}
+
+	/**
+	 * Lints only the given classes, along with the checks which are not about a single class, such as those on
+	 * {@linkplain #registerBTV(String) build-time variables}. This is meant for re-linting the classes which changed
+	 * since the whole classpath was {@linkplain #lint(ClassLoader) linted}.
+	 * @param classLoader The class loader to load lints from.
+	 * @param classes The binary names of the classes to lint; unknown classes are ignored.
+	 * @return a list of {@link Diagnostic}s emitted by the lints.
+	 * @throws java.util.ServiceConfigurationError if a lint cannot be loaded.
+	 */
+	public @NotNull List<@NotNull Diagnostic> lint(@NotNull ClassLoader classLoader, @NotNull Collection<String> classes) {
+		return lintClasses(classLoader, classes.stream().map(classpath::get).filter(Objects::nonNull).toList());
+	}
+
+	private List<Diagnostic> lintClasses(ClassLoader classLoader, Collection<ClassMetadata> classes) {
+		var lints = ServiceLoader.load(Lint.class, classLoader)
+				.stream()
+				.map(ServiceLoader.Provider::get)
+				.toList();
+		var views = lints.stream().flatMap(e -> e.views().stream()).collect(Collectors.toSet());
+		var context = new LintContext(classpath, model, buildTimeVariables, views);
 		var dg = new DCDiagnosticEmitter();
-		List.of(
-				new AFResourceLint(), // W0001
-				new ResourceConstructorLint(), // E0001
-				new BuildTimeVariableLint(), // E0002, E0003, E0004
-				new FinalModuleLint(), // W0002
-				new AnonymousResourceLint() // W0003
-		).parallelStream().forEach(e -> e.lint(this.classpath, dg, buildTimeVariables));
-		return dg.diagnostics;
+		// parallel streams are backed by the work-stealing common pool, so uneven lints balance out
+		Stream.concat(
+				lints.stream().<Runnable>map(e -> () -> e.lint(context, dg)),
+				classes.stream().<Runnable>map(type -> () -> {
+					for(var lint : lints) lint.visit(type, context, dg);
+				})
+		).toList().parallelStream().forEach(Runnable::run);
+		return dg.sorted();
 	}
 
 	private static final class DCDiagnosticEmitter extends DiagnosticEmitter {
 
-		private final List<Diagnostic> diagnostics = new ArrayList<>();
+		private static final Comparator<Diagnostic> ORDER = Comparator.comparing(Diagnostic::location)
+				.thenComparing(Diagnostic::level)
+				.thenComparingInt(Diagnostic::code)
+				.thenComparing(Diagnostic::message);
+
+		private final Queue<Diagnostic> diagnostics = new ConcurrentLinkedQueue<>();
 
 		private record SimpleDiagnostic(@NotNull Level level, int code, @NotNull String message, @NotNull String location, @NotNull String @NotNull [] notes) implements Diagnostic {}
 
 		@Override
 		public void warning(int code, @NotNull String info, @NotNull String location, @NotNull String @NotNull [] notes) {
-			this.diagnostics.add(new SimpleDiagnostic(Diagnostic.Level.WARNING, code, info, location, notes));
+			this.diagnostics.add(new SimpleDiagnostic(Diagnostic.Level.WARNING, code, info, location, notes.clone()));
 		}
 
 		@Override
 		public void error(int code, @NotNull String info, @NotNull String location, @NotNull String @NotNull [] notes) {
-			this.diagnostics.add(new SimpleDiagnostic(Diagnostic.Level.ERROR, code, info, location, notes));
+			this.diagnostics.add(new SimpleDiagnostic(Diagnostic.Level.ERROR, code, info, location, notes.clone()));
+		}
+
+		private List<Diagnostic> sorted() {
+			return diagnostics.stream().sorted(ORDER).toList();
 		}
 
 	}
@@ -0,0 +1,139 @@
+package bz.gsn.djinn.compiler;
+
+import bz.gsn.djinn.compiler.metadata.ClassMetadata;
+import bz.gsn.djinn.compiler.metadata.ClasspathMetadata;
+import bz.gsn.djinn.compiler.metadata.MethodMetadata;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates invoker classes for annotated methods with {@code @Inject}ed resource parameters.
+ * <p>
+ * An invoker is declared in the same package as the method. Its constructor takes the {@code ResourceRegistry} of the
+ * application constructing it, and binds the injected resources to {@code final} fields. It exposes a single
+ * {@code public invoke} method, which takes the remaining parameters (preceded by the receiver, for instance methods)
+ * and calls the method directly. A handle to it therefore binds only the invoker, rather than a chain of resources,
+ * and each application binds its own.
+ */
+final class InvokerGenerator {
+
+	private static final String INJECT = "bz.gsn.djinn.core.resource.Inject";
+	private static final String RESOURCE = "bz.gsn.djinn.core.resource.Resource";
+	private static final String REGISTRY = "bz/gsn/djinn/core/resource/ResourceRegistry";
+
+	/**
+	 * A method to generate an invoker for.
+	 * @param owner The class declaring the method.
+	 * @param method The method.
+	 * @param name The binary name of the invoker class.
+	 */
+	record Target(@NotNull ClassMetadata owner, @NotNull MethodMetadata method, @NotNull String name) {}
+
+	/**
+	 * What the binary name of every invoker class contains.
+	 */
+	static final String MARKER = "$$DjinnInvoker$";
+
+	private final ClasspathMetadata classpath;
+
+	InvokerGenerator(@NotNull ClasspathMetadata classpath) {
+		this.classpath = classpath;
+	}
+
+	/**
+	 * Returns the methods which need an invoker, in a deterministic order.
+	 * These are the annotated {@code public} methods of {@code public} classes with at least one injected parameter.
+	 * @return the targets.
+	 */
+	@NotNull
+	List<Target> targets() {
+		var targets = new ArrayList<Target>();
+		for(var classInfo : classpath.classes()) {
+			if(!classInfo.isPublic()) continue;
+			int counter = 0;
+			for(var method : classInfo.declaredMethods()) {
+				if(!method.isPublic() || method.annotations().isEmpty()) continue;
+				boolean injected = false;
+				for(int i = 0; i < method.parameterCount(); i++) injected |= isInjected(method, i);
+				if(injected) targets.add(new Target(classInfo, method, classInfo.name() + MARKER + counter++));
+			}
+		}
+		return targets;
+	}
+
+	/**
+	 * Generates the invoker class for a target.
+	 * @param target The target.
+	 * @return the classfile of the invoker.
+	 */
+	byte @NotNull [] generate(@NotNull Target target) {
+		var internalName = target.name().replace('.', '/');
+		var owner = target.owner().name().replace('.', '/');
+		var method = target.method();
+		var descriptor = method.descriptor();
+		var arguments = Type.getArgumentTypes(descriptor);
+		var returnType = Type.getReturnType(descriptor);
+		var injected = new boolean[arguments.length];
+		var invokeParameters = new ArrayList<Type>();
+		if(!method.isStatic()) invokeParameters.add(Type.getObjectType(owner));
+		for(int i = 0; i < arguments.length; i++) {
+			injected[i] = isInjected(method, i);
+			if(!injected[i]) invokeParameters.add(arguments[i]);
+		}
+
+		ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+		cw.visit(Opcodes.V21, Opcodes.ACC_PUBLIC | Opcodes.ACC_FINAL | Opcodes.ACC_SUPER | Opcodes.ACC_SYNTHETIC, internalName, null, "java/lang/Object", null);
+		var constructor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(L" + REGISTRY + ";)V", null, null);
+		constructor.visitCode();
+		constructor.visitVarInsn(Opcodes.ALOAD, 0);
+		constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+		for(int i = 0; i < arguments.length; i++) {
+			if(!injected[i]) continue;
+			cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "resource" + i, arguments[i].getDescriptor(), null, null).visitEnd();
+			constructor.visitVarInsn(Opcodes.ALOAD, 0);
+			constructor.visitVarInsn(Opcodes.ALOAD, 1);
+			constructor.visitLdcInsn(arguments[i]);
+			constructor.visitMethodInsn(Opcodes.INVOKEVIRTUAL, REGISTRY, "require", "(Ljava/lang/Class;)Lbz/gsn/djinn/core/resource/Resource;", false);
+			constructor.visitTypeInsn(Opcodes.CHECKCAST, arguments[i].getInternalName());
+			constructor.visitFieldInsn(Opcodes.PUTFIELD, internalName, "resource" + i, arguments[i].getDescriptor());
+		}
+		constructor.visitInsn(Opcodes.RETURN);
+		constructor.visitMaxs(0, 0);
+		constructor.visitEnd();
+
+		var invoke = cw.visitMethod(Opcodes.ACC_PUBLIC, "invoke", Type.getMethodDescriptor(returnType, invokeParameters.toArray(Type[]::new)), null, method.exceptions().toArray(String[]::new));
+		invoke.visitCode();
+		int slot = 1;
+		if(!method.isStatic()) invoke.visitVarInsn(Opcodes.ALOAD, slot++);
+		for(int i = 0; i < arguments.length; i++) {
+			if(injected[i]) {
+				invoke.visitVarInsn(Opcodes.ALOAD, 0);
+				invoke.visitFieldInsn(Opcodes.GETFIELD, internalName, "resource" + i, arguments[i].getDescriptor());
+			} else {
+				invoke.visitVarInsn(arguments[i].getOpcode(Opcodes.ILOAD), slot);
+				slot += arguments[i].getSize();
+			}
+		}
+		var isInterface = target.owner().isInterface();
+		int opcode = method.isStatic() ? Opcodes.INVOKESTATIC : isInterface ? Opcodes.INVOKEINTERFACE : Opcodes.INVOKEVIRTUAL;
+		invoke.visitMethodInsn(opcode, owner, method.name(), descriptor, isInterface);
+		invoke.visitInsn(returnType.getOpcode(Opcodes.IRETURN));
+		invoke.visitMaxs(0, 0);
+		invoke.visitEnd();
+		cw.visitEnd();
+		return cw.toByteArray();
+	}
+
+	private boolean isInjected(@NotNull MethodMetadata method, int parameter) {
+		if(!method.parameterHasAnnotation(parameter, INJECT)) return false;
+		var name = method.parameterClassName(parameter);
+		if(name == null) return false;
+		return name.equals(RESOURCE) || classpath.extendsSuperclass(name, RESOURCE);
+	}
+
+}
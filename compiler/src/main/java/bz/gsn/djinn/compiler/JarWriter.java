@@ -0,0 +1,466 @@
+package bz.gsn.djinn.compiler;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a JAR (i.e., ZIP) file, compressing its entries in parallel.
+ * <p>
+ * Entries are added first and written on {@link #close()}, in the order they were added. Each entry is read and
+ * compressed by a pool of worker threads, a bounded number of entries ahead of the single thread writing the file;
+ * {@linkplain #JarWriter(Path, boolean) stored} entries are instead copied straight from their file with
+ * {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.
+ * Generated entries are added from memory, so nothing needs to be written next to the classes being packaged.
+ * <p>
+ * An existing JAR may also be {@linkplain #update(Path, boolean) updated} in place: new and changed entries are appended
+ * after the existing ones, over the old central directory, and a new central directory pointing at both is written.
+ * Entries which did not change are never rewritten, at the cost of leaving the replaced entries behind as dead space.
+ * <p>
+ * ZIP64 is not supported; a JAR may hold at most 65535 entries, and each entry and the JAR itself must be smaller than 4 GiB.
+ */
+final class JarWriter implements Closeable {
+
+	private static final int LOCAL_HEADER = 0x04034b50;
+	private static final int CENTRAL_HEADER = 0x02014b50;
+	private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+	private static final int UTF8_NAMES = 0x0800;
+	private static final int STORED = 0;
+	private static final int DEFLATED = 8;
+	private static final long LIMIT = 0xFFFFFFFFL;
+	private static final ThreadLocal<Deflater> deflaters = ThreadLocal.withInitial(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+
+	private sealed interface Source permits FileSource, BytesSource, DirectorySource {
+		String name();
+		long time();
+	}
+	private record FileSource(String name, long time, Path file, long size) implements Source {}
+	private record BytesSource(String name, long time, byte[] data) implements Source {}
+	private record DirectorySource(String name, long time) implements Source {}
+
+	/**
+	 * An entry ready to be written.
+	 * @param data The bytes to write, or {@code null} if they should be copied from the file of the source.
+	 */
+	private record Prepared(Source source, int method, long crc, long size, long compressedSize, byte @Nullable [] data) {}
+
+	/**
+	 * An entry of the central directory.
+	 * @param time The last modification time of the entry, in the MS-DOS format.
+	 * @param offset The offset of the local header of the entry.
+	 */
+	private record Central(String name, int version, int flags, int method, int time, long crc, long compressedSize, long size, int attributes, long offset) {}
+
+	private final Path path;
+	private final boolean stored;
+	private final List<Source> sources = new ArrayList<>();
+	private final Set<String> names = new HashSet<>();
+	/**
+	 * Where new entries are written: the start of the old central directory when updating, else the start of the file.
+	 */
+	private final long start;
+	private final Map<String, Central> retained;
+	private final Map<String, Central> removed = new HashMap<>();
+
+	/**
+	 * Creates a new {@link JarWriter}. Nothing is written until the writer is {@linkplain #close() closed}.
+	 * @param path Where the JAR should be written. If it already exists, it will be overwritten.
+	 * @param stored Whether entries should be stored uncompressed, which makes the JAR larger but faster to load classes from.
+	 */
+	JarWriter(@NotNull Path path, boolean stored) {
+		this(path, stored, 0, new LinkedHashMap<>());
+	}
+
+	private JarWriter(Path path, boolean stored, long start, Map<String, Central> retained) {
+		this.path = path;
+		this.stored = stored;
+		this.start = start;
+		this.retained = retained;
+	}
+
+	/**
+	 * Opens an existing JAR to be updated in place. Its entries are kept unless they are {@linkplain #remove(Predicate) removed}
+	 * or replaced; replacing an entry with identical contents keeps the existing one. Nothing is written until the writer
+	 * is {@linkplain #close() closed}, and if nothing changed, the JAR is left untouched.
+	 * @param path The JAR to update.
+	 * @param stored Whether new entries should be stored uncompressed.
+	 * @return the writer, or {@code null} if the JAR does not exist, cannot be read, or is mostly dead space and should be rewritten.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static @Nullable JarWriter update(@NotNull Path path, boolean stored) throws IOException {
+		if(!Files.isRegularFile(path)) return null;
+		try(var in = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = in.size();
+			var tail = ByteBuffer.allocate((int) Math.min(size, 22 + 0xFFFF)).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(in, tail, size - tail.capacity());
+			int end = tail.capacity() - 22;
+			while(end >= 0 && tail.getInt(end) != END_OF_CENTRAL_DIRECTORY) end--;
+			if(end < 0) return null;
+			int count = Short.toUnsignedInt(tail.getShort(end + 10));
+			long directorySize = Integer.toUnsignedLong(tail.getInt(end + 12));
+			long directoryStart = Integer.toUnsignedLong(tail.getInt(end + 16));
+			// ZIP64 archives mark these fields as overflowed
+			if(count == 0xFFFF || directoryStart == LIMIT || directoryStart + directorySize > size) return null;
+			var directory = ByteBuffer.allocate((int) directorySize).order(ByteOrder.LITTLE_ENDIAN);
+			readFully(in, directory, directoryStart);
+			var entries = new LinkedHashMap<String, Central>();
+			long live = 0;
+			for(int i = 0, position = 0; i < count; i++) {
+				if(position + 46 > directory.capacity() || directory.getInt(position) != CENTRAL_HEADER) return null;
+				int nameLength = Short.toUnsignedInt(directory.getShort(position + 28));
+				int extraLength = Short.toUnsignedInt(directory.getShort(position + 30));
+				int commentLength = Short.toUnsignedInt(directory.getShort(position + 32));
+				var name = new byte[nameLength];
+				directory.get(position + 46, name);
+				int flags = Short.toUnsignedInt(directory.getShort(position + 8));
+				var entry = new Central(
+						new String(name, (flags & UTF8_NAMES) != 0 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1),
+						Short.toUnsignedInt(directory.getShort(position + 6)),
+						flags,
+						Short.toUnsignedInt(directory.getShort(position + 10)),
+						directory.getInt(position + 12),
+						Integer.toUnsignedLong(directory.getInt(position + 16)),
+						Integer.toUnsignedLong(directory.getInt(position + 20)),
+						Integer.toUnsignedLong(directory.getInt(position + 24)),
+						directory.getInt(position + 38),
+						Integer.toUnsignedLong(directory.getInt(position + 42))
+				);
+				entries.put(entry.name(), entry);
+				// local headers usually have no extra fields; data descriptors are at most 16 bytes
+				live += 30 + nameLength + entry.compressedSize() + ((flags & 0x08) != 0 ? 16 : 0);
+				position += 46 + nameLength + extraLength + commentLength;
+			}
+			if(directoryStart - live > live) return null;
+			return new JarWriter(path, stored, directoryStart, entries);
+		}
+	}
+
+	/**
+	 * Returns the number of entries written, which excludes entries kept from an updated JAR.
+	 * @return the number of entries written.
+	 */
+	int written() {
+		return sources.size();
+	}
+
+	/**
+	 * Removes every entry kept from an {@linkplain #update(Path, boolean) updated} JAR whose name matches the given predicate.
+	 * An entry which is then added again with identical contents is kept as is.
+	 * @param filter Whether an entry should be removed, by its name.
+	 */
+	void remove(@NotNull Predicate<String> filter) {
+		for(var iterator = retained.values().iterator(); iterator.hasNext(); ) {
+			var entry = iterator.next();
+			if(!filter.test(entry.name())) continue;
+			removed.put(entry.name(), entry);
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Adds an entry holding the given bytes.
+	 * @param name The name of the entry.
+	 * @param data The contents of the entry.
+	 * @param time The last modification time of the entry, in milliseconds since the epoch.
+	 * @throws ZipException if an entry with the same name was already added.
+	 */
+	void add(@NotNull String name, byte @NotNull [] data, long time) throws ZipException {
+		add(new BytesSource(name, time, data));
+	}
+
+	/**
+	 * Adds an entry holding the contents of the given file.
+	 * @param name The name of the entry.
+	 * @param file The file.
+	 * @throws IOException if an I/O error occurs, or an entry with the same name was already added.
+	 */
+	void addFile(@NotNull String name, @NotNull Path file) throws IOException {
+		var attrs = Files.readAttributes(file, BasicFileAttributes.class);
+		add(new FileSource(name, attrs.lastModifiedTime().toMillis(), file, attrs.size()));
+	}
+
+	/**
+	 * Adds a directory entry.
+	 * @param name The name of the entry, which must end with {@code /}.
+	 * @param time The last modification time of the entry, in milliseconds since the epoch.
+	 * @throws ZipException if an entry with the same name was already added.
+	 */
+	void addDirectory(@NotNull String name, long time) throws ZipException {
+		add(new DirectorySource(name, time));
+	}
+
+	/**
+	 * Adds every directory and file under the given root, named relative to it.
+	 * @param root The root directory.
+	 * @param skip Whether a file should be skipped, by its entry name.
+	 * @throws IOException if an I/O error occurs, or an entry with the same name as a file was already added.
+	 */
+	void addTree(@NotNull Path root, @NotNull Predicate<String> skip) throws IOException {
+		Files.walkFileTree(root, new SimpleFileVisitor<>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+				if(!dir.equals(root)) add(new DirectorySource(name(dir) + "/", attrs.lastModifiedTime().toMillis()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				var name = name(file);
+				if(attrs.isRegularFile() && !skip.test(name)) add(new FileSource(name, attrs.lastModifiedTime().toMillis(), file, attrs.size()));
+				return FileVisitResult.CONTINUE;
+			}
+
+			private String name(Path path) {
+				return root.relativize(path).toString().replace('\\', '/');
+			}
+		});
+	}
+
+	private void add(Source source) throws ZipException {
+		if(!names.add(source.name())) throw new ZipException("duplicate entry: " + source.name());
+		var previous = retained.remove(source.name());
+		if(previous == null) previous = removed.remove(source.name());
+		if(previous != null && unchanged(previous, source)) {
+			retained.put(previous.name(), previous);
+			return;
+		}
+		sources.add(source);
+	}
+
+	private static boolean unchanged(Central previous, Source source) {
+		return switch(source) {
+			case DirectorySource ignored -> true;
+			case BytesSource bytes -> {
+				if(previous.size() != bytes.data().length) yield false;
+				var crc = new CRC32();
+				crc.update(bytes.data());
+				yield previous.crc() == crc.getValue();
+			}
+			case FileSource ignored -> false; // files are only added again when they changed
+		};
+	}
+
+	/**
+	 * Writes every entry, then the central directory, and closes the JAR.
+	 * @throws IOException if an I/O error occurs, or the JAR would need ZIP64.
+	 */
+	@Override
+	public void close() throws IOException {
+		boolean updating = start > 0;
+		if(updating && sources.isEmpty() && removed.isEmpty()) return;
+		int total = retained.size() + sources.size();
+		if(total > 0xFFFF) throw new ZipException("Too many entries for a JAR without ZIP64: " + total);
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		int window = parallelism * 4; // bounds how many prepared entries are held in memory at once
+		var written = new ArrayList<Central>(total);
+		written.addAll(retained.values());
+		var options = updating
+				? Set.of(StandardOpenOption.WRITE)
+				: Set.of(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+		try(
+				var out = FileChannel.open(path, options);
+				var executor = Executors.newFixedThreadPool(parallelism, Thread.ofPlatform().name("jar-writer-", 0).daemon(true).factory())
+		) {
+			out.position(start);
+			var pending = new ArrayList<Future<Prepared>>(sources.size());
+			for(int i = 0; i < sources.size(); i++) {
+				while(pending.size() < sources.size() && pending.size() <= i + window) {
+					var source = sources.get(pending.size());
+					pending.add(executor.submit(() -> prepare(source)));
+				}
+				var entry = await(pending.get(i));
+				pending.set(i, null);
+				written.add(central(entry, out.position()));
+				writeEntry(out, entry);
+			}
+			writeCentralDirectory(out, written);
+			if(updating) out.truncate(out.position());
+		}
+	}
+
+	private Prepared prepare(Source source) throws IOException {
+		return switch(source) {
+			case DirectorySource directory -> new Prepared(directory, STORED, 0, 0, 0, new byte[0]);
+			case BytesSource bytes -> compress(bytes, bytes.data());
+			case FileSource file when stored -> {
+				var crc = new CRC32();
+				try(var channel = FileChannel.open(file.file(), StandardOpenOption.READ)) {
+					// mapping the file lets us checksum it without copying it onto the heap
+					if(file.size() > 0) crc.update(channel.map(FileChannel.MapMode.READ_ONLY, 0, file.size()));
+				}
+				yield new Prepared(file, STORED, crc.getValue(), file.size(), file.size(), null);
+			}
+			case FileSource file -> compress(file, Files.readAllBytes(file.file()));
+		};
+	}
+
+	private Prepared compress(Source source, byte[] data) {
+		var crc = new CRC32();
+		crc.update(data);
+		if(stored || data.length == 0) return new Prepared(source, STORED, crc.getValue(), data.length, data.length, data);
+		var deflater = deflaters.get();
+		deflater.reset();
+		deflater.setInput(data);
+		deflater.finish();
+		var buffer = new byte[Math.max(64, data.length + (data.length >> 3))];
+		int length = 0;
+		while(!deflater.finished()) {
+			if(length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			length += deflater.deflate(buffer, length, buffer.length - length);
+		}
+		// incompressible data is cheaper to store
+		if(length >= data.length) return new Prepared(source, STORED, crc.getValue(), data.length, data.length, data);
+		return new Prepared(source, DEFLATED, crc.getValue(), data.length, length, Arrays.copyOf(buffer, length));
+	}
+
+	private static void writeEntry(FileChannel out, Prepared entry) throws IOException {
+		if(entry.compressedSize() > LIMIT || out.position() > LIMIT) throw new ZipException("Entry too large for a JAR without ZIP64: " + entry.source().name());
+		var name = entry.source().name().getBytes(StandardCharsets.UTF_8);
+		var header = ByteBuffer.allocate(30 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(LOCAL_HEADER)
+				.putShort(version(entry))
+				.putShort((short) UTF8_NAMES)
+				.putShort((short) entry.method())
+				.putInt(dosTime(entry.source().time()))
+				.putInt((int) entry.crc())
+				.putInt((int) entry.compressedSize())
+				.putInt((int) entry.size())
+				.putShort((short) name.length)
+				.putShort((short) 0)
+				.put(name)
+				.flip();
+		writeFully(out, header);
+		if(entry.data() != null) {
+			writeFully(out, ByteBuffer.wrap(entry.data()));
+		} else {
+			var file = ((FileSource) entry.source()).file();
+			try(var in = FileChannel.open(file, StandardOpenOption.READ)) {
+				long position = 0;
+				while(position < entry.size()) {
+					long transferred = in.transferTo(position, entry.size() - position, out);
+					if(transferred <= 0) throw new IOException("File changed while it was being written: " + file);
+					position += transferred;
+				}
+			}
+		}
+	}
+
+	private static Central central(Prepared entry, long offset) {
+		return new Central(
+				entry.source().name(),
+				version(entry),
+				UTF8_NAMES,
+				entry.method(),
+				dosTime(entry.source().time()),
+				entry.crc(),
+				entry.compressedSize(),
+				entry.size(),
+				entry.source() instanceof DirectorySource ? 0x10 : 0,
+				offset
+		);
+	}
+
+	private static void writeCentralDirectory(FileChannel out, List<Central> entries) throws IOException {
+		long start = out.position();
+		for(var entry : entries) {
+			var name = entry.name().getBytes((entry.flags() & UTF8_NAMES) != 0 ? StandardCharsets.UTF_8 : StandardCharsets.ISO_8859_1);
+			var header = ByteBuffer.allocate(46 + name.length).order(ByteOrder.LITTLE_ENDIAN);
+			header.putInt(CENTRAL_HEADER)
+					.putShort((short) 20) // made by: MS-DOS compatible, 2.0
+					.putShort((short) entry.version())
+					.putShort((short) entry.flags())
+					.putShort((short) entry.method())
+					.putInt(entry.time())
+					.putInt((int) entry.crc())
+					.putInt((int) entry.compressedSize())
+					.putInt((int) entry.size())
+					.putShort((short) name.length)
+					.putShort((short) 0)
+					.putShort((short) 0)
+					.putShort((short) 0)
+					.putShort((short) 0)
+					.putInt(entry.attributes())
+					.putInt((int) entry.offset())
+					.put(name)
+					.flip();
+			writeFully(out, header);
+		}
+		long size = out.position() - start;
+		if(out.position() > LIMIT) throw new ZipException("JAR too large without ZIP64");
+		var end = ByteBuffer.allocate(22).order(ByteOrder.LITTLE_ENDIAN);
+		end.putInt(END_OF_CENTRAL_DIRECTORY)
+				.putShort((short) 0)
+				.putShort((short) 0)
+				.putShort((short) entries.size())
+				.putShort((short) entries.size())
+				.putInt((int) size)
+				.putInt((int) start)
+				.putShort((short) 0)
+				.flip();
+		writeFully(out, end);
+	}
+
+	private static short version(Prepared entry) {
+		return (short) (entry.method() == DEFLATED || entry.source() instanceof DirectorySource ? 20 : 10);
+	}
+
+	/**
+	 * Converts a time to the MS-DOS date and time format used by ZIP headers.
+	 * @param time The time, in milliseconds since the epoch.
+	 * @return the date in the upper 16 bits, and the time in the lower 16 bits.
+	 */
+	private static int dosTime(long time) {
+		var date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+		if(date.getYear() < 1980) return (1 << 21) | (1 << 16); // 1980-01-01T00:00, the earliest representable time
+		return (date.getYear() - 1980) << 25
+				| date.getMonthValue() << 21
+				| date.getDayOfMonth() << 16
+				| date.getHour() << 11
+				| date.getMinute() << 5
+				| date.getSecond() >> 1;
+	}
+
+	private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+		while(buffer.hasRemaining()) out.write(buffer);
+	}
+
+	private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+		while(buffer.hasRemaining()) {
+			int read = in.read(buffer, position + buffer.position());
+			if(read < 0) throw new ZipException("Unexpected end of JAR");
+		}
+		buffer.flip();
+	}
+
+	private static <T> T await(Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing the JAR", e);
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof IOException io) throw io;
+			if(e.getCause() instanceof UncheckedIOException io) throw io.getCause();
+			throw new IOException(e.getCause());
+		}
+	}
+
+}
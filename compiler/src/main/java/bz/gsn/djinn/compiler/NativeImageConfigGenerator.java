@@ -0,0 +1,179 @@
+package bz.gsn.djinn.compiler;
+
+import bz.gsn.djinn.compiler.metadata.ClasspathMetadata;
+import bz.gsn.djinn.compiler.metadata.MethodMetadata;
+import bz.gsn.djinn.core.app.AnnotationIndex;
+import bz.gsn.djinn.core.app.DetectorData;
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.Type;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * Generates the GraalVM {@code native-image} configuration of an application, from its {@link ApplicationModel} and classpath.
+ * <p>
+ * The reflection configuration registers everything Djinn reflects on at runtime: the no-args constructors of modules
+ * (for {@code Hook.standardMain}), the public constructors of resources, every element the
+ * {@linkplain DjinnCompiler#generateAnnotationIndex() annotation index} holds under an annotation type some detector
+ * {@linkplain ApplicationModel#detectedAnnotations() detects} along with those annotation types, detectors,
+ * invokers, and the private members of Djinn which are set or read through reflection. The resource configuration includes
+ * the index and any prepared detector data. Both are written in the JSON format read from {@code META-INF/native-image}
+ * on the classpath, so {@code native-image} picks them up from the JAR without any options.
+ */
+final class NativeImageConfigGenerator {
+
+	/**
+	 * The directory of the configuration in a JAR.
+	 */
+	static final String LOCATION = "META-INF/native-image/bz.gsn.djinn/application/";
+	static final String REFLECTION = LOCATION + "reflect-config.json";
+	static final String RESOURCES = LOCATION + "resource-config.json";
+
+	private static final String DETECTOR = "bz.gsn.djinn.core.module.AnnotationDetector";
+	private static final String BUILD_ENVIRONMENT = "bz.gsn.djinn.core.build.BuildEnvironment";
+	private static final String LAZY = "bz.gsn.djinn.core.resource.Lazy";
+
+	/**
+	 * What is registered for one class.
+	 */
+	private static final class Entry {
+		private final SortedSet<String> flags = new TreeSet<>();
+		private final SortedMap<String, Boolean> fields = new TreeMap<>();
+		private final SortedSet<String> methods = new TreeSet<>();
+	}
+
+	private final ClasspathMetadata classpath;
+	private final ApplicationModel model;
+	private final List<InvokerGenerator.Target> invokers;
+	private final SortedMap<String, Entry> entries = new TreeMap<>();
+
+	/**
+	 * @param invokers The targets of the generated invokers, if any.
+	 */
+	NativeImageConfigGenerator(@NotNull ClasspathMetadata classpath, @NotNull ApplicationModel model, @NotNull List<InvokerGenerator.Target> invokers) {
+		this.classpath = classpath;
+		this.model = model;
+		this.invokers = invokers;
+	}
+
+	/**
+	 * Generates {@code reflect-config.json}.
+	 * @return the UTF-8 encoded configuration.
+	 */
+	byte @NotNull [] reflection() {
+		entries.clear();
+		for(var module : model.bootstrappedModules()) entry(module.name()).methods.add(method("<init>", "()V"));
+		for(var resource : model.resourceClasses()) {
+			// the registry reads @Lazy, and instantiates resources without a generated constructor call
+			entry(resource.name()).flags.add("allPublicConstructors");
+		}
+		for(var detector : model.detectors()) {
+			// the annotation type is read from the generic superclass
+			entry(detector.type().name());
+		}
+		// only the elements some detector is dispatched, unless the annotation type of a detector cannot be told
+		var detected = model.detectedAnnotations();
+		Predicate<String> isDetected = detected == null ? ignored -> true : detected::contains;
+		for(var classInfo : classpath.classes()) {
+			// the same elements as the annotation index
+			if(!classInfo.isPublic()) continue;
+			var annotations = classpath.annotations(classInfo).stream().filter(isDetected).toList();
+			if(!annotations.isEmpty()) entry(classInfo.name());
+			annotations.forEach(this::annotation);
+			for(var field : classInfo.fields()) {
+				var fieldAnnotations = field.annotations().stream().filter(isDetected).toList();
+				if(!field.isPublic() || fieldAnnotations.isEmpty()) continue;
+				// detectors get a VarHandle, which may write
+				entry(classInfo.name()).fields.put(field.name(), true);
+				fieldAnnotations.forEach(this::annotation);
+			}
+			for(var method : classInfo.declaredMethods()) {
+				var methodAnnotations = method.annotations().stream().filter(isDetected).toList();
+				if(!method.isPublic() || methodAnnotations.isEmpty()) continue;
+				entry(classInfo.name()).methods.add(method(method.name(), method.descriptor()));
+				methodAnnotations.forEach(this::annotation);
+			}
+		}
+		for(var invoker : invokers) {
+			entry(invoker.name()).flags.add("allDeclaredConstructors");
+			entry(invoker.name()).flags.add("allDeclaredMethods");
+		}
+		annotation(ApplicationModel.INJECT);
+		annotation(LAZY);
+		entry(DETECTOR).fields.put("type", false);
+		entry(BUILD_ENVIRONMENT).fields.put("buildEnvironment", true);
+
+		var json = new StringBuilder("[\n");
+		var iterator = entries.entrySet().iterator();
+		while(iterator.hasNext()) {
+			var next = iterator.next();
+			var entry = next.getValue();
+			json.append("  {\"name\": ").append(string(next.getKey()));
+			for(var flag : entry.flags) json.append(", ").append(string(flag)).append(": true");
+			if(!entry.fields.isEmpty()) {
+				var fields = new StringJoiner(", ", ", \"fields\": [", "]");
+				entry.fields.forEach((name, write) -> fields.add("{\"name\": " + string(name) + (write ? ", \"allowWrite\": true}" : "}")));
+				json.append(fields);
+			}
+			if(!entry.methods.isEmpty()) json.append(", \"methods\": [").append(String.join(", ", entry.methods)).append(']');
+			json.append(iterator.hasNext() ? "},\n" : "}\n");
+		}
+		return json.append("]\n").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Generates {@code resource-config.json}.
+	 * @return the UTF-8 encoded configuration.
+	 */
+	static byte @NotNull [] resources() {
+		return ("{\n"
+				+ "  \"resources\": {\n"
+				+ "    \"includes\": [\n"
+				+ "      {\"pattern\": " + string("\\Q" + AnnotationIndex.LOCATION + "\\E") + "},\n"
+				+ "      {\"pattern\": " + string("\\Q" + DetectorData.LOCATION + "\\E.*") + "}\n"
+				+ "    ]\n"
+				+ "  }\n"
+				+ "}\n").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private Entry entry(String name) {
+		return entries.computeIfAbsent(name, ignored -> new Entry());
+	}
+
+	/**
+	 * Registers an annotation type, whose members are read through its proxy.
+	 */
+	private void annotation(String name) {
+		entry(name).flags.add("allDeclaredMethods");
+	}
+
+	/**
+	 * Formats a method of the reflection configuration, whose parameter types are named as by {@link Class#getName()},
+	 * except that arrays are named as in source.
+	 * @see MethodMetadata#descriptor()
+	 */
+	private static String method(String name, String descriptor) {
+		var parameters = new StringJoiner(", ", "[", "]");
+		for(var type : Type.getArgumentTypes(descriptor)) parameters.add(string(type.getClassName()));
+		return "{\"name\": " + string(name) + ", \"parameterTypes\": " + parameters + "}";
+	}
+
+	private static String string(String value) {
+		var json = new StringBuilder("\"");
+		for(int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch(c) {
+				case '"' -> json.append("\\\"");
+				case '\\' -> json.append("\\\\");
+				default -> {
+					if(c < 0x20) json.append("\\u%04x".formatted((int) c));
+					else json.append(c);
+				}
+			}
+		}
+		return json.append('"').toString();
+	}
+
+}
@@ -1,10 +1,7 @@
 package bz.gsn.djinn.compiler.lint;
 
-import io.github.classgraph.*;
+import bz.gsn.djinn.compiler.metadata.ClassMetadata;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Unmodifiable;
-
-import java.util.List;
 
 /**
  * A warning lint to make sure if all {@code Resource}s are either {@code final} or {@code abstract}.
@@ -13,20 +10,18 @@ import java.util.List;
 public class AFResourceLint implements Lint {
 
 	@Override
-	public void lint(@NotNull ScanResult scanResult, @NotNull DiagnosticEmitter diagnosticEmitter, @Unmodifiable @NotNull List<String> btv) {
-		scanResult.getSubclasses("bz.gsn.djinn.core.resource.Resource")
-				.parallelStream()
-				.filter(e -> !e.isAnonymousInnerClass())
-				.filter(e -> !e.isFinal() && !e.isAbstract())
-				.forEach(e -> diagnosticEmitter.warning(
-						1,
-						"Resources should be marked as abstract or final",
-						"class " + e.getName(),
-						new String[] {
-								"Only final classes extending Resource are registered",
-								"Try marking " + e.getSimpleName() + " as abstract or final to remove this warning"
-						}
-				));
+	public void visit(@NotNull ClassMetadata type, @NotNull LintContext context, @NotNull DiagnosticEmitter diagnosticEmitter) {
+		if(!context.model().isResource(type)) return;
+		if(type.anonymous() || type.isFinal() || type.isAbstract()) return;
+		diagnosticEmitter.warning(
+				1,
+				"Resources should be marked as abstract or final",
+				"class " + type.name(),
+				new String[] {
+						"Only final classes extending Resource are registered",
+						"Try marking " + type.simpleName() + " as abstract or final to remove this warning"
+				}
+		);
 	}
 
 }
@@ -1,11 +1,7 @@
 package bz.gsn.djinn.compiler.lint;
 
-import io.github.classgraph.ClassInfo;
-import io.github.classgraph.ScanResult;
+import bz.gsn.djinn.compiler.metadata.ClassMetadata;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Unmodifiable;
-
-import java.util.List;
 
 /**
  * A lint to check for anonymous classes extending {@code Resource}.
@@ -13,18 +9,16 @@ import java.util.List;
 public class AnonymousResourceLint implements Lint {
 
 	@Override
-	public void lint(@NotNull ScanResult scanResult, @NotNull DiagnosticEmitter diagnosticEmitter, @Unmodifiable @NotNull List<String> btv) {
-		scanResult.getSubclasses("bz.gsn.djinn.core.resource.Resource")
-				.parallelStream()
-				.filter(ClassInfo::isAnonymousInnerClass)
-				.forEach(e -> diagnosticEmitter.warning(
-						3,
-						"Anonymous subclassing of resources",
-						"class " + e.getName(),
-						new String[] {
-								"Only named non-anonymous classes extending Resource are registered"
-						}
-				));
+	public void visit(@NotNull ClassMetadata type, @NotNull LintContext context, @NotNull DiagnosticEmitter diagnosticEmitter) {
+		if(!type.anonymous() || !context.model().isResource(type)) return;
+		diagnosticEmitter.warning(
+				3,
+				"Anonymous subclassing of resources",
+				"class " + type.name(),
+				new String[] {
+						"Only named non-anonymous classes extending Resource are registered"
+				}
+		);
 	}
 
 }
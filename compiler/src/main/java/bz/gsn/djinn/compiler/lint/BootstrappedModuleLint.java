@@ -0,0 +1,37 @@
+package bz.gsn.djinn.compiler.lint;
+
+import bz.gsn.djinn.compiler.metadata.ClassMetadata;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A lint to make sure that every module is constructed by the bootstrapper; i.e., that it is a public, concrete class
+ * with a public no-args constructor. Any other module would silently never be registered.
+ */
+public class BootstrappedModuleLint implements Lint {
+
+	@Override
+	public void visit(@NotNull ClassMetadata type, @NotNull LintContext context, @NotNull DiagnosticEmitter diagnosticEmitter) {
+		var model = context.model();
+		if(!model.isModule(type) || !model.modules().contains(type) || model.bootstrappedModules().contains(type) || isLocal(type)) return;
+		diagnosticEmitter.error(
+				6,
+				"Modules must be public, concrete and have a public no-args constructor",
+				"class " + type.name(),
+				new String[] {
+						"The bootstrapper constructs every module directly, so " + type.simpleName() + " would never be registered",
+						"Try making " + type.simpleName() + " public and concrete, and creating public " + type.simpleName() + "() { ... }"
+				}
+		);
+	}
+
+	/**
+	 * Returns whether a class is local or anonymous, which javac names after its enclosing class and a number; e.g.,
+	 * {@code Outer$1Local} or {@code Outer$1}.
+	 * Local modules can only be registered by hand, such as those made by {@code Djinn.module()}.
+	 */
+	static boolean isLocal(@NotNull ClassMetadata type) {
+		int separator = type.name().lastIndexOf('$');
+		return separator >= 0 && separator + 1 < type.name().length() && Character.isDigit(type.name().charAt(separator + 1));
+	}
+
+}
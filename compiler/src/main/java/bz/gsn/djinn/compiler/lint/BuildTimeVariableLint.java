@@ -1,11 +1,8 @@
 package bz.gsn.djinn.compiler.lint;
 
-import io.github.classgraph.ScanResult;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Unmodifiable;
 
 import java.util.HashSet;
-import java.util.List;
 
 /**
  * A lint to ensure that:
@@ -18,10 +15,10 @@ import java.util.List;
 public class BuildTimeVariableLint implements Lint {
 
 	@Override
-	public void lint(@NotNull ScanResult scanResult, @NotNull DiagnosticEmitter diagnosticEmitter, @Unmodifiable @NotNull List<String> btv) {
+	public void lint(@NotNull LintContext context, @NotNull DiagnosticEmitter diagnosticEmitter) {
 		var elements = new HashSet<String>();
 		boolean errored = true;
-		for(var bt : btv) {
+		for(var bt : context.btv()) {
 			var split = bt.split("=", 2);
 			var loc = "'" + bt.trim() + "'";
 			if(split.length != 2) {
@@ -37,7 +34,7 @@ public class BuildTimeVariableLint implements Lint {
 			}
 		}
 		if(!errored) {
-			for(var dup : btv.stream().filter(n -> !elements.add(n)).toList()) {
+			for(var dup : context.btv().stream().filter(n -> !elements.add(n)).toList()) {
 				// now, we detect duplicates; it would be very bad if "" kept appearing!
 				diagnosticEmitter.error(4, "Duplicate key " + dup.split("=", 2)[0], "'" + dup.trim() + "'", new String[] {"Use a different key"});
 			}
@@ -1,10 +1,7 @@
 package bz.gsn.djinn.compiler.lint;
 
-import io.github.classgraph.ScanResult;
+import bz.gsn.djinn.compiler.metadata.ClassMetadata;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Unmodifiable;
-
-import java.util.List;
 
 /**
  * A warning lint to ensure that all {@code DjinnModule}s are {@code final}.
@@ -12,19 +9,18 @@ import java.util.List;
 public class FinalModuleLint implements Lint {
 
 	@Override
-	public void lint(@NotNull ScanResult scanResult, @NotNull DiagnosticEmitter diagnosticEmitter, @Unmodifiable @NotNull List<String> btv) {
-		scanResult.getSubclasses("bz.gsn.djinn.core.module.DjinnModule")
-				.parallelStream()
-				.filter(e -> !e.isFinal())
-				.forEach(e -> diagnosticEmitter.warning(
-						2,
-						"Modules should be marked as final",
-						"class " + e.getName(),
-						new String[] {
-								"Only final classes directly extending DjinnModule are registered",
-								"Try marking " + e.getSimpleName() + " as final to remove this warning"
-						}
-				));
+	public void visit(@NotNull ClassMetadata type, @NotNull LintContext context, @NotNull DiagnosticEmitter diagnosticEmitter) {
+		// local and anonymous modules are only ever registered by hand
+		if(type.isFinal() || !context.model().isModule(type) || BootstrappedModuleLint.isLocal(type)) return;
+		diagnosticEmitter.warning(
+				2,
+				"Modules should be marked as final",
+				"class " + type.name(),
+				new String[] {
+						"Only final classes directly extending DjinnModule are registered",
+						"Try marking " + type.simpleName() + " as final to remove this warning"
+				}
+		);
 	}
 
 }
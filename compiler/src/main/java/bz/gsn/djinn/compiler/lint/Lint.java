@@ -1,19 +1,44 @@
 package bz.gsn.djinn.compiler.lint;
 
-import io.github.classgraph.ScanResult;
+import bz.gsn.djinn.compiler.metadata.ClassMetadata;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Unmodifiable;
 
-import java.util.List;
+import java.util.Set;
 
+/**
+ * A lint over a classpath. Lints are service providers: the compiler loads every {@code Lint} through the
+ * {@link java.util.ServiceLoader}, then walks the classpath once, {@linkplain #visit(ClassMetadata, LintContext, DiagnosticEmitter) visiting}
+ * each class with every lint, in parallel. Checks which are not about a single class, such as those on build-time
+ * variables, belong in {@link #lint(LintContext, DiagnosticEmitter) lint} instead.
+ * <p>
+ * Lints run concurrently, and may emit diagnostics from any thread. Providers must have a public no-args constructor.
+ */
 public interface Lint {
 
 	/**
-	 * Lints the given {@link ScanResult}.
-	 * @param scanResult The {@link ScanResult} to look for items to lint.
+	 * Returns the superclasses whose subclasses this lint queries through {@link LintContext#subclasses(String)}
+	 * or {@link LintContext#extendsSuperclass(ClassMetadata, String)}. Modules and resources need no view, as they are
+	 * already in the {@linkplain LintContext#model() application model}.
+	 * @return the binary names of the superclasses.
+	 */
+	default @NotNull @Unmodifiable Set<String> views() {
+		return Set.of();
+	}
+
+	/**
+	 * Lints a single class. This is called once for every class of the classpath, concurrently.
+	 * @param type The class to lint.
+	 * @param context The {@link LintContext}.
+	 * @param diagnosticEmitter The {@link DiagnosticEmitter}.
+	 */
+	default void visit(@NotNull ClassMetadata type, @NotNull LintContext context, @NotNull DiagnosticEmitter diagnosticEmitter) {}
+
+	/**
+	 * Lints the classpath as a whole. This is called once, concurrently with the visits.
+	 * @param context The {@link LintContext} to look for items to lint.
 	 * @param diagnosticEmitter The {@link DiagnosticEmitter}.
-	 * @param btv The build-time variables.
 	 */
-	void lint(@NotNull ScanResult scanResult, @NotNull DiagnosticEmitter diagnosticEmitter, @Unmodifiable @NotNull List<String> btv);
+	default void lint(@NotNull LintContext context, @NotNull DiagnosticEmitter diagnosticEmitter) {}
 
 }
@@ -0,0 +1,109 @@
+package bz.gsn.djinn.compiler.lint;
+
+import bz.gsn.djinn.compiler.ApplicationModel;
+import bz.gsn.djinn.compiler.metadata.ClassMetadata;
+import bz.gsn.djinn.compiler.metadata.ClasspathMetadata;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Collectors;
+
+/**
+ * What a {@link Lint} may inspect: the classpath, the {@linkplain ApplicationModel application model}, the build-time variables,
+ * and the subclasses of the superclasses it {@linkplain Lint#views() declared}.
+ * <p>
+ * The views of every lint are computed together, in a single parallel pass over the classes, before any lint runs;
+ * lints sharing a view share the same list.
+ */
+public final class LintContext {
+
+	private final ClasspathMetadata classpath;
+	private final ApplicationModel model;
+	private final List<String> btv;
+	private final Map<String, List<ClassMetadata>> views;
+	private final Map<String, Set<String>> members;
+
+	/**
+	 * Creates a new {@link LintContext}, and computes the given views.
+	 * @param classpath The classpath to lint.
+	 * @param model The model of the application on the classpath.
+	 * @param btv The build-time variables.
+	 * @param views The binary names of the superclasses whose subclasses are queried.
+	 */
+	public LintContext(@NotNull ClasspathMetadata classpath, @NotNull ApplicationModel model, @NotNull List<String> btv, @NotNull Collection<String> views) {
+		this.classpath = classpath;
+		this.model = model;
+		this.btv = List.copyOf(btv);
+		var found = new ConcurrentHashMap<String, Queue<ClassMetadata>>();
+		for(var view : views) found.put(view, new ConcurrentLinkedQueue<>());
+		classpath.classes().parallelStream().forEach(e -> {
+			for(var superclass = e.superclass(); superclass != null; ) {
+				var view = found.get(superclass);
+				if(view != null) view.add(e);
+				var parent = classpath.get(superclass);
+				superclass = parent == null ? null : parent.superclass();
+			}
+		});
+		var sorted = new HashMap<String, List<ClassMetadata>>();
+		var members = new HashMap<String, Set<String>>();
+		found.forEach((view, subclasses) -> {
+			sorted.put(view, subclasses.stream().sorted(Comparator.comparing(ClassMetadata::name)).toList());
+			members.put(view, subclasses.stream().map(ClassMetadata::name).collect(Collectors.toUnmodifiableSet()));
+		});
+		this.views = Collections.unmodifiableMap(sorted);
+		this.members = Collections.unmodifiableMap(members);
+	}
+
+	/**
+	 * Returns the classpath to lint.
+	 * @return the {@link ClasspathMetadata}.
+	 */
+	public @NotNull ClasspathMetadata classpath() {
+		return classpath;
+	}
+
+	/**
+	 * Returns the model of the application, which the compiler bootstraps from.
+	 * @return the {@link ApplicationModel}.
+	 */
+	public @NotNull ApplicationModel model() {
+		return model;
+	}
+
+	/**
+	 * Returns the build-time variables, in the form {@code key=value}.
+	 * @return the build-time variables.
+	 */
+	public @NotNull @Unmodifiable List<String> btv() {
+		return btv;
+	}
+
+	/**
+	 * Returns the classes extending the given superclass, directly or indirectly, sorted by name.
+	 * @param superclass The binary name of the superclass, which must have been declared as a {@linkplain Lint#views() view}.
+	 * @return the subclasses.
+	 * @throws IllegalArgumentException if the superclass was not declared as a view.
+	 */
+	public @NotNull @Unmodifiable List<ClassMetadata> subclasses(@NotNull String superclass) {
+		var view = views.get(superclass);
+		if(view == null) throw new IllegalArgumentException("The subclasses of " + superclass + " were not declared as a view");
+		return view;
+	}
+
+	/**
+	 * Returns whether a class extends the given superclass, directly or indirectly.
+	 * @param type The class.
+	 * @param superclass The binary name of the superclass, which must have been declared as a {@linkplain Lint#views() view}.
+	 * @return whether the class extends the superclass.
+	 * @throws IllegalArgumentException if the superclass was not declared as a view.
+	 */
+	public boolean extendsSuperclass(@NotNull ClassMetadata type, @NotNull String superclass) {
+		var view = members.get(superclass);
+		if(view == null) throw new IllegalArgumentException("The subclasses of " + superclass + " were not declared as a view");
+		return view.contains(type.name());
+	}
+
+}
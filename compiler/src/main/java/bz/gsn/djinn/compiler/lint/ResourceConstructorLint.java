@@ -1,50 +1,84 @@
 package bz.gsn.djinn.compiler.lint;
 
-import io.github.classgraph.MethodParameterInfo;
-import io.github.classgraph.ScanResult;
+import bz.gsn.djinn.compiler.metadata.ClassMetadata;
+import bz.gsn.djinn.compiler.metadata.MethodMetadata;
 import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Unmodifiable;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
 /**
- * A lint to make sure that all Resource classes have a public no-args constructor accessible by Djinn.
+ * A lint to make sure that all Resource classes have a public constructor accessible by Djinn; i.e., a no-args constructor,
+ * or else exactly one public constructor whose parameters are all concrete {@code @Inject}-ed resources.
+ * This is the rule {@code AppResourceRegistry} applies when the application starts.
  */
 public class ResourceConstructorLint implements Lint {
 
 	@Override
-	public void lint(@NotNull ScanResult scanResult, @NotNull DiagnosticEmitter diagnosticEmitter, @Unmodifiable @NotNull List<String> btv) {
-		scanResult.getSubclasses("bz.gsn.djinn.core.resource.Resource")
-				.parallelStream()
-				.filter(
-						e -> e.getDeclaredConstructorInfo()
-								// check for existence of public constructor
-								.filter(mi -> mi.getParameterInfo().length == 0 && mi.isPublic())
-								.isEmpty() // if it's empty, it can't exist; hence we error out.
-				)
-				.forEach(e -> {
-					var str = new ArrayList<>(List.of("Resources are instantiated by Djinn, so they must have public no-args constructors", "Try creating public " + e.getSimpleName() + "() { ... }"));
-					e.getDeclaredConstructorInfo()
-							.filter(mi -> mi.getParameterInfo().length != 0 || !mi.isPublic())
-							.forEach(mi -> {
-								var x = mi.getModifiersStr();
-								str.add(
-										(x.isBlank() ? "" : x)
-												+ " "
-												+ e.getSimpleName()
-												+ "(" + String.join(", ", Arrays.stream(mi.getParameterInfo()).map(MethodParameterInfo::toString).toArray(String[]::new))
-												+ ") cannot be used for resource instantiation"
-								);
-							});
-					diagnosticEmitter.error(
-							1,
-							"Resources must have public no-args constructors",
-							"class " + e.getName(),
-							str.toArray(String[]::new)
-					);
-				});
+	public void visit(@NotNull ClassMetadata type, @NotNull LintContext context, @NotNull DiagnosticEmitter diagnosticEmitter) {
+		if(type.isAbstract() || !context.model().isResource(type)) return;
+		if(!type.isPublic() && !type.anonymous()) {
+			// even a public constructor cannot be called from outside the package
+			diagnosticEmitter.error(
+					1,
+					"Resources must have public no-args or @Inject constructors",
+					"class " + type.name(),
+					new String[] {
+							"Resources are instantiated by Djinn, so they must be public classes",
+							"Try making " + type.simpleName() + " public"
+					}
+			);
+			return;
+		}
+		var candidates = context.model().constructorCandidates(type);
+		if(candidates.size() > 1) {
+			// Djinn cannot choose between them, so the registry refuses to instantiate the resource
+			var str = new ArrayList<>(List.of(
+					"Resources without a public no-args constructor are instantiated through their only public constructor taking only @Inject-ed resources",
+					"Try making all but one of them non-public"
+			));
+			candidates.forEach(mi -> str.add(signature(type, mi) + " is one of " + candidates.size() + " candidates"));
+			diagnosticEmitter.error(
+					5,
+					"Resources must not have several public @Inject constructors",
+					"class " + type.name(),
+					str.toArray(String[]::new)
+			);
+			return;
+		}
+		// check that the only usable public constructor only takes concrete resources
+		if(candidates.size() == 1 && isInjectable(context, candidates.getFirst())) return;
+		// if there is none, we error out.
+		var str = new ArrayList<>(List.of(
+				"Resources are instantiated by Djinn, so they must have public no-args constructors, or public constructors taking only @Inject-ed resources",
+				"Try creating public " + type.simpleName() + "() { ... }"
+		));
+		type.constructors().forEach(mi -> str.add(signature(type, mi) + " cannot be used for resource instantiation"));
+		diagnosticEmitter.error(
+				1,
+				"Resources must have public no-args or @Inject constructors",
+				"class " + type.name(),
+				str.toArray(String[]::new)
+		);
+	}
+
+	private static String signature(@NotNull ClassMetadata type, @NotNull MethodMetadata constructor) {
+		var x = constructor.modifiers();
+		return (x.isBlank() ? "" : x)
+				+ " "
+				+ type.simpleName()
+				+ "(" + String.join(", ", IntStream.range(0, constructor.parameterCount()).mapToObj(constructor::parameterToString).toArray(String[]::new))
+				+ ")";
+	}
+
+	private static boolean isInjectable(@NotNull LintContext context, @NotNull MethodMetadata constructor) {
+		return IntStream.range(0, constructor.parameterCount()).allMatch(parameter -> {
+			var type = constructor.parameterClassName(parameter);
+			if(type == null) return false;
+			var classInfo = context.classpath().get(type);
+			return classInfo != null && !classInfo.isAbstract() && context.model().isResource(classInfo);
+		});
 	}
 
 }
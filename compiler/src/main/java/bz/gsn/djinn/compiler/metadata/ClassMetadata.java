@@ -0,0 +1,100 @@
+package bz.gsn.djinn.compiler.metadata;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+import org.objectweb.asm.Opcodes;
+
+import java.util.List;
+
+/**
+ * The metadata of a class, as read from its classfile; only runtime-visible annotations are recorded.
+ * @param name The binary name of the class.
+ * @param superclass The binary name of the superclass, or {@code null} for {@link Object} and interfaces without one.
+ * @param interfaces The binary names of the directly implemented interfaces.
+ * @param signature The generic signature of the class, or {@code null} if it neither declares type parameters nor extends
+ *                  or implements parameterized types.
+ * @param access The access flags of the class.
+ * @param anonymous Whether the class is an anonymous inner class.
+ * @param annotations The binary names of the annotations declared on the class.
+ * @param fields The declared fields.
+ * @param methods The declared methods, including constructors and static initializers.
+ */
+public record ClassMetadata(
+		@NotNull String name,
+		@Nullable String superclass,
+		@NotNull @Unmodifiable List<String> interfaces,
+		@Nullable String signature,
+		int access,
+		boolean anonymous,
+		@NotNull @Unmodifiable List<String> annotations,
+		@NotNull @Unmodifiable List<FieldMetadata> fields,
+		@NotNull @Unmodifiable List<MethodMetadata> methods
+) {
+
+	public ClassMetadata {
+		interfaces = List.copyOf(interfaces);
+		annotations = List.copyOf(annotations);
+		fields = List.copyOf(fields);
+		methods = List.copyOf(methods);
+	}
+
+	/**
+	 * Returns the simple name of the class; e.g., {@code Bar} for {@code foo.Outer$Bar}.
+	 * Anonymous classes keep their synthetic name, such as {@code Outer$1}.
+	 * @return the simple name.
+	 */
+	public @NotNull String simpleName() {
+		var simple = name.substring(name.lastIndexOf('.') + 1);
+		return anonymous ? simple : simple.substring(simple.lastIndexOf('$') + 1);
+	}
+
+	/**
+	 * Returns whether the class is declared {@code public}.
+	 * @return whether the class is public.
+	 */
+	public boolean isPublic() {
+		return (access & Opcodes.ACC_PUBLIC) != 0;
+	}
+
+	/**
+	 * Returns whether the class is declared {@code final}.
+	 * @return whether the class is final.
+	 */
+	public boolean isFinal() {
+		return (access & Opcodes.ACC_FINAL) != 0;
+	}
+
+	/**
+	 * Returns whether the class is abstract, which includes interfaces.
+	 * @return whether the class is abstract.
+	 */
+	public boolean isAbstract() {
+		return (access & Opcodes.ACC_ABSTRACT) != 0;
+	}
+
+	/**
+	 * Returns whether the class is an interface, which includes annotation interfaces.
+	 * @return whether the class is an interface.
+	 */
+	public boolean isInterface() {
+		return (access & Opcodes.ACC_INTERFACE) != 0;
+	}
+
+	/**
+	 * Returns the declared constructors.
+	 * @return the constructors.
+	 */
+	public @NotNull @Unmodifiable List<MethodMetadata> constructors() {
+		return methods.stream().filter(MethodMetadata::isConstructor).toList();
+	}
+
+	/**
+	 * Returns the declared methods, excluding constructors and static initializers.
+	 * @return the methods.
+	 */
+	public @NotNull @Unmodifiable List<MethodMetadata> declaredMethods() {
+		return methods.stream().filter(m -> !m.name().startsWith("<")).toList();
+	}
+
+}
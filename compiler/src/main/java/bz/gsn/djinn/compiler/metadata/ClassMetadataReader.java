@@ -0,0 +1,111 @@
+package bz.gsn.djinn.compiler.metadata;
+
+import org.jetbrains.annotations.NotNull;
+import org.objectweb.asm.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the {@link ClassMetadata} of a classfile with ASM, skipping method bodies.
+ */
+final class ClassMetadataReader extends ClassVisitor {
+
+	private String name;
+	private String superclass;
+	private List<String> interfaces;
+	private String signature;
+	private int access;
+	private boolean anonymous;
+	private final List<String> annotations = new ArrayList<>();
+	private final List<FieldMetadata> fields = new ArrayList<>();
+	private final List<MethodMetadata> methods = new ArrayList<>();
+
+	private ClassMetadataReader() {
+		super(Opcodes.ASM9);
+	}
+
+	/**
+	 * Reads the metadata of a classfile.
+	 * @param classfile The bytes of the classfile.
+	 * @return the metadata.
+	 */
+	static @NotNull ClassMetadata read(byte @NotNull [] classfile) {
+		var reader = new ClassMetadataReader();
+		new ClassReader(classfile).accept(reader, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+		return new ClassMetadata(reader.name, reader.superclass, reader.interfaces, reader.signature, reader.access, reader.anonymous, reader.annotations, reader.fields, reader.methods);
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+		this.name = Type.getObjectType(name).getClassName();
+		this.superclass = superName == null ? null : Type.getObjectType(superName).getClassName();
+		this.interfaces = new ArrayList<>();
+		for(var i : interfaces) this.interfaces.add(Type.getObjectType(i).getClassName());
+		this.signature = signature;
+		this.access = access;
+	}
+
+	@Override
+	public void visitInnerClass(String name, String outerName, String innerName, int access) {
+		if(innerName == null && Type.getObjectType(name).getClassName().equals(this.name)) anonymous = true;
+	}
+
+	@Override
+	public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+		if(visible) annotations.add(Type.getType(descriptor).getClassName());
+		return null;
+	}
+
+	@Override
+	public FieldVisitor visitField(int access, String name, String descriptor, String signature, Object value) {
+		var fieldAnnotations = new ArrayList<String>();
+		return new FieldVisitor(api) {
+			@Override
+			public AnnotationVisitor visitAnnotation(String annotation, boolean visible) {
+				if(visible) fieldAnnotations.add(Type.getType(annotation).getClassName());
+				return null;
+			}
+
+			@Override
+			public void visitEnd() {
+				fields.add(new FieldMetadata(name, descriptor, access, fieldAnnotations));
+			}
+		};
+	}
+
+	@Override
+	public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+		var methodAnnotations = new ArrayList<String>();
+		int count = Type.getArgumentCount(descriptor);
+		var parameterAnnotations = new ArrayList<List<String>>(count);
+		for(int i = 0; i < count; i++) parameterAnnotations.add(new ArrayList<>());
+		return new MethodVisitor(api) {
+			private int offset;
+
+			@Override
+			public AnnotationVisitor visitAnnotation(String annotation, boolean visible) {
+				if(visible) methodAnnotations.add(Type.getType(annotation).getClassName());
+				return null;
+			}
+
+			@Override
+			public void visitAnnotableParameterCount(int parameterCount, boolean visible) {
+				// synthetic leading parameters (e.g., of inner class constructors) are not annotable
+				if(visible) offset = count - parameterCount;
+			}
+
+			@Override
+			public AnnotationVisitor visitParameterAnnotation(int parameter, String annotation, boolean visible) {
+				if(visible && parameter + offset < count) parameterAnnotations.get(parameter + offset).add(Type.getType(annotation).getClassName());
+				return null;
+			}
+
+			@Override
+			public void visitEnd() {
+				methods.add(new MethodMetadata(name, descriptor, access, methodAnnotations, parameterAnnotations, exceptions == null ? List.of() : List.of(exceptions)));
+			}
+		};
+	}
+
+}
@@ -0,0 +1,248 @@
+package bz.gsn.djinn.compiler.metadata;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipFile;
+
+/**
+ * The {@link ClassMetadata} of every class on a classpath of directories and JARs.
+ * <p>
+ * If a class appears in several classpath elements, the first one wins, as it would when loading classes.
+ * Classes outside the classpath (e.g., of the JDK) are unknown, but may still be named as superclasses.
+ */
+public final class ClasspathMetadata {
+
+	private static final String INHERITED = "java.lang.annotation.Inherited";
+
+	private final List<Path> paths;
+	private final List<List<ClassMetadata>> elements;
+	private final Map<String, ClassMetadata> classes = new LinkedHashMap<>();
+	private final Map<String, List<ClassMetadata>> directSubclasses = new HashMap<>();
+
+	private ClasspathMetadata(List<Path> paths, List<List<ClassMetadata>> elements) {
+		this.paths = paths;
+		this.elements = elements;
+		for(var element : elements) {
+			for(var metadata : element) classes.putIfAbsent(metadata.name(), metadata);
+		}
+		for(var metadata : classes.values()) {
+			if(metadata.superclass() != null) directSubclasses.computeIfAbsent(metadata.superclass(), ignored -> new ArrayList<>()).add(metadata);
+		}
+	}
+
+	/**
+	 * Reads the metadata of every class on the given classpath.
+	 * @param cache The directory of the persistent metadata cache, or {@code null} to read every class.
+	 * @param classpath The directories and JARs of the classpath, in order.
+	 * @return the metadata.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static @NotNull ClasspathMetadata scan(@Nullable Path cache, @NotNull List<Path> classpath) throws IOException {
+		return scan(cache, classpath, null);
+	}
+
+	/**
+	 * Reads the metadata of every class on the given classpath, reusing the metadata of the JARs held in memory by the
+	 * given {@link SharedMetadata}, and adding that of the others to it. Directories are always read.
+	 * @param cache The directory of the persistent metadata cache, or {@code null} to read every class.
+	 * @param classpath The directories and JARs of the classpath, in order.
+	 * @param shared The metadata of JARs shared with other scans, or {@code null}.
+	 * @return the metadata.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public static @NotNull ClasspathMetadata scan(@Nullable Path cache, @NotNull List<Path> classpath, @Nullable SharedMetadata shared) throws IOException {
+		var metadataCache = cache == null ? null : new MetadataCache(cache);
+		SharedMetadata.Reader jars = metadataCache == null ? ClasspathMetadata::readJar : metadataCache::jar;
+		try {
+			return new ClasspathMetadata(List.copyOf(classpath), classpath.parallelStream().map(element -> {
+				try {
+					if(Files.isDirectory(element)) return metadataCache == null ? readDirectory(element) : metadataCache.directory(element);
+					if(Files.isRegularFile(element)) return shared == null ? jars.read(element) : shared.jar(element, jars);
+					return List.<ClassMetadata>of(); // like the JVM, we ignore missing classpath elements
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).toList());
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * Returns the metadata of this classpath after some files of one of its directories changed, reading only the
+	 * changed classfiles. Classes are located by their binary name, so the directory must be laid out by package.
+	 * @param directory The directory, as it was passed when scanning.
+	 * @param changed The paths of the created, modified and deleted files and directories, relative to the directory
+	 *                and separated by {@code /}. Other files are ignored.
+	 * @return the updated metadata.
+	 * @throws IllegalArgumentException if the directory is not on this classpath.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public @NotNull ClasspathMetadata update(@NotNull Path directory, @NotNull Collection<String> changed) throws IOException {
+		int index = paths.indexOf(directory);
+		if(index < 0) throw new IllegalArgumentException(directory + " is not on the classpath");
+		var files = new HashSet<String>();
+		var prefixes = new ArrayList<String>();
+		for(var name : changed) {
+			if(isClassfile(name)) files.add(name);
+			else prefixes.add(name + "/"); // a deleted directory takes its classes with it
+		}
+		var updated = new ArrayList<ClassMetadata>();
+		for(var metadata : elements.get(index)) {
+			var file = file(metadata);
+			if(!files.contains(file) && prefixes.stream().noneMatch(file::startsWith)) updated.add(metadata);
+		}
+		for(var file : files) {
+			var path = directory.resolve(file);
+			if(Files.isRegularFile(path)) updated.add(ClassMetadataReader.read(Files.readAllBytes(path)));
+		}
+		updated.sort(Comparator.comparing(ClasspathMetadata::file)); // as a scan would order them
+		var elements = new ArrayList<>(this.elements);
+		elements.set(index, List.copyOf(updated));
+		return new ClasspathMetadata(paths, elements);
+	}
+
+	private static String file(ClassMetadata metadata) {
+		return metadata.name().replace('.', '/') + ".class";
+	}
+
+	/**
+	 * Returns the metadata of every class, in classpath order.
+	 * @return the classes.
+	 */
+	public @NotNull @Unmodifiable Collection<ClassMetadata> classes() {
+		return Collections.unmodifiableCollection(classes.values());
+	}
+
+	/**
+	 * Returns the metadata of the classes read from one element of this classpath, leaving out those shadowed by an
+	 * earlier element.
+	 * @param element The directory or JAR, as it was passed when scanning.
+	 * @return the classes, in classpath order.
+	 * @throws IllegalArgumentException if the element is not on this classpath.
+	 */
+	public @NotNull @Unmodifiable List<ClassMetadata> classes(@NotNull Path element) {
+		int index = paths.indexOf(element);
+		if(index < 0) throw new IllegalArgumentException(element + " is not on the classpath");
+		return elements.get(index).stream().filter(e -> classes.get(e.name()) == e).toList();
+	}
+
+	/**
+	 * Returns the metadata of a class.
+	 * @param name The binary name of the class.
+	 * @return the metadata, or {@code null} if the class is not on the classpath.
+	 */
+	public @Nullable ClassMetadata get(@NotNull String name) {
+		return classes.get(name);
+	}
+
+	/**
+	 * Returns every class extending the given class, directly or indirectly.
+	 * @param superclass The binary name of the superclass.
+	 * @return the subclasses.
+	 */
+	public @NotNull @Unmodifiable List<ClassMetadata> subclasses(@NotNull String superclass) {
+		var subclasses = new ArrayList<ClassMetadata>();
+		var queue = new ArrayDeque<String>();
+		queue.add(superclass);
+		while(!queue.isEmpty()) {
+			for(var subclass : directSubclasses.getOrDefault(queue.poll(), List.of())) {
+				subclasses.add(subclass);
+				queue.add(subclass.name());
+			}
+		}
+		return Collections.unmodifiableList(subclasses);
+	}
+
+	/**
+	 * Returns whether a class extends the given class, directly or indirectly.
+	 * @param name The binary name of the class.
+	 * @param superclass The binary name of the superclass.
+	 * @return whether the class is known and extends the superclass.
+	 */
+	public boolean extendsSuperclass(@NotNull String name, @NotNull String superclass) {
+		for(var current = classes.get(name); current != null && current.superclass() != null; current = classes.get(current.superclass())) {
+			if(current.superclass().equals(superclass)) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the annotations of a class, including {@link java.lang.annotation.Inherited @Inherited} annotations
+	 * declared on its superclasses.
+	 * @param metadata The class.
+	 * @return the binary names of the annotations.
+	 */
+	public @NotNull @Unmodifiable List<String> annotations(@NotNull ClassMetadata metadata) {
+		var annotations = new LinkedHashSet<>(metadata.annotations());
+		for(var current = superclass(metadata); current != null; current = superclass(current)) {
+			for(var annotation : current.annotations()) {
+				var annotationClass = classes.get(annotation);
+				if(annotationClass != null && annotationClass.annotations().contains(INHERITED)) annotations.add(annotation);
+			}
+		}
+		return List.copyOf(annotations);
+	}
+
+	/**
+	 * Returns the number of classes.
+	 * @return the number of classes.
+	 */
+	public int size() {
+		return classes.size();
+	}
+
+	private @Nullable ClassMetadata superclass(ClassMetadata metadata) {
+		return metadata.superclass() == null ? null : classes.get(metadata.superclass());
+	}
+
+	static boolean isClassfile(@NotNull Path path) {
+		return Files.isRegularFile(path) && isClassfile(path.getFileName().toString());
+	}
+
+	static boolean isClassfile(@NotNull String name) {
+		return name.endsWith(".class") && !name.endsWith("module-info.class") && !name.endsWith("package-info.class");
+	}
+
+	/**
+	 * Reads the metadata of every class in a JAR. The classes of a multi-release JAR are those the running JVM would load,
+	 * i.e. the highest version of each under {@code META-INF/versions/} which is at most its feature version.
+	 */
+	static @NotNull List<ClassMetadata> readJar(@NotNull Path jar) throws IOException {
+		var classes = new ArrayList<ClassMetadata>();
+		try(var zip = new JarFile(jar.toFile(), false, ZipFile.OPEN_READ, Runtime.version())) {
+			for(var entry : (Iterable<JarEntry>) zip.versionedStream()::iterator) {
+				// versioned entries are named like their base entries, so only non-class resources remain under META-INF
+				if(entry.isDirectory() || entry.getName().startsWith("META-INF/") || !isClassfile(entry.getName())) continue;
+				try(var in = zip.getInputStream(entry)) {
+					classes.add(ClassMetadataReader.read(in.readAllBytes()));
+				}
+			}
+		}
+		return classes;
+	}
+
+	static @NotNull List<ClassMetadata> readDirectory(@NotNull Path root) throws IOException {
+		try(var paths = Files.walk(root)) {
+			return paths.filter(ClasspathMetadata::isClassfile).sorted().parallel().map(path -> {
+				try {
+					return ClassMetadataReader.read(Files.readAllBytes(path));
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}).toList();
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+}
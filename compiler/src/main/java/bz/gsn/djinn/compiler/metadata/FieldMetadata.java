@@ -0,0 +1,30 @@
+package bz.gsn.djinn.compiler.metadata;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+import org.objectweb.asm.Opcodes;
+
+import java.util.List;
+
+/**
+ * The metadata of a field.
+ * @param name The name of the field.
+ * @param descriptor The descriptor of the field, such as {@code Ljava/lang/String;}.
+ * @param access The access flags of the field.
+ * @param annotations The binary names of the runtime-visible annotations declared on the field.
+ */
+public record FieldMetadata(@NotNull String name, @NotNull String descriptor, int access, @NotNull @Unmodifiable List<String> annotations) {
+
+	public FieldMetadata {
+		annotations = List.copyOf(annotations);
+	}
+
+	/**
+	 * Returns whether the field is declared {@code public}.
+	 * @return whether the field is public.
+	 */
+	public boolean isPublic() {
+		return (access & Opcodes.ACC_PUBLIC) != 0;
+	}
+
+}
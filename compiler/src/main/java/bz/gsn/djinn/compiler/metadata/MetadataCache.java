@@ -0,0 +1,259 @@
+package bz.gsn.djinn.compiler.metadata;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * A persistent cache of {@link ClassMetadata}, stored in a directory.
+ * <ul>
+ *     <li>The metadata of a JAR is stored in {@code jars/<checksum>-<feature>.bin}, keyed by the SHA-256 checksum of the JAR
+ *     and the feature version of the JVM (which picks the classes of multi-release JARs), so any project depending on the
+ *     same JAR reuses it.</li>
+ *     <li>The metadata of a directory is stored in {@code dirs/<checksum of its path>.bin}, with the size, modification time
+ *     and SHA-256 checksum of every classfile; a classfile is only read again if its size or modification time changed,
+ *     and only parsed again if its content did.</li>
+ * </ul>
+ * Cache files are written to a temporary file and moved into place, so concurrent builds sharing a cache never see
+ * partial files. Unreadable cache files are ignored.
+ */
+final class MetadataCache {
+
+	private static final String HEADER = "djinn-metadata-cache 2";
+
+	private record CachedClass(String path, long size, long modified, byte[] checksum, ClassMetadata metadata) {}
+
+	private final Path directory;
+
+	MetadataCache(@NotNull Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Returns the metadata of every class in a JAR, reading it only if the cache does not hold it yet.
+	 * @param jar The JAR.
+	 * @return the metadata, in the order of the JAR entries.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@NotNull
+	List<ClassMetadata> jar(@NotNull Path jar) throws IOException {
+		var file = directory.resolve("jars").resolve(hex(checksum(jar)) + "-" + Runtime.version().feature() + ".bin");
+		var cached = readJar(file);
+		if(cached != null) return cached;
+		var classes = ClasspathMetadata.readJar(jar);
+		write(file, out -> {
+			out.writeInt(classes.size());
+			for(var metadata : classes) writeClass(out, metadata);
+		});
+		return classes;
+	}
+
+	/**
+	 * Returns the metadata of every class in a directory, only reading and parsing changed classfiles.
+	 * @param root The directory.
+	 * @return the metadata.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	@NotNull
+	List<ClassMetadata> directory(@NotNull Path root) throws IOException {
+		var absolute = root.toAbsolutePath().normalize();
+		var file = directory.resolve("dirs").resolve(hex(digest(absolute.toString().getBytes(StandardCharsets.UTF_8))) + ".bin");
+		var previous = new HashMap<String, CachedClass>();
+		for(var cached : Objects.requireNonNullElse(readDirectory(file), List.<CachedClass>of())) previous.put(cached.path(), cached);
+		var current = Collections.synchronizedList(new ArrayList<CachedClass>());
+		try(var paths = Files.walk(absolute)) {
+			paths.filter(ClasspathMetadata::isClassfile).parallel().forEach(path -> {
+				try {
+					var name = absolute.relativize(path).toString().replace('\\', '/');
+					long size = Files.size(path);
+					long modified = Files.getLastModifiedTime(path).toMillis();
+					var old = previous.get(name);
+					if(old != null && old.size() == size && old.modified() == modified) {
+						current.add(old);
+						return;
+					}
+					var bytes = Files.readAllBytes(path);
+					var checksum = digest(bytes);
+					var metadata = old != null && Arrays.equals(old.checksum(), checksum) ? old.metadata() : ClassMetadataReader.read(bytes);
+					current.add(new CachedClass(name, size, modified, checksum, metadata));
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+		current.sort(Comparator.comparing(CachedClass::path));
+		write(file, out -> {
+			out.writeInt(current.size());
+			for(var cached : current) {
+				out.writeUTF(cached.path());
+				out.writeLong(cached.size());
+				out.writeLong(cached.modified());
+				out.writeShort(cached.checksum().length);
+				out.write(cached.checksum());
+				writeClass(out, cached.metadata());
+			}
+		});
+		return current.stream().map(CachedClass::metadata).toList();
+	}
+
+	private @Nullable List<ClassMetadata> readJar(Path file) {
+		return read(file, in -> {
+			int count = in.readInt();
+			var classes = new ArrayList<ClassMetadata>(count);
+			for(int i = 0; i < count; i++) classes.add(readClass(in));
+			return classes;
+		});
+	}
+
+	private @Nullable List<CachedClass> readDirectory(Path file) {
+		return read(file, in -> {
+			int count = in.readInt();
+			var classes = new ArrayList<CachedClass>(count);
+			for(int i = 0; i < count; i++) {
+				var path = in.readUTF();
+				long size = in.readLong();
+				long modified = in.readLong();
+				var checksum = new byte[in.readUnsignedShort()];
+				in.readFully(checksum);
+				classes.add(new CachedClass(path, size, modified, checksum, readClass(in)));
+			}
+			return classes;
+		});
+	}
+
+	@FunctionalInterface
+	private interface Reader<T> {
+		T read(DataInputStream in) throws IOException;
+	}
+
+	@FunctionalInterface
+	private interface Writer {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	private static <T> @Nullable T read(Path file, Reader<T> reader) {
+		if(!Files.isRegularFile(file)) return null;
+		try(var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			if(!HEADER.equals(in.readUTF())) return null;
+			return reader.read(in);
+		} catch(IOException e) {
+			return null; // a corrupt or outdated cache is simply rebuilt
+		}
+	}
+
+	private static void write(Path file, Writer writer) throws IOException {
+		Files.createDirectories(file.getParent());
+		var temporary = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+		try {
+			try(var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				out.writeUTF(HEADER);
+				writer.write(out);
+			}
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private static void writeClass(DataOutputStream out, ClassMetadata metadata) throws IOException {
+		out.writeUTF(metadata.name());
+		out.writeUTF(Objects.requireNonNullElse(metadata.superclass(), ""));
+		writeStrings(out, metadata.interfaces());
+		out.writeUTF(Objects.requireNonNullElse(metadata.signature(), ""));
+		out.writeInt(metadata.access());
+		out.writeBoolean(metadata.anonymous());
+		writeStrings(out, metadata.annotations());
+		out.writeInt(metadata.fields().size());
+		for(var field : metadata.fields()) {
+			out.writeUTF(field.name());
+			out.writeUTF(field.descriptor());
+			out.writeInt(field.access());
+			writeStrings(out, field.annotations());
+		}
+		out.writeInt(metadata.methods().size());
+		for(var method : metadata.methods()) {
+			out.writeUTF(method.name());
+			out.writeUTF(method.descriptor());
+			out.writeInt(method.access());
+			writeStrings(out, method.annotations());
+			out.writeInt(method.parameterAnnotations().size());
+			for(var parameter : method.parameterAnnotations()) writeStrings(out, parameter);
+			writeStrings(out, method.exceptions());
+		}
+	}
+
+	private static ClassMetadata readClass(DataInputStream in) throws IOException {
+		var name = in.readUTF();
+		var superclass = in.readUTF();
+		var interfaces = readStrings(in);
+		var signature = in.readUTF();
+		int access = in.readInt();
+		boolean anonymous = in.readBoolean();
+		var annotations = readStrings(in);
+		int fieldCount = in.readInt();
+		var fields = new ArrayList<FieldMetadata>(fieldCount);
+		for(int i = 0; i < fieldCount; i++) fields.add(new FieldMetadata(in.readUTF(), in.readUTF(), in.readInt(), readStrings(in)));
+		int methodCount = in.readInt();
+		var methods = new ArrayList<MethodMetadata>(methodCount);
+		for(int i = 0; i < methodCount; i++) {
+			var methodName = in.readUTF();
+			var descriptor = in.readUTF();
+			int methodAccess = in.readInt();
+			var methodAnnotations = readStrings(in);
+			int parameterCount = in.readInt();
+			var parameterAnnotations = new ArrayList<List<String>>(parameterCount);
+			for(int j = 0; j < parameterCount; j++) parameterAnnotations.add(readStrings(in));
+			methods.add(new MethodMetadata(methodName, descriptor, methodAccess, methodAnnotations, parameterAnnotations, readStrings(in)));
+		}
+		return new ClassMetadata(name, superclass.isEmpty() ? null : superclass, interfaces, signature.isEmpty() ? null : signature, access, anonymous, annotations, fields, methods);
+	}
+
+	private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+		out.writeShort(strings.size());
+		for(var string : strings) out.writeUTF(string);
+	}
+
+	private static List<String> readStrings(DataInputStream in) throws IOException {
+		int count = in.readUnsignedShort();
+		var strings = new ArrayList<String>(count);
+		for(int i = 0; i < count; i++) strings.add(in.readUTF());
+		return strings;
+	}
+
+	private static byte[] checksum(Path file) throws IOException {
+		var digest = sha256();
+		try(var in = Files.newInputStream(file)) {
+			var buffer = new byte[64 * 1024];
+			int read;
+			while((read = in.read(buffer)) != -1) digest.update(buffer, 0, read);
+		}
+		return digest.digest();
+	}
+
+	private static byte[] digest(byte[] bytes) {
+		return sha256().digest(bytes);
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is always available", e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		return HexFormat.of().formatHex(bytes);
+	}
+
+}
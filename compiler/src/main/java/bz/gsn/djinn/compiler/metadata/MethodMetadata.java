@@ -0,0 +1,111 @@
+package bz.gsn.djinn.compiler.metadata;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+/**
+ * The metadata of a method or constructor.
+ * @param name The name of the method; {@code <init>} for constructors.
+ * @param descriptor The descriptor of the method, such as {@code (Ljava/lang/String;)V}.
+ * @param access The access flags of the method.
+ * @param annotations The binary names of the runtime-visible annotations declared on the method.
+ * @param parameterAnnotations The binary names of the runtime-visible annotations declared on each parameter;
+ *                             there is one list per parameter in the descriptor.
+ * @param exceptions The internal names of the declared exceptions.
+ */
+public record MethodMetadata(
+		@NotNull String name,
+		@NotNull String descriptor,
+		int access,
+		@NotNull @Unmodifiable List<String> annotations,
+		@NotNull @Unmodifiable List<List<String>> parameterAnnotations,
+		@NotNull @Unmodifiable List<String> exceptions
+) {
+
+	public MethodMetadata {
+		annotations = List.copyOf(annotations);
+		parameterAnnotations = parameterAnnotations.stream().map(List::copyOf).toList();
+		exceptions = List.copyOf(exceptions);
+	}
+
+	/**
+	 * Returns whether this is a constructor.
+	 * @return whether this is a constructor.
+	 */
+	public boolean isConstructor() {
+		return name.equals("<init>");
+	}
+
+	/**
+	 * Returns whether the method is declared {@code public}.
+	 * @return whether the method is public.
+	 */
+	public boolean isPublic() {
+		return (access & Opcodes.ACC_PUBLIC) != 0;
+	}
+
+	/**
+	 * Returns whether the method is {@code static}, which includes static initializers.
+	 * @return whether the method is static.
+	 */
+	public boolean isStatic() {
+		return (access & Opcodes.ACC_STATIC) != 0;
+	}
+
+	/**
+	 * Returns the number of parameters.
+	 * @return the number of parameters.
+	 */
+	public int parameterCount() {
+		return parameterAnnotations.size();
+	}
+
+	/**
+	 * Returns the binary name of the type of a parameter, if it is a class or interface type.
+	 * @param parameter The index of the parameter.
+	 * @return the binary name, or {@code null} if the parameter is a primitive or array.
+	 */
+	public @Nullable String parameterClassName(int parameter) {
+		var type = Type.getArgumentTypes(descriptor)[parameter];
+		return type.getSort() == Type.OBJECT ? type.getClassName() : null;
+	}
+
+	/**
+	 * Returns whether a parameter is annotated with the given annotation.
+	 * @param parameter The index of the parameter.
+	 * @param annotation The binary name of the annotation.
+	 * @return whether the parameter is annotated.
+	 */
+	public boolean parameterHasAnnotation(int parameter, @NotNull String annotation) {
+		return parameterAnnotations.get(parameter).contains(annotation);
+	}
+
+	/**
+	 * Returns the source-like modifiers of the method; e.g., {@code public static}.
+	 * @return the modifiers, which may be empty.
+	 */
+	public @NotNull String modifiers() {
+		return Modifier.toString(access & Modifier.methodModifiers());
+	}
+
+	/**
+	 * Returns a source-like representation of a parameter; e.g., {@code @Inject Pool}.
+	 * @param parameter The index of the parameter.
+	 * @return the representation.
+	 */
+	public @NotNull String parameterToString(int parameter) {
+		var builder = new StringBuilder();
+		for(var annotation : parameterAnnotations.get(parameter)) {
+			builder.append('@').append(annotation.substring(annotation.lastIndexOf('.') + 1)).append(' ');
+		}
+		var type = Type.getArgumentTypes(descriptor)[parameter].getClassName();
+		return builder.append(type.substring(type.lastIndexOf('.') + 1)).toString();
+	}
+
+}
@@ -0,0 +1,54 @@
+package bz.gsn.djinn.compiler.metadata;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The metadata of JARs, kept in memory and shared by every {@linkplain ClasspathMetadata#scan(Path, List, SharedMetadata) scan}
+ * given it; e.g., by the modules of a Maven reactor, which mostly depend on the same JARs.
+ * <p>
+ * A JAR is identified by its path, size and modification time, so a JAR rebuilt in the meantime is read again.
+ * Instances are thread-safe.
+ */
+public final class SharedMetadata {
+
+	private record Key(Path jar, long size, long modified) {}
+
+	@FunctionalInterface
+	interface Reader {
+		List<ClassMetadata> read(Path jar) throws IOException;
+	}
+
+	private final Map<Key, List<ClassMetadata>> jars = new ConcurrentHashMap<>();
+
+	/**
+	 * Returns the number of JARs held.
+	 * @return the number of JARs.
+	 */
+	public int size() {
+		return jars.size();
+	}
+
+	/**
+	 * Returns the metadata of a JAR, reading it with the given reader if it is not held yet.
+	 * Concurrent scans may both read a JAR, in which case either result is kept.
+	 */
+	@NotNull @Unmodifiable
+	List<ClassMetadata> jar(@NotNull Path jar, @NotNull Reader reader) throws IOException {
+		var absolute = jar.toAbsolutePath().normalize();
+		var key = new Key(absolute, Files.size(absolute), Files.getLastModifiedTime(absolute).toMillis());
+		var held = jars.get(key);
+		if(held != null) return held;
+		var read = List.copyOf(reader.read(jar));
+		var previous = jars.putIfAbsent(key, read);
+		return previous == null ? read : previous;
+	}
+
+}
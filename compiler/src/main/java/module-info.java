@@ -1,9 +1,18 @@
 module djinn.compiler {
 	requires org.objectweb.asm;
 	requires org.objectweb.asm.commons;
-	requires io.github.classgraph;
 	requires djinn.hook;
+	requires djinn.core;
 	requires static org.jetbrains.annotations;
 	exports bz.gsn.djinn.compiler;
 	exports bz.gsn.djinn.compiler.lint;
+	exports bz.gsn.djinn.compiler.metadata;
+	uses bz.gsn.djinn.compiler.lint.Lint;
+	provides bz.gsn.djinn.compiler.lint.Lint with
+			bz.gsn.djinn.compiler.lint.AFResourceLint, // W0001
+			bz.gsn.djinn.compiler.lint.ResourceConstructorLint, // E0001, E0005
+			bz.gsn.djinn.compiler.lint.BuildTimeVariableLint, // E0002, E0003, E0004
+			bz.gsn.djinn.compiler.lint.FinalModuleLint, // W0002
+			bz.gsn.djinn.compiler.lint.AnonymousResourceLint, // W0003
+			bz.gsn.djinn.compiler.lint.BootstrappedModuleLint; // E0006
 }
\ No newline at end of file
@@ -0,0 +1,99 @@
+package bz.gsn.tests.djinn.compiler;
+
+import bz.gsn.djinn.compiler.DjinnCompiler;
+import bz.gsn.djinn.core.resource.Resource;
+import bz.gsn.djinn.core.resource.ResourceInstantiationException;
+import bz.gsn.djinn.core.resource.ResourceRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+public class BootstrapperTest {
+
+	private static final String MODULE = """
+			package app;
+			public final class AppModule extends bz.gsn.djinn.core.module.DjinnModule {
+				public static volatile int instances;
+				public static volatile bz.gsn.djinn.core.resource.ResourceRegistry registry;
+				@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)
+				public @interface Unused {}
+				public AppModule() {
+					instances++;
+					register(new bz.gsn.djinn.core.module.AnnotationDetector<Unused>() {
+						@Override
+						public void freeze(bz.gsn.djinn.core.resource.ResourceRegistry resourceRegistry) {
+							registry = resourceRegistry;
+						}
+					});
+				}
+			}
+			""";
+
+	/**
+	 * Compiles the given application into a bootstrapped JAR, and runs its bootstrapper.
+	 * @return the class loader of the JAR, which must be closed.
+	 */
+	private static URLClassLoader boot(Path directory, Map<String, String> sources) throws Throwable {
+		var classes = Sources.compile(directory.resolve("classes"), sources);
+		var jar = directory.resolve("app.jar");
+		DjinnCompiler.of(classes, Sources.core()).createJAR(jar);
+		var loader = new URLClassLoader(new URL[] {jar.toUri().toURL()}, BootstrapperTest.class.getClassLoader());
+		try {
+			loader.loadClass("bz.gsn.djinn.bootstrap.Bootstrapper").getMethod("main", String[].class).invoke(null, (Object) new String[0]);
+		} catch(InvocationTargetException e) {
+			loader.close();
+			throw e.getCause();
+		}
+		return loader;
+	}
+
+	@Test
+	public void bootsChainedResources(@TempDir Path directory) throws Throwable {
+		// resources each depending on the previous one, all in one class, so they also exercise the split helper methods
+		int count = 3000;
+		var chain = "package app;\nimport bz.gsn.djinn.core.resource.*;\npublic final class Chain {\n"
+				+ "public static final class R0 extends Resource {}\n"
+				+ IntStream.range(1, count)
+						.mapToObj(i -> "public static final class R" + i + " extends Resource { public final R" + (i - 1) + " previous; public R" + i + "(@Inject R" + (i - 1) + " previous) { this.previous = previous; } }\n")
+						.collect(Collectors.joining())
+				+ "}\n";
+		try(var loader = boot(directory, Map.of("app.Chain", chain, "app.AppModule", MODULE))) {
+			Assertions.assertEquals(1, loader.loadClass("app.AppModule").getField("instances").get(null));
+			var registry = (ResourceRegistry) loader.loadClass("app.AppModule").getField("registry").get(null);
+			Object previous = null;
+			for(int i = 0; i < count; i++) {
+				var type = loader.loadClass("app.Chain$R" + i).asSubclass(Resource.class);
+				var resource = registry.getResourceOrNull(type);
+				Assertions.assertNotNull(resource, type.getName());
+				if(i > 0) Assertions.assertSame(previous, type.getField("previous").get(resource), type.getName());
+				previous = resource;
+			}
+		}
+	}
+
+	@Test
+	public void reportsInaccessibleResources(@TempDir Path directory) {
+		var sources = Map.of(
+				"app.AppModule", MODULE,
+				"app.Visible", "package app; public final class Visible extends bz.gsn.djinn.core.resource.Resource {}",
+				"app.Hidden", """
+						package app;
+						final class Hidden extends bz.gsn.djinn.core.resource.Resource {
+							public Hidden() {}
+						}
+						"""
+		);
+		// the bootstrapper links, and the registry reports the resource, rather than failing with an IllegalAccessError
+		var exception = Assertions.assertThrows(ResourceInstantiationException.class, () -> boot(directory, sources).close());
+		Assertions.assertEquals("Resource app.Hidden must be public", exception.getMessage());
+	}
+
+}
@@ -0,0 +1,98 @@
+package bz.gsn.tests.djinn.compiler;
+
+import bz.gsn.djinn.compiler.DjinnCompiler;
+import bz.gsn.djinn.core.app.AnnotationIndex;
+import bz.gsn.djinn.core.app.AppResourceRegistry;
+import bz.gsn.djinn.core.resource.Resource;
+import bz.gsn.djinn.core.resource.ResourceRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+public class InvokerTest {
+
+	private static final Map<String, String> APPLICATION = Map.of(
+			"app.Route", """
+					package app;
+					import java.lang.annotation.*;
+					@Retention(RetentionPolicy.RUNTIME)
+					@Target(ElementType.METHOD)
+					public @interface Route {
+						String value();
+					}
+					""",
+			"app.Greeter", """
+					package app;
+					public final class Greeter extends bz.gsn.djinn.core.resource.Resource {}
+					""",
+			"app.Handlers", """
+					package app;
+					import bz.gsn.djinn.core.resource.Inject;
+					public class Handlers {
+						@Route("greeter")
+						public Greeter greeter(@Inject Greeter greeter) {
+							return greeter;
+						}
+						@Route("add")
+						public static long add(long a, @Inject Greeter greeter, int b) {
+							return greeter == null ? -1 : a + b;
+						}
+						@Route("plain")
+						public String plain(String name) {
+							return name;
+						}
+					}
+					"""
+	);
+
+	@Test
+	public void invokersBindResources(@TempDir Path directory) throws Throwable {
+		var classes = Sources.compile(directory.resolve("classes"), APPLICATION);
+		var compiler = DjinnCompiler.of(classes, Sources.core());
+		compiler.setInvokers(true);
+		var jar = directory.resolve("app.jar");
+		compiler.createJAR(jar);
+
+		var index = new AnnotationIndex();
+		index.read(new ByteArrayInputStream(compiler.generateAnnotationIndex()));
+		var greeter = index.invoker(AnnotationIndex.method("app.Handlers", "greeter", "(Lapp/Greeter;)Lapp/Greeter;")).orElseThrow();
+		var add = index.invoker(AnnotationIndex.method("app.Handlers", "add", "(JLapp/Greeter;I)J")).orElseThrow();
+		// methods without injected parameters are called through a plain handle
+		Assertions.assertTrue(index.invoker(AnnotationIndex.method("app.Handlers", "plain", "(Ljava/lang/String;)Ljava/lang/String;")).isEmpty());
+
+		try(var loader = new URLClassLoader(new java.net.URL[] {jar.toUri().toURL()}, InvokerTest.class.getClassLoader())) {
+			var greeterClass = loader.loadClass("app.Greeter").asSubclass(Resource.class);
+			var handlers = loader.loadClass("app.Handlers");
+			var registry = new AppResourceRegistry(List.of(greeterClass));
+			var other = new AppResourceRegistry(List.of(greeterClass));
+			var greeterInvoker = loader.loadClass(greeter);
+			var receiver = handlers.getConstructor().newInstance();
+			// the receiver comes first, and the injected resource is dropped from the parameters
+			var bound = greeterInvoker.getMethod("invoke", handlers).invoke(greeterInvoker.getConstructor(ResourceRegistry.class).newInstance(registry), receiver);
+			Assertions.assertSame(registry.require(greeterClass), bound);
+			// every invoker binds the resources of the registry it was constructed with
+			var otherBound = greeterInvoker.getMethod("invoke", handlers).invoke(greeterInvoker.getConstructor(ResourceRegistry.class).newInstance(other), receiver);
+			Assertions.assertSame(other.require(greeterClass), otherBound);
+			Assertions.assertNotSame(bound, otherBound);
+			// wide parameters around an injected one keep their slots
+			var addInvoker = loader.loadClass(add);
+			Assertions.assertEquals(5L, addInvoker.getMethod("invoke", long.class, int.class).invoke(addInvoker.getConstructor(ResourceRegistry.class).newInstance(registry), 2L, 3));
+		}
+	}
+
+	@Test
+	public void invokersAreOptIn(@TempDir Path directory) throws IOException {
+		var classes = Sources.compile(directory.resolve("classes"), APPLICATION);
+		var index = new AnnotationIndex();
+		index.read(new ByteArrayInputStream(DjinnCompiler.of(classes, Sources.core()).generateAnnotationIndex()));
+		Assertions.assertTrue(index.invoker(AnnotationIndex.method("app.Handlers", "greeter", "(Lapp/Greeter;)Lapp/Greeter;")).isEmpty());
+	}
+
+}
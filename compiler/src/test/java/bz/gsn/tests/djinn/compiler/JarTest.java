@@ -0,0 +1,150 @@
+package bz.gsn.tests.djinn.compiler;
+
+import bz.gsn.djinn.compiler.DjinnCompiler;
+import bz.gsn.djinn.core.app.AnnotationIndex;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+public class JarTest {
+
+	private static final String BOOTSTRAPPER = "bz/gsn/djinn/bootstrap/Bootstrapper.class";
+	private static final String INVOKER = "app/Handlers$$DjinnInvoker$0.class";
+
+	/**
+	 * Compiles an application with an invoker, along with stale generated classes and files,
+	 * as an older version of the compiler would have left among its classes.
+	 */
+	private static Path application(Path directory) throws IOException {
+		var classes = Sources.compile(directory.resolve("classes"), Map.of(
+				"app.Route", """
+						package app;
+						import java.lang.annotation.*;
+						@Retention(RetentionPolicy.RUNTIME)
+						public @interface Route {}
+						""",
+				"app.Greeter", "package app; public final class Greeter extends bz.gsn.djinn.core.resource.Resource {}",
+				"app.Handlers", """
+						package app;
+						public class Handlers {
+							@Route
+							public void greet(@bz.gsn.djinn.core.resource.Inject Greeter greeter) {}
+						}
+						""",
+				"bz.gsn.djinn.bootstrap.Bootstrapper", "package bz.gsn.djinn.bootstrap; public final class Bootstrapper {}",
+				"app.Handlers$$DjinnInvoker$0", "package app; public final class Handlers$$DjinnInvoker$0 {}"
+		));
+		for(var stale : List.of(AnnotationIndex.LOCATION, JarFile.MANIFEST_NAME)) {
+			Files.createDirectories(classes.resolve(stale).getParent());
+			Files.writeString(classes.resolve(stale), "stale");
+		}
+		return classes;
+	}
+
+	@Test
+	public void generatedEntriesReplaceStaleOnes(@TempDir Path directory) throws IOException {
+		var classes = application(directory);
+		var compiler = DjinnCompiler.of(classes, Sources.core());
+		compiler.setInvokers(true);
+		var jar = directory.resolve("app.jar");
+		// duplicate entries would fail the build
+		compiler.createJAR(jar);
+		try(var zip = new ZipFile(jar.toFile())) {
+			var names = zip.stream().map(ZipEntry::getName).toList();
+			Assertions.assertEquals(names.size(), Set.copyOf(names).size(), names.toString());
+			// the manifest comes first, so that JarInputStream finds it, and generated entries come after the classes
+			Assertions.assertEquals(JarFile.MANIFEST_NAME, names.getFirst());
+			int bootstrapper = names.indexOf(BOOTSTRAPPER);
+			Assertions.assertTrue(bootstrapper > names.indexOf("app/Handlers.class"));
+			Assertions.assertEquals(bootstrapper + 1, names.indexOf(AnnotationIndex.LOCATION));
+			Assertions.assertEquals(List.of(INVOKER), names.subList(bootstrapper + 2, names.size()));
+			for(var name : List.of(BOOTSTRAPPER, INVOKER, AnnotationIndex.LOCATION, JarFile.MANIFEST_NAME)) {
+				try(var in = zip.getInputStream(zip.getEntry(name))) {
+					Assertions.assertFalse(Arrays.equals(Files.readAllBytes(classes.resolve(name)), in.readAllBytes()), name);
+				}
+			}
+		}
+		try(var in = new JarInputStream(Files.newInputStream(jar))) {
+			Assertions.assertNotNull(in.getManifest());
+		}
+
+		// updating skips them too
+		var generated = new HashMap<String, byte[]>();
+		try(var zip = new ZipFile(jar.toFile())) {
+			for(var name : List.of(BOOTSTRAPPER, INVOKER)) {
+				try(var in = zip.getInputStream(zip.getEntry(name))) {
+					generated.put(name, in.readAllBytes());
+				}
+			}
+		}
+		compiler.updateJAR(jar, List.of(BOOTSTRAPPER, INVOKER));
+		try(var zip = new ZipFile(jar.toFile())) {
+			for(var name : List.of(BOOTSTRAPPER, INVOKER)) {
+				try(var in = zip.getInputStream(zip.getEntry(name))) {
+					Assertions.assertArrayEquals(generated.get(name), in.readAllBytes(), name);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void entriesOutnumberingTheWindow(@TempDir Path directory) throws IOException {
+		var classes = Sources.compile(directory.resolve("classes"), Map.of("app.Empty", "package app; public class Empty {}"));
+		// more entries than are compressed ahead of the writer, mixing compressible, incompressible and empty ones
+		int count = Runtime.getRuntime().availableProcessors() * 4 * 3 + 7;
+		var random = new Random(42);
+		var expected = new TreeMap<String, byte[]>();
+		for(int i = 0; i < count; i++) {
+			var data = switch(i % 3) {
+				case 0 -> ("entry " + i + "\n").repeat(random.nextInt(1, 2000)).getBytes(StandardCharsets.UTF_8);
+				case 1 -> {
+					var bytes = new byte[random.nextInt(1, 50_000)];
+					random.nextBytes(bytes);
+					yield bytes;
+				}
+				default -> new byte[0];
+			};
+			var name = "data/" + (i % 5) + "/" + i + ".bin";
+			Files.createDirectories(classes.resolve(name).getParent());
+			Files.write(classes.resolve(name), data);
+			expected.put(name, data);
+		}
+		for(var stored : List.of(false, true)) {
+			var compiler = DjinnCompiler.of(classes, Sources.core());
+			compiler.setStored(stored);
+			var jar = directory.resolve("app-" + stored + ".jar");
+			compiler.createJAR(jar);
+			// the central directory
+			try(var zip = new ZipFile(jar.toFile())) {
+				for(var entry : expected.entrySet()) {
+					var zipEntry = zip.getEntry(entry.getKey());
+					try(var in = zip.getInputStream(zipEntry)) {
+						Assertions.assertArrayEquals(entry.getValue(), in.readAllBytes(), entry.getKey());
+					}
+					if(stored) Assertions.assertEquals(ZipEntry.STORED, zipEntry.getMethod(), entry.getKey());
+				}
+				Assertions.assertTrue(zip.stream().anyMatch(e -> e.getMethod() == ZipEntry.DEFLATED) != stored);
+			}
+			// and the local headers
+			var read = new TreeMap<String, byte[]>();
+			try(var in = new JarInputStream(Files.newInputStream(jar))) {
+				for(var entry = in.getNextJarEntry(); entry != null; entry = in.getNextJarEntry()) {
+					if(entry.getName().startsWith("data/") && !entry.isDirectory()) read.put(entry.getName(), in.readAllBytes());
+				}
+			}
+			Assertions.assertEquals(expected.keySet(), read.keySet());
+			for(var entry : expected.entrySet()) Assertions.assertArrayEquals(entry.getValue(), read.get(entry.getKey()), entry.getKey());
+		}
+	}
+
+}
@@ -0,0 +1,146 @@
+package bz.gsn.tests.djinn.compiler;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Parses the JSON the compiler generates into maps, lists, strings, numbers, booleans and {@code null}.
+ * Any malformed input fails the test.
+ */
+final class Json {
+
+	private final String text;
+	private int position;
+
+	private Json(String text) {
+		this.text = text;
+	}
+
+	/**
+	 * Parses a JSON document.
+	 * @param text The document.
+	 * @return the value.
+	 * @throws IllegalArgumentException if the document is not valid JSON.
+	 */
+	static Object parse(@NotNull String text) {
+		var json = new Json(text);
+		var value = json.value();
+		json.whitespace();
+		if(json.position != text.length()) throw json.error("trailing characters");
+		return value;
+	}
+
+	private Object value() {
+		whitespace();
+		if(position == text.length()) throw error("unexpected end");
+		return switch(text.charAt(position)) {
+			case '{' -> object();
+			case '[' -> array();
+			case '"' -> string();
+			case 't' -> literal("true", true);
+			case 'f' -> literal("false", false);
+			case 'n' -> literal("null", null);
+			default -> number();
+		};
+	}
+
+	private Map<String, Object> object() {
+		var object = new LinkedHashMap<String, Object>();
+		expect('{');
+		whitespace();
+		if(peek('}')) return object;
+		do {
+			whitespace();
+			var key = string();
+			whitespace();
+			expect(':');
+			if(object.put(key, value()) != null) throw error("duplicate key " + key);
+			whitespace();
+		} while(peek(','));
+		expect('}');
+		return object;
+	}
+
+	private List<Object> array() {
+		var array = new ArrayList<>();
+		expect('[');
+		whitespace();
+		if(peek(']')) return array;
+		do {
+			array.add(value());
+			whitespace();
+		} while(peek(','));
+		expect(']');
+		return array;
+	}
+
+	private String string() {
+		expect('"');
+		var string = new StringBuilder();
+		while(true) {
+			if(position == text.length()) throw error("unterminated string");
+			char c = text.charAt(position++);
+			if(c == '"') return string.toString();
+			if(c < 0x20) throw error("unescaped control character");
+			if(c != '\\') {
+				string.append(c);
+				continue;
+			}
+			if(position == text.length()) throw error("unterminated escape");
+			switch(text.charAt(position++)) {
+				case '"' -> string.append('"');
+				case '\\' -> string.append('\\');
+				case '/' -> string.append('/');
+				case 'b' -> string.append('\b');
+				case 'f' -> string.append('\f');
+				case 'n' -> string.append('\n');
+				case 'r' -> string.append('\r');
+				case 't' -> string.append('\t');
+				case 'u' -> {
+					if(position + 4 > text.length()) throw error("truncated escape");
+					string.append((char) Integer.parseInt(text, position, position + 4, 16));
+					position += 4;
+				}
+				default -> throw error("unknown escape");
+			}
+		}
+	}
+
+	private Object literal(String literal, Object value) {
+		if(!text.startsWith(literal, position)) throw error("unknown literal");
+		position += literal.length();
+		return value;
+	}
+
+	private Double number() {
+		int start = position;
+		while(position < text.length() && "+-0123456789.eE".indexOf(text.charAt(position)) >= 0) position++;
+		if(start == position) throw error("unexpected character");
+		return Double.parseDouble(text.substring(start, position));
+	}
+
+	private void whitespace() {
+		while(position < text.length() && Character.isWhitespace(text.charAt(position))) position++;
+	}
+
+	private boolean peek(char c) {
+		if(position < text.length() && text.charAt(position) == c) {
+			position++;
+			return true;
+		}
+		return false;
+	}
+
+	private void expect(char c) {
+		if(!peek(c)) throw error("expected '" + c + "'");
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException(message + " at " + position);
+	}
+
+}
@@ -0,0 +1,148 @@
+package bz.gsn.tests.djinn.compiler;
+
+import bz.gsn.djinn.compiler.DjinnCompiler;
+import bz.gsn.djinn.compiler.lint.Diagnostic;
+import bz.gsn.djinn.core.app.AppResourceRegistry;
+import bz.gsn.djinn.core.resource.Resource;
+import bz.gsn.djinn.core.resource.ResourceInstantiationException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class LintTest {
+
+	@Test
+	public void resourceConstructorsFollowTheRegistry(@TempDir Path directory) throws Exception {
+		var classes = Sources.compile(directory.resolve("classes"), Map.of(
+				"app.Pool", "package app; public final class Pool extends bz.gsn.djinn.core.resource.Resource {}",
+				"app.Cache", "package app; public final class Cache extends bz.gsn.djinn.core.resource.Resource {}",
+				"app.Ambiguous", """
+						package app;
+						import bz.gsn.djinn.core.resource.*;
+						public final class Ambiguous extends Resource {
+							public Ambiguous(@Inject Pool pool) {}
+							public Ambiguous(@Inject Cache cache) {}
+						}
+						""",
+				"app.Single", """
+						package app;
+						import bz.gsn.djinn.core.resource.*;
+						public final class Single extends Resource {
+							public Single(@Inject Pool pool) {}
+							Single(@Inject Cache cache) {}
+						}
+						""",
+				"app.NoArgs", """
+						package app;
+						import bz.gsn.djinn.core.resource.*;
+						public final class NoArgs extends Resource {
+							public NoArgs() {}
+							public NoArgs(@Inject Pool pool) {}
+							public NoArgs(@Inject Cache cache) {}
+						}
+						""",
+				"app.Unusable", """
+						package app;
+						public final class Unusable extends bz.gsn.djinn.core.resource.Resource {
+							public Unusable(String name) {}
+						}
+						""",
+				"app.Hidden", """
+						package app;
+						final class Hidden extends bz.gsn.djinn.core.resource.Resource {
+							public Hidden() {}
+						}
+						"""
+		));
+		var errors = DjinnCompiler.of(classes, Sources.core())
+				.lint()
+				.stream()
+				.filter(e -> e.level() == Diagnostic.Level.ERROR)
+				.collect(Collectors.toMap(Diagnostic::location, Diagnostic::code));
+		Assertions.assertEquals(Map.of("class app.Ambiguous", 5, "class app.Unusable", 1, "class app.Hidden", 1), errors);
+
+		// the registry accepts and rejects the same resources
+		try(var loader = new URLClassLoader(new URL[] {classes.toUri().toURL()}, LintTest.class.getClassLoader())) {
+			for(var name : List.of("Ambiguous", "Single", "NoArgs", "Unusable", "Hidden")) {
+				var resources = Set.of("Pool", "Cache", name)
+						.stream()
+						.<Class<? extends Resource>>map(e -> load(loader, e))
+						.toList();
+				if(errors.containsKey("class app." + name)) {
+					Assertions.assertThrows(ResourceInstantiationException.class, () -> new AppResourceRegistry(resources), name);
+				} else {
+					Assertions.assertNotNull(new AppResourceRegistry(resources).getResourceOrNull(load(loader, name)), name);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void modulesMustBeBootstrapped(@TempDir Path directory) throws IOException {
+		var classes = Sources.compile(directory.resolve("classes"), Map.of(
+				"app.Bootstrapped", "package app; public final class Bootstrapped extends bz.gsn.djinn.core.module.DjinnModule {}",
+				"app.Hidden", "package app; final class Hidden extends bz.gsn.djinn.core.module.DjinnModule {}",
+				"app.Abstract", "package app; public abstract class Abstract extends bz.gsn.djinn.core.module.DjinnModule {}",
+				"app.Configured", """
+						package app;
+						public final class Configured extends bz.gsn.djinn.core.module.DjinnModule {
+							public Configured(String name) {}
+						}
+						""",
+				"app.Factory", """
+						package app;
+						public final class Factory {
+							public static bz.gsn.djinn.core.module.DjinnModule module() {
+								final class Local extends bz.gsn.djinn.core.module.DjinnModule {}
+								return new Local();
+							}
+						}
+						"""
+		));
+		var errors = DjinnCompiler.of(classes, Sources.core())
+				.lint()
+				.stream()
+				.filter(e -> e.level() == Diagnostic.Level.ERROR)
+				.collect(Collectors.toMap(Diagnostic::location, Diagnostic::code));
+		// local modules, such as those of Djinn.module(), are registered by hand
+		Assertions.assertEquals(Map.of("class app.Hidden", 6, "class app.Abstract", 6, "class app.Configured", 6), errors);
+	}
+
+	@Test
+	public void onlyTheApplicationIsLinted(@TempDir Path directory) throws IOException {
+		var classes = Sources.compile(directory.resolve("classes"), Map.of(
+				"app.AppModule", """
+						package app;
+						public final class AppModule extends bz.gsn.djinn.core.module.DjinnModule {
+							public static bz.gsn.djinn.core.module.DjinnModule local() {
+								class Local extends bz.gsn.djinn.core.module.DjinnModule {}
+								return new Local();
+							}
+						}
+						""",
+				"app.Open", "package app; public class Open extends bz.gsn.djinn.core.module.DjinnModule {}"
+		));
+		var diagnostics = DjinnCompiler.of(classes, Sources.core()).lint();
+		// Djinn's own classes, such as the local modules of Djinn.module(), are never reported, nor are local modules
+		Assertions.assertEquals(List.of("class app.Open"), diagnostics.stream().map(Diagnostic::location).toList());
+		Assertions.assertEquals(2, diagnostics.getFirst().code());
+	}
+
+	private static Class<? extends Resource> load(ClassLoader loader, String name) {
+		try {
+			return loader.loadClass("app." + name).asSubclass(Resource.class);
+		} catch(ClassNotFoundException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+}
@@ -0,0 +1,181 @@
+package bz.gsn.tests.djinn.compiler;
+
+import bz.gsn.djinn.compiler.metadata.ClassMetadata;
+import bz.gsn.djinn.compiler.metadata.ClasspathMetadata;
+import bz.gsn.djinn.compiler.metadata.MethodMetadata;
+import bz.gsn.djinn.compiler.metadata.SharedMetadata;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+public class MetadataTest {
+
+	@Test
+	public void resolvesAcrossJars(@TempDir Path directory) throws IOException {
+		var lib = Sources.jar(Sources.compile(directory.resolve("lib"), Map.of(
+				"lib.Marker", """
+						package lib;
+						import java.lang.annotation.*;
+						@Inherited
+						@Retention(RetentionPolicy.RUNTIME)
+						public @interface Marker {}
+						""",
+				"lib.Api", "package lib; public interface Api {}",
+				"lib.Base", "package lib; @Marker public abstract class Base implements Api {}",
+				"lib.Shadowed", "package lib; public class Shadowed {}"
+		)), directory.resolve("lib.jar"));
+		var app = Sources.compile(directory.resolve("app"), Map.of(
+				"app.Middle", "package app; public abstract class Middle extends lib.Base implements Runnable {}",
+				"app.Impl", "package app; public final class Impl extends Middle { public void run() {} }",
+				"lib.Shadowed", "package lib; public final class Shadowed {}"
+		), lib);
+		for(var shared : new SharedMetadata[] {null, new SharedMetadata()}) {
+			var classpath = ClasspathMetadata.scan(null, List.of(app, lib), shared);
+			Assertions.assertEquals(List.of("app.Middle", "app.Impl"), classpath.subclasses("lib.Base").stream().map(ClassMetadata::name).toList());
+			Assertions.assertTrue(classpath.extendsSuperclass("app.Impl", "lib.Base"));
+			Assertions.assertFalse(classpath.extendsSuperclass("app.Impl", "lib.Api"));
+			Assertions.assertEquals(List.of("lib.Api"), classpath.get("lib.Base").interfaces());
+			Assertions.assertEquals(List.of("java.lang.Runnable"), classpath.get("app.Middle").interfaces());
+			// @Inherited annotations declared in a JAR apply to subclasses in a directory
+			Assertions.assertEquals(List.of("lib.Marker"), classpath.annotations(classpath.get("app.Impl")));
+			Assertions.assertTrue(classpath.get("app.Impl").annotations().isEmpty());
+			// the first classpath element wins
+			Assertions.assertTrue(classpath.get("lib.Shadowed").isFinal());
+			Assertions.assertEquals(6, classpath.size());
+		}
+	}
+
+	@Test
+	public void readsAnnotationsWithValues(@TempDir Path directory) throws IOException {
+		var classes = Sources.compile(directory.resolve("classes"), Map.of(
+				"app.Values", """
+						package app;
+						import java.lang.annotation.*;
+						@Retention(RetentionPolicy.RUNTIME)
+						public @interface Values {
+							ElementType kind() default ElementType.TYPE;
+							String[] names() default {};
+							Class<?>[] types() default {};
+							Retention nested() default @Retention(RetentionPolicy.CLASS);
+						}
+						""",
+				"app.Invisible", """
+						package app;
+						@java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.CLASS)
+						public @interface Invisible {}
+						""",
+				"app.Annotated", """
+						package app;
+						import java.lang.annotation.*;
+						@Invisible
+						@Values(kind = ElementType.METHOD, names = {"a", "b"}, types = {String.class, int[].class}, nested = @Retention(RetentionPolicy.RUNTIME))
+						public class Annotated {
+							@Values(names = "field") @Invisible
+							public int field;
+							@Values(kind = ElementType.PARAMETER)
+							public void method(@Values(names = {}) long wide, @Invisible String invisible, @Values @Deprecated Object both) {}
+						}
+						"""
+		));
+		var classpath = ClasspathMetadata.scan(null, List.of(classes));
+		var annotated = classpath.get("app.Annotated");
+		Assertions.assertEquals(List.of("app.Values"), annotated.annotations());
+		Assertions.assertEquals(List.of("app.Values"), annotated.fields().getFirst().annotations());
+		var method = annotated.declaredMethods().getFirst();
+		Assertions.assertEquals(List.of("app.Values"), method.annotations());
+		Assertions.assertEquals(List.of(List.of("app.Values"), List.of(), List.of("app.Values", "java.lang.Deprecated")), method.parameterAnnotations());
+		Assertions.assertEquals("@Values long", method.parameterToString(0));
+		Assertions.assertTrue(classpath.get("app.Values").isInterface());
+	}
+
+	@Test
+	public void readsTheRuntimeVersionOfMultiReleaseJars(@TempDir Path directory) throws IOException {
+		int feature = Runtime.version().feature();
+		var base = Sources.compile(directory.resolve("base"), Map.of("mr.Versioned", "package mr; public class Versioned { public void base() {} }"));
+		var current = Sources.compile(directory.resolve("current"), Map.of("mr.Versioned", "package mr; public class Versioned { public void current() {} }"));
+		var future = Sources.compile(directory.resolve("future"), Map.of(
+				"mr.Versioned", "package mr; public class Versioned { public void future() {} }",
+				"mr.Future", "package mr; public class Future {}"
+		));
+		var manifest = new Manifest();
+		manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+		manifest.getMainAttributes().put(Attributes.Name.MULTI_RELEASE, "true");
+		var jar = directory.resolve("mr.jar");
+		try(var out = new JarOutputStream(Files.newOutputStream(jar), manifest)) {
+			for(var entry : List.of(
+					Map.entry("mr/Versioned.class", base),
+					Map.entry("META-INF/versions/9/mr/Versioned.class", base),
+					Map.entry("META-INF/versions/" + feature + "/mr/Versioned.class", current),
+					Map.entry("META-INF/versions/" + (feature + 1) + "/mr/Versioned.class", future),
+					Map.entry("META-INF/versions/" + (feature + 1) + "/mr/Future.class", future)
+			)) {
+				out.putNextEntry(new JarEntry(entry.getKey()));
+				Files.copy(entry.getValue().resolve(entry.getKey().substring(entry.getKey().indexOf("mr/"))), out);
+				out.closeEntry();
+			}
+		}
+		var classpath = ClasspathMetadata.scan(null, List.of(jar));
+		Assertions.assertEquals(1, classpath.size());
+		Assertions.assertEquals(List.of("current"), classpath.get("mr.Versioned").declaredMethods().stream().map(MethodMetadata::name).toList());
+		Assertions.assertNull(classpath.get("mr.Future"));
+		// the cache picks the same classes
+		var cache = directory.resolve("cache");
+		for(int i = 0; i < 2; i++) {
+			Assertions.assertEquals(classpath.classes().stream().toList(), ClasspathMetadata.scan(cache, List.of(jar)).classes().stream().toList());
+		}
+	}
+
+	@Test
+	public void invalidatesTheCacheBySizeAndModificationTime(@TempDir Path directory) throws IOException {
+		var classes = Sources.compile(directory.resolve("classes"), Map.of(
+				"app.Kept", "package app; public class Kept {}",
+				"app.Changed", "package app; public class Changed {}"
+		));
+		var changed = Sources.compile(directory.resolve("changed"), Map.of(
+				"app.Changed", "package app; public final class Changed { public void added() {} }"
+		));
+		var cache = directory.resolve("cache");
+		var file = classes.resolve("app/Changed.class");
+		var time = Files.getLastModifiedTime(file);
+		var first = ClasspathMetadata.scan(cache, List.of(classes));
+		Assertions.assertFalse(first.get("app.Changed").isFinal());
+
+		// a classfile of the same size and modification time is not read again, so even garbage is not noticed
+		var size = (int) Files.size(file);
+		Files.write(file, new byte[size]);
+		Files.setLastModifiedTime(file, time);
+		Assertions.assertEquals(first.get("app.Changed"), ClasspathMetadata.scan(cache, List.of(classes)).get("app.Changed"));
+
+		// a new size is
+		Files.copy(changed.resolve("app/Changed.class"), file, StandardCopyOption.REPLACE_EXISTING);
+		Files.setLastModifiedTime(file, time);
+		var second = ClasspathMetadata.scan(cache, List.of(classes));
+		Assertions.assertTrue(second.get("app.Changed").isFinal());
+		Assertions.assertEquals(first.get("app.Kept"), second.get("app.Kept"));
+
+		// as is a new modification time
+		var original = Sources.compile(directory.resolve("original"), Map.of("app.Changed", "package app; public class Changed { public void added() {} }"));
+		Files.copy(original.resolve("app/Changed.class"), file, StandardCopyOption.REPLACE_EXISTING);
+		Assertions.assertEquals(Files.size(changed.resolve("app/Changed.class")), Files.size(file));
+		Files.setLastModifiedTime(file, FileTime.fromMillis(time.toMillis() + 10_000));
+		var third = ClasspathMetadata.scan(cache, List.of(classes));
+		Assertions.assertFalse(third.get("app.Changed").isFinal());
+
+		// and a deleted classfile is dropped
+		Files.delete(file);
+		Assertions.assertNull(ClasspathMetadata.scan(cache, List.of(classes)).get("app.Changed"));
+	}
+
+}
@@ -0,0 +1,148 @@
+package bz.gsn.tests.djinn.compiler;
+
+import bz.gsn.djinn.compiler.DjinnCompiler;
+import bz.gsn.djinn.core.app.AnnotationIndex;
+import bz.gsn.djinn.core.app.DetectorData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class NativeImageTest {
+
+	private static final Map<String, String> APPLICATION = Map.of(
+			"app.Route", """
+					package app;
+					import java.lang.annotation.*;
+					@Retention(RetentionPolicy.RUNTIME)
+					public @interface Route {}
+					""",
+			"app.Other", """
+					package app;
+					import java.lang.annotation.*;
+					@Retention(RetentionPolicy.RUNTIME)
+					public @interface Other {}
+					""",
+			"app.Unrelated", """
+					package app;
+					import java.lang.annotation.*;
+					@Retention(RetentionPolicy.RUNTIME)
+					public @interface Unrelated {}
+					""",
+			"app.RouteDetector", "package app; public final class RouteDetector extends bz.gsn.djinn.core.module.BuildTimeAnnotationDetector<Route> {}",
+			"app.Base", "package app; public abstract class Base<A extends java.lang.annotation.Annotation> extends bz.gsn.djinn.core.module.AnnotationDetector<A> {}",
+			"app.AppModule", """
+					package app;
+					public final class AppModule extends bz.gsn.djinn.core.module.DjinnModule {
+						public AppModule() {
+							register(new RouteDetector(), new Base<Other>() {});
+						}
+					}
+					""",
+			"app.Handlers", """
+					package app;
+					@Route
+					public class Handlers {
+						@Route
+						public String path;
+						@Unrelated
+						public int count;
+						@Route
+						public void greet(String name) {}
+						@Other
+						public void other() {}
+						@Unrelated
+						public void unrelated() {}
+					}
+					""",
+			"app.Ignored", "package app; @Unrelated public class Ignored {}",
+			"app.Greeter", "package app; public final class Greeter extends bz.gsn.djinn.core.resource.Resource {}"
+	);
+
+	/**
+	 * Compiles the application against a library annotated with annotations no detector detects, and parses its reflection
+	 * configuration into entries by class name.
+	 */
+	private static Map<String, Map<String, Object>> reflection(Path directory, Map<String, String> sources) throws IOException {
+		var lib = Sources.jar(Sources.compile(directory.resolve("lib"), Map.of(
+				"lib.Marker", """
+						package lib;
+						import java.lang.annotation.*;
+						@Retention(RetentionPolicy.RUNTIME)
+						public @interface Marker {}
+						""",
+				"lib.Library", "package lib; @Marker public class Library { @Marker public void run() {} }"
+		)), directory.resolve("lib.jar"));
+		var classes = Sources.compile(directory.resolve("classes"), sources, lib);
+		var config = DjinnCompiler.of(classes, Sources.core(), lib).generateNativeImageConfig();
+		var reflection = config.entrySet().stream().filter(e -> e.getKey().endsWith("/reflect-config.json")).findFirst().orElseThrow();
+		var entries = new TreeMap<String, Map<String, Object>>();
+		for(var entry : list(Json.parse(new String(reflection.getValue(), StandardCharsets.UTF_8)))) {
+			var object = map(entry);
+			Assertions.assertNull(entries.put((String) object.get("name"), object), object.toString());
+		}
+		return entries;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<Object> list(Object json) {
+		return (List<Object>) json;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object> map(Object json) {
+		return (Map<String, Object>) json;
+	}
+
+	private static Set<String> names(Map<String, Object> entry, String key) {
+		return list(entry.getOrDefault(key, List.of())).stream().map(e -> (String) map(e).get("name")).collect(Collectors.toSet());
+	}
+
+	@Test
+	public void registersDetectedElements(@TempDir Path directory) throws IOException {
+		var entries = reflection(directory, APPLICATION);
+		// elements are only registered under annotations some detector detects, named or anonymous
+		var handlers = entries.get("app.Handlers");
+		Assertions.assertEquals(Set.of("greet", "other"), names(handlers, "methods"));
+		Assertions.assertEquals(List.of(Map.of("name", "path", "allowWrite", true)), handlers.get("fields"));
+		Assertions.assertEquals(List.of(Map.of("name", "greet", "parameterTypes", List.of("java.lang.String"))),
+				list(handlers.get("methods")).stream().filter(e -> map(e).get("name").equals("greet")).toList());
+		for(var annotation : List.of("app.Route", "app.Other", "bz.gsn.djinn.core.resource.Inject")) {
+			Assertions.assertEquals(true, entries.get(annotation).get("allDeclaredMethods"), annotation);
+		}
+		for(var ignored : List.of("app.Unrelated", "app.Ignored", "lib.Marker", "lib.Library")) Assertions.assertNull(entries.get(ignored), ignored);
+		// along with resources, modules and detectors
+		Assertions.assertEquals(true, entries.get("app.Greeter").get("allPublicConstructors"));
+		Assertions.assertEquals(List.of(Map.of("name", "<init>", "parameterTypes", List.of())), entries.get("app.AppModule").get("methods"));
+		Assertions.assertTrue(entries.containsKey("app.RouteDetector"));
+		Assertions.assertEquals(Set.of("type"), names(entries.get("bz.gsn.djinn.core.module.AnnotationDetector"), "fields"));
+	}
+
+	@Test
+	public void registersEveryAnnotatedElementForRawDetectors(@TempDir Path directory) throws IOException {
+		var sources = new HashMap<>(APPLICATION);
+		sources.put("app.RawDetector", "package app; @SuppressWarnings(\"rawtypes\") public final class RawDetector extends bz.gsn.djinn.core.module.AnnotationDetector {}");
+		var entries = reflection(directory, sources);
+		// the annotation type of a raw detector cannot be told, so nothing is left out
+		Assertions.assertEquals(Set.of("greet", "other", "unrelated"), names(entries.get("app.Handlers"), "methods"));
+		for(var annotated : List.of("app.Unrelated", "app.Ignored", "lib.Marker", "lib.Library")) Assertions.assertNotNull(entries.get(annotated), annotated);
+	}
+
+	@Test
+	public void includesTheIndexAndDetectorData(@TempDir Path directory) throws IOException {
+		var classes = Sources.compile(directory.resolve("classes"), APPLICATION);
+		var config = DjinnCompiler.of(classes, Sources.core()).generateNativeImageConfig();
+		var resources = config.entrySet().stream().filter(e -> e.getKey().endsWith("/resource-config.json")).findFirst().orElseThrow();
+		var includes = list(map(map(Json.parse(new String(resources.getValue(), StandardCharsets.UTF_8))).get("resources")).get("includes"));
+		var patterns = includes.stream().map(e -> (String) map(e).get("pattern")).toList();
+		Assertions.assertEquals(2, patterns.size());
+		Assertions.assertTrue(AnnotationIndex.LOCATION.matches(patterns.get(0)));
+		Assertions.assertTrue(DetectorData.location("app.RouteDetector").matches(patterns.get(1)));
+	}
+
+}
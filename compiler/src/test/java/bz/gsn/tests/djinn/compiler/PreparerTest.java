@@ -0,0 +1,104 @@
+package bz.gsn.tests.djinn.compiler;
+
+import bz.gsn.djinn.compiler.DjinnCompiler;
+import bz.gsn.djinn.core.app.AnnotationIndex;
+import bz.gsn.djinn.core.app.DetectorData;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class PreparerTest {
+
+	private static final Map<String, String> APPLICATION = Map.of(
+			"app.Route", """
+					package app;
+					import java.lang.annotation.*;
+					@Retention(RetentionPolicy.RUNTIME)
+					@Target({ElementType.METHOD, ElementType.TYPE})
+					public @interface Route {
+						String value();
+					}
+					""",
+			"app.RouteDetector", """
+					package app;
+					import bz.gsn.djinn.core.module.*;
+					public final class RouteDetector extends BuildTimeAnnotationDetector<Route> {
+						@Override
+						public String prepareMethod(Route obj, java.lang.reflect.Method method) {
+							return obj.value().equals("ignored") ? null : obj.value() + "\\n" + method.getName();
+						}
+						@Override
+						public String prepareType(Route obj, Class<?> type) {
+							return obj.value();
+						}
+					}
+					""",
+			"app.Handlers", """
+					package app;
+					@Route("/handlers")
+					public class Handlers {
+						@Route("/greet")
+						public void greet(String name) {}
+						@Route("ignored")
+						public void ignored() {}
+					}
+					""",
+			"app.AppModule", """
+					package app;
+					public final class AppModule extends bz.gsn.djinn.core.module.DjinnModule {
+						public AppModule() {
+							register(new RouteDetector());
+						}
+					}
+					"""
+	);
+
+	@Test
+	public void preparesBuildTimeDetectors(@TempDir Path directory) throws IOException {
+		var classes = Sources.compile(directory.resolve("classes"), APPLICATION);
+		var prepared = DjinnCompiler.of(classes, Sources.core()).prepareDetectors();
+		Assertions.assertEquals(Set.of("app.RouteDetector"), prepared.keySet());
+		var data = new DetectorData();
+		data.read(new ByteArrayInputStream(prepared.get("app.RouteDetector")));
+		// elements whose preparation returned null are left out
+		Assertions.assertEquals(Map.of(AnnotationIndex.method("app.Handlers", "greet", "(Ljava/lang/String;)V"), "/greet\ngreet"), data.entries(ElementType.METHOD));
+		Assertions.assertEquals(Map.of(AnnotationIndex.type("app.Handlers"), "/handlers"), data.entries(ElementType.TYPE));
+		Assertions.assertTrue(data.entries(ElementType.FIELD).isEmpty());
+	}
+
+	@Test
+	public void preparesAnonymousDetectors(@TempDir Path directory) throws IOException {
+		var sources = new HashMap<>(APPLICATION);
+		sources.remove("app.RouteDetector");
+		sources.put("app.AppModule", """
+				package app;
+				public final class AppModule extends bz.gsn.djinn.core.module.DjinnModule {
+					public AppModule() {
+						register(new bz.gsn.djinn.core.module.BuildTimeAnnotationDetector<Route>() {
+							@Override
+							public String prepareType(Route obj, Class<?> type) {
+								return obj.value();
+							}
+						});
+					}
+				}
+				""");
+		var compiler = DjinnCompiler.of(Sources.compile(directory.resolve("classes"), sources), Sources.core());
+		// the only build-time detector is anonymous, so the model lists none
+		Assertions.assertTrue(compiler.model().detectors().isEmpty());
+		var prepared = compiler.prepareDetectors();
+		Assertions.assertEquals(Set.of("app.AppModule$1"), prepared.keySet());
+		var data = new DetectorData();
+		data.read(new ByteArrayInputStream(prepared.get("app.AppModule$1")));
+		Assertions.assertEquals(Map.of(AnnotationIndex.type("app.Handlers"), "/handlers"), data.entries(ElementType.TYPE));
+	}
+
+}
@@ -0,0 +1,89 @@
+package bz.gsn.tests.djinn.compiler;
+
+import bz.gsn.djinn.core.resource.Resource;
+import org.jetbrains.annotations.NotNull;
+
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles the sources of the applications the compiler is tested on.
+ */
+final class Sources {
+
+	private Sources() {
+		//no instance
+	}
+
+	/**
+	 * Returns where the classes of Djinn Core are, which every application is compiled against.
+	 * @return the directory or JAR of Djinn Core.
+	 */
+	static @NotNull Path core() {
+		try {
+			return Path.of(Resource.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+		} catch(URISyntaxException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Compiles the given sources into a directory.
+	 * @param output The directory to write the classes to.
+	 * @param sources The sources, by the binary name of their top-level class.
+	 * @param classpath The classpath to compile against, besides Djinn Core.
+	 * @return the output directory.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static @NotNull Path compile(@NotNull Path output, @NotNull Map<String, String> sources, @NotNull Path... classpath) throws IOException {
+		// the sources are kept next to the classes, so they are cleaned up along with them
+		var sourceDirectory = Files.createTempDirectory(output.toAbsolutePath().getParent(), "sources");
+		var files = new ArrayList<String>();
+		for(var source : sources.entrySet()) {
+			var file = sourceDirectory.resolve(source.getKey().replace('.', '/') + ".java");
+			Files.createDirectories(file.getParent());
+			Files.writeString(file, source.getValue());
+			files.add(file.toString());
+		}
+		Files.createDirectories(output);
+		var path = Stream.concat(Stream.of(core()), Stream.of(classpath)).map(Path::toString).collect(Collectors.joining(File.pathSeparator));
+		var arguments = new ArrayList<>(List.of("-proc:none", "-d", output.toString(), "-classpath", path));
+		arguments.addAll(files);
+		var errors = new ByteArrayOutputStream();
+		if(ToolProvider.getSystemJavaCompiler().run(null, errors, errors, arguments.toArray(String[]::new)) != 0) {
+			throw new IllegalArgumentException("Could not compile the sources:\n" + errors);
+		}
+		return output;
+	}
+
+	/**
+	 * Packages every file under a directory into a JAR.
+	 * @param directory The directory.
+	 * @param jar Where the JAR should be written.
+	 * @return the JAR.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static @NotNull Path jar(@NotNull Path directory, @NotNull Path jar) throws IOException {
+		try(var out = new JarOutputStream(Files.newOutputStream(jar)); var files = Files.walk(directory)) {
+			for(var file : files.filter(Files::isRegularFile).sorted().toList()) {
+				out.putNextEntry(new JarEntry(directory.relativize(file).toString().replace('\\', '/')));
+				Files.copy(file, out);
+				out.closeEntry();
+			}
+		}
+		return jar;
+	}
+
+}
@@ -0,0 +1,6 @@
+open module tests.djinn.compiler {
+	requires org.junit.jupiter.api;
+	requires java.compiler;
+	requires djinn.compiler;
+	requires djinn.core;
+}
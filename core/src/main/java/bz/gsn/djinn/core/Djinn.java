@@ -13,6 +13,7 @@ import org.slf4j.LoggerFactory;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Djinn is a JVM framework powered by annotations.
@@ -21,11 +22,29 @@ public abstract sealed class Djinn permits AppImpl {
 
 	protected static final Logger logger = LoggerFactory.getLogger(Djinn.class);
 
+	/**
+	 * The system property configuring the threads which boot the application, i.e. run its modules' annotation detectors.
+	 * It is either a number of platform threads, which steal work from each other, or {@code virtual}, to run every task
+	 * on its own virtual thread. By default, there is a platform thread per available processor.
+	 * The common pool is never used, and the first failing detector cancels the rest of the boot.
+	 * Platform threads are not compensated for detectors which block, so {@code virtual} suits those better.
+	 */
+	public static final String BOOT_THREADS_PROPERTY = "djinn.boot.threads";
+
 	/**
 	 * Runs the Djinn app.
 	 */
 	public abstract void run();
 
+	/**
+	 * Returns the {@link StartupReport} of this app, which is completed once every runtime is ready, or will never be.
+	 * A runtime which blocks in {@link bz.gsn.djinn.core.module.Runtime#run run} without calling
+	 * {@link bz.gsn.djinn.core.module.Runtime#ready() ready} is not ready until it returns, so the report may then only
+	 * be completed once the application stops.
+	 * @return a {@link CompletionStage} holding the startup report.
+	 */
+	public abstract @NotNull CompletionStage<StartupReport> getStartupReport();
+
 	/**
 	 * Returns a builder for a Djinn module. Modules expose
 	 * annotation detectors, which can be used together with runtimes.
@@ -0,0 +1,99 @@
+package bz.gsn.djinn.core;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The timings of the startup of a Djinn application, broken down into phases. Every phase is also recorded
+ * as a {@code bz.gsn.djinn.StartupPhase} JFR event.
+ * <p>
+ * The phases are:
+ * <ul>
+ *     <li>{@value #CLASSPATH_SCAN}, which reads the annotation index or scans the classpath;</li>
+ *     <li>{@value #RESOURCE_INSTANTIATION}, once per resource, and once overall for the eager resources;</li>
+ *     <li>{@value #METHOD_DISPATCH}, {@value #FIELD_DISPATCH} and {@value #TYPE_DISPATCH}, once per detector;</li>
+ *     <li>{@value #HANDLE_RESOLUTION}, once per detector, summing the time spent resolving the handles of its methods;</li>
+ *     <li>{@value #DETECTOR_FREEZE}, once per detector, once every detector has handled all of its elements;</li>
+ *     <li>{@value #RUNTIME_START}, once per runtime, from when runtimes are started until it is ready.</li>
+ * </ul>
+ * Phases may overlap, as detectors and resources run concurrently.
+ * @param phases The phases, in the order they completed.
+ * @param total The time from the start of resource instantiation until every runtime was ready.
+ */
+public record StartupReport(@NotNull @Unmodifiable List<Phase> phases, @NotNull Duration total) {
+
+	/**
+	 * The phase reading the annotation index, or scanning the classpath if there is none. Its subject is {@code index} or {@code scan}.
+	 */
+	public static final String CLASSPATH_SCAN = "classpath scan";
+
+	/**
+	 * The phase instantiating a resource, whose subject is the resource class, or all eager resources, without a subject.
+	 */
+	public static final String RESOURCE_INSTANTIATION = "resource instantiation";
+
+	/**
+	 * The phase handing the annotated methods to a detector, whose subject is the detector class.
+	 */
+	public static final String METHOD_DISPATCH = "method dispatch";
+
+	/**
+	 * The phase handing the annotated fields to a detector, whose subject is the detector class.
+	 */
+	public static final String FIELD_DISPATCH = "field dispatch";
+
+	/**
+	 * The phase handing the annotated types to a detector, whose subject is the detector class.
+	 */
+	public static final String TYPE_DISPATCH = "type dispatch";
+
+	/**
+	 * The time a detector spent resolving the handles of its methods, whose subject is the detector class.
+	 */
+	public static final String HANDLE_RESOLUTION = "handle resolution";
+
+	/**
+	 * The phase {@linkplain bz.gsn.djinn.core.module.AnnotationDetector#freeze(bz.gsn.djinn.core.resource.ResourceRegistry) freezing} a detector, whose subject is the detector class.
+	 */
+	public static final String DETECTOR_FREEZE = "detector freeze";
+
+	/**
+	 * The phase from when runtimes are started until a runtime is ready, whose subject is the runtime.
+	 */
+	public static final String RUNTIME_START = "runtime start";
+
+	/**
+	 * A phase of the startup.
+	 * @param name The name of the phase; one of the constants of {@link StartupReport}.
+	 * @param subject The detector, resource or runtime the phase is about, else {@code null} for application-wide phases.
+	 * @param duration The duration of the phase.
+	 */
+	public record Phase(@NotNull String name, @Nullable String subject, @NotNull Duration duration) {}
+
+	public StartupReport {
+		phases = List.copyOf(phases);
+	}
+
+	/**
+	 * Returns a human-readable summary of this report, listing the phases from slowest to fastest.
+	 * @param limit The maximum number of phases to list.
+	 * @return the summary.
+	 */
+	public @NotNull String summary(int limit) {
+		var builder = new StringBuilder("Started in ").append(total.toMillis()).append("ms");
+		phases.stream()
+				.sorted(Comparator.comparing(Phase::duration).reversed())
+				.limit(limit)
+				.forEach(phase -> builder.append(System.lineSeparator()).append(
+						String.format("  %-24s %6dms  %s", phase.name(), phase.duration().toMillis(), phase.subject() == null ? "" : phase.subject()).stripTrailing()
+				));
+		if(phases.size() > limit) builder.append(System.lineSeparator()).append("  (").append(phases.size() - limit).append(" more)");
+		return builder.toString();
+	}
+
+}
@@ -0,0 +1,284 @@
+package bz.gsn.djinn.core.app;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.*;
+import java.lang.annotation.ElementType;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A prebuilt index of annotated elements, which maps annotation types to the methods, fields and types annotated with them.
+ * The Djinn compiler generates this index from its own classpath scan and embeds it in bootstrapped JARs at {@value #LOCATION};
+ * when it is present, {@link Classpath} reads it instead of scanning the classpath.
+ * <p>
+ * The index is a UTF-8 text file starting with the line {@value #HEADER}. Every annotation type starts a group with a line
+ * of the form {@code @foo.Annotation}, followed by its annotated elements, one per line:
+ * <ul>
+ *     <li>{@code T foo.Bar} for types;</li>
+ *     <li>{@code F foo.Bar#field} for fields;</li>
+ *     <li>{@code M foo.Bar#method(Ljava/lang/String;)V} for methods, including their descriptor.</li>
+ * </ul>
+ * Lines of the form {@code I foo.Bar#method(Lfoo/Resource;)V foo.Bar$$DjinnInvoker$0} may appear anywhere; they map a method
+ * to the invoker class generated for it by the compiler, if invokers were enabled.
+ */
+public final class AnnotationIndex {
+
+	/**
+	 * The location of the index inside a JAR.
+	 */
+	public static final String LOCATION = "META-INF/djinn/annotations.idx";
+
+	/**
+	 * The first line of every index.
+	 */
+	public static final String HEADER = "djinn-annotation-index 1";
+
+	private final Map<String, EnumMap<ElementType, Set<String>>> entries = new TreeMap<>();
+	private final Map<String, String> invokers = new TreeMap<>();
+
+	/**
+	 * Adds an annotated element to this index.
+	 * @param annotation The binary name of the annotation type.
+	 * @param kind The kind of the element; one of {@link ElementType#TYPE}, {@link ElementType#FIELD} or {@link ElementType#METHOD}.
+	 * @param element The element, in the form returned by {@link #type(String)}, {@link #field(String, String)} or
+	 *                {@link #method(String, String, String)}.
+	 */
+	public void add(@NotNull String annotation, @NotNull ElementType kind, @NotNull String element) {
+		if(kind != ElementType.TYPE && kind != ElementType.FIELD && kind != ElementType.METHOD) {
+			throw new IllegalArgumentException("Unsupported element kind " + kind);
+		}
+		entries.computeIfAbsent(annotation, ignored -> new EnumMap<>(ElementType.class))
+				.computeIfAbsent(kind, ignored -> new TreeSet<>())
+				.add(element);
+	}
+
+	/**
+	 * Records the invoker class generated for a method.
+	 * @param method The method, in the form returned by {@link #method(String, String, String)}.
+	 * @param invoker The binary name of the invoker class.
+	 */
+	public void addInvoker(@NotNull String method, @NotNull String invoker) {
+		invokers.put(method, invoker);
+	}
+
+	/**
+	 * Returns the invoker class generated for a method.
+	 * @param method The method, in the form returned by {@link #method(String, String, String)}.
+	 * @return the binary name of the invoker class, else an empty {@link Optional} if there is none.
+	 */
+	@NotNull
+	public Optional<String> invoker(@NotNull String method) {
+		return Optional.ofNullable(invokers.get(method));
+	}
+
+	/**
+	 * Returns the elements of the given kind annotated with the given annotation type.
+	 * @param annotation The binary name of the annotation type.
+	 * @param kind The kind of the element.
+	 * @return the annotated elements, which may be empty.
+	 */
+	@NotNull
+	@Unmodifiable
+	public Set<String> elements(@NotNull String annotation, @NotNull ElementType kind) {
+		var kinds = entries.get(annotation);
+		if(kinds == null) return Set.of();
+		return Collections.unmodifiableSet(kinds.getOrDefault(kind, Collections.emptySet()));
+	}
+
+	/**
+	 * Returns the annotation types present in this index.
+	 * @return the binary names of the indexed annotation types.
+	 */
+	@NotNull
+	@Unmodifiable
+	public Set<String> annotations() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * Writes this index to the given {@link OutputStream}. The stream will not be closed.
+	 * @param outputStream The stream to write to.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void write(@NotNull OutputStream outputStream) throws IOException {
+		var writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+		writer.write(HEADER);
+		writer.newLine();
+		for(var invoker : invokers.entrySet()) {
+			writer.write("I ");
+			writer.write(invoker.getKey());
+			writer.write(' ');
+			writer.write(invoker.getValue());
+			writer.newLine();
+		}
+		for(var annotation : entries.entrySet()) {
+			writer.write('@');
+			writer.write(annotation.getKey());
+			writer.newLine();
+			for(var kind : annotation.getValue().entrySet()) {
+				for(var element : kind.getValue()) {
+					writer.write(prefix(kind.getKey()));
+					writer.write(' ');
+					writer.write(element);
+					writer.newLine();
+				}
+			}
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Returns the index as a byte array, as it would be {@linkplain #write(OutputStream) written}.
+	 * @return the serialized index.
+	 */
+	public byte @NotNull [] toByteArray() {
+		var outputStream = new ByteArrayOutputStream();
+		try {
+			write(outputStream);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e); // impossible for in-memory streams
+		}
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Reads an index from the given {@link InputStream}, merging it into this index. The stream will not be closed.
+	 * @param inputStream The stream to read from.
+	 * @throws IOException if an I/O error occurs, or the stream does not hold a valid index.
+	 */
+	public void read(@NotNull InputStream inputStream) throws IOException {
+		var reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+		if(!HEADER.equals(reader.readLine())) throw new IOException("Not a Djinn annotation index");
+		String annotation = null;
+		String line;
+		while((line = reader.readLine()) != null) {
+			if(line.isEmpty()) continue;
+			if(line.charAt(0) == '@') {
+				annotation = line.substring(1);
+			} else if(line.startsWith("I ")) {
+				var separator = line.lastIndexOf(' ');
+				if(separator < 2) throw new IOException("Malformed annotation index line '" + line + "'");
+				this.addInvoker(line.substring(2, separator), line.substring(separator + 1));
+			} else if(annotation == null || line.length() < 3 || line.charAt(1) != ' ') {
+				throw new IOException("Malformed annotation index line '" + line + "'");
+			} else {
+				this.add(annotation, kind(line.charAt(0)), line.substring(2));
+			}
+		}
+	}
+
+	/**
+	 * Loads and merges every index visible to the given {@link ClassLoader}.
+	 * @param classLoader The class loader to look for indices in.
+	 * @return the merged index, else an empty {@link Optional} if there is none.
+	 */
+	@NotNull
+	public static Optional<AnnotationIndex> load(@NotNull ClassLoader classLoader) {
+		try {
+			var urls = classLoader.getResources(LOCATION);
+			if(!urls.hasMoreElements()) return Optional.empty();
+			var index = new AnnotationIndex();
+			while(urls.hasMoreElements()) {
+				try(var inputStream = urls.nextElement().openStream()) {
+					index.read(inputStream);
+				}
+			}
+			return Optional.of(index);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the index representation of a type.
+	 * @param className The binary name of the type.
+	 * @return the element.
+	 */
+	public static @NotNull String type(@NotNull String className) {
+		return className;
+	}
+
+	/**
+	 * Returns the index representation of a field.
+	 * @param className The binary name of the declaring type.
+	 * @param name The name of the field.
+	 * @return the element.
+	 */
+	public static @NotNull String field(@NotNull String className, @NotNull String name) {
+		return className + '#' + name;
+	}
+
+	/**
+	 * Returns the index representation of a method.
+	 * @param className The binary name of the declaring type.
+	 * @param name The name of the method.
+	 * @param descriptor The descriptor of the method, such as {@code (Ljava/lang/String;)V}.
+	 * @return the element.
+	 */
+	public static @NotNull String method(@NotNull String className, @NotNull String name, @NotNull String descriptor) {
+		return className + '#' + name + descriptor;
+	}
+
+	/**
+	 * Loads the type of an element, without initializing it.
+	 * @param element The element, in the form returned by {@link #type(String)}.
+	 * @param classLoader The class loader to load the type from.
+	 * @return the type.
+	 * @throws ClassNotFoundException if the type cannot be found.
+	 */
+	public static @NotNull Class<?> resolveType(@NotNull String element, @NotNull ClassLoader classLoader) throws ClassNotFoundException {
+		return Class.forName(element, false, classLoader);
+	}
+
+	/**
+	 * Looks up the field of an element.
+	 * @param element The element, in the form returned by {@link #field(String, String)}.
+	 * @param classLoader The class loader to load the declaring type from.
+	 * @return the field.
+	 * @throws ReflectiveOperationException if the declaring type or the field cannot be found.
+	 */
+	public static @NotNull Field resolveField(@NotNull String element, @NotNull ClassLoader classLoader) throws ReflectiveOperationException {
+		var separator = element.indexOf('#');
+		return resolveType(element.substring(0, separator), classLoader).getDeclaredField(element.substring(separator + 1));
+	}
+
+	/**
+	 * Looks up the method of an element.
+	 * @param element The element, in the form returned by {@link #method(String, String, String)}.
+	 * @param classLoader The class loader to load the declaring type and the parameter types from.
+	 * @return the method.
+	 * @throws ReflectiveOperationException if the declaring type or the method cannot be found.
+	 */
+	public static @NotNull Method resolveMethod(@NotNull String element, @NotNull ClassLoader classLoader) throws ReflectiveOperationException {
+		var separator = element.indexOf('#');
+		var descriptor = element.indexOf('(', separator);
+		return resolveType(element.substring(0, separator), classLoader).getDeclaredMethod(
+				element.substring(separator + 1, descriptor),
+				MethodType.fromMethodDescriptorString(element.substring(descriptor), classLoader).parameterArray()
+		);
+	}
+
+	private static char prefix(ElementType kind) {
+		return switch(kind) {
+			case TYPE -> 'T';
+			case FIELD -> 'F';
+			case METHOD -> 'M';
+			default -> throw new IllegalArgumentException("Unsupported element kind " + kind);
+		};
+	}
+
+	private static ElementType kind(char prefix) throws IOException {
+		return switch(prefix) {
+			case 'T' -> ElementType.TYPE;
+			case 'F' -> ElementType.FIELD;
+			case 'M' -> ElementType.METHOD;
+			default -> throw new IOException("Unknown element kind '" + prefix + "'");
+		};
+	}
+
+}
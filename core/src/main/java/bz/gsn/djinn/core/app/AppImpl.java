@@ -1,8 +1,12 @@
 package bz.gsn.djinn.core.app;
 
 import bz.gsn.djinn.core.Djinn;
+import bz.gsn.djinn.core.StartupReport;
 import bz.gsn.djinn.core.build.BuildEnvironment;
 import bz.gsn.djinn.core.module.AnnotationDetector;
+import bz.gsn.djinn.core.module.BatchAnnotationDetector;
+import bz.gsn.djinn.core.module.BuildTimeAnnotationDetector;
+import bz.gsn.djinn.core.module.DetectorDescriptor;
 import bz.gsn.djinn.core.module.DjinnModule;
 import bz.gsn.djinn.core.module.MethodInfo;
 import bz.gsn.djinn.core.resource.Inject;
@@ -10,27 +14,40 @@ import bz.gsn.djinn.core.resource.Resource;
 import bz.gsn.djinn.core.resource.ResourceRegistry;
 import bz.gsn.djinn.core.util.CoreUtils;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.VisibleForTesting;
 
-import java.lang.annotation.*;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
 import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
+import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 
 public final class AppImpl extends Djinn {
 
 	private final Collection<DjinnModule> modules;
 	private final ResourceRegistry resourceRegistry;
+	private final StartupRecorder recorder;
+	private final CompletableFuture<StartupReport> startupReport = new CompletableFuture<>();
+	private volatile RuntimeScheduler scheduler;
 
 	public AppImpl(Collection<DjinnModule> modules, ResourceRegistry resourceRegistry, String[] buildVariables) {
 		this.modules = modules;
 		this.resourceRegistry = resourceRegistry;
+		// the registry was created first, so its recorder also covers resource instantiation
+		this.recorder = resourceRegistry instanceof AppResourceRegistry registry ? registry.startupRecorder() : new StartupRecorder();
 		CoreUtils.sneakyThrows(() -> {
 			var field = BuildEnvironment.class.getDeclaredField("buildEnvironment");
 			field.setAccessible(true);
@@ -40,135 +57,349 @@ public final class AppImpl extends Djinn {
 	}
 
 	/**
-	 * Runs the Djinn app.
+	 * Runs the Djinn app, in three phases:
+	 * <ol>
+	 *     <li><em>detect</em>, in which every module runs its annotation detectors;</li>
+	 *     <li><em>freeze</em>, in which every detector is {@linkplain bz.gsn.djinn.core.module.AnnotationDetector#freeze(ResourceRegistry) frozen},
+	 *     once all of them have handled all of their elements;</li>
+	 *     <li><em>start</em>, in which the runtimes are started, once all detectors are frozen.</li>
+	 * </ol>
+	 * Each phase waits for all the work of the previous one, which thus happens-before it.
 	 */
 	@Override
 	public void run() {
-		var tf = Thread.ofPlatform()
-				.daemon(false)
-				.name("runtime-thread-", 0)
-				.factory();
-		modules.parallelStream().forEach(module -> {
-			runAnnotationDetectors(module, resourceRegistry);
-			registerRuntimes(module, resourceRegistry, tf);
+		// every module shares one scan, which is released once all of them have run their detectors.
+		try(var classpath = Classpath.acquire(); var executor = BootExecutor.configured()) {
+			executor.forEach(modules, module -> runAnnotationDetectors(module, resourceRegistry, classpath, recorder, executor));
+			var statistics = classpath.statistics();
+			recorder.add(StartupReport.CLASSPATH_SCAN, statistics.indexed() ? "index" : "scan", statistics.scanTime());
+			logger.info("Released classpath session: {}", statistics);
+			freezeDetectors(modules, resourceRegistry, recorder, executor);
+		}
+		// the executor joined every task, and runtimes are started on new threads; both are happens-before edges
+		var runtimes = modules.stream().flatMap(module -> module.getRuntimes().stream()).toList();
+		long start = System.nanoTime();
+		scheduler = new RuntimeScheduler(runtimes, resourceRegistry, recorder);
+		scheduler.start().whenComplete((ignored, throwable) -> {
+			if(throwable == null) logger.info("All {} runtime(s) ready in {}ms", runtimes.size(), (System.nanoTime() - start) / 1_000_000);
+			startupReport.complete(recorder.report(recorder.elapsed()));
 		});
 	}
 
 	/**
-	 * Initializes a module.
+	 * Stops the runtimes of this app, as its shutdown hook would, which then does nothing.
+	 * Does nothing if this app was not {@linkplain #run() run}.
+	 */
+	@VisibleForTesting
+	public void stop() {
+		var scheduler = this.scheduler;
+		if(scheduler != null) scheduler.stop();
+	}
+
+	@Override
+	public @NotNull CompletionStage<StartupReport> getStartupReport() {
+		return startupReport.minimalCompletionStage();
+	}
+
+	/**
+	 * Initializes a module, using the {@linkplain Classpath#acquire() shared classpath session} and the
+	 * {@linkplain Djinn#BOOT_THREADS_PROPERTY configured boot threads}, and then freezes its detectors.
 	 * @param module The module to initialize.
 	 */
 	@VisibleForTesting
 	public static void runAnnotationDetectors(@NotNull DjinnModule module, @NotNull ResourceRegistry resourceRegistry) {
-		var anno = module.getAnnotationDetectors();
-		final class X<T extends Annotation> {
-			private final AnnotationDetector<T> detector;
-			private final Class<T> type;
-			private final ResourceRegistry resourceRegistry;
-			X(AnnotationDetector<T> detector, ResourceRegistry resourceRegistry) {
-				this.detector = detector;
-				this.type = CoreUtils.getTypeOfAD(this.detector);
-				this.resourceRegistry = resourceRegistry;
-			}
-			private boolean doesNotTarget(ElementType type) {
-				var ret = this.type.getAnnotation(Target.class);
-				return ret == null || Arrays.stream(ret.value()).noneMatch(e -> e == type);
+		try(var classpath = Classpath.acquire()) {
+			runAnnotationDetectors(module, resourceRegistry, classpath);
+		}
+	}
+
+	/**
+	 * Initializes a module, using the {@linkplain Djinn#BOOT_THREADS_PROPERTY configured boot threads}, and then freezes its detectors.
+	 * @param module The module to initialize.
+	 * @param classpath The classpath session to query for annotated elements.
+	 */
+	public static void runAnnotationDetectors(@NotNull DjinnModule module, @NotNull ResourceRegistry resourceRegistry, @NotNull Classpath.Session classpath) {
+		try(var executor = BootExecutor.configured()) {
+			var recorder = new StartupRecorder();
+			runAnnotationDetectors(module, resourceRegistry, classpath, recorder, executor);
+			freezeDetectors(List.of(module), resourceRegistry, recorder, executor);
+		}
+	}
+
+	/**
+	 * Freezes every detector of the given modules. This must only be called once all of them have handled all of their elements.
+	 * @param modules The modules.
+	 * @param recorder The recorder of the freeze timings.
+	 * @param executor The executor freezing the detectors.
+	 */
+	private static void freezeDetectors(@NotNull Collection<DjinnModule> modules, @NotNull ResourceRegistry resourceRegistry, @NotNull StartupRecorder recorder, @NotNull BootExecutor executor) {
+		var detectors = modules.stream()
+				.flatMap(module -> module.getDetectorDescriptors().stream())
+				.flatMap(List::stream)
+				.map(DetectorDescriptor::detector)
+				.toList();
+		long start = System.nanoTime();
+		executor.forEach(detectors, detector -> {
+			try(var $ = recorder.span(StartupReport.DETECTOR_FREEZE, detector.getClass().getName())) {
+				detector.freeze(resourceRegistry);
 			}
-			void handleMethod(Method method) {
-				if(doesNotTarget(ElementType.METHOD)) return;
-				var handle = CoreUtils.sneakyThrows(() -> resolveResources(method, resourceRegistry));
-				detector.handleMethod(
-						Objects.requireNonNull(CoreUtils.getAnnotation(detector, method)),
-						handle,
-						new MethodInfo(method, handle),
-						resourceRegistry
-				);
+		});
+		logger.info("Froze {} detector(s) in {}ms", detectors.size(), (System.nanoTime() - start) / 1_000_000);
+	}
+
+	/**
+	 * Initializes a module.
+	 * @param module The module to initialize.
+	 * @param classpath The classpath session to query for annotated elements.
+	 * @param recorder The recorder of the dispatch timings.
+	 * @param executor The executor running the detectors, and the elements each handles.
+	 */
+	static void runAnnotationDetectors(@NotNull DjinnModule module, @NotNull ResourceRegistry resourceRegistry, @NotNull Classpath.Session classpath, @NotNull StartupRecorder recorder, @NotNull BootExecutor executor) {
+		executor.forEach(module.getDetectorDescriptors(), descriptors -> {
+			HashMap<Class<?>, Set<Method>> methodCache = new HashMap<>(); // <Annotation, Detector>
+			HashMap<Class<?>, Set<Field>> fieldCache = new HashMap<>();
+			HashMap<Class<?>, Set<Class<?>>> typeCache = new HashMap<>();
+			for(var descriptor : descriptors) {
+				runAnnotationDetector(descriptor, resourceRegistry, classpath, recorder, executor, methodCache, fieldCache, typeCache);
 			}
-			void handleField(Field field) {
-				if(doesNotTarget(ElementType.FIELD)) return;
-				var handle = CoreUtils.sneakyThrows(() -> MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup()).unreflectVarHandle(field));
-				detector.handleField(
-						Objects.requireNonNull(CoreUtils.getAnnotation(detector, field)),
-						handle,
-						resourceRegistry
-				);
+		});
+	}
+
+	private static <T extends Annotation> void runAnnotationDetector(
+			@NotNull DetectorDescriptor<T> descriptor,
+			@NotNull ResourceRegistry resourceRegistry,
+			@NotNull Classpath.Session classpath,
+			@NotNull StartupRecorder recorder,
+			@NotNull BootExecutor executor,
+			@NotNull Map<Class<?>, Set<Method>> methodCache,
+			@NotNull Map<Class<?>, Set<Field>> fieldCache,
+			@NotNull Map<Class<?>, Set<Class<?>>> typeCache
+	) {
+		if(descriptor.detector() instanceof BuildTimeAnnotationDetector<T> buildTimeDetector) {
+			runBuildTimeDetector(descriptor, buildTimeDetector, resourceRegistry, classpath, recorder, executor, methodCache, fieldCache, typeCache);
+			return;
+		}
+		var detector = descriptor.detector();
+		var detectorName = detector.getClass().getName();
+		var annotationClass = descriptor.type();
+		// elements the annotation cannot target are never queried, let alone dispatched
+		if(descriptor.targets(ElementType.METHOD)) {
+			var methods = methodCache.computeIfAbsent(annotationClass, ignored -> classpath.annotatedMethods(annotationClass));
+			var resolution = new LongAdder();
+			try(var span = recorder.span(StartupReport.METHOD_DISPATCH, detectorName)) {
+				Function<Method, BatchAnnotationDetector.MethodElement<T>> resolver = f -> {
+					if(logger.isDebugEnabled()) logger.debug("Running processor {} on method '{}'", detectorName, f.getName());
+					MethodHandle handle;
+					try(var resolving = recorder.event(StartupReport.HANDLE_RESOLUTION, detectorName)) {
+						handle = CoreUtils.sneakyThrows(() -> resolveResources(f, resourceRegistry));
+						resolution.add(resolving.stop().toNanos());
+					}
+					return new BatchAnnotationDetector.MethodElement<>(Objects.requireNonNull(descriptor.annotation(f)), handle, new MethodInfo(f, handle));
+				};
+				if(detector instanceof BatchAnnotationDetector<T> batch) {
+					batch.handleMethods(executor.map(methods, resolver), resourceRegistry);
+				} else {
+					deliver(executor, detector, methods, f -> {
+						var e = resolver.apply(f);
+						return () -> detector.handleMethod(e.annotation(), e.handle(), e.info(), resourceRegistry);
+					});
+				}
+				logger.info("Processor {} handled {} method(s) in {}ms", detectorName, methods.size(), span.stop().toMillis());
 			}
-			void handleType(Class<?> type) {
-				if(doesNotTarget(ElementType.TYPE)) return;
-				detector.handleType(
-						Objects.requireNonNull(CoreUtils.getAnnotation(detector, type)),
-						type,
-						resourceRegistry
-				);
+			recorder.add(StartupReport.HANDLE_RESOLUTION, detectorName, Duration.ofNanos(resolution.sum()));
+		}
+		if(descriptor.targets(ElementType.FIELD)) {
+			var fields = fieldCache.computeIfAbsent(annotationClass, ignored -> classpath.annotatedFields(annotationClass));
+			try(var span = recorder.span(StartupReport.FIELD_DISPATCH, detectorName)) {
+				Function<Field, BatchAnnotationDetector.FieldElement<T>> resolver = f -> {
+					if(logger.isDebugEnabled()) logger.debug("Running processor {} on field '{}'", detectorName, f.getName());
+					var handle = CoreUtils.sneakyThrows(() -> MethodHandles.privateLookupIn(f.getDeclaringClass(), MethodHandles.lookup()).unreflectVarHandle(f));
+					return new BatchAnnotationDetector.FieldElement<>(Objects.requireNonNull(descriptor.annotation(f)), f, handle);
+				};
+				if(detector instanceof BatchAnnotationDetector<T> batch) {
+					batch.handleFields(executor.map(fields, resolver), resourceRegistry);
+				} else {
+					deliver(executor, detector, fields, f -> {
+						var e = resolver.apply(f);
+						return () -> detector.handleField(e.annotation(), e.handle(), resourceRegistry);
+					});
+				}
+				logger.info("Processor {} handled {} field(s) in {}ms", detectorName, fields.size(), span.stop().toMillis());
 			}
 		}
-		anno.parallelStream()
-			.forEach(annotationDetectors -> {
-				HashMap<Class<?>, Set<Method>> methodCache = new HashMap<>(); // <Annotation, Detector>
-				HashMap<Class<?>, Set<Field>> fieldCache = new HashMap<>();
-				HashMap<Class<?>, Set<Class<?>>> typeCache = new HashMap<>();
-				for(var annotationDetector : annotationDetectors) {
-					var annotationClass = CoreUtils.getTypeOfAD(annotationDetector);
-					var x = new X<>(annotationDetector, resourceRegistry); // X is thread-safe by design
-					methodCache.computeIfAbsent(annotationClass, ignored -> Classpath.annotatedMethods(annotationClass))
-							.parallelStream()
-							.forEach(f -> {
-								logger.info("Running processor {} on method '{}'", annotationDetector.getClass().getName(), f.getName());
-								x.handleMethod(f);
-							});
-					fieldCache.computeIfAbsent(annotationClass, ignored -> Classpath.annotatedFields(annotationClass))
-							.parallelStream()
-							.forEach(f -> {
-								logger.info("Running processor {} on field '{}'", annotationDetector.getClass().getName(), f.getName());
-								x.handleField(f);
-							});
-					typeCache.computeIfAbsent(annotationClass, ignored -> Classpath.annotatedTypes(annotationClass))
-							.parallelStream()
-							.forEach(f -> {
-								logger.info("Running processor {} on type '{}'", annotationDetector.getClass().getName(), f.getName());
-								x.handleType(f);
-							});
+		if(descriptor.targets(ElementType.TYPE)) {
+			var types = typeCache.computeIfAbsent(annotationClass, ignored -> classpath.annotatedTypes(annotationClass));
+			try(var span = recorder.span(StartupReport.TYPE_DISPATCH, detectorName)) {
+				Function<Class<?>, BatchAnnotationDetector.TypeElement<T>> resolver = f -> {
+					if(logger.isDebugEnabled()) logger.debug("Running processor {} on type '{}'", detectorName, f.getName());
+					return new BatchAnnotationDetector.TypeElement<>(Objects.requireNonNull(descriptor.annotation(f)), f);
+				};
+				if(detector instanceof BatchAnnotationDetector<T> batch) {
+					batch.handleTypes(executor.map(types, resolver), resourceRegistry);
+				} else {
+					deliver(executor, detector, types, f -> {
+						var e = resolver.apply(f);
+						return () -> detector.handleType(e.annotation(), e.type(), resourceRegistry);
+					});
 				}
-			});
+				logger.info("Processor {} handled {} type(s) in {}ms", detectorName, types.size(), span.stop().toMillis());
+			}
+		}
 	}
 
-	private void registerRuntimes(@NotNull DjinnModule module, @NotNull ResourceRegistry resourceRegistry, ThreadFactory tf) {
-		module.getRuntimes()
-				.parallelStream()
-				.forEach(e -> {
-					logger.info("Starting runtime {}@{}", e.getClass().getName(), Integer.toHexString(System.identityHashCode(e)));
-					tf.newThread(() -> e.run(resourceRegistry)).start();
-					Runtime.getRuntime().addShutdownHook(Thread.ofVirtual().unstarted(() -> e.stop(resourceRegistry)));
+	/**
+	 * Runs a {@link BuildTimeAnnotationDetector}. If the compiler prepared it, only its prepared elements are handled, and no
+	 * annotation is queried or read; else each annotated element is prepared first.
+	 */
+	private static <T extends Annotation> void runBuildTimeDetector(
+			@NotNull DetectorDescriptor<T> descriptor,
+			@NotNull BuildTimeAnnotationDetector<T> detector,
+			@NotNull ResourceRegistry resourceRegistry,
+			@NotNull Classpath.Session classpath,
+			@NotNull StartupRecorder recorder,
+			@NotNull BootExecutor executor,
+			@NotNull Map<Class<?>, Set<Method>> methodCache,
+			@NotNull Map<Class<?>, Set<Field>> fieldCache,
+			@NotNull Map<Class<?>, Set<Class<?>>> typeCache
+	) {
+		var detectorName = detector.getClass().getName();
+		var annotationClass = descriptor.type();
+		var data = classpath.preparedData(detectorName);
+		if(data.isPresent()) logger.info("Processor {} was prepared at build time", detectorName);
+		if(descriptor.targets(ElementType.METHOD)) {
+			var resolution = new LongAdder();
+			try(var span = recorder.span(StartupReport.METHOD_DISPATCH, detectorName)) {
+				var methods = prepare(executor, data, ElementType.METHOD, Classpath::resolveMethod,
+						() -> methodCache.computeIfAbsent(annotationClass, ignored -> classpath.annotatedMethods(annotationClass)),
+						f -> detector.prepareMethod(Objects.requireNonNull(descriptor.annotation(f)), f));
+				deliver(executor, detector, methods, e -> {
+					var f = e.getKey();
+					if(logger.isDebugEnabled()) logger.debug("Running processor {} on method '{}'", detectorName, f.getName());
+					MethodHandle handle;
+					try(var resolving = recorder.event(StartupReport.HANDLE_RESOLUTION, detectorName)) {
+						handle = CoreUtils.sneakyThrows(() -> resolveResources(f, resourceRegistry));
+						resolution.add(resolving.stop().toNanos());
+					}
+					return () -> detector.handlePreparedMethod(e.getValue(), handle, new MethodInfo(f, handle), resourceRegistry);
+				});
+				logger.info("Processor {} handled {} method(s) in {}ms", detectorName, methods.size(), span.stop().toMillis());
+			}
+			recorder.add(StartupReport.HANDLE_RESOLUTION, detectorName, Duration.ofNanos(resolution.sum()));
+		}
+		if(descriptor.targets(ElementType.FIELD)) {
+			try(var span = recorder.span(StartupReport.FIELD_DISPATCH, detectorName)) {
+				var fields = prepare(executor, data, ElementType.FIELD, Classpath::resolveField,
+						() -> fieldCache.computeIfAbsent(annotationClass, ignored -> classpath.annotatedFields(annotationClass)),
+						f -> detector.prepareField(Objects.requireNonNull(descriptor.annotation(f)), f));
+				deliver(executor, detector, fields, e -> {
+					var f = e.getKey();
+					if(logger.isDebugEnabled()) logger.debug("Running processor {} on field '{}'", detectorName, f.getName());
+					var handle = CoreUtils.sneakyThrows(() -> MethodHandles.privateLookupIn(f.getDeclaringClass(), MethodHandles.lookup()).unreflectVarHandle(f));
+					return () -> detector.handlePreparedField(e.getValue(), handle, resourceRegistry);
 				});
+				logger.info("Processor {} handled {} field(s) in {}ms", detectorName, fields.size(), span.stop().toMillis());
+			}
+		}
+		if(descriptor.targets(ElementType.TYPE)) {
+			try(var span = recorder.span(StartupReport.TYPE_DISPATCH, detectorName)) {
+				var types = prepare(executor, data, ElementType.TYPE, Classpath::resolveType,
+						() -> typeCache.computeIfAbsent(annotationClass, ignored -> classpath.annotatedTypes(annotationClass)),
+						f -> detector.prepareType(Objects.requireNonNull(descriptor.annotation(f)), f));
+				deliver(executor, detector, types, e -> {
+					if(logger.isDebugEnabled()) logger.debug("Running processor {} on type '{}'", detectorName, e.getKey().getName());
+					return () -> detector.handlePreparedType(e.getValue(), e.getKey(), resourceRegistry);
+				});
+				logger.info("Processor {} handled {} type(s) in {}ms", detectorName, types.size(), span.stop().toMillis());
+			}
+		}
+	}
+
+	/**
+	 * Delivers elements to a detector. Every element is resolved in parallel, into the call delivering it; the calls are then
+	 * made in parallel if the detector {@linkplain AnnotationDetector#isThreadSafe() is thread-safe}, else one at a time,
+	 * once every element was resolved.
+	 * @param elements The elements.
+	 * @param resolver The resolver of an element into the call delivering it.
+	 */
+	private static <E> void deliver(@NotNull BootExecutor executor, @NotNull AnnotationDetector<?> detector, @NotNull Collection<E> elements, @NotNull Function<E, Runnable> resolver) {
+		if(detector.isThreadSafe()) executor.forEach(elements, e -> resolver.apply(e).run());
+		else executor.map(elements, resolver).forEach(Runnable::run);
+	}
+
+	/**
+	 * Returns the elements of the given kind to handle, along with their prepared data.
+	 * @param executor The executor resolving or preparing the elements.
+	 * @param data The data prepared at build time, if any.
+	 * @param kind The kind of the elements.
+	 * @param resolver The resolver of prepared elements.
+	 * @param elements The supplier of the annotated elements, if the data was not prepared at build time.
+	 * @param preparer The preparer of annotated elements, which returns {@code null} for ignored elements.
+	 * @return the elements and their data.
+	 */
+	private static <E> List<Map.Entry<E, String>> prepare(
+			@NotNull BootExecutor executor,
+			@NotNull Optional<DetectorData> data,
+			@NotNull ElementType kind,
+			@NotNull Function<String, E> resolver,
+			@NotNull Supplier<Set<E>> elements,
+			@NotNull Function<E, @Nullable String> preparer
+	) {
+		if(data.isPresent()) {
+			return executor.map(data.get().entries(kind).entrySet(), e -> Map.entry(resolver.apply(e.getKey()), e.getValue()));
+		}
+		return executor.map(elements.get(), element -> {
+			var prepared = preparer.apply(element);
+			return prepared == null ? null : Map.entry(element, prepared);
+		});
 	}
 
 	/**
 	 * Resolves the resources required by the given {@link Method}.
+	 * If the compiler generated an invoker for the method, a handle to an invoker constructed with the given registry
+	 * is returned instead; it binds the resources itself, through fields.
 	 * @param method The {@link Method} to resolve.
 	 * @return a new {@link MethodHandle} with all non-{@link Inject @Raw} resource parameters filled in.
 	 * @throws IllegalAccessException if the method cannot be accessed.
 	 */
 	private static MethodHandle resolveResources(Method method, ResourceRegistry resourceRegistry) throws IllegalAccessException {
+		var invoker = Classpath.invoker(method);
+		if(invoker.isPresent()) {
+			var type = MethodType.methodType(method.getReturnType(), Arrays.stream(method.getParameters()).filter(p -> !isInjected(p)).map(Parameter::getType).toArray(Class<?>[]::new));
+			if(!Modifier.isStatic(method.getModifiers())) type = type.insertParameterTypes(0, method.getDeclaringClass());
+			var finalType = type;
+			if(logger.isDebugEnabled()) logger.debug("Using generated invoker {} for method '{}'", invoker.get(), method.getName());
+			return CoreUtils.sneakyThrows(() -> {
+				var invokerClass = Class.forName(invoker.get(), true, method.getDeclaringClass().getClassLoader());
+				var lookup = MethodHandles.publicLookup();
+				var instance = lookup.findConstructor(invokerClass, MethodType.methodType(void.class, ResourceRegistry.class)).invoke(resourceRegistry);
+				return lookup.findVirtual(invokerClass, "invoke", finalType).bindTo(instance);
+			});
+		}
 		MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
 		int index = Modifier.isStatic(method.getModifiers()) ? 0 : 1;
 		for(Parameter parameter : method.getParameters()) {
 			var type = parameter.getType();
-			if(Resource.class.isAssignableFrom(type)) {
-				if(Arrays.stream(parameter.getDeclaredAnnotations()).anyMatch(param -> param.annotationType() == Inject.class)) {
-					var resourceOptional = resourceRegistry.getResource(type.asSubclass(Resource.class));
-					if(resourceOptional.isEmpty()) {
-						// impossible, we should have scanned it already.
-						logger.error("Resource {} is not available", type.getName());
-						throw new Error("Unavailable resource " + type.getName());
-					} else {
-						logger.info("Resolved resource {}", type);
-					}
-					handle = MethodHandles.insertArguments(handle, index, resourceOptional.orElse(null));
+			if(isInjected(parameter)) {
+				var resource = resourceRegistry.getResourceOrNull(type.asSubclass(Resource.class));
+				if(resource == null) {
+					// impossible, we should have scanned it already.
+					logger.error("Resource {} is not available", type.getName());
+					throw new Error("Unavailable resource " + type.getName());
+				} else if(logger.isTraceEnabled()) {
+					logger.trace("Resolved resource {} for method '{}'", type.getName(), method.getName());
 				}
+				// the bound parameter is dropped, so the next one takes its index
+				handle = MethodHandles.insertArguments(handle, index, resource);
+			} else {
+				index++;
 			}
-			index++;
 		}
 		return handle;
 	}
 
+	static boolean isInjected(Parameter parameter) {
+		return Resource.class.isAssignableFrom(parameter.getType())
+				&& Arrays.stream(parameter.getDeclaredAnnotations()).anyMatch(param -> param.annotationType() == Inject.class);
+	}
+
 }
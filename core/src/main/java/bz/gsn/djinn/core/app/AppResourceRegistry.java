@@ -1,67 +1,273 @@
 package bz.gsn.djinn.core.app;
 
-import bz.gsn.djinn.core.resource.Resource;
-import bz.gsn.djinn.core.resource.ResourceRegistry;
-import bz.gsn.djinn.core.util.CoreUtils;
+import bz.gsn.djinn.core.StartupReport;
+import bz.gsn.djinn.core.resource.*;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
-import java.lang.invoke.MethodType;
-import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Optional;
-import java.util.stream.Collectors;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * An internal subclass of {@link bz.gsn.djinn.core.resource.ResourceRegistry}, which can be instantiated.
+ * <p>
+ * Every resource class is given a dense slot, in the order the classes were passed (i.e., the order the compiler
+ * found them in), and its instance is stored in a fixed array at that slot. Slots are resolved through a {@link ClassValue},
+ * so lookups neither hash nor allocate once a class has been seen.
+ * <p>
+ * Resources may depend on other resources through a constructor whose parameters are all {@link Inject @Inject}ed resources.
+ * Resources are instantiated through a {@link ResourceFactory} if one was given and it knows how to, and reflectively otherwise.
+ * Each resource is instantiated on its own virtual thread once its dependencies are, so independent resources start
+ * concurrently. Resources are instantiated when the registry is created, unless they are {@link Lazy @Lazy}, in which case
+ * they are instantiated when first requested.
  */
 public final class AppResourceRegistry extends ResourceRegistry {
 
-	private final Map<Class<? extends Resource>, Resource> resourceEntries = new HashMap<>();
+	private static final VarHandle RESOURCES = MethodHandles.arrayElementVarHandle(Resource[].class);
+	private static final ThreadFactory threadFactory = Thread.ofVirtual().name("resource-", 0).factory();
+	private static final Executor executor = task -> threadFactory.newThread(task).start();
+
+	private final List<Class<? extends Resource>> classes;
+	private final MethodHandle[] constructors;
+	private final int[][] dependencies;
+	private final Resource[] resources;
+	private final AtomicReferenceArray<CompletableFuture<Resource>> instantiations;
+	private final ClassValue<Integer> slots;
+	private final ResourceFactory factory;
+	private final boolean[] factoryMade;
+	private final StartupRecorder recorder = new StartupRecorder();
 
 	/**
-	 * Creates a new {@link AppResourceRegistry}. This will scan for the {@link java.lang.invoke.MethodHandle MethodHandle}s
-	 * of the <b>no-args</b> constructors (of public visibility) and invoke them.
+	 * Creates a new {@link AppResourceRegistry}, and instantiates every resource which is not {@link Lazy @Lazy}.
+	 * Resources are instantiated through their public no-args constructor if they have one, else through their
+	 * only public constructor whose parameters are all {@link Inject @Inject}ed resources. Abstract classes are ignored.
 	 * @param classes The classes of the {@link Resource} to instantiate.
+	 * @throws ResourceInstantiationException if any resource cannot be instantiated, or resources depend on each other cyclically;
+	 * every failure is reported.
 	 */
 	public AppResourceRegistry(@NotNull Collection<Class<? extends Resource>> classes) {
-		var resources = classes.parallelStream()
-				.map(resourceClass -> CoreUtils.sneakyThrows(() -> {
-					var lookup = MethodHandles.publicLookup();
-					try {
-						return lookup.findConstructor(resourceClass, MethodType.methodType(void.class));
-					} catch(NoSuchMethodException ignored) {
-						throw new NoSuchMethodException("Resource " + resourceClass.getName() + " must expose a public no-args constructor");
-					} catch(IllegalAccessException ignored) {
-						throw new NoSuchMethodException("The no-args constructor of " + resourceClass.getName() + " must be public");
-					}
-				}))
-				.map(handle -> {
-					try {
-						return Optional.of(handle.type().returnType().cast(CoreUtils.sneakyThrows(handle::invoke)));
-					} catch(Throwable throwable) {
-						return Optional.empty();
-					}
-				})
-				.filter(Optional::isPresent)
-				.map(Optional::get)
-				.collect(Collectors.toUnmodifiableSet());
-		for(var resource : resources) {
-			var res = (Resource) resource;
-			this.resourceEntries.put(res.getClass(), res);
+		this(classes.stream().distinct().filter(e -> !Modifier.isAbstract(e.getModifiers())).toList(), null, (int[][]) null);
+	}
+
+	/**
+	 * Creates a new {@link AppResourceRegistry} whose resources are instantiated by the given {@link ResourceFactory},
+	 * and instantiates every resource which is not {@link Lazy @Lazy}. This is used by generated bootstrappers.
+	 * @param classes The distinct, concrete classes of the {@link Resource} to instantiate.
+	 * @param dependencies For each resource, the indices of the resources its constructor takes, in order;
+	 *                     else {@code null}, if the factory cannot instantiate it and it should be instantiated reflectively.
+	 * @param factory The factory instantiating the resources with non-{@code null} dependencies.
+	 * @throws ResourceInstantiationException if any resource cannot be instantiated, or resources depend on each other cyclically;
+	 * every failure is reported.
+	 */
+	public AppResourceRegistry(@NotNull List<Class<? extends Resource>> classes, int @Nullable [] @NotNull [] dependencies, @NotNull ResourceFactory factory) {
+		this(List.copyOf(classes), Objects.requireNonNull(factory), Objects.requireNonNull(dependencies));
+	}
+
+	private AppResourceRegistry(List<Class<? extends Resource>> classes, @Nullable ResourceFactory factory, int @Nullable [] @Nullable [] dependencies) {
+		this.classes = classes;
+		this.factory = factory;
+		this.factoryMade = new boolean[classes.size()];
+		if(dependencies != null && dependencies.length != classes.size()) {
+			throw new IllegalArgumentException("Expected dependencies for " + classes.size() + " resources, got " + dependencies.length);
 		}
+		var indices = new HashMap<Class<?>, Integer>();
+		for(int i = 0; i < this.classes.size(); i++) indices.put(this.classes.get(i), i);
+		this.slots = new ClassValue<>() {
+			@Override
+			protected Integer computeValue(@NotNull Class<?> type) {
+				return indices.getOrDefault(type, -1);
+			}
+		};
+		this.constructors = new MethodHandle[this.classes.size()];
+		this.dependencies = new int[this.classes.size()][];
+		this.resources = new Resource[this.classes.size()];
+		this.instantiations = new AtomicReferenceArray<>(this.classes.size());
+
+		var failures = new ArrayList<Throwable>();
+		for(int i = 0; i < this.classes.size(); i++) {
+			if(dependencies != null && dependencies[i] != null) {
+				this.dependencies[i] = dependencies[i];
+				this.factoryMade[i] = true;
+				continue;
+			}
+			try {
+				resolveConstructor(i, indices);
+			} catch(ResourceInstantiationException e) {
+				failures.add(e);
+			}
+		}
+		if(failures.isEmpty()) checkCycles(failures);
+		throwIfFailed(failures);
+
+		var eager = new ArrayList<CompletableFuture<Resource>>();
+		// a failed resource also fails its dependents, so we only report each cause once
+		var causes = Collections.<Throwable>newSetFromMap(new IdentityHashMap<>());
+		try(var ignored = recorder.span(StartupReport.RESOURCE_INSTANTIATION, null)) {
+			for(int i = 0; i < this.classes.size(); i++) {
+				if(!this.classes.get(i).isAnnotationPresent(Lazy.class)) eager.add(instantiate(i));
+			}
+			for(var future : eager) {
+				try {
+					future.join();
+				} catch(CompletionException e) {
+					causes.add(e.getCause());
+				}
+			}
+		}
+		failures.addAll(causes);
+		throwIfFailed(failures);
 	}
 
 	/**
 	 * Returns an {@link Optional} containing the {@link Resource} stored.
-	 * multiple methods or runtimes are modifying the same resource.
+	 * Multiple methods or runtimes may be modifying the same resource.
 	 * @param resource The class of the required resource.
 	 * @return an {@link Optional} holding the {@link Resource}.
+	 * @throws ResourceInstantiationException if the resource is {@link Lazy @Lazy}, and could not be instantiated.
 	 */
 	@Override
-	@SuppressWarnings("unchecked")
 	public <T extends Resource> Optional<T> getResource(Class<T> resource) {
-		return resourceEntries.containsKey(resource) ? (Optional<T>) Optional.of(resourceEntries.get(resource)) : Optional.empty();
+		return Optional.ofNullable(getResourceOrNull(resource));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T extends Resource> @Nullable T getResourceOrNull(@NotNull Class<T> resource) {
+		int slot = slots.get(resource);
+		if(slot < 0) return null;
+		var instance = (Resource) RESOURCES.getAcquire(resources, slot);
+		if(instance == null) {
+			try {
+				instance = instantiate(slot).join();
+			} catch(CompletionException e) {
+				if(e.getCause() instanceof ResourceInstantiationException rie) throw rie;
+				throw new ResourceInstantiationException("Could not instantiate resource " + resource.getName(), e.getCause());
+			}
+		}
+		return (T) instance;
+	}
+
+	/**
+	 * Returns the recorder of the time taken to instantiate resources, which also marks the start of the application.
+	 * @return the recorder.
+	 */
+	@NotNull
+	StartupRecorder startupRecorder() {
+		return recorder;
 	}
+
+	/**
+	 * Instantiates the resource at the given slot after its dependencies, unless that has already started.
+	 * @param slot The slot of the resource.
+	 * @return a future completed with the instance.
+	 */
+	private CompletableFuture<Resource> instantiate(int slot) {
+		var existing = instantiations.get(slot);
+		if(existing != null) return existing;
+		var future = new CompletableFuture<Resource>();
+		if(!instantiations.compareAndSet(slot, null, future)) return instantiations.get(slot);
+		var required = dependencies[slot];
+		var dependencyFutures = new CompletableFuture<?>[required.length];
+		for(int i = 0; i < required.length; i++) dependencyFutures[i] = instantiate(required[i]);
+		CompletableFuture.allOf(dependencyFutures)
+				.thenApplyAsync(ignored -> construct(slot), executor)
+				.whenComplete((instance, throwable) -> {
+					if(throwable != null) {
+						future.completeExceptionally(throwable instanceof CompletionException ce ? ce.getCause() : throwable);
+					} else {
+						RESOURCES.setRelease(resources, slot, instance);
+						future.complete(instance);
+					}
+				});
+		return future;
+	}
+
+	private Resource construct(int slot) {
+		var required = dependencies[slot];
+		var arguments = new Resource[required.length];
+		for(int i = 0; i < required.length; i++) arguments[i] = (Resource) RESOURCES.getAcquire(resources, required[i]);
+		try(var ignored = recorder.span(StartupReport.RESOURCE_INSTANTIATION, classes.get(slot).getName())) {
+			if(factoryMade[slot]) return factory.create(slot, arguments);
+			return (Resource) constructors[slot].invokeWithArguments((Object[]) arguments);
+		} catch(Throwable throwable) {
+			throw new ResourceInstantiationException("Could not instantiate resource " + classes.get(slot).getName(), throwable);
+		}
+	}
+
+	private void resolveConstructor(int slot, Map<Class<?>, Integer> indices) {
+		var resourceClass = classes.get(slot);
+		Constructor<?> constructor;
+		try {
+			constructor = resourceClass.getConstructor();
+		} catch(NoSuchMethodException ignored) {
+			var candidates = Arrays.stream(resourceClass.getConstructors())
+					.filter(c -> Arrays.stream(c.getParameters()).allMatch(AppImpl::isInjected))
+					.toList();
+			if(candidates.size() != 1) {
+				throw new ResourceInstantiationException("Resource " + resourceClass.getName() + " must expose a public no-args constructor, "
+						+ "or exactly one public constructor taking only @Inject-ed resources");
+			}
+			constructor = candidates.getFirst();
+		}
+		var parameters = constructor.getParameterTypes();
+		var required = new int[parameters.length];
+		for(int i = 0; i < parameters.length; i++) {
+			var index = indices.get(parameters[i]);
+			if(index == null) {
+				throw new ResourceInstantiationException("Resource " + resourceClass.getName() + " depends on " + parameters[i].getName()
+						+ ", which is not a concrete registered resource");
+			}
+			required[i] = index;
+		}
+		try {
+			this.constructors[slot] = MethodHandles.publicLookup().unreflectConstructor(constructor);
+		} catch(IllegalAccessException e) {
+			var inaccessible = Modifier.isPublic(resourceClass.getModifiers()) ? "The constructor of " + resourceClass.getName() : "Resource " + resourceClass.getName();
+			throw new ResourceInstantiationException(inaccessible + " must be public", e);
+		}
+		this.dependencies[slot] = required;
+	}
+
+	private void checkCycles(List<Throwable> failures) {
+		var state = new byte[classes.size()]; // 0 = unvisited, 1 = on the current path, 2 = done
+		var path = new ArrayList<Integer>();
+		for(int i = 0; i < classes.size(); i++) {
+			if(state[i] == 0) visit(i, state, path, failures);
+		}
+	}
+
+	private void visit(int slot, byte[] state, List<Integer> path, List<Throwable> failures) {
+		state[slot] = 1;
+		path.add(slot);
+		for(int dependency : dependencies[slot]) {
+			if(state[dependency] == 1) {
+				var cycle = new StringJoiner(" -> ", "Cyclic resource dependency: ", "");
+				for(int i = path.indexOf(dependency); i < path.size(); i++) cycle.add(classes.get(path.get(i)).getName());
+				cycle.add(classes.get(dependency).getName());
+				failures.add(new ResourceInstantiationException(cycle.toString()));
+			} else if(state[dependency] == 0) {
+				visit(dependency, state, path, failures);
+			}
+		}
+		path.removeLast();
+		state[slot] = 2;
+	}
+
+	private static void throwIfFailed(List<Throwable> failures) {
+		if(failures.isEmpty()) return;
+		if(failures.size() == 1 && failures.getFirst() instanceof ResourceInstantiationException rie) throw rie;
+		var exception = new ResourceInstantiationException(failures.size() + " resource(s) could not be instantiated");
+		failures.forEach(exception::addSuppressed);
+		throw exception;
+	}
+
 }
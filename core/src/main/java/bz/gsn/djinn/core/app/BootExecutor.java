@@ -0,0 +1,216 @@
+package bz.gsn.djinn.core.app;
+
+import bz.gsn.djinn.core.Djinn;
+import bz.gsn.djinn.core.util.CoreUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Runs the work of booting an application: its modules, their detectors, and the elements each detector handles.
+ * Boot work is never run on the common pool, so blocking detectors neither starve it nor delay the parallel streams of runtimes.
+ * <p>
+ * Work is run either on a dedicated work-stealing pool of platform threads, in which every (detector, element) task is
+ * forked onto the same pool, so idle threads steal from busy ones across all detectors; or on a virtual thread per task.
+ * See {@link Djinn#BOOT_THREADS_PROPERTY}.
+ * <p>
+ * Tasks are not run through {@link ForkJoinPool#managedBlock}, as nothing tells a blocking task from a busy one; compensating
+ * every task would grow the pool to a thread per pending element. Detectors must therefore not block on the pool, as
+ * documented by {@link bz.gsn.djinn.core.module.AnnotationDetector}; the virtual executor is the one for those which do.
+ * <p>
+ * The first failure cancels the boot: tasks which did not start yet are skipped, running virtual threads are interrupted,
+ * and every call waiting on the executor throws the failure once its started tasks are done.
+ */
+final class BootExecutor implements AutoCloseable {
+
+	private final @Nullable ForkJoinPool pool;
+	private final ThreadFactory virtualFactory = Thread.ofVirtual().name("djinn-boot-virtual-", 0).factory();
+	private final Set<Thread> running = ConcurrentHashMap.newKeySet();
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	private BootExecutor(@Nullable ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Returns an executor running tasks on a work-stealing pool of the given number of platform threads.
+	 * @param parallelism The number of threads.
+	 * @return a new {@link BootExecutor}.
+	 */
+	@NotNull
+	static BootExecutor platform(int parallelism) {
+		var loader = Thread.currentThread().getContextClassLoader();
+		return new BootExecutor(new ForkJoinPool(parallelism, pool -> {
+			var thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			thread.setName("djinn-boot-" + thread.getPoolIndex());
+			thread.setContextClassLoader(loader);
+			return thread;
+		}, null, false));
+	}
+
+	/**
+	 * Returns an executor running every task on a new virtual thread.
+	 * @return a new {@link BootExecutor}.
+	 */
+	@NotNull
+	static BootExecutor virtual() {
+		return new BootExecutor(null);
+	}
+
+	/**
+	 * Returns the executor configured by {@link Djinn#BOOT_THREADS_PROPERTY}.
+	 * @return a new {@link BootExecutor}.
+	 * @throws IllegalArgumentException if the property is neither {@code virtual} nor a positive number.
+	 */
+	@NotNull
+	static BootExecutor configured() {
+		var value = System.getProperty(Djinn.BOOT_THREADS_PROPERTY);
+		if(value == null || value.isBlank()) return platform(java.lang.Runtime.getRuntime().availableProcessors());
+		if(value.strip().equalsIgnoreCase("virtual")) return virtual();
+		try {
+			int parallelism = Integer.parseInt(value.strip());
+			if(parallelism > 0) return platform(parallelism);
+		} catch(NumberFormatException ignored) {
+			// reported below
+		}
+		throw new IllegalArgumentException("Invalid value of " + Djinn.BOOT_THREADS_PROPERTY + ": '" + value + "'; expected 'virtual' or a positive number");
+	}
+
+	/**
+	 * Runs an action on every element, in parallel, and waits for all of them. This may be called from the tasks of this executor.
+	 * @param elements The elements.
+	 * @param action The action.
+	 * @param <T> The type of the elements.
+	 */
+	<T> void forEach(@NotNull Collection<? extends T> elements, @NotNull Consumer<? super T> action) {
+		map(elements, e -> {
+			action.accept(e);
+			return null;
+		});
+	}
+
+	/**
+	 * Applies a function to every element, in parallel, and waits for all of them. This may be called from the tasks of this executor.
+	 * @param elements The elements.
+	 * @param function The function, which returns {@code null} to drop an element.
+	 * @return the non-{@code null} results, in the order of the elements.
+	 * @param <T> The type of the elements.
+	 * @param <R> The type of the results.
+	 */
+	@NotNull
+	@Unmodifiable
+	@SuppressWarnings("unchecked")
+	<T, R> List<R> map(@NotNull Collection<? extends T> elements, @NotNull Function<? super T, ? extends @Nullable R> function) {
+		check();
+		var list = List.<T>copyOf(elements);
+		var results = new Object[list.size()];
+		if(list.isEmpty()) return List.of();
+		if(pool != null) {
+			var task = new Slice<>(list, function, results, 0, list.size());
+			// nested calls fork onto the current worker, where idle workers steal them
+			if(ForkJoinTask.getPool() == pool) task.invoke();
+			else pool.invoke(task);
+		} else {
+			var threads = new ArrayList<Thread>(list.size());
+			for(int i = 0; i < list.size(); i++) {
+				int index = i;
+				var thread = virtualFactory.newThread(() -> run(list, function, results, index));
+				threads.add(thread);
+				thread.start();
+			}
+			for(var thread : threads) {
+				try {
+					thread.join();
+				} catch(InterruptedException e) {
+					fail(e);
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+		}
+		check();
+		var mapped = new ArrayList<R>(results.length);
+		for(var result : results) if(result != null) mapped.add((R) result);
+		return Collections.unmodifiableList(mapped);
+	}
+
+	/**
+	 * Runs a single task, unless the boot was cancelled.
+	 */
+	private <T, R> void run(List<T> elements, Function<? super T, ? extends R> function, Object[] results, int index) {
+		if(failure.get() != null) return;
+		var thread = Thread.currentThread();
+		if(pool == null) running.add(thread);
+		try {
+			results[index] = function.apply(elements.get(index));
+		} catch(Throwable t) {
+			fail(t);
+		} finally {
+			if(pool == null) running.remove(thread);
+		}
+	}
+
+	private void fail(Throwable throwable) {
+		if(!failure.compareAndSet(null, throwable)) return;
+		// platform workers are shared by every task, so only virtual threads are interrupted
+		for(var thread : running) thread.interrupt();
+	}
+
+	/**
+	 * Throws the first failure, if any.
+	 */
+	private void check() {
+		var throwable = failure.get();
+		if(throwable != null) CoreUtils.sneakyThrows(() -> {
+			throw throwable;
+		});
+	}
+
+	@Override
+	public void close() {
+		if(pool != null) pool.shutdown();
+	}
+
+	/**
+	 * The tasks of a range of elements, split in halves until each holds a single element.
+	 */
+	private final class Slice<T, R> extends RecursiveAction {
+
+		private final List<T> elements;
+		private final Function<? super T, ? extends R> function;
+		private final Object[] results;
+		private final int from;
+		private final int to;
+
+		private Slice(List<T> elements, Function<? super T, ? extends R> function, Object[] results, int from, int to) {
+			this.elements = elements;
+			this.function = function;
+			this.results = results;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if(failure.get() != null) return;
+			if(to - from == 1) {
+				run(elements, function, results, from);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new Slice<>(elements, function, results, from, middle), new Slice<>(elements, function, results, middle, to));
+		}
+
+	}
+
+}
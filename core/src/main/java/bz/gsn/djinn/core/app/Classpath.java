@@ -1,56 +1,108 @@
 package bz.gsn.djinn.core.app;
 
+import bz.gsn.djinn.core.StartupReport;
 import bz.gsn.djinn.core.util.CoreUtils;
 import io.github.classgraph.*;
+import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.annotations.Unmodifiable;
 
 import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.HashSet;
-import java.util.Set;
+import java.time.Duration;
+import java.util.*;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * A utility class for performing operations on the classpath.
- * Take note that operations in this class may be very expensive.
+ * Take note that operations in this class may be very expensive, unless
+ * the classpath holds an {@link AnnotationIndex} generated by the Djinn compiler.
+ * <p>
+ * Queries are answered by a {@link Session}, which scans the classpath at most once.
+ * The static methods of this class use the {@linkplain #acquire() shared session}, so they only
+ * share a scan while another party holds onto it; for example, while an application is booting.
  */
 public final class Classpath {
 
-	private static final ClassGraph cg = new ClassGraph()
-			.enableClassInfo()
-			.enableMethodInfo()
-			.enableFieldInfo()
-			.enableAnnotationInfo()
-			.disableRuntimeInvisibleAnnotations();
+	private static final Object sharedLock = new Object();
+	private static Session shared;
 
 	private Classpath() {
 		//no instance
 	}
 
+	private static final class IndexHolder {
+		// loaded once, on first use; bootstrapped JARs always carry an index.
+		private static final long start = System.nanoTime();
+		private static final Optional<AnnotationIndex> index = AnnotationIndex.load(loader());
+		private static final Duration loadTime = Duration.ofNanos(System.nanoTime() - start);
+	}
+
+	private static ClassLoader loader() {
+		var loader = Classpath.class.getClassLoader();
+		return loader == null ? ClassLoader.getSystemClassLoader() : loader;
+	}
+
+	/**
+	 * Returns the {@link AnnotationIndex} embedded in the classpath by the Djinn compiler.
+	 * @return the index, else an empty {@link Optional} if the classpath must be scanned instead.
+	 */
+	@NotNull
+	public static Optional<AnnotationIndex> index() {
+		return IndexHolder.index;
+	}
+
+	/**
+	 * Returns the binary name of the invoker class generated for the given method by the Djinn compiler, if any.
+	 * Invokers are only generated if the compiler was asked to, and only for methods with
+	 * {@link bz.gsn.djinn.core.resource.Inject @Inject}ed parameters.
+	 * @param method The method.
+	 * @return the name of the invoker class, else an empty {@link Optional}.
+	 */
+	@NotNull
+	public static Optional<String> invoker(@NotNull Method method) {
+		return index().flatMap(index -> index.invoker(AnnotationIndex.method(
+				method.getDeclaringClass().getName(),
+				method.getName(),
+				MethodType.methodType(method.getReturnType(), method.getParameterTypes()).toMethodDescriptorString()
+		)));
+	}
+
+	/**
+	 * Acquires the shared {@link Session} of this process, which scans the whole classpath.
+	 * The session (and its scan) is shared by every party until all of them have {@linkplain Session#close() closed it},
+	 * after which the next acquisition creates a new session.
+	 * Each acquisition must be closed exactly once.
+	 * @return the shared session.
+	 */
+	@NotNull
+	public static Session acquire() {
+		synchronized(sharedLock) {
+			if(shared == null || !shared.retain()) shared = Session.builder().open();
+			return shared;
+		}
+	}
+
 	/**
 	 * Returns a {@link Set} of methods annotated with a given annotation.
 	 * @param clazz The class of the annotation.
 	 * @return the annotated methods.
 	 * @param <A> The type of the annotation.
+	 * @see Session#annotatedMethods(Class)
 	 */
 	@NotNull
 	@Unmodifiable
 	public static <A extends Annotation> Set<Method> annotatedMethods(@NotNull Class<A> clazz) {
-		return CoreUtils.sneakyThrows(() -> {
-			try(var $ = Executors.newVirtualThreadPerTaskExecutor(); ScanResult result = cg.scanAsync($, 10).get()) {
-				return result.getClassesWithMethodAnnotation(clazz)
-						.parallelStream()
-						.map(ClassInfo::getMethodInfo)
-						.map(x -> x.parallelStream().map(MethodInfo::loadClassAndGetMethod).collect(Collectors.toUnmodifiableSet()))
-						.reduce(new HashSet<>(), (x, y) -> {
-							x.addAll(y); // safe: x is known to be modifiable.
-							return x;
-						});
-			}
-		});
+		try(var session = acquire()) {
+			return session.annotatedMethods(clazz);
+		}
 	}
 
 	/**
@@ -58,22 +110,14 @@ public final class Classpath {
 	 * @param clazz The class of the annotation.
 	 * @return the annotated classes.
 	 * @param <A> The type of the annotation.
+	 * @see Session#annotatedFields(Class)
 	 */
 	@NotNull
 	@Unmodifiable
 	public static <A extends Annotation> Set<Field> annotatedFields(@NotNull Class<A> clazz) {
-		return CoreUtils.sneakyThrows(() -> {
-			try(var $ = Executors.newVirtualThreadPerTaskExecutor(); ScanResult result = cg.scanAsync($, 10).get()) {
-				return result.getClassesWithFieldAnnotation(clazz)
-						.parallelStream()
-						.map(ClassInfo::getFieldInfo)
-						.map(x -> x.parallelStream().map(FieldInfo::loadClassAndGetField).collect(Collectors.toUnmodifiableSet()))
-						.reduce(new HashSet<>(), (x, y) -> {
-							x.addAll(y); // safe: x is known to be modifiable.
-							return x;
-						});
-			}
-		});
+		try(var session = acquire()) {
+			return session.annotatedFields(clazz);
+		}
 	}
 
 	/**
@@ -81,33 +125,321 @@ public final class Classpath {
 	 * @param clazz The class of the annotation.
 	 * @return the annotated types.
 	 * @param <A> The type of the annotation.
+	 * @see Session#annotatedTypes(Class)
 	 */
 	@NotNull
 	@Unmodifiable
 	public static <A extends Annotation> Set<Class<?>> annotatedTypes(@NotNull Class<A> clazz) {
-		return CoreUtils.sneakyThrows(() -> {
-			try(var $ = Executors.newVirtualThreadPerTaskExecutor(); ScanResult result = cg.scanAsync($, 10).get()) {
-				return result.getClassesWithAnnotation(clazz)
-						.parallelStream()
-						.map(ClassInfo::loadClass)
-						.collect(Collectors.toUnmodifiableSet());
-			}
-		});
+		try(var session = acquire()) {
+			return session.annotatedTypes(clazz);
+		}
 	}
 
+	/**
+	 * Returns a {@link Set} of classes directly extending the given class.
+	 * @param clazz The superclass.
+	 * @return the direct subclasses.
+	 * @param <A> The type of the superclass.
+	 * @see Session#directlyExtendingClasses(Class)
+	 */
 	@NotNull
 	@Unmodifiable
 	public static <A> Set<Class<? extends A>> directlyExtendingClasses(@NotNull Class<A> clazz) {
-		return CoreUtils.sneakyThrows(() -> {
-			try(ScanResult result = cg.scanAsync(Executors.newVirtualThreadPerTaskExecutor(), 10).get()) {
-				return result.getSubclasses(clazz)
-						.directOnly()
-						.loadClasses()
-						.stream()
-						.map(f -> (Class<? extends A>) f.asSubclass(clazz))
-						.collect(Collectors.toUnmodifiableSet());
+		try(var session = acquire()) {
+			return session.directlyExtendingClasses(clazz);
+		}
+	}
+
+	/**
+	 * A bounded view of the classpath, which scans it at most once and answers every query from that scan.
+	 * If the classpath holds an {@link AnnotationIndex} and no classpath override is set, annotation queries
+	 * are answered by the index instead, and no scan takes place for them at all.
+	 * <p>
+	 * Sessions are thread-safe. The scan is performed lazily on the first query which needs it, and is
+	 * released when the session is closed; the session cannot be queried afterwards.
+	 */
+	public static final class Session implements AutoCloseable {
+
+		private final ClassGraph cg;
+		private final Set<String> accepted;
+		private final Set<String> rejected;
+		private final boolean overridden;
+		private final AtomicInteger references = new AtomicInteger(1);
+		private volatile ScanResult result;
+		private volatile Statistics statistics;
+
+		private Session(@NotNull Builder builder) {
+			this.accepted = Set.copyOf(builder.accepted);
+			this.rejected = Set.copyOf(builder.rejected);
+			this.overridden = builder.classpath != null;
+			this.cg = new ClassGraph()
+					.enableClassInfo()
+					.enableMethodInfo()
+					.enableFieldInfo()
+					.enableAnnotationInfo()
+					.disableRuntimeInvisibleAnnotations()
+					.acceptPackages(builder.accepted.toArray(String[]::new))
+					.rejectPackages(builder.rejected.toArray(String[]::new));
+			if(overridden) this.cg.overrideClasspath(builder.classpath);
+			var indexed = !overridden && index().isPresent();
+			this.statistics = new Statistics(indexed, 0, indexed ? IndexHolder.loadTime : Duration.ZERO, 0);
+		}
+
+		/**
+		 * Returns a new {@link Builder} for a session.
+		 * @return a new builder.
+		 */
+		@Contract(value = " -> new", pure = true)
+		public static @NotNull Builder builder() {
+			return new Builder();
+		}
+
+		/**
+		 * Returns a {@link Set} of methods annotated with a given annotation.
+		 * Only methods bearing the annotation themselves are returned.
+		 * @param clazz The class of the annotation.
+		 * @return the annotated methods.
+		 * @param <A> The type of the annotation.
+		 */
+		@NotNull
+		@Unmodifiable
+		public <A extends Annotation> Set<Method> annotatedMethods(@NotNull Class<A> clazz) {
+			var indexed = fromIndex(clazz, ElementType.METHOD, Classpath::resolveMethod);
+			if(indexed != null) return indexed;
+			return scanResult().getClassesWithMethodAnnotation(clazz)
+					.stream()
+					.flatMap(x -> x.getMethodInfo().filter(m -> m.hasAnnotation(clazz)).stream())
+					.map(MethodInfo::loadClassAndGetMethod)
+					.collect(Collectors.toUnmodifiableSet());
+		}
+
+		/**
+		 * Returns a {@link Set} of fields annotated with a given annotation.
+		 * Only fields bearing the annotation themselves are returned.
+		 * @param clazz The class of the annotation.
+		 * @return the annotated fields.
+		 * @param <A> The type of the annotation.
+		 */
+		@NotNull
+		@Unmodifiable
+		public <A extends Annotation> Set<Field> annotatedFields(@NotNull Class<A> clazz) {
+			var indexed = fromIndex(clazz, ElementType.FIELD, Classpath::resolveField);
+			if(indexed != null) return indexed;
+			return scanResult().getClassesWithFieldAnnotation(clazz)
+					.stream()
+					.flatMap(x -> x.getFieldInfo().filter(f -> f.hasAnnotation(clazz)).stream())
+					.map(FieldInfo::loadClassAndGetField)
+					.collect(Collectors.toUnmodifiableSet());
+		}
+
+		/**
+		 * Returns a {@link Set} of types annotated with a given annotation.
+		 * @param clazz The class of the annotation.
+		 * @return the annotated types.
+		 * @param <A> The type of the annotation.
+		 */
+		@NotNull
+		@Unmodifiable
+		public <A extends Annotation> Set<Class<?>> annotatedTypes(@NotNull Class<A> clazz) {
+			var indexed = fromIndex(clazz, ElementType.TYPE, Classpath::resolveType);
+			if(indexed != null) return indexed;
+			return scanResult().getClassesWithAnnotation(clazz)
+					.stream()
+					.map(ClassInfo::loadClass)
+					.collect(Collectors.toUnmodifiableSet());
+		}
+
+		/**
+		 * Returns a {@link Set} of classes directly extending the given class.
+		 * This always requires a scan, as the {@link AnnotationIndex} does not record class hierarchies.
+		 * @param clazz The superclass.
+		 * @return the direct subclasses.
+		 * @param <A> The type of the superclass.
+		 */
+		@NotNull
+		@Unmodifiable
+		public <A> Set<Class<? extends A>> directlyExtendingClasses(@NotNull Class<A> clazz) {
+			return scanResult().getSubclasses(clazz)
+					.directOnly()
+					.loadClasses()
+					.stream()
+					.<Class<? extends A>>map(f -> f.asSubclass(clazz))
+					.collect(Collectors.toUnmodifiableSet());
+		}
+
+		/**
+		 * Returns statistics on the scan of this session.
+		 * Until a query requires a scan, the statistics are zeroed, but for the time taken to load the index, if any.
+		 * @return the statistics.
+		 */
+		@NotNull
+		public Statistics statistics() {
+			return statistics;
+		}
+
+		/**
+		 * Releases this session. Once every party sharing this session has released it,
+		 * the underlying scan is closed and the session may no longer be queried.
+		 */
+		@Override
+		public void close() {
+			if(references.decrementAndGet() != 0) return;
+			synchronized(this) {
+				if(result != null) result.close();
+				result = null;
+			}
+		}
+
+		private boolean retain() {
+			return references.getAndUpdate(x -> x == 0 ? 0 : x + 1) != 0;
+		}
+
+		@Nullable
+		private <T> Set<T> fromIndex(Class<? extends Annotation> clazz, ElementType kind, Function<String, T> resolver) {
+			if(overridden || index().isEmpty()) return null;
+			if(references.get() == 0) throw new IllegalStateException("the session was already closed");
+			return index().get()
+					.elements(clazz.getName(), kind)
+					.stream()
+					.filter(this::accepts)
+					.map(resolver)
+					.collect(Collectors.toUnmodifiableSet());
+		}
+
+		/**
+		 * Returns the data prepared at build time for the given {@link bz.gsn.djinn.core.module.BuildTimeAnnotationDetector}
+		 * class, restricted to the accepted packages. The data describes the bootstrapped classpath, so it is ignored
+		 * if a classpath override is set.
+		 * @param detector The binary name of the detector class.
+		 * @return the prepared data, else an empty {@link Optional} if the detector was not prepared.
+		 */
+		@NotNull
+		public Optional<DetectorData> preparedData(@NotNull String detector) {
+			if(overridden) return Optional.empty();
+			return DetectorData.load(loader(), detector).map(data -> {
+				if(accepted.isEmpty() && rejected.isEmpty()) return data;
+				var filtered = new DetectorData();
+				for(var kind : List.of(ElementType.TYPE, ElementType.FIELD, ElementType.METHOD)) {
+					data.entries(kind).forEach((element, value) -> {
+						if(accepts(element)) filtered.add(kind, element, value);
+					});
+				}
+				return filtered;
+			});
+		}
+
+		private boolean accepts(String element) {
+			var separator = element.indexOf('#');
+			var className = separator == -1 ? element : element.substring(0, separator);
+			if(rejected.stream().anyMatch(p -> className.startsWith(p + "."))) return false;
+			return accepted.isEmpty() || accepted.stream().anyMatch(p -> className.startsWith(p + "."));
+		}
+
+		private ScanResult scanResult() {
+			var result = this.result;
+			if(result != null) return result;
+			synchronized(this) {
+				if(references.get() == 0) throw new IllegalStateException("the session was already closed");
+				if(this.result != null) return this.result;
+				var runtime = Runtime.getRuntime();
+				var heap = runtime.totalMemory() - runtime.freeMemory();
+				var start = System.nanoTime();
+				var event = new StartupPhaseEvent(StartupReport.CLASSPATH_SCAN, "scan");
+				event.begin();
+				this.result = result = CoreUtils.sneakyThrows(() -> {
+					try(var $ = Executors.newVirtualThreadPerTaskExecutor()) {
+						return cg.scanAsync($, 10).get();
+					}
+				});
+				event.commit();
+				this.statistics = new Statistics(
+						statistics.indexed(),
+						result.getAllClasses().size(),
+						Duration.ofNanos(System.nanoTime() - start),
+						Math.max(0, runtime.totalMemory() - runtime.freeMemory() - heap)
+				);
+				return result;
 			}
-		});
+		}
+
+		/**
+		 * Statistics on the scan of a {@link Session}.
+		 * @param indexed Whether annotation queries are answered by the {@link AnnotationIndex}.
+		 * @param classCount The number of classes scanned.
+		 * @param scanTime The time taken by the scan, or, until a query requires a scan, the time taken to load the index.
+		 * @param memoryUsage An estimate of the heap retained by the scan, in bytes. This is measured as the growth
+		 *                    of the used heap during the scan, so it is only approximate.
+		 */
+		public record Statistics(boolean indexed, int classCount, @NotNull Duration scanTime, long memoryUsage) {}
+
+		/**
+		 * A builder for a {@link Session}.
+		 */
+		public static final class Builder {
+
+			private final Set<String> accepted = new LinkedHashSet<>();
+			private final Set<String> rejected = new LinkedHashSet<>();
+			private Object[] classpath;
+
+			private Builder() {}
+
+			/**
+			 * Restricts the scan to the given packages and their subpackages.
+			 * @param packages The packages to accept.
+			 * @return this {@link Builder}.
+			 */
+			@Contract(value = "_ -> this")
+			public @NotNull Builder acceptPackages(@NotNull String @NotNull... packages) {
+				this.accepted.addAll(List.of(packages));
+				return this;
+			}
+
+			/**
+			 * Excludes the given packages and their subpackages from the scan.
+			 * @param packages The packages to reject.
+			 * @return this {@link Builder}.
+			 */
+			@Contract(value = "_ -> this")
+			public @NotNull Builder rejectPackages(@NotNull String @NotNull... packages) {
+				this.rejected.addAll(List.of(packages));
+				return this;
+			}
+
+			/**
+			 * Scans the given classpath elements (directories or JARs) instead of the classpath of this process.
+			 * Sessions with an overridden classpath never use the {@link AnnotationIndex}.
+			 * @param elements The classpath elements to scan.
+			 * @return this {@link Builder}.
+			 */
+			@Contract(value = "_ -> this")
+			public @NotNull Builder overrideClasspath(@NotNull Object @NotNull... elements) {
+				this.classpath = elements.clone();
+				return this;
+			}
+
+			/**
+			 * Opens the session. The classpath is not scanned until a query requires it.
+			 * @return a new {@link Session}.
+			 */
+			@Contract(value = " -> new", pure = true)
+			public @NotNull Session open() {
+				return new Session(this);
+			}
+
+		}
+
+	}
+
+	static Class<?> resolveType(String element) {
+		return CoreUtils.sneakyThrows(() -> AnnotationIndex.resolveType(element, loader()));
+	}
+
+	static Field resolveField(String element) {
+		return CoreUtils.sneakyThrows(() -> AnnotationIndex.resolveField(element, loader()));
+	}
+
+	static Method resolveMethod(String element) {
+		return CoreUtils.sneakyThrows(() -> AnnotationIndex.resolveMethod(element, loader()));
 	}
 
 }
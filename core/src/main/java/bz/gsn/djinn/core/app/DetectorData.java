@@ -0,0 +1,207 @@
+package bz.gsn.djinn.core.app;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.io.*;
+import java.lang.annotation.ElementType;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * The data prepared at build time by a {@link bz.gsn.djinn.core.module.BuildTimeAnnotationDetector}, which maps each
+ * element it detected to the string it prepared for it. The Djinn compiler embeds the data of each detector class in
+ * bootstrapped JARs at {@value #LOCATION}{@code <detector>}, named by the binary name of the detector class.
+ * <p>
+ * The data is a UTF-8 text file starting with the line {@value #HEADER}, followed by one line per element, of the form
+ * {@code <kind> <element> <data>}. Kinds and elements are written as in the {@link AnnotationIndex}; in the data,
+ * backslashes, carriage returns and line feeds are escaped as {@code \\}, {@code \r} and {@code \n}.
+ */
+public final class DetectorData {
+
+	/**
+	 * The directory of the detector data inside a JAR.
+	 */
+	public static final String LOCATION = "META-INF/djinn/detectors/";
+
+	/**
+	 * The first line of all detector data.
+	 */
+	public static final String HEADER = "djinn-detector-data 1";
+
+	private final EnumMap<ElementType, Map<String, String>> entries = new EnumMap<>(ElementType.class);
+
+	/**
+	 * Adds the data prepared for an element.
+	 * @param kind The kind of the element; one of {@link ElementType#TYPE}, {@link ElementType#FIELD} or {@link ElementType#METHOD}.
+	 * @param element The element, in the form returned by {@link AnnotationIndex#type(String)}, {@link AnnotationIndex#field(String, String)}
+	 *                or {@link AnnotationIndex#method(String, String, String)}.
+	 * @param data The prepared data.
+	 */
+	public void add(@NotNull ElementType kind, @NotNull String element, @NotNull String data) {
+		if(kind != ElementType.TYPE && kind != ElementType.FIELD && kind != ElementType.METHOD) {
+			throw new IllegalArgumentException("Unsupported element kind " + kind);
+		}
+		entries.computeIfAbsent(kind, ignored -> new TreeMap<>()).put(element, data);
+	}
+
+	/**
+	 * Returns the data prepared for the elements of the given kind.
+	 * @param kind The kind of the elements.
+	 * @return a map of elements to their data, which may be empty.
+	 */
+	@NotNull
+	@Unmodifiable
+	public Map<String, String> entries(@NotNull ElementType kind) {
+		return Collections.unmodifiableMap(entries.getOrDefault(kind, Collections.emptyMap()));
+	}
+
+	/**
+	 * Returns whether no data was prepared for any element.
+	 * @return {@code true} if there is none, else {@code false}.
+	 */
+	public boolean isEmpty() {
+		return entries.values().stream().allMatch(Map::isEmpty);
+	}
+
+	/**
+	 * Writes this data to the given {@link OutputStream}. The stream will not be closed.
+	 * @param outputStream The stream to write to.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	public void write(@NotNull OutputStream outputStream) throws IOException {
+		var writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+		writer.write(HEADER);
+		writer.newLine();
+		for(var kind : entries.entrySet()) {
+			for(var entry : kind.getValue().entrySet()) {
+				writer.write(prefix(kind.getKey()));
+				writer.write(' ');
+				writer.write(entry.getKey());
+				writer.write(' ');
+				writer.write(escape(entry.getValue()));
+				writer.newLine();
+			}
+		}
+		writer.flush();
+	}
+
+	/**
+	 * Returns the data as a byte array, as it would be {@linkplain #write(OutputStream) written}.
+	 * @return the serialized data.
+	 */
+	public byte @NotNull [] toByteArray() {
+		var outputStream = new ByteArrayOutputStream();
+		try {
+			write(outputStream);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e); // impossible for in-memory streams
+		}
+		return outputStream.toByteArray();
+	}
+
+	/**
+	 * Reads data from the given {@link InputStream}, merging it into this data. The stream will not be closed.
+	 * @param inputStream The stream to read from.
+	 * @throws IOException if an I/O error occurs, or the stream does not hold valid detector data.
+	 */
+	public void read(@NotNull InputStream inputStream) throws IOException {
+		var reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+		if(!HEADER.equals(reader.readLine())) throw new IOException("Not Djinn detector data");
+		String line;
+		while((line = reader.readLine()) != null) {
+			if(line.isEmpty()) continue;
+			var separator = line.indexOf(' ', 2);
+			if(line.length() < 3 || line.charAt(1) != ' ' || separator == -1) {
+				throw new IOException("Malformed detector data line '" + line + "'");
+			}
+			this.add(kind(line.charAt(0)), line.substring(2, separator), unescape(line.substring(separator + 1)));
+		}
+	}
+
+	/**
+	 * Loads and merges the data of the given detector class visible to the given {@link ClassLoader}.
+	 * @param classLoader The class loader to look for data in.
+	 * @param detector The binary name of the detector class.
+	 * @return the merged data, else an empty {@link Optional} if there is none.
+	 */
+	@NotNull
+	public static Optional<DetectorData> load(@NotNull ClassLoader classLoader, @NotNull String detector) {
+		try {
+			var urls = classLoader.getResources(location(detector));
+			if(!urls.hasMoreElements()) return Optional.empty();
+			var data = new DetectorData();
+			while(urls.hasMoreElements()) {
+				try(var inputStream = urls.nextElement().openStream()) {
+					data.read(inputStream);
+				}
+			}
+			return Optional.of(data);
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the location of the data of the given detector class inside a JAR.
+	 * @param detector The binary name of the detector class.
+	 * @return the location.
+	 */
+	public static @NotNull String location(@NotNull String detector) {
+		return LOCATION + detector;
+	}
+
+	private static String escape(String data) {
+		if(data.indexOf('\\') == -1 && data.indexOf('\n') == -1 && data.indexOf('\r') == -1) return data;
+		var builder = new StringBuilder(data.length() + 8);
+		for(int i = 0; i < data.length(); i++) {
+			var c = data.charAt(i);
+			switch(c) {
+				case '\\' -> builder.append("\\\\");
+				case '\n' -> builder.append("\\n");
+				case '\r' -> builder.append("\\r");
+				default -> builder.append(c);
+			}
+		}
+		return builder.toString();
+	}
+
+	private static String unescape(String data) throws IOException {
+		if(data.indexOf('\\') == -1) return data;
+		var builder = new StringBuilder(data.length());
+		for(int i = 0; i < data.length(); i++) {
+			var c = data.charAt(i);
+			if(c != '\\') {
+				builder.append(c);
+				continue;
+			}
+			if(++i == data.length()) throw new IOException("Dangling escape in detector data '" + data + "'");
+			builder.append(switch(data.charAt(i)) {
+				case '\\' -> '\\';
+				case 'n' -> '\n';
+				case 'r' -> '\r';
+				default -> throw new IOException("Unknown escape '\\" + data.charAt(i) + "' in detector data");
+			});
+		}
+		return builder.toString();
+	}
+
+	private static char prefix(ElementType kind) {
+		return switch(kind) {
+			case TYPE -> 'T';
+			case FIELD -> 'F';
+			case METHOD -> 'M';
+			default -> throw new IllegalArgumentException("Unsupported element kind " + kind);
+		};
+	}
+
+	private static ElementType kind(char prefix) throws IOException {
+		return switch(prefix) {
+			case 'T' -> ElementType.TYPE;
+			case 'F' -> ElementType.FIELD;
+			case 'M' -> ElementType.METHOD;
+			default -> throw new IOException("Unknown element kind '" + prefix + "'");
+		};
+	}
+
+}
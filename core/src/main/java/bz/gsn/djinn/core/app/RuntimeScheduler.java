@@ -0,0 +1,215 @@
+package bz.gsn.djinn.core.app;
+
+import bz.gsn.djinn.core.StartupReport;
+import bz.gsn.djinn.core.module.Runtime;
+import bz.gsn.djinn.core.resource.ResourceRegistry;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Starts, supervises and stops the {@link Runtime}s of an application.
+ * <p>
+ * Runtimes are started once the runtimes they {@linkplain Runtime#dependencies() depend} on are {@linkplain Runtime#ready() ready},
+ * each on the kind of thread it {@linkplain Runtime#threading() declares}, and are restarted according to their
+ * {@linkplain Runtime#restartPolicy() restart policy} if they crash. A single shutdown hook stops them in reverse dependency
+ * order; each runtime is given its {@linkplain Runtime#stopTimeout() stop timeout} to stop and drain.
+ */
+final class RuntimeScheduler {
+
+	private static final Logger logger = LoggerFactory.getLogger(RuntimeScheduler.class);
+
+	private final ResourceRegistry resourceRegistry;
+	private final StartupRecorder recorder;
+	private final List<Runtime> order;
+	private final Map<Runtime, CompletableFuture<Void>> readiness = new IdentityHashMap<>();
+	private final Map<Runtime, CompletableFuture<Void>> finished = new IdentityHashMap<>();
+	private final Map<Runtime, Thread> threads = new ConcurrentHashMap<>();
+	private final Set<Thread> backingOff = ConcurrentHashMap.newKeySet();
+	private final ThreadFactory platformFactory = Thread.ofPlatform().daemon(false).name("runtime-thread-", 0).factory();
+	private final ThreadFactory virtualFactory = Thread.ofVirtual().name("runtime-virtual-", 0).factory();
+	private volatile boolean stopping;
+
+	/**
+	 * Creates a new {@link RuntimeScheduler}.
+	 * @param runtimes The runtimes to schedule.
+	 * @param resourceRegistry The resource registry passed to the runtimes.
+	 * @param recorder The recorder of the time each runtime takes to become ready.
+	 * @throws IllegalStateException if a runtime depends on an unregistered runtime, or runtimes depend on each other cyclically.
+	 */
+	RuntimeScheduler(@NotNull Collection<Runtime> runtimes, @NotNull ResourceRegistry resourceRegistry, @NotNull StartupRecorder recorder) {
+		this.resourceRegistry = resourceRegistry;
+		this.recorder = recorder;
+		this.order = sort(runtimes);
+		for(var runtime : order) {
+			readiness.put(runtime, new CompletableFuture<>());
+			finished.put(runtime, new CompletableFuture<>());
+		}
+	}
+
+	/**
+	 * Starts every runtime, once its dependencies are ready, and registers the shutdown hook.
+	 * @return a future completed once every runtime is ready, or completed exceptionally once every runtime is ready or
+	 * never will be, if any runtime never became ready. Runtimes which are not ready when they are {@linkplain #stop() stopped}
+	 * never will be.
+	 */
+	@NotNull
+	CompletableFuture<Void> start() {
+		java.lang.Runtime.getRuntime().addShutdownHook(Thread.ofPlatform().name("runtime-shutdown").unstarted(this::stop));
+		var virtual = new ArrayList<CompletableFuture<Void>>();
+		var recorded = new ArrayList<CompletableFuture<Void>>();
+		for(var runtime : order) {
+			var span = recorder.span(StartupReport.RUNTIME_START, name(runtime));
+			recorded.add(readiness.get(runtime).thenRun(span::close));
+			var dependencies = runtime.dependencies().stream().map(readiness::get).toArray(CompletableFuture<?>[]::new);
+			CompletableFuture.allOf(dependencies).whenComplete((ignored, throwable) -> {
+				if(throwable != null) {
+					if(!stopping) logger.error("Not starting runtime {}, as a runtime it depends on never became ready", name(runtime));
+					readiness.get(runtime).completeExceptionally(throwable);
+					finished.get(runtime).complete(null);
+				} else if(!stopping) {
+					var factory = runtime.threading() == Runtime.Threading.VIRTUAL ? virtualFactory : platformFactory;
+					var thread = factory.newThread(() -> supervise(runtime));
+					threads.put(runtime, thread);
+					thread.start();
+				}
+			});
+			runtime.whenReady().thenRun(() -> readiness.get(runtime).complete(null));
+			if(runtime.threading() == Runtime.Threading.VIRTUAL) virtual.add(finished.get(runtime));
+		}
+		if(!virtual.isEmpty()) {
+			// virtual threads are daemons, so something has to keep the application alive while they run
+			platformFactory.newThread(() -> CompletableFuture.allOf(virtual.toArray(CompletableFuture[]::new)).join()).start();
+		}
+		return CompletableFuture.allOf(recorded.toArray(CompletableFuture[]::new));
+	}
+
+	private void supervise(Runtime runtime) {
+		var policy = runtime.restartPolicy();
+		try {
+			for(int restarts = 0; ; restarts++) {
+				logger.info("Starting runtime {}", name(runtime));
+				try {
+					runtime.run(resourceRegistry);
+					runtime.ready();
+					return;
+				} catch(Throwable throwable) {
+					if(stopping || restarts >= policy.maxRestarts()) {
+						logger.error("Runtime {} crashed", name(runtime), throwable);
+						readiness.get(runtime).completeExceptionally(throwable);
+						return;
+					}
+					var backoff = policy.backoff(restarts);
+					logger.warn("Runtime {} crashed; restarting in {} ({}/{})", name(runtime), backoff, restarts + 1, policy.maxRestarts(), throwable);
+					// stop() interrupts the supervisors it finds backing off, and the others see it stopping
+					backingOff.add(Thread.currentThread());
+					try {
+						if(stopping) return;
+						Thread.sleep(backoff);
+					} finally {
+						backingOff.remove(Thread.currentThread());
+					}
+					if(stopping) return;
+				}
+			}
+		} catch(InterruptedException e) {
+			// the application is stopping, so the runtime is not restarted
+			Thread.currentThread().interrupt();
+		} finally {
+			finished.get(runtime).complete(null);
+		}
+	}
+
+	/**
+	 * Stops every runtime, after the runtimes depending on it, waiting at most for its stop timeout.
+	 * Only the first call stops them; later calls return immediately.
+	 */
+	void stop() {
+		synchronized(this) {
+			if(stopping) return;
+			stopping = true;
+		}
+		// crashed runtimes waiting to be restarted are not restarted
+		for(var thread : backingOff) thread.interrupt();
+		// runtimes which are not ready yet never will be, which completes the startup report
+		for(var runtime : order) {
+			readiness.get(runtime).completeExceptionally(new CancellationException("Runtime " + name(runtime) + " was stopped before it was ready"));
+		}
+		var stopped = new IdentityHashMap<Runtime, CompletableFuture<Void>>();
+		for(var runtime : order) stopped.put(runtime, new CompletableFuture<>());
+		var dependents = new IdentityHashMap<Runtime, List<CompletableFuture<Void>>>();
+		for(var runtime : order) {
+			for(var dependency : runtime.dependencies()) {
+				dependents.computeIfAbsent(dependency, ignored -> new ArrayList<>()).add(stopped.get(runtime));
+			}
+		}
+		for(var runtime : order) {
+			var after = dependents.getOrDefault(runtime, List.of()).toArray(CompletableFuture[]::new);
+			CompletableFuture.allOf(after).whenComplete((ignored, throwable) -> Thread.ofVirtual().start(() -> {
+				try {
+					drain(runtime);
+				} finally {
+					stopped.get(runtime).complete(null);
+				}
+			}));
+		}
+		CompletableFuture.allOf(stopped.values().toArray(CompletableFuture[]::new)).join();
+	}
+
+	private void drain(Runtime runtime) {
+		var thread = threads.get(runtime);
+		if(thread == null) return; // never started
+		var deadline = System.nanoTime() + runtime.stopTimeout().toNanos();
+		logger.info("Stopping runtime {}", name(runtime));
+		try {
+			var stopper = Thread.ofVirtual().start(() -> runtime.stop(resourceRegistry));
+			if(!stopper.join(remaining(deadline)) || !thread.join(remaining(deadline))) {
+				logger.warn("Runtime {} did not stop within {}", name(runtime), runtime.stopTimeout());
+			}
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static Duration remaining(long deadline) {
+		return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+	}
+
+	private static List<Runtime> sort(Collection<Runtime> runtimes) {
+		var registered = Collections.newSetFromMap(new IdentityHashMap<Runtime, Boolean>());
+		registered.addAll(runtimes);
+		var order = new ArrayList<Runtime>();
+		var state = new IdentityHashMap<Runtime, Boolean>(); // false = on the current path, true = done
+		for(var runtime : runtimes) visit(runtime, registered, state, order);
+		return order;
+	}
+
+	private static void visit(Runtime runtime, Set<Runtime> registered, Map<Runtime, Boolean> state, List<Runtime> order) {
+		var current = state.get(runtime);
+		if(current != null) {
+			if(!current) throw new IllegalStateException("Runtime " + name(runtime) + " depends on itself, directly or indirectly");
+			return;
+		}
+		state.put(runtime, false);
+		for(var dependency : runtime.dependencies()) {
+			if(!registered.contains(dependency)) {
+				throw new IllegalStateException("Runtime " + name(runtime) + " depends on " + name(dependency) + ", which is not registered");
+			}
+			visit(dependency, registered, state, order);
+		}
+		state.put(runtime, true);
+		order.add(runtime);
+	}
+
+	private static String name(Runtime runtime) {
+		return runtime.getClass().getName() + "@" + Integer.toHexString(System.identityHashCode(runtime));
+	}
+
+}
@@ -0,0 +1,27 @@
+package bz.gsn.djinn.core.app;
+
+import jdk.jfr.*;
+
+/**
+ * A JFR event recorded for every phase of the startup of a Djinn application.
+ * See {@link bz.gsn.djinn.core.StartupReport} for the phases.
+ */
+@Name("bz.gsn.djinn.StartupPhase")
+@Label("Djinn Startup Phase")
+@Category("Djinn")
+@StackTrace(false)
+final class StartupPhaseEvent extends Event {
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Subject")
+	@Description("The detector, resource or runtime the phase is about, if any")
+	String subject;
+
+	StartupPhaseEvent(String phase, String subject) {
+		this.phase = phase;
+		this.subject = subject;
+	}
+
+}
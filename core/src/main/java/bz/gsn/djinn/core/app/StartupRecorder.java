@@ -0,0 +1,108 @@
+package bz.gsn.djinn.core.app;
+
+import bz.gsn.djinn.core.StartupReport;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Records the phases of a {@link StartupReport}. This is thread-safe.
+ */
+final class StartupRecorder {
+
+	private final ConcurrentLinkedQueue<StartupReport.Phase> phases = new ConcurrentLinkedQueue<>();
+	private final long origin = System.nanoTime();
+
+	/**
+	 * Starts timing a phase, which is recorded when the returned {@link Span} is closed.
+	 * @param phase The name of the phase.
+	 * @param subject The subject of the phase, if any.
+	 * @return a new {@link Span}.
+	 */
+	@NotNull
+	Span span(@NotNull String phase, @Nullable String subject) {
+		return new Span(phase, subject, true);
+	}
+
+	/**
+	 * Records a phase timed elsewhere.
+	 * @param phase The name of the phase.
+	 * @param subject The subject of the phase, if any.
+	 * @param duration The duration of the phase.
+	 */
+	void add(@NotNull String phase, @Nullable String subject, @NotNull Duration duration) {
+		phases.add(new StartupReport.Phase(phase, subject, duration));
+	}
+
+	/**
+	 * Returns the time elapsed since this recorder was created.
+	 * @return the elapsed time.
+	 */
+	@NotNull
+	Duration elapsed() {
+		return Duration.ofNanos(System.nanoTime() - origin);
+	}
+
+	/**
+	 * Returns a report of the phases recorded so far.
+	 * @param total The total startup time.
+	 * @return a new {@link StartupReport}.
+	 */
+	@NotNull
+	StartupReport report(@NotNull Duration total) {
+		return new StartupReport(List.copyOf(phases), total);
+	}
+
+	/**
+	 * A phase being timed. It is always recorded as a JFR event, and, if it was {@linkplain #span(String, String) started by}
+	 * a recorder, in that recorder too.
+	 */
+	final class Span implements AutoCloseable {
+
+		private final StartupPhaseEvent event;
+		private final boolean record;
+		private final long start = System.nanoTime();
+		private Duration duration;
+
+		private Span(String phase, String subject, boolean record) {
+			this.event = new StartupPhaseEvent(phase, subject);
+			this.record = record;
+			event.begin();
+		}
+
+		/**
+		 * Stops timing this phase, unless it was already stopped.
+		 * @return the duration of the phase.
+		 */
+		@NotNull
+		Duration stop() {
+			if(duration != null) return duration;
+			event.commit();
+			duration = Duration.ofNanos(System.nanoTime() - start);
+			if(record) add(event.phase, event.subject, duration);
+			return duration;
+		}
+
+		@Override
+		public void close() {
+			stop();
+		}
+
+	}
+
+	/**
+	 * Starts timing a phase which is only recorded as a JFR event; its duration is returned by {@link Span#stop()},
+	 * for the caller to aggregate.
+	 * @param phase The name of the phase.
+	 * @param subject The subject of the phase, if any.
+	 * @return a new {@link Span}.
+	 */
+	@NotNull
+	Span event(@NotNull String phase, @Nullable String subject) {
+		return new Span(phase, subject, false);
+	}
+
+}
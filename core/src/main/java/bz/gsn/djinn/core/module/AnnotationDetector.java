@@ -46,6 +46,10 @@ import java.lang.reflect.ParameterizedType;
  * }
  * <p>
  * Note that the annotation <b>must</b> have a {@linkplain java.lang.annotation.RetentionPolicy#RUNTIME runtime retention policy}.
+ * <p>
+ * The callbacks of a detector run on the threads booting the application, which should never wait on I/O, locks or other
+ * threads: a blocked platform boot thread is not replaced, so it is lost to the boot until the callback returns.
+ * Applications whose detectors block should boot on virtual threads; see {@link bz.gsn.djinn.core.Djinn#BOOT_THREADS_PROPERTY}.
  */
 @SuppressWarnings("unused")
 public abstract class AnnotationDetector<T extends Annotation> {
@@ -67,7 +71,7 @@ public abstract class AnnotationDetector<T extends Annotation> {
 		}
 	}
 
-	private void printStub(String entityName) {
+	void printStub(String entityName) {
 		logger.warn("The default {} annotation handler was called. If @{} targets {}s, please override this method.", entityName, this.type.getSimpleName(), entityName);
 	}
 
@@ -115,4 +119,23 @@ public abstract class AnnotationDetector<T extends Annotation> {
 		printStub("type");
 	}
 
+	/**
+	 * Returns whether the per-element callbacks of this detector may be called concurrently. If not, the handles of the
+	 * elements are still resolved in parallel, but the callbacks are called one at a time, so the detector needs no
+	 * concurrent structures or locking. This is {@code true} by default.
+	 * @return whether this detector is thread-safe.
+	 */
+	public boolean isThreadSafe() {
+		return true;
+	}
+
+	/**
+	 * Called once every detector of every module has handled all of its elements, and before any {@link Runtime} starts.
+	 * Detectors may replace what they collected concurrently with compact, immutable structures here; as every runtime
+	 * starts after all detectors are frozen, runtimes may then read them without locks or {@code volatile} reads.
+	 * Detectors of the same application may be frozen concurrently. This does nothing by default.
+	 * @param resourceRegistry Access to the {@link ResourceRegistry}.
+	 */
+	public void freeze(@NotNull ResourceRegistry resourceRegistry) {}
+
 }
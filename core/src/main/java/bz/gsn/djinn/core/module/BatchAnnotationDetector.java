@@ -0,0 +1,87 @@
+package bz.gsn.djinn.core.module;
+
+import bz.gsn.djinn.core.resource.ResourceRegistry;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Unmodifiable;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.util.List;
+
+/**
+ * An {@link AnnotationDetector} which receives all the elements bearing its annotation at once, one call per kind of element,
+ * rather than one call per element. Handles are still resolved in parallel, but each batch is delivered by a single call,
+ * so a detector may build its registry in one bulk operation, without concurrent structures or locking:
+ * {@snippet :
+ * public final class Detector extends BatchAnnotationDetector<Route> {
+ *	private Map<String, MethodHandle> routes = Map.of();
+ *	@Override
+ *	public void handleMethods(@NotNull List<MethodElement<Route>> methods, @NotNull ResourceRegistry resourceRegistry) {
+ *		routes = methods.stream().collect(Collectors.toUnmodifiableMap(e -> e.annotation().value(), MethodElement::handle));
+ *	}
+ * }
+ * }
+ * The batches of a detector are delivered one after the other, and only once; an annotation which cannot target a kind of
+ * element is never delivered a batch of it. The per-element callbacks of {@link AnnotationDetector} are not called, and as every
+ * batch is delivered by a single call, {@link #isThreadSafe()} does not apply.
+ * @param <T> The annotation type detected.
+ */
+@SuppressWarnings("unused")
+public abstract class BatchAnnotationDetector<T extends Annotation> extends AnnotationDetector<T> {
+
+	/**
+	 * An annotated method.
+	 * @param annotation The instance of the detected annotation.
+	 * @param handle The {@link MethodHandle} of the method, as passed to {@link #handleMethod(Annotation, MethodHandle, MethodInfo, ResourceRegistry) handleMethod}.
+	 * @param info The {@link MethodInfo} of the method handle.
+	 * @param <T> The annotation type.
+	 */
+	public record MethodElement<T extends Annotation>(@NotNull T annotation, @NotNull MethodHandle handle, @NotNull MethodInfo info) {}
+
+	/**
+	 * An annotated field.
+	 * @param annotation The instance of the detected annotation.
+	 * @param field The field.
+	 * @param handle The {@link VarHandle} of the field.
+	 * @param <T> The annotation type.
+	 */
+	public record FieldElement<T extends Annotation>(@NotNull T annotation, @NotNull Field field, @NotNull VarHandle handle) {}
+
+	/**
+	 * An annotated type.
+	 * @param annotation The instance of the detected annotation.
+	 * @param type The {@link Class} of the type.
+	 * @param <T> The annotation type.
+	 */
+	public record TypeElement<T extends Annotation>(@NotNull T annotation, @NotNull Class<?> type) {}
+
+	/**
+	 * Handles every detection of the annotation on <em>methods</em>; see {@link #handleMethod(Annotation, MethodHandle, MethodInfo, ResourceRegistry) handleMethod}.
+	 * @param methods The annotated methods, possibly none.
+	 * @param resourceRegistry Access to the {@link ResourceRegistry}.
+	 */
+	public void handleMethods(@NotNull @Unmodifiable List<MethodElement<T>> methods, @NotNull ResourceRegistry resourceRegistry) {
+		if(!methods.isEmpty()) printStub("method");
+	}
+
+	/**
+	 * Handles every detection of the annotation on <em>fields</em>; see {@link #handleField(Annotation, VarHandle, ResourceRegistry) handleField}.
+	 * @param fields The annotated fields, possibly none.
+	 * @param resourceRegistry Access to the {@link ResourceRegistry}.
+	 */
+	public void handleFields(@NotNull @Unmodifiable List<FieldElement<T>> fields, @NotNull ResourceRegistry resourceRegistry) {
+		if(!fields.isEmpty()) printStub("field");
+	}
+
+	/**
+	 * Handles every detection of the annotation on <em>types</em>; see {@link #handleType(Annotation, Class, ResourceRegistry) handleType}.
+	 * @param types The annotated types, possibly none.
+	 * @param resourceRegistry Access to the {@link ResourceRegistry}.
+	 */
+	public void handleTypes(@NotNull @Unmodifiable List<TypeElement<T>> types, @NotNull ResourceRegistry resourceRegistry) {
+		if(!types.isEmpty()) printStub("type");
+	}
+
+}
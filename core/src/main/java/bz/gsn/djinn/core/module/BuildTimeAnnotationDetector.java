@@ -0,0 +1,165 @@
+package bz.gsn.djinn.core.module;
+
+import bz.gsn.djinn.core.resource.ResourceRegistry;
+import bz.gsn.djinn.core.util.CoreUtils;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.lang.constant.ClassDesc;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * An {@link AnnotationDetector} whose work on each annotated element is split in two halves:
+ * <ol>
+ *     <li>a <em>prepare</em> half, which reads the annotation and the element and reduces them to a string of data, and</li>
+ *     <li>a <em>handle</em> half, which receives that data along with the handle of the element at runtime.</li>
+ * </ol>
+ * If the application was compiled with prepared detectors, the Djinn compiler instantiates the modules at build time,
+ * runs the prepare half of every such detector on the annotated elements, and embeds the data in the JAR. At runtime,
+ * only the handle half runs, on the prepared elements; annotations are neither queried nor read. Otherwise, both halves run
+ * at runtime, one after the other, so a detector behaves the same either way; as it does when its {@code handle} methods
+ * are called by hand, which prepare the element before handling it.
+ * <p>
+ * The prepare half must therefore only depend on its arguments and on the state the detector was constructed with;
+ * it has no access to resources, which do not exist at build time. For example, a detector of request handlers may
+ * normalize the path of each handler when preparing it, and only store the handle when handling it:
+ * {@snippet :
+ * public final class Detector extends BuildTimeAnnotationDetector<Route> {
+ *	private final Map<String, MethodHandle> routes = new ConcurrentHashMap<>();
+ *	@Override
+ *	public String prepareMethod(@NotNull Route obj, @NotNull Method method) {
+ *		return URI.create(obj.value()).normalize().getPath();
+ *	}
+ *	@Override
+ *	public void handlePreparedMethod(@NotNull String path, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+ *		routes.put(path, handle);
+ *	}
+ * }
+ * }
+ * @param <T> The annotation type detected.
+ */
+@SuppressWarnings("unused")
+public abstract class BuildTimeAnnotationDetector<T extends Annotation> extends AnnotationDetector<T> {
+
+	/**
+	 * Prepares a detection of an annotation on a <em>method</em>. This may be called at build time.
+	 * @param obj The instance of the detected annotation.
+	 * @param method The annotated method.
+	 * @return the data passed to {@link #handlePreparedMethod(String, MethodHandle, MethodInfo, ResourceRegistry) handlePreparedMethod},
+	 * else {@code null} to ignore the method.
+	 */
+	public @Nullable String prepareMethod(@NotNull T obj, @NotNull Method method) {
+		printStub("method");
+		return null;
+	}
+
+	/**
+	 * Prepares a detection of an annotation on a <em>field</em>. This may be called at build time.
+	 * @param obj The instance of the detected annotation.
+	 * @param field The annotated field.
+	 * @return the data passed to {@link #handlePreparedField(String, VarHandle, ResourceRegistry) handlePreparedField},
+	 * else {@code null} to ignore the field.
+	 */
+	public @Nullable String prepareField(@NotNull T obj, @NotNull Field field) {
+		printStub("field");
+		return null;
+	}
+
+	/**
+	 * Prepares a detection of an annotation on a <em>type</em>. This may be called at build time.
+	 * @param obj The instance of the detected annotation.
+	 * @param type The annotated type.
+	 * @return the data passed to {@link #handlePreparedType(String, Class, ResourceRegistry) handlePreparedType},
+	 * else {@code null} to ignore the type.
+	 */
+	public @Nullable String prepareType(@NotNull T obj, @NotNull Class<?> type) {
+		printStub("type");
+		return null;
+	}
+
+	/**
+	 * Handles a prepared detection of an annotation on a <em>method</em>, at runtime.
+	 * The handle is resolved as for {@link #handleMethod(Annotation, MethodHandle, MethodInfo, ResourceRegistry) handleMethod}.
+	 * @param data The data {@linkplain #prepareMethod(Annotation, Method) prepared} for the method.
+	 * @param handle The {@link MethodHandle} of the annotated method.
+	 * @param info The {@link MethodInfo} of the method handle.
+	 * @param resourceRegistry Access to the {@link ResourceRegistry}.
+	 */
+	public void handlePreparedMethod(@NotNull String data, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+		printStub("method");
+	}
+
+	/**
+	 * Handles a prepared detection of an annotation on a <em>field</em>, at runtime.
+	 * @param data The data {@linkplain #prepareField(Annotation, Field) prepared} for the field.
+	 * @param varHandle The {@link VarHandle} of the annotated field.
+	 * @param resourceRegistry Access to the {@link ResourceRegistry}.
+	 */
+	public void handlePreparedField(@NotNull String data, @NotNull VarHandle varHandle, @NotNull ResourceRegistry resourceRegistry) {
+		printStub("field");
+	}
+
+	/**
+	 * Handles a prepared detection of an annotation on a <em>type</em>, at runtime.
+	 * @param data The data {@linkplain #prepareType(Annotation, Class) prepared} for the type.
+	 * @param type The {@link Class} of the annotated type.
+	 * @param resourceRegistry Access to the {@link ResourceRegistry}.
+	 * @param <V> The type of the class.
+	 */
+	public <V> void handlePreparedType(@NotNull String data, @NotNull Class<V> type, @NotNull ResourceRegistry resourceRegistry) {
+		printStub("type");
+	}
+
+	/**
+	 * Prepares the method, then handles it if it was not ignored. Djinn dispatches build-time detectors through their halves
+	 * directly, so this only runs when called by hand.
+	 */
+	@Override
+	public final void handleMethod(@NotNull T obj, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+		var data = prepareMethod(obj, info.getMethod());
+		if(data != null) handlePreparedMethod(data, handle, info, resourceRegistry);
+	}
+
+	/**
+	 * Prepares the field, then handles it if it was not ignored. Djinn dispatches build-time detectors through their halves
+	 * directly, so this only runs when called by hand.
+	 * @throws IllegalArgumentException if the handle does not access a field.
+	 */
+	@Override
+	public final void handleField(@NotNull T obj, @NotNull VarHandle varHandle, @NotNull ResourceRegistry resourceRegistry) {
+		var data = prepareField(obj, field(varHandle));
+		if(data != null) handlePreparedField(data, varHandle, resourceRegistry);
+	}
+
+	/**
+	 * Prepares the type, then handles it if it was not ignored. Djinn dispatches build-time detectors through their halves
+	 * directly, so this only runs when called by hand.
+	 */
+	@Override
+	public final <V> void handleType(@NotNull T obj, @NotNull Class<V> type, @NotNull ResourceRegistry resourceRegistry) {
+		var data = prepareType(obj, type);
+		if(data != null) handlePreparedType(data, type, resourceRegistry);
+	}
+
+	/**
+	 * Returns the field a {@link VarHandle} accesses, as named by its nominal descriptor. The declaring class of an instance
+	 * field is its receiver type; that of a static field is loaded by the class loader of this detector.
+	 */
+	private @NotNull Field field(@NotNull VarHandle varHandle) {
+		var descriptor = varHandle.describeConstable()
+				.filter(e -> e.bootstrapArgsList().size() == 2 && e.bootstrapArgsList().getFirst() instanceof ClassDesc)
+				.orElseThrow(() -> new IllegalArgumentException(varHandle + " does not access a field"));
+		var declaring = (ClassDesc) descriptor.bootstrapArgsList().getFirst();
+		return CoreUtils.sneakyThrows(() -> {
+			var type = varHandle.coordinateTypes().isEmpty()
+					? Class.forName(declaring.descriptorString().substring(1, declaring.descriptorString().length() - 1).replace('/', '.'), false, getClass().getClassLoader())
+					: varHandle.coordinateTypes().getFirst();
+			return type.getDeclaredField(descriptor.constantName());
+		});
+	}
+
+}
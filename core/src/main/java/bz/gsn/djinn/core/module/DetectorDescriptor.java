@@ -0,0 +1,83 @@
+package bz.gsn.djinn.core.module;
+
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Target;
+import java.lang.reflect.AnnotatedElement;
+
+/**
+ * Precomputed information on a registered {@link AnnotationDetector}: the annotation type it detects and
+ * the {@linkplain ElementType element types} that annotation {@linkplain Target targets}.
+ * <p>
+ * Descriptors are created once, when the detector is {@linkplain DjinnModule#register(AnnotationDetector[]) registered},
+ * so that dispatching detected elements requires no further reflective lookups.
+ * @param <T> The annotation type detected.
+ */
+public final class DetectorDescriptor<T extends Annotation> {
+
+	private final AnnotationDetector<T> detector;
+	private final Class<T> type;
+	private final int targets;
+
+	private DetectorDescriptor(@NotNull AnnotationDetector<T> detector) {
+		this.detector = detector;
+		this.type = detector.type;
+		int targets = 0;
+		var target = type.getAnnotation(Target.class);
+		if(target != null) {
+			for(var elementType : target.value()) targets |= 1 << elementType.ordinal();
+		}
+		this.targets = targets;
+	}
+
+	/**
+	 * Creates a descriptor of the given {@link AnnotationDetector}.
+	 * @param detector The detector to describe.
+	 * @return a new {@link DetectorDescriptor}.
+	 * @param <T> The annotation type detected.
+	 */
+	@Contract(value = "_ -> new", pure = true)
+	public static <T extends Annotation> @NotNull DetectorDescriptor<T> of(@NotNull AnnotationDetector<T> detector) {
+		return new DetectorDescriptor<>(detector);
+	}
+
+	/**
+	 * Returns the described detector.
+	 * @return the {@link AnnotationDetector}.
+	 */
+	public @NotNull AnnotationDetector<T> detector() {
+		return detector;
+	}
+
+	/**
+	 * Returns the annotation type detected.
+	 * @return the class of the annotation.
+	 */
+	public @NotNull Class<T> type() {
+		return type;
+	}
+
+	/**
+	 * Returns whether the detected annotation targets the given {@link ElementType}.
+	 * Annotations without {@link Target @Target} target nothing.
+	 * @param elementType The element type.
+	 * @return {@code true} if it does, else {@code false}.
+	 */
+	public boolean targets(@NotNull ElementType elementType) {
+		return (targets & (1 << elementType.ordinal())) != 0;
+	}
+
+	/**
+	 * Returns the detected annotation present on an {@link AnnotatedElement}, else {@code null} if it's not present.
+	 * @param element The element to detect.
+	 * @return an instance of the annotation.
+	 */
+	public @Nullable T annotation(@NotNull AnnotatedElement element) {
+		return element.getAnnotation(type);
+	}
+
+}
@@ -16,6 +16,7 @@ import java.util.Set;
 public abstract class DjinnModule {
 
 	private final Set<List<AnnotationDetector<?>>> ad = new HashSet<>();
+	private final Set<List<DetectorDescriptor<?>>> descriptors = new HashSet<>();
 	private final Set<Runtime> rt = new HashSet<>();
 
 	/**
@@ -26,7 +27,9 @@ public abstract class DjinnModule {
 	 * @throws UnsupportedOperationException if the builder has already been consumed.
 	 */
 	protected final void register(@NotNull AnnotationDetector<?> @NotNull... annotationDetectors) {
-		this.ad.add(List.of(annotationDetectors));
+		var list = List.of(annotationDetectors);
+		this.ad.add(list);
+		this.descriptors.add(list.stream().<DetectorDescriptor<?>>map(DetectorDescriptor::of).toList());
 	}
 
 	/**
@@ -48,6 +51,17 @@ public abstract class DjinnModule {
 		return Collections.unmodifiableSet(ad);
 	}
 
+	/**
+	 * Returns an immutable {@link Set} of the {@linkplain DetectorDescriptor descriptors} of the registered
+	 * {@link AnnotationDetector}s, grouped as in {@link #getAnnotationDetectors()}.
+	 * @return a {@code Set} of {@linkplain DetectorDescriptor detector descriptors}.
+	 */
+	@NotNull
+	@Unmodifiable
+	public final Set<List<DetectorDescriptor<?>>> getDetectorDescriptors() {
+		return Collections.unmodifiableSet(descriptors);
+	}
+
 	/**
 	 * Returns an immutable {@link Set} of {@link Runtime}s.
 	 * @return a {@code Set} of {@linkplain Runtime runtimes}.
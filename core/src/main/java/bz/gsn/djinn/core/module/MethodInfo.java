@@ -24,6 +24,7 @@ public final class MethodInfo {
 	private final int modifiers;
 	private final Annotation[] annotations;
 	private final Class<?> enclosingClass;
+	private final Method method;
 
 	/**
 	 * Creates a new {@link MethodInfo}.
@@ -41,6 +42,7 @@ public final class MethodInfo {
 		this.returnType = handle.type().returnType();
 		this.annotations = method.getAnnotations();
 		this.enclosingClass = method.getDeclaringClass();
+		this.method = method;
 		List<Parameter> includedParameters = new ArrayList<>();
 		Class<?>[] handleParameters = handle.type().parameterArray();
 		int i = 0;
@@ -132,6 +134,14 @@ public final class MethodInfo {
 		return annotations;
 	}
 
+	/**
+	 * Returns the {@link Method} this information was read from, for {@link BuildTimeAnnotationDetector} to prepare.
+	 * @return the method.
+	 */
+	@NotNull Method getMethod() {
+		return method;
+	}
+
 	/**
 	 * Returns whether this method is not {@code static}; i.e.,
 	 * it has a receiver argument.
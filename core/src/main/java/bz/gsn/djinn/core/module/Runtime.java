@@ -1,6 +1,13 @@
 package bz.gsn.djinn.core.module;
 
 import bz.gsn.djinn.core.resource.ResourceRegistry;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * The base class for all runtimes. Runtimes allow processes to run asynchronously in threads.
@@ -37,16 +44,120 @@ import bz.gsn.djinn.core.resource.ResourceRegistry;
  */
 public abstract class Runtime {
 
+	private final CompletableFuture<Void> readiness = new CompletableFuture<>();
+
 	/**
 	 * Runs the given {@link Runtime}. This method will be called on a new thread.
+	 * <p>
+	 * If this method throws, the runtime is considered crashed, and is restarted according to its {@link #restartPolicy()}.
 	 * @param resourceRegistry The resource registry.
 	 */
 	public abstract void run(ResourceRegistry resourceRegistry);
 
 	/**
 	 * Stops the given {@link Runtime}. This method will be called when the application
-	 * is gracefully shutting down.
+	 * is gracefully shutting down, after every runtime {@linkplain #dependencies() depending} on this one has stopped.
+	 * Together with the return of {@link #run(ResourceRegistry)}, it must complete within the {@link #stopTimeout()}.
 	 */
 	public void stop(ResourceRegistry ignore) {}
 
+	/**
+	 * Returns the kind of thread this runtime runs on. Defaults to {@link Threading#PLATFORM}.
+	 * @return the threading of this runtime.
+	 */
+	public @NotNull Threading threading() {
+		return Threading.PLATFORM;
+	}
+
+	/**
+	 * Returns how this runtime is restarted when {@link #run(ResourceRegistry)} throws.
+	 * Defaults to {@link RestartPolicy#NEVER}.
+	 * @return the restart policy of this runtime.
+	 */
+	public @NotNull RestartPolicy restartPolicy() {
+		return RestartPolicy.NEVER;
+	}
+
+	/**
+	 * Returns the runtimes this runtime depends on. This runtime is only started once they are {@linkplain #ready() ready},
+	 * and it is stopped before them. Defaults to none.
+	 * @return the runtimes this runtime depends on, which must also be registered.
+	 */
+	public @NotNull Collection<Runtime> dependencies() {
+		return List.of();
+	}
+
+	/**
+	 * Returns how long stopping this runtime may take before the application stops waiting for it. Defaults to 30 seconds.
+	 * @return the stop timeout.
+	 */
+	public @NotNull Duration stopTimeout() {
+		return Duration.ofSeconds(30);
+	}
+
+	/**
+	 * Signals that this runtime is ready, for example once a server is listening; runtimes which
+	 * {@linkplain #dependencies() depend} on it are then started. A runtime is also ready once {@link #run(ResourceRegistry)}
+	 * returns normally, so runtimes which set themselves up and return need not call this.
+	 */
+	public final void ready() {
+		readiness.complete(null);
+	}
+
+	/**
+	 * Returns a {@link CompletionStage} completed once this runtime is {@linkplain #ready() ready}.
+	 * @return the readiness of this runtime.
+	 */
+	public final @NotNull CompletionStage<Void> whenReady() {
+		return readiness.minimalCompletionStage();
+	}
+
+	/**
+	 * The kind of thread a {@link Runtime} runs on.
+	 */
+	public enum Threading {
+		/**
+		 * A non-daemon platform thread, suited to runtimes which use thread-locals heavily or call native code.
+		 */
+		PLATFORM,
+		/**
+		 * A virtual thread, suited to runtimes which mostly block on I/O. The application is still kept alive while it runs.
+		 */
+		VIRTUAL
+	}
+
+	/**
+	 * How a crashed {@link Runtime} is restarted. Each restart waits for a backoff, which starts at {@code initialBackoff}
+	 * and doubles after every restart, up to {@code maxBackoff}.
+	 * @param maxRestarts The maximum number of restarts; after that, the runtime stays crashed.
+	 * @param initialBackoff The backoff before the first restart.
+	 * @param maxBackoff The maximum backoff.
+	 */
+	public record RestartPolicy(int maxRestarts, @NotNull Duration initialBackoff, @NotNull Duration maxBackoff) {
+
+		/**
+		 * Never restart crashed runtimes.
+		 */
+		public static final RestartPolicy NEVER = new RestartPolicy(0, Duration.ZERO, Duration.ZERO);
+
+		public RestartPolicy {
+			if(maxRestarts < 0) throw new IllegalArgumentException("maxRestarts must not be negative");
+			if(initialBackoff.isNegative() || maxBackoff.compareTo(initialBackoff) < 0) {
+				throw new IllegalArgumentException("Backoffs must satisfy 0 <= initialBackoff <= maxBackoff");
+			}
+		}
+
+		/**
+		 * Returns the backoff before the given restart.
+		 * @param restart The index of the restart, starting from {@code 0}.
+		 * @return the backoff.
+		 */
+		public @NotNull Duration backoff(int restart) {
+			var backoff = initialBackoff;
+			for(int i = 0; i < restart && backoff.compareTo(maxBackoff) < 0; i++) backoff = backoff.multipliedBy(2);
+			return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+		}
+
+	}
+
 }
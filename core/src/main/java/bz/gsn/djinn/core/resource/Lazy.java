@@ -0,0 +1,23 @@
+package bz.gsn.djinn.core.resource;
+
+import java.lang.annotation.*;
+
+/**
+ * Applied on {@link Resource} classes to defer their instantiation until they are first requested from the
+ * {@link ResourceRegistry}, or until a resource depending on them is instantiated.
+ * <p>
+ * Resources without this annotation are instantiated eagerly, when the application starts.
+ * {@snippet :
+ * @Lazy
+ * public final class RarelyUsedPool extends Resource {
+ * 	public RarelyUsedPool(@Inject Configuration configuration) {
+ * 		// slow, but only paid for if someone needs it
+ * 	}
+ * }
+ * }
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Lazy {
+}
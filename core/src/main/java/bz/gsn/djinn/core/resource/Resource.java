@@ -7,8 +7,13 @@ import bz.gsn.djinn.core.module.AnnotationDetector;
  * <p>
  * <ul>
  *     <li>
- *         Types extending this class must have a no-args constructor of <em>any visibility</em>. Djinn keeps track of a singleton resource throughout the
- *         execution of the Djinn application. If the aforementioned criteria is not fulfilled, Djinn will crash.
+ *         Types extending this class must have a public no-args constructor, or exactly one public constructor whose parameters are
+ *         all {@link Inject @Inject}-ed resources; the latter declares the resources it depends on, which are instantiated first.
+ *         Djinn keeps track of a singleton resource throughout the execution of the Djinn application. If the aforementioned criteria
+ *         is not fulfilled, or resources depend on each other cyclically, Djinn will crash.
+ *     </li>
+ *     <li>
+ *         Resources are instantiated concurrently when the application starts, unless they are {@link Lazy @Lazy}.
  *     </li>
  *     <li>
  *         Parameters of {@code Resource}s must be concrete. For example, {@code Resource} alone cannot be resolved to any valid resource,
@@ -30,6 +35,7 @@ import bz.gsn.djinn.core.module.AnnotationDetector;
  * public final class TestResource extends Resource {
  * 	// public TestResource() {} is implicit, unless the line below is uncommented.
  * 	// public TestResource(String s) {} will crash, if the above line is not uncommented!
+ * 	// public TestResource(@Inject OtherResource other) {} would declare a dependency instead.
  * 	void doSomething() {}
  * }
  *
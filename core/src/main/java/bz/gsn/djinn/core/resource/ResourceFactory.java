@@ -0,0 +1,23 @@
+package bz.gsn.djinn.core.resource;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Instantiates resources directly, without reflection. The Djinn compiler implements this interface in the bootstrappers it
+ * generates, which call the constructor of each resource; it should not be implemented by hand.
+ * <p>
+ * Resources are identified by their index in the list of resource classes passed alongside the factory.
+ */
+public interface ResourceFactory {
+
+	/**
+	 * Instantiates a resource.
+	 * @param index The index of the resource.
+	 * @param dependencies The resources its constructor takes, in order.
+	 * @return the new resource.
+	 * @throws IllegalArgumentException if the factory cannot instantiate the resource at the index.
+	 */
+	@NotNull
+	Resource create(int index, @NotNull Resource @NotNull [] dependencies);
+
+}
@@ -0,0 +1,31 @@
+package bz.gsn.djinn.core.resource;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Thrown when one or more {@link Resource}s cannot be instantiated; for example, when a constructor throws,
+ * when no constructor is usable, or when resources depend on each other cyclically.
+ * <p>
+ * If several resources failed, each failure is {@linkplain #getSuppressed() suppressed} by this exception.
+ */
+public class ResourceInstantiationException extends RuntimeException {
+
+	/**
+	 * Creates a new {@link ResourceInstantiationException}.
+	 * @param message The detail message.
+	 * @param cause The cause, if any.
+	 */
+	public ResourceInstantiationException(@NotNull String message, @Nullable Throwable cause) {
+		super(message, cause);
+	}
+
+	/**
+	 * Creates a new {@link ResourceInstantiationException}.
+	 * @param message The detail message.
+	 */
+	public ResourceInstantiationException(@NotNull String message) {
+		super(message);
+	}
+
+}
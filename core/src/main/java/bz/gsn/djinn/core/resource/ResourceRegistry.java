@@ -1,5 +1,9 @@
 package bz.gsn.djinn.core.resource;
 
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.NoSuchElementException;
 import java.util.Optional;
 
 /**
@@ -20,4 +24,28 @@ public abstract class ResourceRegistry {
 	 */
 	public abstract <T extends Resource> Optional<T> getResource(Class<T> resource);
 
+	/**
+	 * Returns the {@link Resource} stored, else {@code null} if there is none.
+	 * Unlike {@link #getResource(Class)}, this does not allocate, so it is preferable on hot paths.
+	 * @param resource The class of the required resource.
+	 * @return the {@link Resource}, or {@code null}.
+	 * @param <T> The type of the required resource.
+	 */
+	public <T extends Resource> @Nullable T getResourceOrNull(@NotNull Class<T> resource) {
+		return getResource(resource).orElse(null);
+	}
+
+	/**
+	 * Returns the {@link Resource} stored, throwing if there is none.
+	 * @param resource The class of the required resource.
+	 * @return the {@link Resource}.
+	 * @param <T> The type of the required resource.
+	 * @throws NoSuchElementException if the resource is not stored in this registry.
+	 */
+	public <T extends Resource> @NotNull T require(@NotNull Class<T> resource) {
+		var instance = getResourceOrNull(resource);
+		if(instance == null) throw new NoSuchElementException("Resource " + resource.getName() + " is not available");
+		return instance;
+	}
+
 }
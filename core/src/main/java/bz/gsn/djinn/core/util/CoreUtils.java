@@ -5,6 +5,7 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.AnnotatedElement;
 
@@ -13,12 +14,15 @@ import java.lang.reflect.AnnotatedElement;
  */
 public class CoreUtils {
 
+	private static final MethodHandle typeGetter = sneakyThrows(() -> MethodHandles.privateLookupIn(AnnotationDetector.class, MethodHandles.lookup())
+			.findGetter(AnnotationDetector.class, "type", Class.class));
+
 	private CoreUtils() {
 		//no instance
 	}
 
 	/**
-	 * Returns the type of the given {@link AnnotationDetector}, using a {@link java.lang.invoke.MethodHandle MethodHandle}.
+	 * Returns the type of the given {@link AnnotationDetector}, using a cached {@link MethodHandle}.
 	 * @param annotationDetector The {@code AnnotationDetector} to extract the type from.
 	 * @return the class of the {@link AnnotationDetector}'s generic type.
 	 * @param <T> The annotation type detected by the given {@code AnnotationDetector}.
@@ -26,9 +30,7 @@ public class CoreUtils {
 	@NotNull
 	@SuppressWarnings("unchecked")
 	public static <T extends Annotation> Class<T> getTypeOfAD(@NotNull AnnotationDetector<T> annotationDetector) {
-		return sneakyThrows(() -> (Class<T>) MethodHandles.privateLookupIn(AnnotationDetector.class, MethodHandles.lookup())
-				.findGetter(AnnotationDetector.class, "type", Class.class)
-				.invokeExact(annotationDetector));
+		return sneakyThrows(() -> (Class<T>) typeGetter.invokeExact(annotationDetector));
 	}
 
 	@FunctionalInterface
@@ -5,9 +5,10 @@ module djinn.core {
 	exports bz.gsn.djinn.core.module;
 	exports bz.gsn.djinn.core.build;
 
-	exports bz.gsn.djinn.core.app to djinn.hook, tests.djinn.core;
+	exports bz.gsn.djinn.core.app to djinn.hook, djinn.compiler, tests.djinn.core, tests.djinn.compiler;
 
 	requires io.github.classgraph;
+	requires jdk.jfr;
 	requires transitive org.slf4j;
 
 	requires static transitive org.jetbrains.annotations;
@@ -3,7 +3,11 @@ package bz.gsn.tests.djinn;
 import bz.gsn.djinn.core.Djinn;
 import bz.gsn.djinn.core.app.AppImpl;
 import bz.gsn.djinn.core.app.AppResourceRegistry;
+import bz.gsn.djinn.core.app.DetectorData;
 import bz.gsn.djinn.core.module.AnnotationDetector;
+import bz.gsn.djinn.core.module.BatchAnnotationDetector;
+import bz.gsn.djinn.core.module.BuildTimeAnnotationDetector;
+import bz.gsn.djinn.core.module.DetectorDescriptor;
 import bz.gsn.djinn.core.module.MethodInfo;
 import bz.gsn.djinn.core.resource.Inject;
 import bz.gsn.djinn.core.resource.Resource;
@@ -12,12 +16,21 @@ import org.jetbrains.annotations.NotNull;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 public class AnnotationDetectorTest {
@@ -34,10 +47,23 @@ public class AnnotationDetectorTest {
 		public TestResource resource(@Inject TestResource testResource) {
 			return testResource;
 		}
+		@TestAnnotation("test2")
+		public String pair(@Inject TestResource first, @Inject TestResource second, String name) {
+			return first == second ? name : null;
+		}
 	}
 
 	public static final class TestResource extends Resource {}
 
+	@Retention(RetentionPolicy.RUNTIME)
+	public @interface UntargetedAnnotation {}
+
+	@UntargetedAnnotation
+	public static final class UntargetedHolder {
+		@UntargetedAnnotation
+		public void method() {}
+	}
+
 	public static final class TestAnnotationDetector extends AnnotationDetector<TestAnnotation> {
 		private final Map<MethodInfo, MethodHandle> handles;
 		private final AtomicReference<Class<?>> clazz;
@@ -56,6 +82,56 @@ public class AnnotationDetectorTest {
 		}
 	}
 
+	public static final class TestBuildTimeDetector extends BuildTimeAnnotationDetector<TestAnnotation> {
+		private final Map<String, MethodHandle> handles = new ConcurrentHashMap<>();
+
+		@Override
+		public String prepareMethod(@NotNull TestAnnotation obj, @NotNull Method method) {
+			return obj.value().equals("test2") ? null : obj.value() + "\n" + method.getName();
+		}
+		@Override
+		public void handlePreparedMethod(@NotNull String data, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+			handles.put(data, handle);
+		}
+		@Override
+		public String prepareType(@NotNull TestAnnotation obj, @NotNull Class<?> type) {
+			return null;
+		}
+		@Override
+		public String prepareField(@NotNull TestAnnotation obj, @NotNull Field field) {
+			return null;
+		}
+	}
+
+	/**
+	 * A detector whose data was prepared in the test resources, so it must never prepare an element itself.
+	 */
+	public static final class PreparedDetector extends BuildTimeAnnotationDetector<TestAnnotation> {
+		private final Map<String, MethodHandle> handles = new ConcurrentHashMap<>();
+
+		@Override
+		public String prepareMethod(@NotNull TestAnnotation obj, @NotNull Method method) {
+			return Assertions.fail("prepared a method at runtime");
+		}
+		@Override
+		public void handlePreparedMethod(@NotNull String data, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+			handles.put(data, handle);
+		}
+		@Override
+		public String prepareType(@NotNull TestAnnotation obj, @NotNull Class<?> type) {
+			return Assertions.fail("prepared a type at runtime");
+		}
+		@Override
+		public String prepareField(@NotNull TestAnnotation obj, @NotNull Field field) {
+			return Assertions.fail("prepared a field at runtime");
+		}
+	}
+
+	public static final class FieldHolder {
+		public int instance;
+		public static int shared;
+	}
+
 	@Test
 	@SuppressWarnings("OptionalGetWithoutIsPresent")
 	public void adScanMethodWithResource() throws Throwable {
@@ -76,6 +152,28 @@ public class AnnotationDetectorTest {
 		// note: first argument is known to be receiver argument
 		var x = new TestAnnotationHolder(); // modules should choose which instantiation strategy to use
 		Assertions.assertEquals((TestResource) value.invoke(x), resourceRegistry.getResource(TestResource.class).get());
+		Assertions.assertSame(resourceRegistry.getResourceOrNull(TestResource.class), resourceRegistry.require(TestResource.class));
+	}
+
+	@Test
+	@SuppressWarnings("OptionalGetWithoutIsPresent")
+	public void adBindsEveryInjectedParameter() throws Throwable {
+		var detector = new TestAnnotationDetector(new AtomicReference<>());
+		AppImpl.runAnnotationDetectors(
+				Djinn.module()
+						.register(detector)
+						.build(),
+				new AppResourceRegistry(Set.of(TestResource.class))
+		);
+		var pair = detector.handles.entrySet()
+				.stream()
+				.filter(e -> e.getKey().getName().equals("pair"))
+				.findFirst()
+				.get()
+				.getValue();
+		// a bound parameter is dropped from the handle, so the next one must be bound at the same index
+		Assertions.assertEquals(MethodType.methodType(String.class, TestAnnotationHolder.class, String.class), pair.type());
+		Assertions.assertEquals("djinn", (String) pair.invoke(new TestAnnotationHolder(), "djinn"));
 	}
 
 	@Test
@@ -90,4 +188,278 @@ public class AnnotationDetectorTest {
 		Assertions.assertEquals(clazz.getAcquire(), TestAnnotationHolder.class);
 	}
 
+	@Test
+	public void adDescriptor() {
+		var detector = new TestAnnotationDetector(new AtomicReference<>());
+		var descriptors = Djinn.module()
+				.register(detector)
+				.build()
+				.getDetectorDescriptors();
+		// modules describe their detectors once, when they are registered
+		Assertions.assertEquals(1, descriptors.size());
+		Assertions.assertSame(detector, descriptors.iterator().next().getFirst().detector());
+		var descriptor = DetectorDescriptor.of(detector);
+		Assertions.assertEquals(TestAnnotation.class, descriptor.type());
+		Assertions.assertTrue(descriptor.targets(ElementType.METHOD));
+		Assertions.assertTrue(descriptor.targets(ElementType.FIELD));
+		Assertions.assertTrue(descriptor.targets(ElementType.TYPE));
+		Assertions.assertFalse(descriptor.targets(ElementType.CONSTRUCTOR));
+		Assertions.assertEquals("class", Objects.requireNonNull(descriptor.annotation(TestAnnotationHolder.class)).value());
+		Assertions.assertNull(descriptor.annotation(TestResource.class));
+	}
+
+	@Test
+	public void adSkipsUntargetedElements() {
+		var detector = new AnnotationDetector<UntargetedAnnotation>() {
+			@Override
+			public void handleMethod(@NotNull UntargetedAnnotation obj, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+				Assertions.fail("handled a method");
+			}
+			@Override
+			public <V> void handleType(@NotNull UntargetedAnnotation obj, @NotNull Class<V> type, @NotNull ResourceRegistry resourceRegistry) {
+				Assertions.fail("handled a type");
+			}
+		};
+		var descriptor = DetectorDescriptor.of(detector);
+		for(var elementType : ElementType.values()) Assertions.assertFalse(descriptor.targets(elementType));
+		// annotations without @Target target nothing, so their elements are never dispatched
+		AppImpl.runAnnotationDetectors(
+				Djinn.module()
+						.register(detector)
+						.build(),
+				new AppResourceRegistry(Set.of(TestResource.class))
+		);
+	}
+
+	@Test
+	public void adPrepareAtRuntime() throws Throwable {
+		var detector = new TestBuildTimeDetector();
+		var resourceRegistry = new AppResourceRegistry(Set.of(TestResource.class));
+		AppImpl.runAnnotationDetectors(
+				Djinn.module()
+						.register(detector)
+						.build(),
+				resourceRegistry
+		);
+		// without prepared data, elements are prepared when the application starts; null data ignores the element
+		Assertions.assertEquals(Set.of("test1\nresource"), detector.handles.keySet());
+		Assertions.assertSame(resourceRegistry.require(TestResource.class), detector.handles.get("test1\nresource").invoke(new TestAnnotationHolder()));
+	}
+
+	@Test
+	public void adPreparedAtBuildTime() throws Throwable {
+		var detector = new PreparedDetector();
+		var resourceRegistry = new AppResourceRegistry(Set.of(TestResource.class));
+		AppImpl.runAnnotationDetectors(
+				Djinn.module()
+						.register(detector)
+						.build(),
+				resourceRegistry
+		);
+		// only the prepared elements are handled, with their data, and none is prepared again
+		Assertions.assertEquals(Set.of("prepared\nat build time"), detector.handles.keySet());
+		Assertions.assertSame(resourceRegistry.require(TestResource.class), detector.handles.get("prepared\nat build time").invoke(new TestAnnotationHolder()));
+	}
+
+	@Test
+	public void adPrepareWhenHandledByHand() throws Throwable {
+		var prepared = new ArrayList<String>();
+		var handled = new ArrayList<String>();
+		var detector = new BuildTimeAnnotationDetector<TestAnnotation>() {
+			@Override
+			public String prepareMethod(@NotNull TestAnnotation obj, @NotNull Method method) {
+				prepared.add(method.getName());
+				return method.getName().equals("pair") ? null : obj.value() + " " + method.getName();
+			}
+			@Override
+			public String prepareField(@NotNull TestAnnotation obj, @NotNull Field field) {
+				prepared.add(field.getName());
+				return obj.value() + " " + field.getName();
+			}
+			@Override
+			public String prepareType(@NotNull TestAnnotation obj, @NotNull Class<?> type) {
+				prepared.add(type.getSimpleName());
+				return obj.value() + " " + type.getSimpleName();
+			}
+			@Override
+			public void handlePreparedMethod(@NotNull String data, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+				handled.add(data);
+			}
+			@Override
+			public void handlePreparedField(@NotNull String data, @NotNull VarHandle varHandle, @NotNull ResourceRegistry resourceRegistry) {
+				handled.add(data);
+			}
+			@Override
+			public <V> void handlePreparedType(@NotNull String data, @NotNull Class<V> type, @NotNull ResourceRegistry resourceRegistry) {
+				handled.add(data);
+			}
+		};
+		var registry = new AppResourceRegistry(Set.of());
+		var annotation = TestAnnotationHolder.class.getAnnotation(TestAnnotation.class);
+		var lookup = MethodHandles.lookup();
+		for(var name : List.of("resource", "pair")) {
+			var method = Arrays.stream(TestAnnotationHolder.class.getMethods()).filter(e -> e.getName().equals(name)).findFirst().orElseThrow();
+			var handle = lookup.unreflect(method);
+			detector.handleMethod(annotation, handle, new MethodInfo(method, handle), registry);
+		}
+		for(var name : List.of("instance", "shared")) {
+			detector.handleField(annotation, lookup.unreflectVarHandle(FieldHolder.class.getField(name)), registry);
+		}
+		detector.handleType(annotation, TestAnnotationHolder.class, registry);
+		// each element is prepared, then handled unless it was ignored
+		Assertions.assertEquals(List.of("resource", "pair", "instance", "shared", "TestAnnotationHolder"), prepared);
+		Assertions.assertEquals(List.of("class resource", "class instance", "class shared", "class TestAnnotationHolder"), handled);
+	}
+
+	@Test
+	public void adFrozenAfterHandling() {
+		var handled = new AtomicInteger();
+		var frozen = new AtomicReference<Integer>();
+		var detector = new AnnotationDetector<TestAnnotation>() {
+			@Override
+			public void handleMethod(@NotNull TestAnnotation obj, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+				handled.incrementAndGet();
+			}
+			@Override
+			public <V> void handleType(@NotNull TestAnnotation obj, @NotNull Class<V> type, @NotNull ResourceRegistry resourceRegistry) {
+				handled.incrementAndGet();
+			}
+			@Override
+			public void freeze(@NotNull ResourceRegistry resourceRegistry) {
+				Assertions.assertNull(frozen.getAndSet(handled.get()));
+			}
+		};
+		AppImpl.runAnnotationDetectors(
+				Djinn.module()
+						.register(detector)
+						.build(),
+				new AppResourceRegistry(Set.of(TestResource.class))
+		);
+		// two methods and a type, all handled before the only freeze
+		Assertions.assertEquals(3, frozen.get());
+	}
+
+	@Test
+	public void adBatch() {
+		var methods = new AtomicReference<List<String>>();
+		var types = new AtomicReference<List<Class<?>>>();
+		var detector = new BatchAnnotationDetector<TestAnnotation>() {
+			@Override
+			public void handleMethods(@NotNull List<MethodElement<TestAnnotation>> elements, @NotNull ResourceRegistry resourceRegistry) {
+				Assertions.assertNull(methods.getAndSet(elements.stream().map(e -> e.annotation().value()).sorted().toList()));
+			}
+			@Override
+			public void handleTypes(@NotNull List<TypeElement<TestAnnotation>> elements, @NotNull ResourceRegistry resourceRegistry) {
+				Assertions.assertNull(types.getAndSet(elements.stream().<Class<?>>map(TypeElement::type).toList()));
+			}
+		};
+		AppImpl.runAnnotationDetectors(
+				Djinn.module()
+						.register(detector)
+						.build(),
+				new AppResourceRegistry(Set.of(TestResource.class))
+		);
+		// every element of a kind is delivered by a single call
+		Assertions.assertEquals(List.of("test1", "test2"), methods.get());
+		Assertions.assertEquals(List.of(TestAnnotationHolder.class), types.get());
+	}
+
+	@Test
+	public void adNotThreadSafe() {
+		var threads = ConcurrentHashMap.<Thread>newKeySet();
+		var concurrent = new AtomicInteger();
+		var maxConcurrent = new AtomicInteger();
+		var handled = new AtomicInteger();
+		var detector = new AnnotationDetector<TestAnnotation>() {
+			private void handle() {
+				threads.add(Thread.currentThread());
+				maxConcurrent.accumulateAndGet(concurrent.incrementAndGet(), Math::max);
+				try {
+					// long enough for concurrent calls to overlap
+					Thread.sleep(20);
+				} catch(InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				handled.incrementAndGet();
+				concurrent.decrementAndGet();
+			}
+			@Override
+			public void handleMethod(@NotNull TestAnnotation obj, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+				handle();
+			}
+			@Override
+			public <V> void handleType(@NotNull TestAnnotation obj, @NotNull Class<V> type, @NotNull ResourceRegistry resourceRegistry) {
+				handle();
+			}
+			@Override
+			public boolean isThreadSafe() {
+				return false;
+			}
+		};
+		// several boot threads, which would otherwise call the detector concurrently
+		var property = System.setProperty(Djinn.BOOT_THREADS_PROPERTY, "4");
+		try {
+			AppImpl.runAnnotationDetectors(
+					Djinn.module()
+							.register(detector)
+							.build(),
+					new AppResourceRegistry(Set.of(TestResource.class))
+			);
+		} finally {
+			if(property == null) System.clearProperty(Djinn.BOOT_THREADS_PROPERTY);
+			else System.setProperty(Djinn.BOOT_THREADS_PROPERTY, property);
+		}
+		// two methods and a type, each handled alone, on the same thread
+		Assertions.assertEquals(3, handled.get());
+		Assertions.assertEquals(1, maxConcurrent.get());
+		Assertions.assertEquals(1, threads.size(), threads.toString());
+	}
+
+	@Test
+	public void adFailureCancelsBoot() throws InterruptedException {
+		var failure = new IllegalStateException("detector failed");
+		var handled = new AtomicInteger();
+		var worker = new AtomicReference<Thread>();
+		var detector = new AnnotationDetector<TestAnnotation>() {
+			@Override
+			public void handleMethod(@NotNull TestAnnotation obj, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+				handled.incrementAndGet();
+				worker.set(Thread.currentThread());
+				throw failure;
+			}
+		};
+		// a single boot thread runs the elements one after the other, so the failure of the first skips the second
+		var threads = System.setProperty(Djinn.BOOT_THREADS_PROPERTY, "1");
+		try {
+			// the failure itself is rethrown to the booting thread, rather than a wrapper
+			var thrown = Assertions.assertThrows(IllegalStateException.class, () -> AppImpl.runAnnotationDetectors(
+					Djinn.module()
+							.register(detector)
+							.build(),
+					new AppResourceRegistry(Set.of(TestResource.class))
+			));
+			Assertions.assertSame(failure, thrown);
+		} finally {
+			if(threads == null) System.clearProperty(Djinn.BOOT_THREADS_PROPERTY);
+			else System.setProperty(Djinn.BOOT_THREADS_PROPERTY, threads);
+		}
+		Assertions.assertEquals(1, handled.get());
+		// and the pool is shut down along with the boot
+		Assertions.assertTrue(worker.get().getName().startsWith("djinn-boot-"), worker.get().getName());
+		worker.get().join(10_000);
+		Assertions.assertFalse(worker.get().isAlive());
+	}
+
+	@Test
+	public void detectorDataRoundTrip() throws IOException {
+		var data = new DetectorData();
+		data.add(ElementType.METHOD, "foo.Bar#baz()V", "a b\\c\nd\r");
+		data.add(ElementType.TYPE, "foo.Bar", "");
+		var read = new DetectorData();
+		read.read(new ByteArrayInputStream(data.toByteArray()));
+		Assertions.assertEquals(Map.of("foo.Bar#baz()V", "a b\\c\nd\r"), read.entries(ElementType.METHOD));
+		Assertions.assertEquals(Map.of("foo.Bar", ""), read.entries(ElementType.TYPE));
+		Assertions.assertTrue(read.entries(ElementType.FIELD).isEmpty());
+	}
+
 }
@@ -1,9 +1,12 @@
 package bz.gsn.tests.djinn;
 
+import bz.gsn.djinn.core.app.AnnotationIndex;
 import bz.gsn.djinn.core.app.Classpath;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
@@ -19,6 +22,7 @@ public class ClasspathTest {
 	public static class TestClass {
 		@TestMethodAnnotation
 		public void test() {}
+		public void notAnnotated() {}
 	}
 
 	@Test
@@ -26,4 +30,34 @@ public class ClasspathTest {
 		Assertions.assertEquals(Classpath.annotatedMethods(TestMethodAnnotation.class), Set.of(TestClass.class.getMethod("test")));
 	}
 
+	@Test
+	public void sessionScansOnce() throws NoSuchMethodException {
+		var session = Classpath.Session.builder()
+				.acceptPackages(ClasspathTest.class.getPackageName())
+				.open();
+		try(session) {
+			Assertions.assertEquals(Set.of(TestClass.class.getMethod("test")), session.annotatedMethods(TestMethodAnnotation.class));
+			var statistics = session.statistics();
+			Assertions.assertTrue(statistics.classCount() > 0);
+			Assertions.assertTrue(session.annotatedTypes(TestMethodAnnotation.class).isEmpty());
+			Assertions.assertSame(statistics, session.statistics()); // no second scan
+		}
+		Assertions.assertThrows(IllegalStateException.class, () -> session.annotatedMethods(TestMethodAnnotation.class));
+	}
+
+	@Test
+	public void annotationIndexRoundTrip() throws IOException {
+		var index = new AnnotationIndex();
+		var annotation = TestMethodAnnotation.class.getName();
+		var method = AnnotationIndex.method(TestClass.class.getName(), "test", "()V");
+		index.add(annotation, ElementType.METHOD, method);
+		index.add(annotation, ElementType.TYPE, AnnotationIndex.type(TestClass.class.getName()));
+		var read = new AnnotationIndex();
+		read.read(new ByteArrayInputStream(index.toByteArray()));
+		Assertions.assertEquals(Set.of(annotation), read.annotations());
+		Assertions.assertEquals(Set.of(method), read.elements(annotation, ElementType.METHOD));
+		Assertions.assertEquals(Set.of(TestClass.class.getName()), read.elements(annotation, ElementType.TYPE));
+		Assertions.assertTrue(read.elements(annotation, ElementType.FIELD).isEmpty());
+	}
+
 }
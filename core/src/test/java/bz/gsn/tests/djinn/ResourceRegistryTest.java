@@ -0,0 +1,103 @@
+package bz.gsn.tests.djinn;
+
+import bz.gsn.djinn.core.app.AppResourceRegistry;
+import bz.gsn.djinn.core.resource.Inject;
+import bz.gsn.djinn.core.resource.Lazy;
+import bz.gsn.djinn.core.resource.Resource;
+import bz.gsn.djinn.core.resource.ResourceInstantiationException;
+import bz.gsn.djinn.core.resource.ResourceRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ResourceRegistryTest {
+
+	private static final AtomicInteger lazyInstances = new AtomicInteger();
+
+	public static final class Pool extends Resource {}
+
+	public static final class Repository extends Resource {
+		private final Pool pool;
+		public Repository(@Inject Pool pool) {
+			this.pool = pool;
+		}
+	}
+
+	@Lazy
+	public static final class Rare extends Resource {
+		public Rare() {
+			lazyInstances.incrementAndGet();
+		}
+	}
+
+	public static final class Broken extends Resource {
+		public Broken() {
+			throw new IllegalStateException("broken");
+		}
+	}
+
+	public static final class Ping extends Resource {
+		public Ping(@Inject Pong pong) {}
+	}
+
+	public static final class Pong extends Resource {
+		public Pong(@Inject Ping ping) {}
+	}
+
+	@Test
+	public void dependenciesAndLaziness() {
+		var registry = new AppResourceRegistry(List.of(Repository.class, Pool.class, Rare.class));
+		Assertions.assertSame(registry.require(Pool.class), registry.require(Repository.class).pool);
+		Assertions.assertEquals(0, lazyInstances.get());
+		Assertions.assertSame(registry.require(Rare.class), registry.require(Rare.class));
+		Assertions.assertEquals(1, lazyInstances.get());
+	}
+
+	@Test
+	public void lookups() throws InterruptedException {
+		var registry = new AppResourceRegistry(List.of(Pool.class, Repository.class));
+		var pool = registry.require(Pool.class);
+		Assertions.assertSame(pool, registry.getResourceOrNull(Pool.class));
+		Assertions.assertSame(pool, registry.getResource(Pool.class).orElseThrow());
+		// only registered classes have a slot; lookups are by exact class
+		Assertions.assertNull(registry.getResourceOrNull(Rare.class));
+		Assertions.assertNull(registry.getResourceOrNull(Resource.class));
+		Assertions.assertTrue(registry.getResource(Rare.class).isEmpty());
+		Assertions.assertThrows(NoSuchElementException.class, () -> registry.require(Rare.class));
+		// every thread sees the same instance
+		var seen = ConcurrentHashMap.<Resource>newKeySet();
+		var threads = new ArrayList<Thread>();
+		for(int i = 0; i < 16; i++) threads.add(Thread.ofVirtual().start(() -> seen.add(registry.require(Repository.class))));
+		for(var thread : threads) thread.join();
+		Assertions.assertEquals(Set.of(registry.require(Repository.class)), seen);
+	}
+
+	@Test
+	public void defaultLookups() {
+		var pool = new Pool();
+		var registry = new ResourceRegistry() {
+			@Override
+			@SuppressWarnings("unchecked")
+			public <T extends Resource> Optional<T> getResource(Class<T> resource) {
+				return resource == Pool.class ? Optional.of((T) pool) : Optional.empty();
+			}
+		};
+		// registries which only implement getResource get the other lookups for free
+		Assertions.assertSame(pool, registry.getResourceOrNull(Pool.class));
+		Assertions.assertSame(pool, registry.require(Pool.class));
+		Assertions.assertNull(registry.getResourceOrNull(Rare.class));
+		Assertions.assertThrows(NoSuchElementException.class, () -> registry.require(Rare.class));
+	}
+
+	@Test
+	public void failuresAreReported() {
+		var failure = Assertions.assertThrows(ResourceInstantiationException.class, () -> new AppResourceRegistry(List.of(Pool.class, Broken.class)));
+		Assertions.assertInstanceOf(IllegalStateException.class, failure.getCause());
+		var cycle = Assertions.assertThrows(ResourceInstantiationException.class, () -> new AppResourceRegistry(List.of(Ping.class, Pong.class)));
+		Assertions.assertTrue(cycle.getMessage().startsWith("Cyclic resource dependency"), cycle.getMessage());
+	}
+
+}
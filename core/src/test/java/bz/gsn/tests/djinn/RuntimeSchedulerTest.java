@@ -0,0 +1,190 @@
+package bz.gsn.tests.djinn;
+
+import bz.gsn.djinn.core.Djinn;
+import bz.gsn.djinn.core.StartupReport;
+import bz.gsn.djinn.core.app.AppImpl;
+import bz.gsn.djinn.core.app.AppResourceRegistry;
+import bz.gsn.djinn.core.module.Runtime;
+import bz.gsn.djinn.core.resource.ResourceRegistry;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RuntimeSchedulerTest {
+
+	/**
+	 * A runtime which crashes a number of times, and then either returns or runs until it is stopped.
+	 */
+	private static class FakeRuntime extends Runtime {
+
+		final String name;
+		final List<FakeRuntime> dependencies;
+		final int crashes;
+		final boolean blocks;
+		final List<Long> attempts = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch stopped = new CountDownLatch(1);
+		volatile List<String> stops = Collections.synchronizedList(new ArrayList<>());
+		volatile boolean dependenciesReady;
+		Runtime.RestartPolicy policy = RestartPolicy.NEVER;
+
+		FakeRuntime(String name, int crashes, boolean blocks, FakeRuntime... dependencies) {
+			this.name = name;
+			this.crashes = crashes;
+			this.blocks = blocks;
+			this.dependencies = List.of(dependencies);
+		}
+
+		@Override
+		public void run(ResourceRegistry resourceRegistry) {
+			attempts.add(System.nanoTime());
+			dependenciesReady = dependencies.stream().allMatch(e -> e.whenReady().toCompletableFuture().isDone());
+			if(attempts.size() <= crashes) throw new IllegalStateException(name + " crashed");
+			if(!blocks) return;
+			ready();
+			try {
+				stopped.await();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void stop(ResourceRegistry ignore) {
+			stops.add(name);
+			stopped.countDown();
+		}
+
+		@Override
+		public @NotNull RestartPolicy restartPolicy() {
+			return policy;
+		}
+
+		@Override
+		public @NotNull Collection<Runtime> dependencies() {
+			return List.copyOf(dependencies);
+		}
+
+	}
+
+	private static AppImpl run(Runtime... runtimes) {
+		var app = new AppImpl(List.of(Djinn.module().register(runtimes).build()), new AppResourceRegistry(List.of()), new String[0]);
+		app.run();
+		return app;
+	}
+
+	private static StartupReport report(AppImpl app) throws Exception {
+		return app.getStartupReport().toCompletableFuture().get(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void restartsWithBackoff() throws Exception {
+		var runtime = new FakeRuntime("flaky", 2, false);
+		runtime.policy = new Runtime.RestartPolicy(3, Duration.ofMillis(50), Duration.ofMillis(80));
+		report(run(runtime));
+		Assertions.assertEquals(3, runtime.attempts.size());
+		// the backoff doubles, up to the maximum backoff
+		Assertions.assertTrue(runtime.attempts.get(1) - runtime.attempts.get(0) >= Duration.ofMillis(50).toNanos());
+		Assertions.assertTrue(runtime.attempts.get(2) - runtime.attempts.get(1) >= Duration.ofMillis(80).toNanos());
+		Assertions.assertEquals(Duration.ofMillis(80), runtime.policy.backoff(5));
+	}
+
+	@Test
+	public void failsAfterMaxRestarts() throws Exception {
+		var broken = new FakeRuntime("broken", Integer.MAX_VALUE, false);
+		broken.policy = new Runtime.RestartPolicy(2, Duration.ZERO, Duration.ZERO);
+		var dependent = new FakeRuntime("dependent", 0, false, broken);
+		var report = report(run(broken, dependent));
+		// the first run and two restarts
+		Assertions.assertEquals(3, broken.attempts.size());
+		// a runtime whose dependency never became ready is never started, nor ever ready
+		Assertions.assertTrue(dependent.attempts.isEmpty());
+		Assertions.assertFalse(dependent.whenReady().toCompletableFuture().isDone());
+		Assertions.assertTrue(report.phases().stream().noneMatch(e -> e.name().equals(StartupReport.RUNTIME_START)));
+	}
+
+	@Test
+	public void dependentsWaitForReadiness() throws Exception {
+		var database = new FakeRuntime("database", 1, true);
+		database.policy = new Runtime.RestartPolicy(1, Duration.ofMillis(50), Duration.ofMillis(50));
+		var server = new FakeRuntime("server", 0, true, database);
+		database.stops = server.stops = Collections.synchronizedList(new ArrayList<>());
+		var app = run(server, database);
+		try {
+			var report = report(app);
+			Assertions.assertEquals(2, database.attempts.size());
+			Assertions.assertEquals(1, server.attempts.size());
+			Assertions.assertTrue(server.dependenciesReady);
+			// the dependent is only started once its dependency recovered
+			Assertions.assertTrue(server.attempts.getFirst() > database.attempts.get(1));
+			Assertions.assertEquals(2, report.phases().stream().filter(e -> e.name().equals(StartupReport.RUNTIME_START)).count());
+		} finally {
+			app.stop();
+		}
+	}
+
+	@Test
+	public void stopsInReverseDependencyOrder() throws Exception {
+		var stops = Collections.synchronizedList(new ArrayList<String>());
+		var a = new FakeRuntime("a", 0, true);
+		var b = new FakeRuntime("b", 0, true, a);
+		var c = new FakeRuntime("c", 0, true, b);
+		var d = new FakeRuntime("d", 0, true, a);
+		for(var runtime : List.of(a, b, c, d)) runtime.stops = stops;
+		var app = run(c, a, d, b);
+		report(app);
+		app.stop();
+		Assertions.assertEquals(4, stops.size());
+		// every runtime is stopped after the runtimes depending on it
+		Assertions.assertTrue(stops.indexOf("c") < stops.indexOf("b"));
+		Assertions.assertTrue(stops.indexOf("b") < stops.indexOf("a"));
+		Assertions.assertTrue(stops.indexOf("d") < stops.indexOf("a"));
+		// and the application waited for them to stop
+		for(var runtime : List.of(a, b, c, d)) Assertions.assertEquals(0, runtime.stopped.getCount());
+		// stopping again does nothing
+		app.stop();
+		Assertions.assertEquals(4, stops.size());
+	}
+
+	@Test
+	public void stopsDuringBackoff() throws Exception {
+		var runtime = new FakeRuntime("crashing", Integer.MAX_VALUE, false);
+		runtime.policy = new Runtime.RestartPolicy(1, Duration.ofMinutes(1), Duration.ofMinutes(1));
+		var app = run(runtime);
+		var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while(runtime.attempts.isEmpty() && System.nanoTime() < deadline) Thread.sleep(10);
+		var start = System.nanoTime();
+		app.stop();
+		// the backoff is cut short, and the runtime is not restarted once stopped
+		Assertions.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(10));
+		Thread.sleep(100);
+		Assertions.assertEquals(1, runtime.attempts.size());
+		Assertions.assertFalse(runtime.whenReady().toCompletableFuture().isDone());
+	}
+
+	@Test
+	public void rejectsCycles() {
+		var counter = new AtomicInteger();
+		var a = new Runtime() {
+			Runtime other;
+			@Override
+			public void run(ResourceRegistry resourceRegistry) {
+				counter.incrementAndGet();
+			}
+			@Override
+			public @NotNull Collection<Runtime> dependencies() {
+				return List.of(other);
+			}
+		};
+		a.other = a;
+		var app = new AppImpl(List.of(Djinn.module().register(a).build()), new AppResourceRegistry(List.of()), new String[0]);
+		Assertions.assertThrows(IllegalStateException.class, app::run);
+		Assertions.assertEquals(0, counter.get());
+	}
+
+}
@@ -0,0 +1,136 @@
+package bz.gsn.tests.djinn;
+
+import bz.gsn.djinn.core.Djinn;
+import bz.gsn.djinn.core.StartupReport;
+import bz.gsn.djinn.core.app.AppImpl;
+import bz.gsn.djinn.core.app.AppResourceRegistry;
+import bz.gsn.djinn.core.app.Classpath;
+import bz.gsn.djinn.core.module.AnnotationDetector;
+import bz.gsn.djinn.core.module.MethodInfo;
+import bz.gsn.djinn.core.module.Runtime;
+import bz.gsn.djinn.core.resource.Resource;
+import bz.gsn.djinn.core.resource.ResourceRegistry;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.invoke.MethodHandle;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StartupReportTest {
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	public @interface Timed {}
+
+	public static final class TimedHolder {
+		@Timed
+		public void first() {}
+		@Timed
+		public void second() {}
+	}
+
+	public static final class Clock extends Resource {}
+
+	public static final class TimedDetector extends AnnotationDetector<Timed> {
+		private final AtomicInteger handled = new AtomicInteger();
+		@Override
+		public void handleMethod(@NotNull Timed obj, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+			handled.incrementAndGet();
+		}
+	}
+
+	/**
+	 * A runtime which runs until it is stopped, and which may never call {@link #ready()}.
+	 */
+	private static final class BlockingRuntime extends Runtime {
+		private final boolean ready;
+		private final CountDownLatch stopped = new CountDownLatch(1);
+
+		BlockingRuntime(boolean ready) {
+			this.ready = ready;
+		}
+		@Override
+		public void run(ResourceRegistry resourceRegistry) {
+			if(ready) ready();
+			try {
+				stopped.await();
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		@Override
+		public void stop(ResourceRegistry ignore) {
+			stopped.countDown();
+		}
+	}
+
+	@Test
+	public void reportsEveryPhase() throws Exception {
+		var detector = new TimedDetector();
+		var runtime = new BlockingRuntime(true);
+		var app = new AppImpl(List.of(Djinn.module().register(detector).register(runtime).build()), new AppResourceRegistry(List.of(Clock.class)), new String[0]);
+		app.run();
+		try {
+			var report = app.getStartupReport().toCompletableFuture().get(10, TimeUnit.SECONDS);
+			Assertions.assertEquals(2, detector.handled.get());
+			var detectorName = TimedDetector.class.getName();
+			for(var phase : List.of(
+					new StartupReport.Phase(StartupReport.CLASSPATH_SCAN, "scan", Duration.ZERO),
+					new StartupReport.Phase(StartupReport.RESOURCE_INSTANTIATION, null, Duration.ZERO),
+					new StartupReport.Phase(StartupReport.RESOURCE_INSTANTIATION, Clock.class.getName(), Duration.ZERO),
+					new StartupReport.Phase(StartupReport.METHOD_DISPATCH, detectorName, Duration.ZERO),
+					new StartupReport.Phase(StartupReport.HANDLE_RESOLUTION, detectorName, Duration.ZERO),
+					new StartupReport.Phase(StartupReport.DETECTOR_FREEZE, detectorName, Duration.ZERO)
+			)) {
+				Assertions.assertTrue(report.phases().stream().anyMatch(e -> e.name().equals(phase.name()) && Objects.equals(e.subject(), phase.subject())), phase.toString());
+			}
+			Assertions.assertEquals(1, report.phases().stream().filter(e -> e.name().equals(StartupReport.RUNTIME_START)).count());
+			// the classpath of the tests carries no index, so it was scanned
+			Assertions.assertTrue(report.phases().stream().filter(e -> e.name().equals(StartupReport.CLASSPATH_SCAN)).allMatch(e -> e.duration().isPositive()));
+			Assertions.assertTrue(report.phases().stream().allMatch(e -> report.total().compareTo(e.duration()) >= 0));
+
+			var summary = report.summary(2).lines().toList();
+			Assertions.assertTrue(summary.getFirst().startsWith("Started in "));
+			Assertions.assertEquals(4, summary.size());
+			Assertions.assertEquals("  (" + (report.phases().size() - 2) + " more)", summary.getLast());
+		} finally {
+			app.stop();
+		}
+	}
+
+	@Test
+	public void completesOnceStopped() throws Exception {
+		var runtime = new BlockingRuntime(false);
+		var app = new AppImpl(List.of(Djinn.module().register(runtime).build()), new AppResourceRegistry(List.of()), new String[0]);
+		app.run();
+		var report = app.getStartupReport().toCompletableFuture();
+		// the runtime is not ready until its run returns
+		Assertions.assertThrows(TimeoutException.class, () -> report.get(200, TimeUnit.MILLISECONDS));
+		app.stop();
+		// so the report is completed once the application stops
+		Assertions.assertTrue(report.get(10, TimeUnit.SECONDS).phases().stream().noneMatch(e -> e.name().equals(StartupReport.RUNTIME_START)));
+	}
+
+	@Test
+	public void runsDetectorsOnASession() {
+		var detector = new TimedDetector();
+		try(var classpath = Classpath.acquire()) {
+			AppImpl.runAnnotationDetectors(Djinn.module().register(detector).build(), new AppResourceRegistry(List.of()), classpath);
+			Assertions.assertFalse(classpath.statistics().indexed());
+			Assertions.assertTrue(classpath.statistics().scanTime().isPositive());
+		}
+		Assertions.assertEquals(2, detector.handled.get());
+	}
+
+}
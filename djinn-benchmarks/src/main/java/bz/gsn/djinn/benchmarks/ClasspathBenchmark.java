@@ -0,0 +1,43 @@
+package bz.gsn.djinn.benchmarks;
+
+import bz.gsn.djinn.core.app.Classpath;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a {@link Classpath.Session} scanning a synthetic classpath and resolving its annotated methods.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ClasspathBenchmark {
+
+	@Param({"1000", "10000"})
+	public int classes;
+
+	private Path root;
+
+	@Setup(Level.Trial)
+	public void generate() throws IOException {
+		root = SyntheticClasspath.generate(classes);
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() throws IOException {
+		SyntheticClasspath.delete(root);
+	}
+
+	@Benchmark
+	public int scan() {
+		try(var session = Classpath.Session.builder().overrideClasspath(root).open()) {
+			return session.annotatedMethods(Fixtures.Handler.class).size();
+		}
+	}
+
+}
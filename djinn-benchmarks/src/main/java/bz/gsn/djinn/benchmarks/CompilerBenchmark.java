@@ -0,0 +1,53 @@
+package bz.gsn.djinn.benchmarks;
+
+import bz.gsn.djinn.compiler.DjinnCompiler;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link DjinnCompiler} generating the bootstrapper and creating the JAR of a synthetic application.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompilerBenchmark {
+
+	@Param({"1000"})
+	public int classes;
+
+	private Path root;
+	private Path jar;
+	private DjinnCompiler compiler;
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		root = SyntheticClasspath.generate(classes);
+		jar = Files.createTempFile("djinn-benchmark", ".jar");
+		compiler = DjinnCompiler.of(root);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		SyntheticClasspath.delete(root);
+		Files.deleteIfExists(jar);
+	}
+
+	@Benchmark
+	public byte[] generateBootstrapper() {
+		return compiler.generateBootstrapper();
+	}
+
+	@Benchmark
+	public Path createJAR() throws IOException {
+		compiler.createJAR(jar);
+		return jar;
+	}
+
+}
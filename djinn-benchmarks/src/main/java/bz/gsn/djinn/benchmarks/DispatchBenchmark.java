@@ -0,0 +1,50 @@
+package bz.gsn.djinn.benchmarks;
+
+import bz.gsn.djinn.core.Djinn;
+import bz.gsn.djinn.core.app.AppImpl;
+import bz.gsn.djinn.core.app.AppResourceRegistry;
+import bz.gsn.djinn.core.app.Classpath;
+import bz.gsn.djinn.core.module.DjinnModule;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link AppImpl#runAnnotationDetectors(DjinnModule, bz.gsn.djinn.core.resource.ResourceRegistry)} dispatching
+ * the {@link Fixtures.Handlers}. The classpath session is held open for the whole trial, so only dispatch
+ * (including resource resolution) is measured, not the scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+
+	private Classpath.Session session;
+	private AppResourceRegistry registry;
+	private DjinnModule module;
+	private Fixtures.HandlerDetector detector;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		session = Classpath.acquire();
+		session.annotatedMethods(Fixtures.Handler.class); // performs the scan up front
+		registry = new AppResourceRegistry(Fixtures.RESOURCES);
+		detector = new Fixtures.HandlerDetector();
+		module = Djinn.module().register(detector).build();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		session.close();
+	}
+
+	@Benchmark
+	public int dispatch() {
+		AppImpl.runAnnotationDetectors(module, registry);
+		return detector.handles.size();
+	}
+
+}
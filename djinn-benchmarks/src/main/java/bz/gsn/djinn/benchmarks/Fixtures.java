@@ -0,0 +1,92 @@
+package bz.gsn.djinn.benchmarks;
+
+import bz.gsn.djinn.core.module.AnnotationDetector;
+import bz.gsn.djinn.core.module.MethodInfo;
+import bz.gsn.djinn.core.resource.Inject;
+import bz.gsn.djinn.core.resource.Resource;
+import bz.gsn.djinn.core.resource.ResourceRegistry;
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Annotations, resources and detectors shared by the benchmarks.
+ */
+public final class Fixtures {
+
+	private Fixtures() {
+		//no instance
+	}
+
+	/**
+	 * The resources registered by the benchmarks.
+	 */
+	public static final List<Class<? extends Resource>> RESOURCES = List.of(
+			FirstResource.class, SecondResource.class, ThirdResource.class, FourthResource.class
+	);
+
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target(ElementType.METHOD)
+	public @interface Handler {
+		String value();
+	}
+
+	public static final class FirstResource extends Resource {
+		public String greeting() {
+			return "hello";
+		}
+	}
+
+	public static final class SecondResource extends Resource {}
+
+	public static final class ThirdResource extends Resource {}
+
+	public static final class FourthResource extends Resource {}
+
+	@SuppressWarnings("unused")
+	public static final class Handlers {
+
+		@Handler("greet")
+		public String greet(@Inject FirstResource resource, String name) {
+			return resource.greeting() + ", " + name;
+		}
+
+		@Handler("plain")
+		public String plain(String name) {
+			return name;
+		}
+
+		@Handler("many")
+		public int many(@Inject FirstResource first, @Inject SecondResource second, @Inject ThirdResource third, int x) {
+			return x + 1;
+		}
+
+		@Handler("static")
+		public static int constant(@Inject FourthResource fourth) {
+			return 42;
+		}
+
+	}
+
+	/**
+	 * Records the handle of every {@link Handler}, by its value.
+	 */
+	public static final class HandlerDetector extends AnnotationDetector<Handler> {
+
+		public final Map<String, MethodHandle> handles = new ConcurrentHashMap<>();
+
+		@Override
+		public void handleMethod(@NotNull Handler obj, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+			handles.put(obj.value(), handle);
+		}
+
+	}
+
+}
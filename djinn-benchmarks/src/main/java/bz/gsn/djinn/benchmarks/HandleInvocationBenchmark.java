@@ -0,0 +1,54 @@
+package bz.gsn.djinn.benchmarks;
+
+import bz.gsn.djinn.core.Djinn;
+import bz.gsn.djinn.core.app.AppImpl;
+import bz.gsn.djinn.core.app.AppResourceRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures invoking the {@link MethodHandle}s passed to detectors, whose {@link bz.gsn.djinn.core.resource.Inject @Inject}ed
+ * resources are bound by {@code AppImpl.resolveResources}, against calling the method directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HandleInvocationBenchmark {
+
+	private final Fixtures.Handlers handlers = new Fixtures.Handlers();
+	private final String name = "djinn";
+	private Fixtures.FirstResource resource;
+	private MethodHandle greet;
+	private MethodHandle many;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		var registry = new AppResourceRegistry(Fixtures.RESOURCES);
+		var detector = new Fixtures.HandlerDetector();
+		AppImpl.runAnnotationDetectors(Djinn.module().register(detector).build(), registry);
+		resource = registry.require(Fixtures.FirstResource.class);
+		greet = detector.handles.get("greet");
+		many = detector.handles.get("many");
+	}
+
+	@Benchmark
+	public String direct() {
+		return handlers.greet(resource, name);
+	}
+
+	@Benchmark
+	public String resolvedHandle() throws Throwable {
+		return (String) greet.invokeExact(handlers, name);
+	}
+
+	@Benchmark
+	public int resolvedHandleManyResources() throws Throwable {
+		return (int) many.invokeExact(handlers, 1);
+	}
+
+}
@@ -0,0 +1,42 @@
+package bz.gsn.djinn.benchmarks;
+
+import bz.gsn.djinn.core.app.AppResourceRegistry;
+import bz.gsn.djinn.core.resource.ResourceRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of looking up a resource in an {@link AppResourceRegistry}, through each lookup method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceLookupBenchmark {
+
+	private ResourceRegistry registry;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		registry = new AppResourceRegistry(Fixtures.RESOURCES);
+	}
+
+	@Benchmark
+	public Object getResource() {
+		return registry.getResource(Fixtures.ThirdResource.class).orElseThrow();
+	}
+
+	@Benchmark
+	public Object getResourceOrNull() {
+		return registry.getResourceOrNull(Fixtures.ThirdResource.class);
+	}
+
+	@Benchmark
+	public Object require() {
+		return registry.require(Fixtures.ThirdResource.class);
+	}
+
+}
@@ -0,0 +1,76 @@
+package bz.gsn.djinn.benchmarks;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Generates directories of synthetic classes to scan. Every class is {@code public}, and has one
+ * {@link Fixtures.Handler @Handler} method and one unannotated method.
+ */
+final class SyntheticClasspath {
+
+	private SyntheticClasspath() {
+		//no instance
+	}
+
+	/**
+	 * Generates a new temporary directory holding the given number of classes, spread over packages of 100 classes.
+	 * @param classes The number of classes.
+	 * @return the directory.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static Path generate(int classes) throws IOException {
+		var root = Files.createTempDirectory("djinn-synthetic");
+		var handler = Type.getDescriptor(Fixtures.Handler.class);
+		for(int i = 0; i < classes; i++) {
+			var name = "synthetic/p" + (i / 100) + "/C" + i;
+			var cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+			cw.visit(Opcodes.V21, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, "java/lang/Object", null);
+			var init = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+			init.visitCode();
+			init.visitVarInsn(Opcodes.ALOAD, 0);
+			init.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+			init.visitInsn(Opcodes.RETURN);
+			init.visitMaxs(0, 0);
+			init.visitEnd();
+			var annotated = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "handle", "()I", null, null);
+			var annotation = annotated.visitAnnotation(handler, true);
+			annotation.visit("value", "h" + i);
+			annotation.visitEnd();
+			annotated.visitCode();
+			annotated.visitLdcInsn(i);
+			annotated.visitInsn(Opcodes.IRETURN);
+			annotated.visitMaxs(0, 0);
+			annotated.visitEnd();
+			var plain = cw.visitMethod(Opcodes.ACC_PUBLIC, "plain", "()V", null, null);
+			plain.visitCode();
+			plain.visitInsn(Opcodes.RETURN);
+			plain.visitMaxs(0, 0);
+			plain.visitEnd();
+			cw.visitEnd();
+			var file = root.resolve(name + ".class");
+			Files.createDirectories(file.getParent());
+			Files.write(file, cw.toByteArray());
+		}
+		return root;
+	}
+
+	/**
+	 * Deletes a directory created by {@link #generate(int)}.
+	 * @param root The directory.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	static void delete(Path root) throws IOException {
+		try(Stream<Path> paths = Files.walk(root)) {
+			for(var path : paths.sorted(Comparator.reverseOrder()).toList()) Files.delete(path);
+		}
+	}
+
+}
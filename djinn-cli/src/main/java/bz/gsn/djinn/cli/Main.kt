@@ -3,6 +3,7 @@
 package bz.gsn.djinn.cli
 
 import bz.gsn.djinn.cli.internal.CompileTask
+import bz.gsn.djinn.cli.internal.DaemonTask
 import bz.gsn.djinn.cli.internal.DiagnosticsPrinter
 import bz.gsn.djinn.cli.internal.RunTask
 import com.github.ajalt.clikt.core.CliktCommand
@@ -43,6 +44,7 @@ internal fun CliktCommand.action(action: String, appendix: String) {
 fun main(args: Array<String>) = DjinnCLI()
     .subcommands(
         CompileTask(),
-        RunTask()
+        RunTask(),
+        DaemonTask()
     )
     .main(args)
\ No newline at end of file
@@ -1,6 +1,7 @@
 package bz.gsn.djinn.cli.internal
 
 import bz.gsn.djinn.cli.action
+import bz.gsn.djinn.cli.isJson
 import bz.gsn.djinn.cli.internal.DiagnosticsPrinter.print
 import bz.gsn.djinn.compiler.DjinnCompiler
 import bz.gsn.djinn.compiler.lint.Diagnostic
@@ -12,9 +13,12 @@ import com.github.ajalt.clikt.parameters.types.int
 import com.github.ajalt.clikt.parameters.types.path
 import com.github.ajalt.mordant.rendering.TextColors
 import com.github.ajalt.mordant.rendering.TextStyles
+import java.net.URLClassLoader
 import java.nio.file.Path
 import kotlin.io.path.Path
+import kotlin.time.Duration.Companion.seconds
 import kotlin.time.measureTime
+import kotlin.time.toJavaDuration
 
 /**
  * A compiler task.
@@ -42,39 +46,170 @@ internal class CompileTask : CliktCommand(name = "compile", help = "Compiles a D
         .help("Where the output JAR should be outputted.")
         .required()
 
-    private val primary: Path by argument("primary", "The primary classpath of your project, where the bootstrapper will be created.")
-        .path(mustExist = true, mustBeReadable = true, mustBeWritable = true, canBeFile = false, canBeDir = true)
+    private val primary: Path by argument("primary", "The primary classpath of your project, which is packaged into the JAR.")
+        .path(mustExist = true, mustBeReadable = true, mustBeWritable = false, canBeFile = false, canBeDir = true)
         .default(Path("").toAbsolutePath())
 
+    private val invokers: Boolean by option("-i", "--invokers")
+        .help("Whether or not invoker classes should be generated for methods with @Inject-ed resources.")
+        .flag()
+
+    private val stored: Boolean by option("-s", "--store")
+        .help("Whether or not the JAR entries should be stored uncompressed, which is faster to package and to load classes from.")
+        .flag()
+
+    private val prepareDetectors: Boolean by option("-p", "--prepare-detectors")
+        .help("Whether or not build-time annotation detectors should be prepared during compilation; this instantiates every module.")
+        .flag()
+
+    private val nativeImage: Boolean by option("--native-image")
+        .help("Whether or not the GraalVM native-image configuration of the application should be embedded in the JAR.")
+        .flag()
+
+    private val archive: Boolean by option("--cds")
+        .help("Whether or not to create an AppCDS archive of the JAR, by running the application until all of its runtimes have started.")
+        .flag()
+
+    private val trainingTimeout: Int by option("--training-timeout")
+        .int()
+        .help("How many seconds the training run for the AppCDS archive may take.")
+        .default(60)
+
+    private val cache: Path by option("-c", "--cache")
+        .path(canBeFile = false, canBeDir = true)
+        .help("The directory of the class metadata cache, which may be shared by several projects.")
+        .default(Path(System.getProperty("user.home"), ".djinn", "cache"))
+
+    private val noCache: Boolean by option("--no-cache")
+        .help("Whether or not every class should be read again, ignoring the class metadata cache.")
+        .flag()
+
+    private val lintPath: List<Path> by option("-l", "--lint-path")
+        .help("A semicolon-separated list of JAR files or directories providing additional lints.")
+        .path(mustExist = true, mustBeReadable = true, canBeFile = true, canBeDir = true)
+        .split(";")
+        .default(listOf())
+
     private val disableWarnings: Set<Int> by option("-a", "--allow")
         .int(false)
         .multiple()
         .unique()
 
+    private val daemon: Boolean by option("--daemon")
+        .help("Whether or not to compile through a running `djinn daemon`, which keeps the classpath metadata in memory. Compiles locally if no daemon is running.")
+        .flag()
+
+    private val socket: Path by option("--socket")
+        .path(canBeFile = true, canBeDir = false)
+        .help("The socket of the daemon.")
+        .default(DEFAULT_SOCKET)
+
+    private val watch: Boolean by option("-w", "--watch")
+        .help("Whether or not to keep watching the primary classpath after compiling, re-linting changed classes and updating the JAR in place.")
+        .flag()
+
     override fun run() {
-        val compiler = DjinnCompiler.of(primary, *external.toTypedArray())
-        action("Compiling", "Djinn application at $primary with ${external.size} external classpaths")
-        var warnings = 0
-        var errors = 0
-        val duration = measureTime {
-            action("Located", "${compiler.findClassesExtending("bz.gsn.djinn.core.module.DjinnModule", true).size} module(s) in total")
-            action("Located", "${compiler.findClassesExtending("bz.gsn.djinn.core.resource.Resource", false).size} resource(s) in total")
-            action("Linting", "${compiler.classCount()} classes")
-            val diagnostics = compiler.lint().filter { if(it.level() == Diagnostic.Level.WARNING) { !disableWarnings.contains(it.code()) } else true }
-            warnings = diagnostics.count { it.level() == Diagnostic.Level.WARNING }
-            errors = diagnostics.count { it.level() == Diagnostic.Level.ERROR }
-            diagnostics.forEach { print(it) }
-            if(bootstrap && errors == 0) {
-                buildVars.forEach(compiler::registerBTV)
-                action("Embedded", "${buildVars.size} build-time variable(s)")
-                val time = measureTime {
-                    compiler.createJAR(outputJar)
-                }
-                action("Bootstrapped", "application in $time using standard hook")
+        val info = currentContext.terminal.info
+        val request = CompileRequest(
+            primary = primary.toAbsolutePath().toString(),
+            external = external.map { it.toAbsolutePath().toString() },
+            output = outputJar.toAbsolutePath().toString(),
+            buildVars = buildVars,
+            bootstrap = bootstrap,
+            invokers = invokers,
+            stored = stored,
+            prepareDetectors = prepareDetectors,
+            nativeImage = nativeImage,
+            archive = archive,
+            trainingTimeout = trainingTimeout,
+            cache = if(noCache) null else cache.toAbsolutePath().toString(),
+            lintPath = lintPath.map { it.toAbsolutePath().toString() },
+            allow = disableWarnings,
+            json = isJson,
+            ansiLevel = info.ansiLevel.name,
+            width = info.width
+        )
+        if(watch) {
+            // watching keeps its own metadata in memory, so there is nothing to gain from a daemon
+            watch(request)
+            return
+        }
+        if(daemon) {
+            if(DaemonClient.compile(this, socket, request)) return
+            echo("No daemon is listening at $socket; compiling locally", err = true)
+        }
+        compile(request, null)
+    }
+
+}
+
+/**
+ * Compiles a Djinn application as requested, reporting to this command's terminal.
+ * @param request The compilation request.
+ * @param store The store of classpath metadata kept by a daemon; if `null`, the classpath is scanned.
+ */
+internal fun CliktCommand.compile(request: CompileRequest, store: MetadataStore?) {
+    val primary = Path(request.primary)
+    val external = request.external.map { Path(it) }
+    val cache = request.cache?.let { Path(it) }
+    val compiler = when {
+        store != null -> DjinnCompiler.of(store.metadata(listOf(primary) + external, cache), primary, *external.toTypedArray())
+        cache == null -> DjinnCompiler.of(primary, *external.toTypedArray())
+        else -> DjinnCompiler.cached(cache, primary, *external.toTypedArray())
+    }
+    compile(request, compiler)
+}
+
+/**
+ * Compiles a Djinn application as requested with the given compiler, reporting to this command's terminal.
+ * @param request The compilation request.
+ * @param compiler The compiler of the requested classpath.
+ * @return whether the application compiled without errors.
+ */
+internal fun CliktCommand.compile(request: CompileRequest, compiler: DjinnCompiler): Boolean {
+    val primary = Path(request.primary)
+    val external = request.external
+    val outputJar = Path(request.output)
+    action("Compiling", "Djinn application at $primary with ${external.size} external classpaths")
+    var warnings = 0
+    var errors = 0
+    val duration = measureTime {
+        val model = compiler.model()
+        action("Located", "${model.modules().size} module(s) in total")
+        action("Located", "${model.resourceClasses().size} resource(s) in total")
+        action("Located", "${model.detectors().size} detector(s) (${model.detectors().count { it.buildTime }} build-time) and ${model.runtimes().size} runtime(s)")
+        action("Linting", "${compiler.classCount()} classes")
+        val diagnostics = request.lint { compiler.lint(it) }
+        warnings = diagnostics.count { it.level() == Diagnostic.Level.WARNING }
+        errors = diagnostics.count { it.level() == Diagnostic.Level.ERROR }
+        diagnostics.forEach { print(it) }
+        if(request.bootstrap && errors == 0) {
+            request.buildVars.forEach(compiler::registerBTV)
+            compiler.setInvokers(request.invokers)
+            compiler.setStored(request.stored)
+            compiler.setPrepareDetectors(request.prepareDetectors)
+            compiler.setNativeImage(request.nativeImage)
+            action("Embedded", "${request.buildVars.size} build-time variable(s)")
+            val time = measureTime {
+                compiler.createJAR(outputJar)
+            }
+            action("Bootstrapped", "application in $time using standard hook")
+            if(request.archive) {
+                val arguments: Path
+                val trained = measureTime { arguments = compiler.createArchive(outputJar, request.trainingTimeout.seconds.toJavaDuration()) }
+                action("Archived", "classes loaded at startup in $trained; launch with `java @$arguments`")
             }
         }
-        if(errors == 0) action("Compiled", "Djinn application in $duration with $warnings warning(s) to $outputJar")
-        else echo("${(TextStyles.bold + TextColors.red)("Failed")} to compile Djinn application with $warnings warning(s) and $errors error(s)")
     }
+    if(errors == 0) action("Compiled", "Djinn application in $duration with $warnings warning(s) to $outputJar")
+    else echo("${(TextStyles.bold + TextColors.red)("Failed")} to compile Djinn application with $warnings warning(s) and $errors error(s)")
+    return errors == 0
+}
 
-}
\ No newline at end of file
+/**
+ * Lints with the lints of the request's lint path, dropping allowed warnings.
+ */
+internal fun CompileRequest.lint(lint: (ClassLoader) -> List<Diagnostic>): List<Diagnostic> {
+    val lintLoader = URLClassLoader(lintPath.map { Path(it).toUri().toURL() }.toTypedArray(), DjinnCompiler::class.java.classLoader)
+    return lintLoader.use(lint).filter { if(it.level() == Diagnostic.Level.WARNING) { !allow.contains(it.code()) } else true }
+}
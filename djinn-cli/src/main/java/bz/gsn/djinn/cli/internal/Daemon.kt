@@ -0,0 +1,327 @@
+package bz.gsn.djinn.cli.internal
+
+import bz.gsn.djinn.cli.action
+import bz.gsn.djinn.cli.isJson
+import bz.gsn.djinn.cli.moshi
+import bz.gsn.djinn.compiler.metadata.ClasspathMetadata
+import com.github.ajalt.clikt.core.CliktCommand
+import com.github.ajalt.clikt.core.ProgramResult
+import com.github.ajalt.clikt.core.context
+import com.github.ajalt.clikt.parameters.options.default
+import com.github.ajalt.clikt.parameters.options.help
+import com.github.ajalt.clikt.parameters.options.option
+import com.github.ajalt.clikt.parameters.types.path
+import com.github.ajalt.mordant.rendering.AnsiLevel
+import com.github.ajalt.mordant.terminal.PrintRequest
+import com.github.ajalt.mordant.terminal.Terminal
+import com.github.ajalt.mordant.terminal.TerminalInfo
+import com.github.ajalt.mordant.terminal.TerminalInterface
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.IOException
+import java.net.StandardProtocolFamily
+import java.net.UnixDomainSocketAddress
+import java.nio.channels.Channels
+import java.nio.channels.ServerSocketChannel
+import java.nio.channels.SocketChannel
+import java.nio.file.*
+import java.nio.file.StandardWatchEventKinds.*
+import java.nio.file.attribute.BasicFileAttributes
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.locks.ReentrantLock
+import kotlin.concurrent.withLock
+import kotlin.io.path.Path
+import kotlin.io.path.createDirectories
+import kotlin.io.path.deleteIfExists
+
+/**
+ * The default socket of the daemon.
+ */
+internal val DEFAULT_SOCKET: Path = Path(System.getProperty("user.home"), ".djinn", "daemon.sock")
+
+/**
+ * A compilation requested by `djinn compile`, with every path absolute, so that it can be run by a daemon
+ * with a different working directory.
+ */
+internal data class CompileRequest(
+    val primary: String,
+    val external: List<String>,
+    val output: String,
+    val buildVars: List<String>,
+    val bootstrap: Boolean,
+    val invokers: Boolean,
+    val stored: Boolean,
+    val prepareDetectors: Boolean,
+    val nativeImage: Boolean,
+    val archive: Boolean,
+    val trainingTimeout: Int,
+    val cache: String?,
+    val lintPath: List<String>,
+    val allow: Set<Int>,
+    val json: Boolean,
+    val ansiLevel: String,
+    val width: Int
+)
+
+/**
+ * The wire protocol between `djinn compile --daemon` and `djinn daemon`. The client sends a [CompileRequest] as JSON;
+ * the daemon answers with frames, each a kind byte followed by a length-prefixed UTF-8 payload,
+ * and ends with an exit frame holding the exit code.
+ */
+private object Frames {
+    const val REQUEST: Int = 'R'.code
+    const val STDOUT: Int = 'O'.code
+    const val STDERR: Int = 'E'.code
+    const val EXIT: Int = 'X'.code
+
+    fun write(output: DataOutputStream, kind: Int, payload: ByteArray) = synchronized(output) {
+        output.writeByte(kind)
+        output.writeInt(payload.size)
+        output.write(payload)
+        output.flush()
+    }
+
+    fun read(input: DataInputStream): Pair<Int, ByteArray> {
+        val kind = input.readUnsignedByte()
+        val payload = ByteArray(input.readInt())
+        input.readFully(payload)
+        return kind to payload
+    }
+}
+
+/**
+ * A long-lived compiler process, which keeps the classpath metadata of previous compilations in memory.
+ */
+internal class DaemonTask : CliktCommand(name = "daemon", help = "Runs a compile daemon, which `djinn compile --daemon` compiles through") {
+
+    private val socket: Path by option("--socket")
+        .path(canBeFile = true, canBeDir = false)
+        .help("The socket to listen on.")
+        .default(DEFAULT_SOCKET)
+
+    // compilations run one at a time; each is parallel already, and the CLI's output settings are global
+    private val lock = ReentrantLock()
+
+    override fun run() {
+        socket.parent?.createDirectories()
+        // a socket file left behind by a daemon which did not exit cleanly would make binding fail
+        try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket)).close()
+            echo("A daemon is already listening at $socket", err = true)
+            throw ProgramResult(1)
+        } catch(ignored: IOException) {
+            socket.deleteIfExists()
+        }
+        val store = MetadataStore(FileSystems.getDefault().newWatchService())
+        Thread.ofPlatform().daemon().name("djinn-daemon-watcher").start(store::watch)
+        ServerSocketChannel.open(StandardProtocolFamily.UNIX).use { server ->
+            server.bind(UnixDomainSocketAddress.of(socket))
+            Runtime.getRuntime().addShutdownHook(Thread { socket.deleteIfExists() })
+            action("Listening", "on $socket")
+            while(true) {
+                val channel = server.accept()
+                Thread.ofVirtual().name("djinn-daemon-client").start { serve(channel, store) }
+            }
+        }
+    }
+
+    private fun serve(channel: SocketChannel, store: MetadataStore) = channel.use {
+        val input = DataInputStream(Channels.newInputStream(channel))
+        val output = DataOutputStream(Channels.newOutputStream(channel).buffered())
+        val request = try {
+            val (kind, payload) = Frames.read(input)
+            if(kind != Frames.REQUEST) return@use
+            moshi.adapter(CompileRequest::class.java).fromJson(payload.decodeToString())!!
+        } catch(e: Exception) {
+            return@use // not a client of ours
+        }
+        var code = 0
+        lock.withLock {
+            isJson = request.json
+            DiagnosticsPrinter.json = request.json
+            val command = ClientSession(request, store)
+                .context { terminal = Terminal(SocketTerminal(output, request)) }
+            try {
+                command.parse(emptyList())
+            } catch(e: Exception) {
+                Frames.write(output, Frames.STDERR, (e.stackTraceToString()).encodeToByteArray())
+                code = 1
+            }
+        }
+        try {
+            Frames.write(output, Frames.EXIT, byteArrayOf(code.toByte()))
+        } catch(ignored: IOException) {
+            // the client went away
+        }
+    }
+
+    /**
+     * The compilation of a single client, whose output goes to the client's socket.
+     */
+    private class ClientSession(private val request: CompileRequest, private val store: MetadataStore) : CliktCommand(name = "compile") {
+        override fun run() = compile(request, store)
+    }
+
+    /**
+     * A terminal writing to a client's socket, rendering as the client's terminal would.
+     */
+    private class SocketTerminal(private val output: DataOutputStream, request: CompileRequest) : TerminalInterface {
+        // width, height, ANSI level, hyperlinks, interactive output, interactive input, and whether CR clears lines
+        override val info = TerminalInfo(request.width, 24, AnsiLevel.valueOf(request.ansiLevel), false, false, false, false)
+
+        override fun completePrintRequest(request: PrintRequest) {
+            val text = if(request.trailingLinebreak) request.text + "\n" else request.text
+            Frames.write(output, if(request.stderr) Frames.STDERR else Frames.STDOUT, text.encodeToByteArray())
+        }
+
+        override fun readLineOrNull(hideInput: Boolean): String? = null
+    }
+
+}
+
+/**
+ * The client side of the daemon.
+ */
+internal object DaemonClient {
+
+    /**
+     * Sends a compilation to the daemon listening at the given socket, and relays its output.
+     * @return `false` if no daemon is listening, else `true` once the compilation is done.
+     * @throws ProgramResult if the compilation failed in the daemon.
+     */
+    fun compile(command: CliktCommand, socket: Path, request: CompileRequest): Boolean {
+        val channel = try {
+            SocketChannel.open(UnixDomainSocketAddress.of(socket))
+        } catch(e: IOException) {
+            return false
+        }
+        channel.use {
+            val output = DataOutputStream(Channels.newOutputStream(channel))
+            Frames.write(output, Frames.REQUEST, moshi.adapter(CompileRequest::class.java).toJson(request).encodeToByteArray())
+            val input = DataInputStream(Channels.newInputStream(channel).buffered())
+            val terminal = command.currentContext.terminal
+            while(true) {
+                val (kind, payload) = Frames.read(input)
+                when(kind) {
+                    Frames.STDOUT -> terminal.rawPrint(payload.decodeToString())
+                    Frames.STDERR -> terminal.rawPrint(payload.decodeToString(), stderr = true)
+                    Frames.EXIT -> {
+                        if(payload[0].toInt() != 0) throw ProgramResult(payload[0].toInt())
+                        return true
+                    }
+                }
+            }
+        }
+    }
+
+}
+
+/**
+ * The classpath metadata kept in memory by a daemon. Every classpath element is watched for changes; metadata is
+ * rescanned once any of its elements changed, and reused otherwise. Metadata read from an element which disappears
+ * is dropped.
+ */
+internal class MetadataStore(private val watcher: WatchService) {
+
+    private data class Key(val paths: List<Path>, val cache: Path?)
+    private class Entry(val versions: List<Long>, val metadata: ClasspathMetadata)
+    // a directory may hold several JARs of the classpath, which then share its watch key
+    private data class Watched(val element: Path, val file: Path?)
+
+    // versions are drawn from a single sequence, so an element which reappears never matches metadata read before
+    private val sequence = AtomicLong()
+    private val versions = ConcurrentHashMap<Path, Long>()
+    private val watched = ConcurrentHashMap<WatchKey, CopyOnWriteArrayList<Watched>>()
+    private val entries = ConcurrentHashMap<Key, Entry>()
+
+    /**
+     * The number of classpaths whose metadata is kept.
+     */
+    val size: Int get() = entries.size
+
+    /**
+     * Returns the metadata of the given classpath, scanning it only if it changed since it was last scanned.
+     * @param paths The classpath elements.
+     * @param cache The persistent metadata cache used when scanning, if any.
+     */
+    fun metadata(paths: List<Path>, cache: Path?): ClasspathMetadata {
+        val key = Key(paths.map { it.toAbsolutePath().normalize() }, cache)
+        // versions are read before scanning, so a change during the scan invalidates the result
+        val current = key.paths.map { version(it) }
+        val entry = entries[key]
+        if(entry != null && entry.versions == current) return entry.metadata
+        val metadata = ClasspathMetadata.scan(cache, key.paths)
+        entries[key] = Entry(current, metadata)
+        return metadata
+    }
+
+    private fun version(element: Path): Long = versions.computeIfAbsent(element) {
+        try {
+            if(Files.isDirectory(element)) registerTree(element)
+            else element.parent?.let { register(it, Watched(element, element.fileName)) }
+        } catch(ignored: IOException) {
+            // unwatchable elements are never considered changed; like the JVM, we ignore missing elements anyway
+        }
+        sequence.incrementAndGet()
+    }
+
+    private fun register(dir: Path, target: Watched) {
+        val key = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY)
+        watched.computeIfAbsent(key) { CopyOnWriteArrayList() }.addIfAbsent(target)
+    }
+
+    private fun registerTree(root: Path, element: Path = root) {
+        Files.walkFileTree(root, object : SimpleFileVisitor<Path>() {
+            override fun preVisitDirectory(dir: Path, attrs: BasicFileAttributes): FileVisitResult {
+                register(dir, Watched(element, null))
+                return FileVisitResult.CONTINUE
+            }
+        })
+    }
+
+    private fun changed(element: Path) {
+        versions.computeIfPresent(element) { _, _ -> sequence.incrementAndGet() }
+    }
+
+    private fun evict(element: Path) {
+        versions.remove(element)
+        entries.keys.removeIf { element in it.paths }
+    }
+
+    /**
+     * Invalidates metadata as the watched elements change. This never returns.
+     */
+    fun watch() {
+        while(true) {
+            val key = watcher.take()
+            val targets = watched[key].orEmpty()
+            val dir = key.watchable() as Path
+            for(event in key.pollEvents()) {
+                val context = event.context() as? Path
+                for(target in targets) {
+                    if(target.file != null && event.kind() != OVERFLOW && context != target.file) continue
+                    if(target.file != null && event.kind() == ENTRY_DELETE) {
+                        evict(target.element)
+                        continue
+                    }
+                    changed(target.element)
+                    if(target.file == null && event.kind() == ENTRY_CREATE && context != null && Files.isDirectory(dir.resolve(context))) {
+                        try {
+                            registerTree(dir.resolve(context), target.element)
+                        } catch(ignored: IOException) {
+                            // deleted again already
+                        }
+                    }
+                }
+            }
+            if(!key.reset()) {
+                watched.remove(key)
+                // the directory itself is gone
+                for(target in targets) if(target.file == null && target.element == dir) evict(target.element)
+            }
+        }
+    }
+
+}
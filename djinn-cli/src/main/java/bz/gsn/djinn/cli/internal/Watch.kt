@@ -0,0 +1,160 @@
+package bz.gsn.djinn.cli.internal
+
+import bz.gsn.djinn.cli.action
+import bz.gsn.djinn.cli.internal.DiagnosticsPrinter.print
+import bz.gsn.djinn.compiler.DjinnCompiler
+import bz.gsn.djinn.compiler.lint.Diagnostic
+import bz.gsn.djinn.compiler.metadata.ClasspathMetadata
+import com.github.ajalt.clikt.core.CliktCommand
+import com.github.ajalt.mordant.rendering.TextColors
+import com.github.ajalt.mordant.rendering.TextStyles
+import java.nio.file.*
+import java.nio.file.StandardWatchEventKinds.*
+import java.nio.file.attribute.BasicFileAttributes
+import java.util.*
+import java.util.concurrent.TimeUnit
+import kotlin.io.path.Path
+import kotlin.time.measureTime
+
+/**
+ * How long to wait for more changes after one, in milliseconds, as builds write many files in a burst.
+ */
+private const val QUIET_PERIOD = 200L
+
+/**
+ * Compiles a Djinn application as requested, then keeps watching its primary classpath. On every change, only the
+ * changed classes are read and linted again, and the JAR is updated in place; changes are kept pending until they
+ * compile without errors. No AppCDS archive is created. This never returns.
+ * @param watched The compilation request.
+ */
+internal fun CliktCommand.watch(watched: CompileRequest) {
+    // an archive would be stale after the first change, and training on every change would defeat the purpose
+    val request = watched.copy(archive = false)
+    val primary = Path(request.primary)
+    val external = request.external.map { Path(it) }
+    val paths = listOf(primary) + external
+    val cache = request.cache?.let { Path(it) }
+    val outputJar = Path(request.output)
+    val watcher = PrimaryWatcher(primary)
+    var metadata = ClasspathMetadata.scan(cache, paths)
+    // if a full compilation failed, the JAR is not known to match the classpath, so the next one is full too
+    var full = !compile(request, DjinnCompiler.of(metadata, primary, *external.toTypedArray()))
+    val pending = TreeSet<String>()
+    action("Watching", "$primary for changes")
+    while(true) {
+        val changed = watcher.take()
+        try {
+            if(changed == null || full) {
+                // events were lost, or the JAR is stale
+                metadata = ClasspathMetadata.scan(cache, paths)
+                full = !compile(request, DjinnCompiler.of(metadata, primary, *external.toTypedArray()))
+                pending.clear()
+                continue
+            }
+            metadata = metadata.update(primary, changed)
+            pending += changed
+            val compiler = DjinnCompiler.of(metadata, primary, *external.toTypedArray())
+            val classes = pending.filter { it.endsWith(".class") }.map { it.removeSuffix(".class").replace('/', '.') }
+            action("Recompiling", "Djinn application at $primary after ${changed.size} change(s)")
+            var warnings = 0
+            var errors = 0
+            val duration = measureTime {
+                action("Linting", "${classes.size} changed classes")
+                val diagnostics = request.lint { compiler.lint(it, classes) }
+                warnings = diagnostics.count { it.level() == Diagnostic.Level.WARNING }
+                errors = diagnostics.count { it.level() == Diagnostic.Level.ERROR }
+                diagnostics.forEach { print(it) }
+                if(request.bootstrap && errors == 0) {
+                    request.buildVars.forEach(compiler::registerBTV)
+                    compiler.setInvokers(request.invokers)
+                    compiler.setStored(request.stored)
+                    compiler.setPrepareDetectors(request.prepareDetectors)
+                    compiler.setNativeImage(request.nativeImage)
+                    val written: Int
+                    val time = measureTime { written = compiler.updateJAR(outputJar, pending) }
+                    action("Updated", "$written entries of $outputJar in $time")
+                }
+            }
+            if(errors == 0) {
+                pending.clear()
+                action("Compiled", "Djinn application in $duration with $warnings warning(s) to $outputJar")
+            } else {
+                echo("${(TextStyles.bold + TextColors.red)("Failed")} to compile Djinn application with $warnings warning(s) and $errors error(s)")
+            }
+        } catch(e: Exception) {
+            // e.g., a classfile was read while it was still being written; everything is read again on the next change
+            echo("${(TextStyles.bold + TextColors.red)("Failed")} to compile Djinn application: $e", err = true)
+            full = true
+        }
+    }
+}
+
+/**
+ * Watches every directory of the primary classpath.
+ */
+private class PrimaryWatcher(private val root: Path) {
+
+    private val watcher = root.fileSystem.newWatchService()
+    private val directories = HashMap<WatchKey, Path>()
+
+    init {
+        register(root)
+    }
+
+    /**
+     * Waits for changes, and returns every change until none happened for [QUIET_PERIOD].
+     * @return the paths of the created, modified and deleted files and directories, relative to the root and separated by `/`;
+     * else `null` if changes were lost.
+     */
+    fun take(): Set<String>? {
+        val changed = TreeSet<String>()
+        var overflow = false
+        var key: WatchKey? = watcher.take()
+        while(key != null) {
+            val directory = directories[key]
+            if(directory != null) {
+                for(event in key.pollEvents()) {
+                    if(event.kind() == OVERFLOW) {
+                        overflow = true
+                        continue
+                    }
+                    val path = directory.resolve(event.context() as Path)
+                    // a new directory may already hold files, which were created before it was watched
+                    if(event.kind() == ENTRY_CREATE && Files.isDirectory(path)) changed += register(path)
+                    else changed += name(path)
+                }
+            }
+            if(!key.reset()) directories.remove(key)
+            key = watcher.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)
+        }
+        return if(overflow) null else changed
+    }
+
+    /**
+     * Watches a directory and every directory in it.
+     * @return the names of the directory and everything in it.
+     */
+    private fun register(directory: Path): List<String> {
+        val names = ArrayList<String>()
+        try {
+            Files.walkFileTree(directory, object : SimpleFileVisitor<Path>() {
+                override fun preVisitDirectory(dir: Path, attrs: BasicFileAttributes): FileVisitResult {
+                    directories[dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY)] = dir
+                    if(dir != root) names += name(dir)
+                    return FileVisitResult.CONTINUE
+                }
+
+                override fun visitFile(file: Path, attrs: BasicFileAttributes): FileVisitResult {
+                    names += name(file)
+                    return FileVisitResult.CONTINUE
+                }
+            })
+        } catch(ignored: NoSuchFileException) {
+            // deleted again already, which is reported separately
+        }
+        return names
+    }
+
+    private fun name(path: Path) = root.relativize(path).toString().replace('\\', '/')
+
+}
@@ -0,0 +1,58 @@
+package bz.gsn.djinn.cli.internal
+
+import org.junit.jupiter.api.Assertions
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.io.TempDir
+import java.nio.file.FileSystems
+import java.nio.file.Path
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+import kotlin.io.path.deleteExisting
+import kotlin.io.path.outputStream
+
+class MetadataStoreTest {
+
+    private fun jar(path: Path, content: String): Path {
+        JarOutputStream(path.outputStream()).use {
+            it.putNextEntry(JarEntry("content.txt"))
+            it.write(content.encodeToByteArray())
+            it.closeEntry()
+        }
+        return path
+    }
+
+    /**
+     * Waits until the given condition holds, as watch events are delivered asynchronously.
+     */
+    private fun await(message: String, condition: () -> Boolean) {
+        val deadline = System.nanoTime() + 10_000_000_000
+        while(!condition()) {
+            if(System.nanoTime() > deadline) Assertions.fail<Unit>(message)
+            Thread.sleep(10)
+        }
+    }
+
+    @Test
+    fun jarsSharingADirectory(@TempDir directory: Path) {
+        val first = jar(directory.resolve("first.jar"), "first")
+        val second = jar(directory.resolve("second.jar"), "second")
+        val store = MetadataStore(FileSystems.getDefault().newWatchService())
+        Thread.ofPlatform().daemon().start(store::watch)
+        val firstMetadata = store.metadata(listOf(first), null)
+        val secondMetadata = store.metadata(listOf(second), null)
+        Assertions.assertSame(firstMetadata, store.metadata(listOf(first), null))
+
+        // both JARs are watched through the same key, so a change to either is noticed
+        jar(first, "changed")
+        await("the change to the first JAR was missed") { store.metadata(listOf(first), null) !== firstMetadata }
+        Assertions.assertSame(secondMetadata, store.metadata(listOf(second), null))
+        jar(second, "changed")
+        await("the change to the second JAR was missed") { store.metadata(listOf(second), null) !== secondMetadata }
+
+        // and metadata read from a JAR which disappears is dropped
+        Assertions.assertEquals(2, store.size)
+        first.deleteExisting()
+        await("the metadata of the deleted JAR was kept") { store.size == 1 }
+    }
+
+}
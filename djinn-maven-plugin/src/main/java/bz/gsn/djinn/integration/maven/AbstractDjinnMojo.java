@@ -0,0 +1,97 @@
+package bz.gsn.djinn.integration.maven;
+
+import bz.gsn.djinn.compiler.DjinnCompiler;
+import bz.gsn.djinn.compiler.lint.Diagnostic;
+import bz.gsn.djinn.compiler.metadata.ClasspathMetadata;
+import bz.gsn.djinn.compiler.metadata.SharedMetadata;
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The base of the goals which scan the classes of a project and its dependencies.
+ * <p>
+ * The metadata of dependency JARs is kept in the Maven session, so each JAR is read at most once per build,
+ * however many modules of the reactor depend on it.
+ */
+public abstract class AbstractDjinnMojo extends AbstractMojo {
+
+	@Parameter(defaultValue = "${project}", readonly = true)
+	protected MavenProject project;
+	@Parameter(defaultValue = "${session}", readonly = true)
+	protected MavenSession session;
+	/**
+	 * The directory of the class metadata cache, which is shared by every module and project using it.
+	 */
+	@Parameter(property = "djinn.cache", defaultValue = "${user.home}/.djinn/cache")
+	protected File cacheDirectory;
+	/**
+	 * Whether every class should be read again, ignoring the class metadata cache.
+	 */
+	@Parameter(property = "djinn.skipCache", defaultValue = "false")
+	protected boolean skipCache;
+
+	/**
+	 * Returns the output directory of the project, which is the primary classpath.
+	 * @return the primary classpath.
+	 */
+	protected Path primary() {
+		return Path.of(project.getBuild().getOutputDirectory());
+	}
+
+	/**
+	 * Returns the JARs of the dependencies of the project.
+	 * @return the JARs.
+	 */
+	protected List<Path> dependencies() {
+		return project.getArtifacts()
+				.stream()
+				.map(Artifact::getFile)
+				.filter(f -> f != null && f.isFile() && f.getName().endsWith(".jar"))
+				.map(f -> f.toPath().toAbsolutePath())
+				.toList();
+	}
+
+	/**
+	 * Creates a compiler of the project, reusing the metadata of dependencies already read in this session.
+	 * @param dependencies The JARs of the dependencies.
+	 * @return the compiler.
+	 * @throws IOException if an I/O error occurs.
+	 */
+	protected DjinnCompiler compiler(List<Path> dependencies) throws IOException {
+		var shared = (SharedMetadata) session.getRepositorySession().getData().computeIfAbsent(SharedMetadata.class, SharedMetadata::new);
+		var paths = new ArrayList<Path>();
+		paths.add(primary());
+		paths.addAll(dependencies);
+		var metadata = ClasspathMetadata.scan(skipCache ? null : cacheDirectory.toPath(), paths, shared);
+		return DjinnCompiler.of(metadata, primary(), dependencies.toArray(Path[]::new));
+	}
+
+	/**
+	 * Logs diagnostics.
+	 * @param diagnostics The diagnostics.
+	 * @return the number of errors.
+	 */
+	protected long report(List<Diagnostic> diagnostics) {
+		var log = getLog();
+		diagnostics.forEach(e -> {
+			Consumer<String> diagnosticLogger = switch(e.level()) {
+				case WARNING -> log::warn;
+				case ERROR -> log::error;
+			};
+			diagnosticLogger.accept(e.level().name().toLowerCase() + " [" + String.format("%04d", e.code()) + "] " + e.message());
+			for(String note : e.notes()) diagnosticLogger.accept("note: " + note);
+		});
+		return diagnostics.stream().filter(e -> e.level() == Diagnostic.Level.ERROR).count();
+	}
+
+}
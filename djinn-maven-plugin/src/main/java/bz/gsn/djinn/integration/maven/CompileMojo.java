@@ -0,0 +1,156 @@
+package bz.gsn.djinn.integration.maven;
+
+import bz.gsn.djinn.compiler.lint.Diagnostic;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Goal which lints bytecode and packages the project into a bootstrapped JAR.
+ * <p>
+ * The inputs of the goal (every file of the output directory, every dependency JAR, and the configuration)
+ * are fingerprinted by their path, size and modification time, along with the version of the plugin and the files of its
+ * own artifacts, so that a new compiler invalidates the fingerprint. If they did not change since the JAR was last created,
+ * nothing is scanned, linted or written.
+ */
+@Mojo(name = "compile", defaultPhase = LifecyclePhase.PACKAGE, requiresDependencyResolution = ResolutionScope.RUNTIME, threadSafe = true)
+public class CompileMojo extends AbstractDjinnMojo {
+
+	private static final String FINGERPRINT_VERSION = "djinn-compile 2";
+
+	@Parameter(defaultValue = "${plugin}", readonly = true)
+	private PluginDescriptor plugin;
+	/**
+	 * Where the bootstrapped JAR is written.
+	 */
+	@Parameter(property = "djinn.output", defaultValue = "${project.build.directory}/${project.build.finalName}-djinn.jar")
+	private File outputFile;
+	/**
+	 * The build-time variables to embed, in the form {@code key=value}.
+	 */
+	@Parameter
+	private List<String> buildVariables = List.of();
+	/**
+	 * Whether invoker classes should be generated for methods with {@code @Inject}-ed resources.
+	 */
+	@Parameter(property = "djinn.invokers", defaultValue = "false")
+	private boolean invokers;
+	/**
+	 * Whether the JAR entries should be stored uncompressed.
+	 */
+	@Parameter(property = "djinn.store", defaultValue = "false")
+	private boolean stored;
+	/**
+	 * Whether build-time annotation detectors should be prepared; this instantiates every module.
+	 */
+	@Parameter(property = "djinn.prepareDetectors", defaultValue = "false")
+	private boolean prepareDetectors;
+	/**
+	 * Whether the GraalVM {@code native-image} configuration of the application should be embedded in the JAR.
+	 */
+	@Parameter(property = "djinn.nativeImage", defaultValue = "false")
+	private boolean nativeImage;
+	/**
+	 * The codes of the warnings to ignore.
+	 */
+	@Parameter
+	private Set<Integer> allow = Set.of();
+	/**
+	 * Whether the JAR should be created even if the inputs did not change.
+	 */
+	@Parameter(property = "djinn.force", defaultValue = "false")
+	private boolean force;
+
+	public void execute() throws MojoExecutionException, MojoFailureException {
+		var log = getLog();
+		var deps = dependencies();
+		var output = outputFile.toPath();
+		var fingerprintFile = Path.of(project.getBuild().getDirectory(), "djinn", outputFile.getName() + ".fingerprint");
+		String fingerprint;
+		try {
+			fingerprint = fingerprint(deps);
+			if(!force && Files.isRegularFile(output) && Files.isRegularFile(fingerprintFile) && Files.readString(fingerprintFile).equals(fingerprint)) {
+				log.info("Nothing to compile for " + project.getId() + "; " + output + " is up to date");
+				return;
+			}
+		} catch(IOException e) {
+			throw new MojoExecutionException("Could not fingerprint the inputs of " + project.getId(), e);
+		}
+		log.info("Compiling " + project.getId() + " with " + deps.size() + " dependencies");
+		try {
+			var compiler = compiler(deps);
+			var diagnostics = compiler.lint()
+					.stream()
+					.filter(e -> e.level() != Diagnostic.Level.WARNING || !allow.contains(e.code()))
+					.toList();
+			long errors = report(diagnostics);
+			if(errors > 0) throw new MojoFailureException("Could not compile " + project.getId() + ": " + errors + " lint error(s)");
+			buildVariables.forEach(compiler::registerBTV);
+			compiler.setInvokers(invokers);
+			compiler.setStored(stored);
+			compiler.setPrepareDetectors(prepareDetectors);
+			compiler.setNativeImage(nativeImage);
+			Files.createDirectories(output.toAbsolutePath().getParent());
+			compiler.createJAR(output);
+			Files.createDirectories(fingerprintFile.getParent());
+			Files.writeString(fingerprintFile, fingerprint);
+			log.info("Compiled " + project.getId() + " with " + diagnostics.size() + " warning(s) to " + output);
+		} catch(IOException e) {
+			throw new MojoExecutionException("Could not compile " + project.getId(), e);
+		}
+	}
+
+	/**
+	 * Fingerprints every input of the goal.
+	 * @param deps The dependency JARs.
+	 * @return the hex SHA-256 digest.
+	 */
+	private String fingerprint(List<Path> deps) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch(NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 is always supported", e);
+		}
+		var inputs = new StringBuilder(FINGERPRINT_VERSION).append('\n')
+				.append(plugin.getId()).append('\n')
+				.append(outputFile.getAbsolutePath()).append('\n')
+				.append(buildVariables).append('\n')
+				.append(invokers).append(' ').append(stored).append(' ').append(prepareDetectors).append(' ').append(nativeImage).append('\n')
+				.append(allow.stream().sorted().toList()).append('\n');
+		// snapshots of the plugin and the compiler keep their version, but not their files
+		for(var artifact : plugin.getArtifacts()) {
+			var file = artifact.getFile();
+			if(file != null && file.isFile()) append(inputs, file.toPath(), Files.readAttributes(file.toPath(), BasicFileAttributes.class));
+		}
+		for(var dep : deps) append(inputs, dep, Files.readAttributes(dep, BasicFileAttributes.class));
+		var primary = primary();
+		if(Files.isDirectory(primary)) {
+			try(var files = Files.walk(primary)) {
+				for(var file : files.sorted().toList()) append(inputs, primary.relativize(file), Files.readAttributes(file, BasicFileAttributes.class));
+			}
+		}
+		return HexFormat.of().formatHex(digest.digest(inputs.toString().getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static void append(StringBuilder inputs, Path path, BasicFileAttributes attrs) {
+		inputs.append(path).append(' ').append(attrs.size()).append(' ').append(attrs.lastModifiedTime().toMillis()).append('\n');
+	}
+
+}
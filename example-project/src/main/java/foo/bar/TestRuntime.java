@@ -17,18 +17,19 @@ import java.util.Map;
 public class TestRuntime extends Runtime {
 
 	private static final Logger log = LoggerFactory.getLogger(TestRuntime.class);
-	private final Map<String, MethodHandle> handles;
-	private final Map<String, String> contentTypes;
+	private final RequestHandler.Detector detector;
 	private Undertow undertow;
 
 	public TestRuntime(RequestHandler.Detector detector) {
-		this.handles = detector.getMethodHandles();
-		this.contentTypes = detector.getContentTypes();
+		this.detector = detector;
 	}
 
 	@Override
 	public void run(ResourceRegistry resourceRegistry) {
 		log.info("I'm from the TestRuntime.");
+		// the detector is frozen by now, so its maps are immutable and complete
+		Map<String, MethodHandle> handles = detector.getMethodHandles();
+		Map<String, String> contentTypes = detector.getContentTypes();
 		System.out.println("Build variables are " + BuildEnvironment.getBuildEnvironment().getProperties());
 		log.info("Running Undertow on port 8080");
 		this.undertow = Undertow.builder()
@@ -1,6 +1,6 @@
 package foo.bar.annotations;
 
-import bz.gsn.djinn.core.module.AnnotationDetector;
+import bz.gsn.djinn.core.module.BuildTimeAnnotationDetector;
 import bz.gsn.djinn.core.module.MethodInfo;
 import bz.gsn.djinn.core.resource.ResourceRegistry;
 import foo.bar.TestRuntime;
@@ -10,9 +10,9 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.annotation.*;
 import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -41,35 +41,40 @@ public @interface RequestHandler {
 		String value();
 	}
 
-	final class Detector extends AnnotationDetector<RequestHandler> {
+	/**
+	 * Detects request handlers. Paths are normalized and content types read at build time, if the detector was prepared.
+	 * Handlers are collected one at a time, then frozen into immutable maps, which runtimes read without synchronization.
+	 */
+	final class Detector extends BuildTimeAnnotationDetector<RequestHandler> {
 		private static final Logger log = LoggerFactory.getLogger(TestRuntime.class);
 
+		/**
+		 * Returns the handlers by path.
+		 * @throws IllegalStateException if the detector was not frozen yet.
+		 */
 		public Map<String, MethodHandle> getMethodHandles() {
+			if(methodHandles == null) throw new IllegalStateException("the detector was not frozen yet");
 			return methodHandles;
 		}
 
+		/**
+		 * Returns the content types by path.
+		 * @throws IllegalStateException if the detector was not frozen yet.
+		 */
 		public Map<String, String> getContentTypes() {
+			if(contentTypes == null) throw new IllegalStateException("the detector was not frozen yet");
 			return contentTypes;
 		}
 
-		private final Map<String, MethodHandle> methodHandles = new HashMap<>(); // we will only just expect a zero-found-args method
-		private final Map<String, String> contentTypes = new HashMap<>();
+		private final Map<String, MethodHandle> detectedHandles = new HashMap<>(); // we will only just expect a zero-found-args method
+		private final Map<String, String> detectedContentTypes = new HashMap<>();
+		// plain fields, as runtimes only start once every detector is frozen
+		private Map<String, MethodHandle> methodHandles;
+		private Map<String, String> contentTypes;
+
 		@Override
-		public void handleMethod(@NotNull RequestHandler obj, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
-			ContentType contentType = (ContentType) Arrays.stream(info.getAnnotations())
-					.filter(e -> e.annotationType() == ContentType.class)
-					.findFirst()
-					.orElse(new ContentType() {
-						@Override
-						public String value() {
-							return "text/plain";
-						}
-						@Override
-						public Class<? extends Annotation> annotationType() {
-							return ContentType.class;
-						}
-					});
-			log.info("Found method handle with info {}", info);
+		public String prepareMethod(@NotNull RequestHandler obj, @NotNull Method method) {
+			var contentType = method.getAnnotation(ContentType.class);
 			String val;
 			try {
 				val = new URI(obj.value()).normalize().getPath();
@@ -77,8 +82,29 @@ public @interface RequestHandler {
 				throw new RuntimeException(e);
 			}
 			if(!val.endsWith("/")) val += "/";
-			this.methodHandles.put(val, handle);
-			this.contentTypes.put(val, contentType.value());
+			// the decoded path may contain any character, so it is prefixed with its length rather than followed by a separator
+			return val.length() + ":" + val + (contentType == null ? "text/plain" : contentType.value());
+		}
+
+		@Override
+		public void handlePreparedMethod(@NotNull String data, @NotNull MethodHandle handle, @NotNull MethodInfo info, @NotNull ResourceRegistry resourceRegistry) {
+			log.info("Found method handle with info {}", info);
+			var separator = data.indexOf(':');
+			var end = separator + 1 + Integer.parseInt(data, 0, separator, 10);
+			var path = data.substring(separator + 1, end);
+			this.detectedHandles.put(path, handle);
+			this.detectedContentTypes.put(path, data.substring(end));
+		}
+
+		@Override
+		public boolean isThreadSafe() {
+			return false;
+		}
+
+		@Override
+		public void freeze(@NotNull ResourceRegistry resourceRegistry) {
+			this.methodHandles = Map.copyOf(detectedHandles);
+			this.contentTypes = Map.copyOf(detectedContentTypes);
 		}
 	}
 
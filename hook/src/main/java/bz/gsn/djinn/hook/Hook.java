@@ -4,76 +4,98 @@ import bz.gsn.djinn.core.app.AppImpl;
 import bz.gsn.djinn.core.app.AppResourceRegistry;
 import bz.gsn.djinn.core.module.DjinnModule;
 import bz.gsn.djinn.core.resource.Resource;
-import bz.gsn.djinn.core.resource.ResourceRegistry;
+import bz.gsn.djinn.core.resource.ResourceFactory;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
 import java.util.List;
-import java.util.Optional;
-import java.util.stream.Collectors;
 
 /**
  * The class holding Djinn main methods used by the compiler.
  */
 public class Hook {
 
+	/**
+	 * The system property which, if {@code true}, makes the application exit once all of its runtimes have started.
+	 * The compiler sets it for the training run which records the classes to put in a CDS archive.
+	 */
+	public static final String TRAINING_PROPERTY = "djinn.training";
+
 	private static final Logger logger = LoggerFactory.getLogger(Hook.class);
 
+	/**
+	 * The main method called by bootstrappers of older compilers, which instantiates modules and loads resources reflectively.
+	 * @param modules The binary names of the modules.
+	 * @param resources The binary names of the resources.
+	 * @param buildVariables The build-time variables.
+	 */
 	@SuppressWarnings("unused")
 	public static void standardMain(@NotNull String @NotNull [] modules, @NotNull String @NotNull [] resources, @NotNull String @NotNull [] buildVariables) {
-		System.out.println("""
-				d8888b.    d88b d888888b d8b   db d8b   db\s
-				88  `8D    `8P'   `88'   888o  88 888o  88\s
-				88   88     88     88    88V8o 88 88V8o 88\s
-				88   88     88     88    88 V8o88 88 V8o88\s
-				88  .8D db. 88    .88.   88  V888 88  V888\s
-				Y8888D' Y8888P  Y888888P VP   V8P VP   V8P
-				""");
-		logger.info("Using Djinn standard bootstrap method with {} modules and {} resources detected", modules.length, resources.length);
-		logger.info("{} build variables are included inside bootstrapper", buildVariables.length);
-		new AppImpl(Arrays.stream(modules).map(e -> {
+		banner(modules.length, resources.length, buildVariables.length);
+		start(Arrays.stream(modules).map(e -> {
 			try {
 				var x = Class.forName(e).asSubclass(DjinnModule.class);
 				return (DjinnModule) x.getDeclaredConstructor().newInstance();
 			} catch(Exception ex) {
 				throw new RuntimeException(ex);
 			}
-		}).toList(), new InternalRR(List.of(resources)), buildVariables).run();
+		}).toList(), new AppResourceRegistry(Arrays.stream(resources).<Class<? extends Resource>>map(e -> {
+			try {
+				return Class.forName(e).asSubclass(Resource.class);
+			} catch(Exception ex) {
+				throw new RuntimeException(ex);
+			}
+		}).toList()), buildVariables);
 	}
 
-	private static final class InternalRR extends ResourceRegistry {
-
-		private final ResourceRegistry inner;
+	/**
+	 * The main method called by generated bootstrappers, which construct the modules themselves, and instantiate
+	 * resources through a {@link ResourceFactory}; no reflection is involved.
+	 * @param modules The modules.
+	 * @param resources The distinct, concrete resource classes.
+	 * @param dependencies For each resource, the indices of the resources its constructor takes, or {@code null} if
+	 *                     it must be instantiated reflectively.
+	 * @param factory The factory instantiating the resources.
+	 * @param buildVariables The build-time variables.
+	 */
+	@SuppressWarnings("unused")
+	public static void bootstrapMain(
+			@NotNull DjinnModule @NotNull [] modules,
+			@NotNull Class<? extends Resource> @NotNull [] resources,
+			int @NotNull [] @NotNull [] dependencies,
+			@NotNull ResourceFactory factory,
+			@NotNull String @NotNull [] buildVariables
+	) {
+		banner(modules.length, resources.length, buildVariables.length);
+		start(List.of(modules), new AppResourceRegistry(List.of(resources), dependencies, factory), buildVariables);
+	}
 
-		public InternalRR(@NotNull List<String> resources) {
-			this.inner = new AppResourceRegistry(
-					resources.parallelStream()
-							.map(e -> {
-								try { return Class.forName(e); }
-								catch(Exception ex) { throw new RuntimeException(ex); }
-							})
-							.map(e -> {
-								@SuppressWarnings("UnnecessaryLocalVariable") // type error if we inline
-								var x = e.asSubclass(Resource.class);
-								return x;
-							})
-							.collect(Collectors.toUnmodifiableSet())
-			);
-		}
+	private static void banner(int modules, int resources, int buildVariables) {
+		System.out.println("""
+				d8888b.    d88b d888888b d8b   db d8b   db\s
+				88  `8D    `8P'   `88'   888o  88 888o  88\s
+				88   88     88     88    88V8o 88 88V8o 88\s
+				88   88     88     88    88 V8o88 88 V8o88\s
+				88  .8D db. 88    .88.   88  V888 88  V888\s
+				Y8888D' Y8888P  Y888888P VP   V8P VP   V8P
+				""");
+		logger.info("Using Djinn standard bootstrap method with {} modules and {} resources detected", modules, resources);
+		logger.info("{} build variables are included inside bootstrapper", buildVariables);
+	}
 
-		/**
-		 * Returns an {@link Optional} containing the {@link Resource} stored.
-		 * multiple methods or runtimes are modifying the same resource.
-		 *
-		 * @param resource The class of the required resource.
-		 * @return an {@link Optional} holding the {@link Resource}.
-		 */
-		@Override
-		public <T extends Resource> Optional<T> getResource(Class<T> resource) {
-			return inner.getResource(resource);
+	private static void start(List<DjinnModule> modules, AppResourceRegistry resourceRegistry, String[] buildVariables) {
+		var app = new AppImpl(modules, resourceRegistry, buildVariables);
+		var reported = app.getStartupReport().thenAccept(report -> logger.info("{}", report.summary(10)));
+		if(Boolean.getBoolean(TRAINING_PROPERTY)) {
+			reported.thenRun(() -> {
+				logger.info("Training run complete; exiting");
+				// runtimes are not stopped, as only the classes loaded while starting should be archived; the archive is still dumped
+				Runtime.getRuntime().halt(0);
+			});
 		}
+		app.run();
 	}
 
-}
\ No newline at end of file
+}